@@ -21,6 +21,7 @@
 package org.jumpmind.symmetric.android;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Timer;
@@ -29,8 +30,10 @@ import java.util.TimerTask;
 import org.apache.commons.lang.NotImplementedException;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.ext.IOutgoingBatchReadyListener;
 import org.jumpmind.symmetric.job.IJob;
 import org.jumpmind.symmetric.job.IJobManager;
+import org.jumpmind.symmetric.service.ClusterConstants;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +58,11 @@ public class AndroidJobManager implements IJobManager {
 
     public AndroidJobManager(ISymmetricEngine engine) {
         this.engine = engine;
+        engine.getExtensionService().addExtensionPoint("pushJobWakeup", new IOutgoingBatchReadyListener() {
+            public void outgoingBatchesReady(Collection<String> nodeIds) {
+                wakeup(ClusterConstants.PUSH);
+            }
+        });
     }
 
     public List<IJob> getJobs() {
@@ -82,6 +90,16 @@ public class AndroidJobManager implements IJobManager {
         return job != null ? job : null;
     }
 
+    public void wakeup(String clusterLockName) {
+        if (engine.getParameterService().is(ParameterConstants.JOB_WAKEUP_ENABLED)) {
+            if (ClusterConstants.ROUTE.equals(clusterLockName)) {
+                lastRouteTime = 0;
+            } else if (ClusterConstants.PUSH.equals(clusterLockName)) {
+                lastPushTime = 0;
+            }
+        }
+    }
+
     public void destroy() {
         stopJobs();
     }
@@ -36,6 +36,7 @@ import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.db.sqlite.SqliteSymmetricDialect;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.symmetric.io.stage.IStagingManager;
+import org.jumpmind.symmetric.io.stage.StagingStats;
 import org.jumpmind.symmetric.job.IJobManager;
 import org.jumpmind.symmetric.model.NodeCommunication;
 import org.jumpmind.symmetric.model.NodeCommunication.CommunicationType;
@@ -118,6 +119,10 @@ public class AndroidSymmetricEngine extends AbstractSymmetricEngine {
             public Collection<String> getResourceReferences() {
                 return null;
             }
+            
+            public StagingStats getStats() {
+                return new StagingStats();
+            }
         };
     }
 
@@ -316,6 +316,7 @@ public class ClientSymmetricEngine extends AbstractSymmetricEngine {
         settings.setFetchSize(properties.getInt(ParameterConstants.DB_FETCH_SIZE, 1000));
         settings.setQueryTimeout(properties.getInt(ParameterConstants.DB_QUERY_TIMEOUT_SECS, 300));
         settings.setBatchSize(properties.getInt(ParameterConstants.JDBC_EXECUTE_BATCH_SIZE, 100));
+        settings.setStatementCacheSize(properties.getInt(ParameterConstants.JDBC_STATEMENT_CACHE_SIZE, 50));
         settings.setOverrideIsolationLevel(properties.getInt(ParameterConstants.JDBC_ISOLATION_LEVEL, -1));
         settings.setReadStringsAsBytes(properties.is(ParameterConstants.JDBC_READ_STRINGS_AS_BYTES, false));
         LogSqlBuilder logSqlBuilder = new LogSqlBuilder();
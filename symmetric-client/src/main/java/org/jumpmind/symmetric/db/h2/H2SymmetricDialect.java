@@ -158,4 +158,9 @@ public class H2SymmetricDialect extends AbstractEmbeddedSymmetricDialect impleme
         }
     }
 
+    @Override
+    protected int getMaxRowsPerInsert(int columnCount) {
+        return 1000;
+    }
+
 }
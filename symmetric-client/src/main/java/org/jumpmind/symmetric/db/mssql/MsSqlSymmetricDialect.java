@@ -416,4 +416,12 @@ public class MsSqlSymmetricDialect extends AbstractSymmetricDialect implements I
         return "@OldDataRow is null or @DataRow != @OldDataRow";
     }
 
+    /*
+     * A values list is limited to 1000 rows and a statement to 2100 parameters
+     */
+    @Override
+    protected int getMaxRowsPerInsert(int columnCount) {
+        return Math.min(1000, 2000 / columnCount);
+    }
+
 }
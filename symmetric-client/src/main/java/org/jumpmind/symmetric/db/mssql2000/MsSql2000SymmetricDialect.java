@@ -117,4 +117,9 @@ public class MsSql2000SymmetricDialect extends MsSqlSymmetricDialect {
     public BinaryEncoding getBinaryEncoding() {
         return BinaryEncoding.HEX;
     }
+
+    @Override
+    protected int getMaxRowsPerInsert(int columnCount) {
+        return 1;
+    }
 }
@@ -209,4 +209,9 @@ public class MySqlSymmetricDialect extends AbstractSymmetricDialect implements I
     protected String getDbSpecificDataHasChangedCondition(Trigger trigger) {
         return "var_old_data is null or var_row_data != var_old_data";
     }
+
+    @Override
+    protected int getMaxRowsPerInsert(int columnCount) {
+        return 1000;
+    }
 }
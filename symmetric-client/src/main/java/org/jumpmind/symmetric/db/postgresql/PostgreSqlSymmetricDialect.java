@@ -20,18 +20,36 @@
  */
 package org.jumpmind.symmetric.db.postgresql;
 
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.JdbcSqlTransaction;
+import org.jumpmind.db.sql.JdbcUtils;
+import org.jumpmind.db.sql.Row;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.service.IParameterService;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
 
 /*
  * Support for PostgreSQL
@@ -50,7 +68,21 @@ public class PostgreSqlSymmetricDialect extends AbstractSymmetricDialect impleme
         " select count(*) from information_schema.routines " + 
         " where routine_name = '$(functionName)' and specific_schema = '$(defaultSchema)'" ;    
 
+    static final String SQL_SELECT_DATA_PARTITIONS = 
+        " select c.relname as partition_name, pg_get_expr(c.relpartbound, c.oid) as partition_bound " +
+        " from pg_inherits i inner join pg_class c on c.oid = i.inhrelid " +
+        " inner join pg_class p on p.oid = i.inhparent " +
+        " inner join pg_namespace n on n.oid = p.relnamespace " +
+        " where p.relname = ? and n.nspname = ?";
+
+    static final int COPY_BUFFER_SIZE = 65536;
+
+    static final Pattern DATA_PARTITION_BOUND = Pattern
+            .compile("FROM \\('?(-?\\d+)'?\\) TO \\('?(-?\\d+)'?\\)");
+
     private Boolean supportsTransactionId = null;
+
+    private NativeJdbcExtractor jdbcExtractor;
         
     public PostgreSqlSymmetricDialect(IParameterService parameterService, IDatabasePlatform platform) {
         super(parameterService, platform);
@@ -240,6 +272,128 @@ public class PostgreSqlSymmetricDialect extends AbstractSymmetricDialect impleme
     public void cleanDatabase() {
     }
 
+    @Override
+    public boolean supportsDataPartitioning() {
+        return platform.getSqlTemplate().getDatabaseMajorVersion() >= 10;
+    }
+
+    @Override
+    public Map<String, long[]> getDataPartitions() {
+        Map<String, long[]> partitions = new LinkedHashMap<String, long[]>();
+        List<Row> rows = platform.getSqlTemplate().query(SQL_SELECT_DATA_PARTITIONS,
+                new Object[] { getDataTableName(), platform.getDefaultSchema() });
+        for (Row row : rows) {
+            Matcher matcher = DATA_PARTITION_BOUND.matcher(row.getString("partition_bound"));
+            if (matcher.find()) {
+                partitions.put(row.getString("partition_name"),
+                        new long[] { Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)) });
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    public void createDataPartition(String partitionName, long startDataId, long endDataId) {
+        platform.getSqlTemplate().update(
+                String.format("create table %s partition of %s for values from (%d) to (%d)",
+                        getQuotedTableName(partitionName), getQuotedTableName(getDataTableName()),
+                        startDataId, endDataId));
+    }
+
+    @Override
+    public void dropDataPartition(String partitionName) {
+        platform.getSqlTemplate().update(
+                String.format("drop table %s", getQuotedTableName(partitionName)));
+    }
+
+    protected String getQuotedTableName(String tableName) {
+        String quote = platform.getDatabaseInfo().getDelimiterToken();
+        return Table.getFullyQualifiedTableName(null, platform.getDefaultSchema(), tableName,
+                quote, ".", ".");
+    }
+
+    /*
+     * Use the copy command when the native connection is available
+     */
+    @Override
+    public void insertRows(ISqlTransaction transaction, String tableName, String[] columnNames,
+            int[] types, List<Object[]> rows) {
+        if (rows.size() > 1 && transaction instanceof JdbcSqlTransaction) {
+            try {
+                if (jdbcExtractor == null) {
+                    jdbcExtractor = JdbcUtils.getNativeJdbcExtractory();
+                }
+                Connection conn = jdbcExtractor.getNativeConnection(((JdbcSqlTransaction) transaction)
+                        .getConnection());
+                if (conn instanceof BaseConnection) {
+                    StringBuilder sql = new StringBuilder("COPY ").append(tableName).append("(");
+                    for (int i = 0; i < columnNames.length; i++) {
+                        sql.append(i > 0 ? "," : "").append(columnNames[i]);
+                    }
+                    sql.append(") FROM STDIN with delimiter ',' csv quote ''''");
+                    CopyIn copyIn = new CopyManager((BaseConnection) conn).copyIn(sql.toString());
+                    try {
+                        copyRows(copyIn, rows, COPY_BUFFER_SIZE);
+                        copyIn.endCopy();
+                    } finally {
+                        if (copyIn.isActive()) {
+                            copyIn.cancelCopy();
+                        }
+                    }
+                    return;
+                }
+            } catch (Exception ex) {
+                throw platform.getSqlTemplate().translate(ex);
+            }
+        }
+        super.insertRows(transaction, tableName, columnNames, types, rows);
+    }
+
+    /**
+     * Writes rows to a copy command as csv. The rows are sent each time the
+     * buffer fills, so the whole payload is never held in memory.
+     */
+    protected static void copyRows(CopyIn copyIn, List<Object[]> rows, int bufferSize)
+            throws SQLException {
+        StringBuilder data = new StringBuilder();
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    data.append(",");
+                }
+                Object value = row[i];
+                if (value instanceof Date && !(value instanceof Timestamp)) {
+                    value = new Timestamp(((Date) value).getTime());
+                }
+                if (value != null) {
+                    data.append("'").append(value.toString().replace("'", "''")).append("'");
+                }
+            }
+            data.append("\n");
+            if (data.length() >= bufferSize) {
+                writeToCopy(copyIn, data);
+            }
+        }
+        writeToCopy(copyIn, data);
+    }
+
+    protected static void writeToCopy(CopyIn copyIn, StringBuilder data) throws SQLException {
+        if (data.length() > 0) {
+            byte[] bytes = data.toString().getBytes(Charset.forName("UTF-8"));
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            data.setLength(0);
+        }
+    }
+
+    @Override
+    protected int getMaxRowsPerInsert(int columnCount) {
+        return 1000;
+    }
+
+    protected String getDataTableName() {
+        return TableConstants.getTableName(getTablePrefix(), TableConstants.SYM_DATA);
+    }
+
     @Override
     public BinaryEncoding getBinaryEncoding() {
         return BinaryEncoding.BASE64;
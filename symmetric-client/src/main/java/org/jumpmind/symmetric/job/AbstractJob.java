@@ -22,6 +22,7 @@ package org.jumpmind.symmetric.job;
 
 import java.util.Date;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.symmetric.ISymmetricEngine;
@@ -73,6 +74,8 @@ abstract public class AbstractJob implements Runnable, IJob {
 
     private boolean autoStartConfigured;
 
+    private AtomicBoolean wakeupPending = new AtomicBoolean();
+
     protected ISymmetricEngine engine;
 
     protected AbstractJob(String jobName, boolean requiresRegistration, boolean autoStartRequired,
@@ -224,6 +227,45 @@ abstract public class AbstractJob implements Runnable, IJob {
         invoke(false);
     }
 
+    /*
+     * Run this job after the wake up delay instead of waiting for its next
+     * scheduled run.  Wake ups that arrive before the job runs are combined.
+     */
+    public void wakeup() {
+        IParameterService parameterService = engine.getParameterService();
+        if (started && !paused && parameterService.is(ParameterConstants.JOB_WAKEUP_ENABLED)
+                && wakeupPending.compareAndSet(false, true)) {
+            scheduleWakeup(parameterService.getLong(ParameterConstants.JOB_WAKEUP_DELAY_MS, 1000));
+        }
+    }
+
+    protected void scheduleWakeup(final long delayInMs) {
+        taskScheduler.schedule(new Runnable() {
+            public void run() {
+                if (!started) {
+                    wakeupPending.set(false);
+                } else if (running) {
+                    /*
+                     * Try again after the current run so work committed during
+                     * the run isn't left for the next scheduled run
+                     */
+                    scheduleWakeup(delayInMs);
+                } else {
+                    wakeupPending.set(false);
+                    runWakeup();
+                }
+            }
+        }, new Date(System.currentTimeMillis() + delayInMs));
+    }
+
+    /*
+     * Run the job for a wake up.  Jobs that can limit a woken run to the work
+     * that woke them override this.
+     */
+    protected void runWakeup() {
+        run();
+    }
+
     abstract void doJob(boolean force) throws Exception;
 
     @ManagedOperation(description = "Pause this job")
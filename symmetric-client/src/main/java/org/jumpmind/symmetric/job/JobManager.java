@@ -21,9 +21,11 @@
 package org.jumpmind.symmetric.job;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.ext.IOutgoingBatchReadyListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
@@ -64,6 +66,16 @@ public class JobManager implements IJobManager {
         this.jobs.add(new FileSyncPullJob(engine,taskScheduler));
         this.jobs.add(new FileSyncPushJob(engine,taskScheduler));
         this.jobs.add(new InitialLoadExtractorJob(engine,taskScheduler));
+
+        engine.getExtensionService().addExtensionPoint("pushJobWakeup", new IOutgoingBatchReadyListener() {
+            public void outgoingBatchesReady(Collection<String> nodeIds) {
+                for (IJob job : jobs) {
+                    if (job instanceof PushJob) {
+                        ((PushJob) job).wakeup(nodeIds);
+                    }
+                }
+            }
+        });
         
     }
 
@@ -90,6 +102,14 @@ public class JobManager implements IJobManager {
         }
     }
 
+    public void wakeup(String clusterLockName) {
+        for (IJob job : jobs) {
+            if (job instanceof AbstractJob && job.getClusterLockName().equals(clusterLockName)) {
+                ((AbstractJob) job).wakeup();
+            }
+        }
+    }
+
     public synchronized void stopJobs() {
         for (IJob job : jobs) {
             job.stop();
@@ -20,6 +20,10 @@
  */
 package org.jumpmind.symmetric.job;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.service.ClusterConstants;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
@@ -29,15 +33,46 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
  */
 public class PushJob extends AbstractJob {
 
+    private Set<String> nodesToPush = new HashSet<String>();
+
+    private Collection<String> wokenNodeIds;
+
     public PushJob(ISymmetricEngine engine, ThreadPoolTaskScheduler taskScheduler) {
         super("job.push", true, engine.getParameterService().is("start.push.job"), engine,
                 taskScheduler);
     }
 
+    /*
+     * Push to the nodes soon instead of waiting for the next scheduled push
+     */
+    public void wakeup(Collection<String> nodeIds) {
+        synchronized (nodesToPush) {
+            nodesToPush.addAll(nodeIds);
+        }
+        wakeup();
+    }
+
+    @Override
+    protected synchronized void runWakeup() {
+        synchronized (nodesToPush) {
+            wokenNodeIds = new HashSet<String>(nodesToPush);
+            nodesToPush.clear();
+        }
+        try {
+            run();
+        } finally {
+            wokenNodeIds = null;
+        }
+    }
+
     @Override
     public void doJob(boolean force) throws Exception {
         if (engine != null) {
-            engine.getPushService().pushData(force).getDataProcessedCount();
+            if (wokenNodeIds != null && wokenNodeIds.size() > 0) {
+                engine.getPushService().pushData(wokenNodeIds).getDataProcessedCount();
+            } else {
+                engine.getPushService().pushData(force).getDataProcessedCount();
+            }
         }
     }
 
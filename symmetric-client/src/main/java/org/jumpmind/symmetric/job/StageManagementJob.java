@@ -46,6 +46,7 @@ public class StageManagementJob extends AbstractJob {
         if (stagingManager != null) {
             stagingManager.clean(engine.getParameterService()
                     .getLong(ParameterConstants.STREAM_TO_FILE_TIME_TO_LIVE_MS));
+            log.debug("Staging statistics: {}", stagingManager.getStats());
         }
     }
 
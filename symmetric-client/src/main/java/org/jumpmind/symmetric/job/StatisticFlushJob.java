@@ -44,6 +44,7 @@ public class StatisticFlushJob extends AbstractJob {
         engine.getStatisticManager().flush();
         engine.getPurgeService().purgeStats(force);
         purgeLogSummaryAppender();
+        log.debug("Table cache statistics: {}", engine.getDatabasePlatform().getTableCacheStats());
     }
     
     protected void purgeLogSummaryAppender() {
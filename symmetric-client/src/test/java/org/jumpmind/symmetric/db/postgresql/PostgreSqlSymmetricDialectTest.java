@@ -0,0 +1,93 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db.postgresql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.postgresql.copy.CopyIn;
+
+public class PostgreSqlSymmetricDialectTest {
+
+    CopyIn copyIn;
+
+    ByteArrayOutputStream copied;
+
+    List<Integer> writeSizes;
+
+    @Before
+    public void setup() throws Exception {
+        copied = new ByteArrayOutputStream();
+        writeSizes = new ArrayList<Integer>();
+        copyIn = mock(CopyIn.class);
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                byte[] bytes = (byte[]) invocation.getArguments()[0];
+                int off = (Integer) invocation.getArguments()[1];
+                int len = (Integer) invocation.getArguments()[2];
+                copied.write(bytes, off, len);
+                writeSizes.add(len);
+                return null;
+            }
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testCopyRowsFormatsValues() throws Exception {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { 1, "it's", null });
+        rows.add(new Object[] { 2, "a,b", Timestamp.valueOf("2015-01-02 03:04:05.0") });
+        PostgreSqlSymmetricDialect.copyRows(copyIn, rows, 65536);
+        assertEquals("'1','it''s',\n'2','a,b','2015-01-02 03:04:05.0'\n",
+                new String(copied.toByteArray(), "UTF-8"));
+        assertEquals(1, writeSizes.size());
+    }
+
+    @Test
+    public void testCopyRowsSentInChunks() throws Exception {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new Object[] { i, "row" });
+            expected.append("'").append(i).append("','row'\n");
+        }
+        PostgreSqlSymmetricDialect.copyRows(copyIn, rows, 100);
+        assertEquals(expected.toString(), new String(copied.toByteArray(), "UTF-8"));
+        assertTrue(writeSizes.size() > 50);
+        for (int size : writeSizes) {
+            assertTrue(size < 120);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.model.Lock;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+public class AbstractJobTest {
+
+    ISymmetricEngine engine;
+
+    IParameterService parameterService;
+
+    ThreadPoolTaskScheduler taskScheduler;
+
+    TestJob job;
+
+    @Before
+    public void setup() {
+        engine = mock(ISymmetricEngine.class);
+        parameterService = mock(IParameterService.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.isStarted()).thenReturn(true);
+        when(parameterService.getExternalId()).thenReturn("00001");
+        when(parameterService.getInt(ParameterConstants.JOB_RANDOM_MAX_START_TIME_MS)).thenReturn(
+                1000);
+        when(parameterService.getInt("job.test.period.time.ms", -1)).thenReturn(60000);
+        when(parameterService.is(ParameterConstants.JOB_WAKEUP_ENABLED)).thenReturn(true);
+        when(parameterService.getLong(ParameterConstants.JOB_WAKEUP_DELAY_MS, 1000)).thenReturn(
+                500l);
+
+        IClusterService clusterService = mock(IClusterService.class);
+        when(engine.getClusterService()).thenReturn(clusterService);
+        when(clusterService.isInfiniteLocked(anyString())).thenReturn(false);
+        when(clusterService.findLocks()).thenReturn(new HashMap<String, Lock>());
+
+        taskScheduler = mock(ThreadPoolTaskScheduler.class);
+        job = new TestJob(engine, taskScheduler);
+    }
+
+    @Test
+    public void testWakeupsCombined() throws Exception {
+        job.start();
+        long wakeupTime = System.currentTimeMillis();
+        job.wakeup();
+        job.wakeup();
+        job.wakeup();
+
+        ArgumentCaptor<Date> runTime = ArgumentCaptor.forClass(Date.class);
+        ArgumentCaptor<Runnable> wakeup = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(wakeup.capture(), runTime.capture());
+        assertTrue(runTime.getValue().getTime() >= wakeupTime + 500);
+        assertEquals(0, job.runs);
+
+        wakeup.getValue().run();
+        assertEquals(1, job.runs);
+
+        job.wakeup();
+        verify(taskScheduler, times(2)).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    @Test
+    public void testWakeupWhileRunningRescheduled() throws Exception {
+        job.start();
+        job.wakeup();
+        job.duringRun = scheduledWakeups(1).get(0);
+
+        job.invoke(false);
+        assertEquals(1, job.runs);
+
+        scheduledWakeups(2).get(1).run();
+        assertEquals(2, job.runs);
+    }
+
+    @Test
+    public void testWakeupIgnoredWhenDisabled() throws Exception {
+        when(parameterService.is(ParameterConstants.JOB_WAKEUP_ENABLED)).thenReturn(false);
+        job.start();
+        job.wakeup();
+
+        verify(taskScheduler, never()).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    @Test
+    public void testWakeupIgnoredWhenNotRunnable() throws Exception {
+        job.wakeup();
+
+        job.start();
+        job.pause();
+        job.wakeup();
+
+        verify(taskScheduler, never()).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    protected List<Runnable> scheduledWakeups(int count) {
+        ArgumentCaptor<Runnable> wakeups = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler, times(count)).schedule(wakeups.capture(), any(Date.class));
+        return wakeups.getAllValues();
+    }
+
+    static class TestJob extends AbstractJob {
+
+        int runs;
+
+        Runnable duringRun;
+
+        TestJob(ISymmetricEngine engine, ThreadPoolTaskScheduler taskScheduler) {
+            super("job.test", false, true, engine, taskScheduler);
+        }
+
+        @Override
+        void doJob(boolean force) throws Exception {
+            runs++;
+            if (duringRun != null) {
+                Runnable wakeup = duringRun;
+                duringRun = null;
+                wakeup.run();
+            }
+        }
+
+        public String getClusterLockName() {
+            return "TEST";
+        }
+
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.model.Channel;
+import org.jumpmind.symmetric.model.Lock;
+import org.jumpmind.symmetric.model.RemoteNodeStatuses;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.IPushService;
+import org.jumpmind.symmetric.service.IRegistrationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+public class PushJobTest {
+
+    IPushService pushService;
+
+    ThreadPoolTaskScheduler taskScheduler;
+
+    PushJob job;
+
+    @Before
+    public void setup() {
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        IParameterService parameterService = mock(IParameterService.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.isStarted()).thenReturn(true);
+        when(parameterService.getExternalId()).thenReturn("00001");
+        when(parameterService.getInt(ParameterConstants.JOB_RANDOM_MAX_START_TIME_MS)).thenReturn(
+                1000);
+        when(parameterService.getInt("job.push.period.time.ms", -1)).thenReturn(60000);
+        when(parameterService.is(ParameterConstants.JOB_WAKEUP_ENABLED)).thenReturn(true);
+        when(parameterService.getLong(ParameterConstants.JOB_WAKEUP_DELAY_MS, 1000)).thenReturn(
+                500l);
+
+        IClusterService clusterService = mock(IClusterService.class);
+        when(engine.getClusterService()).thenReturn(clusterService);
+        when(clusterService.isInfiniteLocked(anyString())).thenReturn(false);
+        when(clusterService.findLocks()).thenReturn(new HashMap<String, Lock>());
+
+        IRegistrationService registrationService = mock(IRegistrationService.class);
+        when(engine.getRegistrationService()).thenReturn(registrationService);
+        when(registrationService.isRegisteredWithServer()).thenReturn(true);
+
+        RemoteNodeStatuses statuses = new RemoteNodeStatuses(new HashMap<String, Channel>());
+        pushService = mock(IPushService.class);
+        when(engine.getPushService()).thenReturn(pushService);
+        when(pushService.pushData(anyBoolean())).thenReturn(statuses);
+        when(pushService.pushData(anyCollectionOf(String.class))).thenReturn(statuses);
+
+        taskScheduler = mock(ThreadPoolTaskScheduler.class);
+        job = new PushJob(engine, taskScheduler);
+        job.start();
+    }
+
+    @Test
+    public void testWakeupPushesToWokenNodes() throws Exception {
+        job.wakeup(Collections.singleton("00002"));
+        job.wakeup(Collections.singleton("00003"));
+
+        scheduledWakeup().run();
+
+        Collection<String> nodeIds = pushedNodeIds();
+        assertEquals(2, nodeIds.size());
+        assertTrue(nodeIds.contains("00002"));
+        assertTrue(nodeIds.contains("00003"));
+        verify(pushService, never()).pushData(anyBoolean());
+    }
+
+    @Test
+    public void testWakeupWithoutNodesPushesToAllNodes() throws Exception {
+        job.wakeup();
+
+        scheduledWakeup().run();
+
+        verify(pushService).pushData(false);
+        verify(pushService, never()).pushData(anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void testScheduledPushGoesToAllNodes() throws Exception {
+        job.wakeup(Collections.singleton("00002"));
+
+        job.run();
+
+        verify(pushService).pushData(false);
+        verify(pushService, never()).pushData(anyCollectionOf(String.class));
+    }
+
+    protected Runnable scheduledWakeup() {
+        ArgumentCaptor<Runnable> wakeup = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(wakeup.capture(), any(Date.class));
+        return wakeup.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Collection<String> pushedNodeIds() {
+        ArgumentCaptor<Collection> nodeIds = ArgumentCaptor.forClass(Collection.class);
+        verify(pushService).pushData(nodeIds.capture());
+        return nodeIds.getValue();
+    }
+
+}
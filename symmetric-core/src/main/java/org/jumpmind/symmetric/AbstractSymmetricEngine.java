@@ -730,9 +730,18 @@ abstract public class AbstractSymmetricEngine implements ISymmetricEngine {
         if (routerService != null) {
         	routerService.stop();
         }
+        if (dataExtractorService != null) {
+            dataExtractorService.stop();
+        }
+        if (dataLoaderService != null) {
+            dataLoaderService.stop();
+        }
         if (nodeCommunicationService != null) {
         	nodeCommunicationService.stop();
         }
+        if (concurrentConnectionManager != null) {
+            concurrentConnectionManager.stop();
+        }
         
         if (statisticManager != null) {
             List<ProcessInfo> infos = statisticManager.getProcessInfos();
@@ -801,6 +810,7 @@ abstract public class AbstractSymmetricEngine implements ISymmetricEngine {
     public void removeAndCleanupNode(String nodeId) {
         log.info("Removing node {}", nodeId);
         nodeService.deleteNode(nodeId, false);
+        nodeCommunicationService.clearCache();
         log.info("Done removing node ID {}", nodeId);        
     }
 
@@ -157,4 +157,6 @@ final public class Constants {
     public static final String SEQUENCE_OUTGOING_BATCH = TableConstants.SYM_OUTGOING_BATCH;
     
     public static final String SEQUENCE_OUTGOING_BATCH_LOAD_ID = "outgoing_batch_load_id";
+    
+    public static final String SEQUENCE_OUTGOING_BATCH_PENDING = "outgoing_batch_pending";
 }
\ No newline at end of file
@@ -45,6 +45,7 @@ final public class ParameterConstants {
     public final static String AUTO_START_ENGINE = "auto.start.engine";
 
     public final static String JDBC_EXECUTE_BATCH_SIZE = "db.jdbc.execute.batch.size";
+    public final static String JDBC_STATEMENT_CACHE_SIZE = "db.jdbc.statement.cache.size";
     public final static String JDBC_READ_STRINGS_AS_BYTES = "db.read.strings.as.bytes";
     public final static String JDBC_ISOLATION_LEVEL = "db.jdbc.isolation.level";
 
@@ -61,6 +62,8 @@ final public class ParameterConstants {
     public final static String PULL_THREAD_COUNT_PER_SERVER = "pull.thread.per.server.count";
     public final static String PULL_MINIMUM_PERIOD_MS = "pull.period.minimum.ms";
     public final static String PULL_LOCK_TIMEOUT_MS = "pull.lock.timeout.ms";
+    public final static String PULL_LONG_POLL_ENABLED = "pull.long.poll.enabled";
+    public final static String PULL_LONG_POLL_TIMEOUT_MS = "pull.long.poll.timeout.ms";
 
     public final static String PUSH_THREAD_COUNT_PER_SERVER = "push.thread.per.server.count";
     public final static String PUSH_MINIMUM_PERIOD_MS = "push.period.minimum.ms";
@@ -81,6 +84,8 @@ final public class ParameterConstants {
     public final static String FILE_PUSH_LOCK_TIMEOUT_MS = "file.push.lock.timeout.ms";
 
     public final static String JOB_RANDOM_MAX_START_TIME_MS = "job.random.max.start.time.ms";
+    public final static String JOB_WAKEUP_ENABLED = "job.wakeup.enabled";
+    public final static String JOB_WAKEUP_DELAY_MS = "job.wakeup.delay.ms";
 
     public final static String REGISTRATION_NUMBER_OF_ATTEMPTS = "registration.number.of.attempts";
     public final static String REGISTRATION_REOPEN_USE_SAME_PASSWORD = "registration.reopen.use.same.password";
@@ -136,6 +141,15 @@ final public class ParameterConstants {
     
     public final static String STREAM_TO_FILE_ENABLED = "stream.to.file.enabled";
     public final static String STREAM_TO_FILE_THRESHOLD = "stream.to.file.threshold.bytes";
+    public final static String STREAM_TO_FILE_BINARY_ENABLED = "stream.to.file.binary.enabled";
+
+    public final static String EXTRACT_AHEAD_BATCH_COUNT = "extract.ahead.batch.count";
+
+    public final static String EXTRACT_AHEAD_THREAD_COUNT = "extract.ahead.thread.count";
+
+    public final static String DATA_LOADER_PARALLEL_BATCH_COUNT = "dataloader.parallel.batch.count";
+
+    public final static String DATA_LOADER_PARALLEL_THREAD_COUNT = "dataloader.parallel.thread.count";
     public final static String STREAM_TO_FILE_TIME_TO_LIVE_MS = "stream.to.file.ttl.ms";
 
     public final static String PARAMETER_REFRESH_PERIOD_IN_MS = "parameter.reload.timeout.ms";
@@ -145,6 +159,7 @@ final public class ParameterConstants {
 
     public final static String OUTGOING_BATCH_PEEK_AHEAD_BATCH_COMMIT_SIZE = "outgoing.batches.peek.ahead.batch.commit.size";
     public final static String ROUTING_FLUSH_JDBC_BATCH_SIZE = "routing.flush.jdbc.batch.size";
+    public final static String ROUTING_BULK_INSERT_ENABLED = "routing.bulk.insert.enabled";
     public final static String ROUTING_WAIT_FOR_DATA_TIMEOUT_SECONDS = "routing.wait.for.data.timeout.seconds";
     public final static String ROUTING_MAX_GAPS_TO_QUALIFY_IN_SQL = "routing.max.gaps.to.qualify.in.sql";
     public final static String ROUTING_PEEK_AHEAD_MEMORY_THRESHOLD = "routing.peek.ahead.memory.threshold.percent";
@@ -155,6 +170,19 @@ final public class ParameterConstants {
     public final static String ROUTING_DATA_READER_ORDER_BY_DATA_ID_ENABLED = "routing.data.reader.order.by.gap.id.enabled";
     public final static String ROUTING_DATA_READER_THRESHOLD_GAPS_TO_USE_GREATER_QUERY = "routing.data.reader.threshold.gaps.to.use.greater.than.query";
     public final static String ROUTING_LOG_STATS_ON_BATCH_ERROR = "routing.log.stats.on.batch.error";
+    public final static String ROUTING_CHANNEL_THREAD_COUNT = "routing.channel.thread.count";
+
+    public final static String ROUTING_SUBSELECT_BATCH_SIZE = "routing.subselect.batch.size";
+
+    public final static String ROUTING_SUBSELECT_CACHE_SIZE = "routing.subselect.cache.size";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_TIME_MS = "routing.lookup.table.cache.time.ms";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_FULL_RELOAD_MS = "routing.lookup.table.cache.full.reload.ms";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_OVERLAP_MS = "routing.lookup.table.cache.overlap.ms";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_MAX_ROWS = "routing.lookup.table.cache.max.rows";
 
     public final static String INCOMING_BATCH_SKIP_DUPLICATE_BATCHES_ENABLED = "incoming.batches.skip.duplicates";
     @Deprecated
@@ -167,6 +195,9 @@ final public class ParameterConstants {
     public final static String DATA_LOADER_ERROR_RECORD_CUR_VAL = "dataloader.error.save.curval";
     public final static String DATA_LOADER_NUM_OF_ACK_RETRIES = "num.of.ack.retries";
     public final static String DATA_LOADER_TIME_BETWEEN_ACK_RETRIES = "time.between.ack.retries.ms";
+    public final static String DATA_LOADER_ACK_PIGGYBACK_ENABLED = "pull.ack.piggyback.enabled";
+    public final static String DATA_LOADER_ACK_PIGGYBACK_MAX_SIZE = "pull.ack.piggyback.max.size";
+    public final static String ACKNOWLEDGE_COALESCE_ENABLED = "acknowledge.coalesce.enabled";
     public final static String DATA_LOADER_MAX_ROWS_BEFORE_COMMIT = "dataloader.max.rows.before.commit";
     public final static String DATA_LOADER_CREATE_TABLE_ALTER_TO_MATCH_DB_CASE = "dataloader.create.table.alter.to.match.db.case";
     public final static String DATA_LOADER_TEXT_COLUMN_EXPRESSION = "dataloader.text.column.expression";
@@ -179,6 +210,9 @@ final public class ParameterConstants {
     public final static String DATA_EXTRACTOR_ENABLED = "dataextractor.enable";
     public final static String DATA_EXTRACTOR_TEXT_COLUMN_EXPRESSION = "dataextractor.text.column.expression";
     public final static String OUTGOING_BATCH_MAX_BATCHES_TO_SELECT = "outgoing.batches.max.to.select";
+    public final static String OUTGOING_BATCH_PENDING_INDEX_ENABLED = "outgoing.batches.pending.index.enabled";
+    public final static String OUTGOING_BATCH_PENDING_INDEX_VERSION_CHECK_MS = "outgoing.batches.pending.index.version.check.ms";
+    public final static String OUTGOING_BATCH_PENDING_INDEX_MAX_AGE_MS = "outgoing.batches.pending.index.max.age.ms";
 
     public final static String DBDIALECT_ORACLE_USE_TRANSACTION_VIEW = "oracle.use.transaction.view";
     public final static String DBDIALECT_ORACLE_TEMPLATE_NUMBER_SPEC = "oracle.template.precision";
@@ -192,6 +226,7 @@ final public class ParameterConstants {
     public final static String TRANSPORT_HTTP_TIMEOUT = "http.timeout.ms";
     public final static String TRANSPORT_HTTP_PUSH_STREAM_ENABLED = "http.push.stream.output.enabled";
     public final static String TRANSPORT_HTTP_PUSH_STREAM_SIZE = "http.push.stream.output.size";
+    public final static String TRANSPORT_HTTP_KEEP_ALIVE_ENABLED = "http.keep.alive.enabled";
     public final static String TRANSPORT_HTTP_USE_COMPRESSION_CLIENT = "http.compression";
     public final static String TRANSPORT_HTTP_COMPRESSION_DISABLED_SERVLET = "web.compression.disabled";
     public final static String TRANSPORT_HTTP_COMPRESSION_LEVEL = "compression.level";
@@ -210,6 +245,9 @@ final public class ParameterConstants {
     public final static String CACHE_TIMEOUT_LOAD_FILTER_IN_MS = "cache.load.filter.time.ms";
     public final static String CACHE_TIMEOUT_CONFLICT_IN_MS = "cache.conflict.time.ms";
     public final static String CACHE_TIMEOUT_TABLES_IN_MS = "cache.table.time.ms";
+    public final static String CACHE_TIMEOUT_NODE_COMMUNICATION_IN_MS = "cache.node.communication.time.ms";
+    public final static String CACHE_LOOKUP_TRANSFORM_SIZE = "cache.lookup.transform.size";
+    public final static String CACHE_TIMEOUT_LOOKUP_TRANSFORM_IN_MS = "cache.lookup.transform.time.ms";
 
     public final static String TRIGGER_UPDATE_CAPTURE_CHANGED_DATA_ONLY = "trigger.update.capture.changed.data.only.enabled";
     public final static String TRIGGER_CREATE_BEFORE_INITIAL_LOAD = "trigger.create.before.initial.load.enabled";
@@ -243,6 +281,11 @@ final public class ParameterConstants {
     public final static String PURGE_MAX_NUMBER_OF_DATA_IDS = "job.purge.max.num.data.to.delete.in.tx";
     public final static String PURGE_MAX_NUMBER_OF_BATCH_IDS = "job.purge.max.num.batches.to.delete.in.tx";
     public final static String PURGE_MAX_NUMBER_OF_EVENT_BATCH_IDS = "job.purge.max.num.data.event.batches.to.delete.in.tx";
+    public final static String PURGE_THREAD_COUNT = "job.purge.thread.count";
+    public final static String PURGE_TARGET_ROWS_PER_STATEMENT = "job.purge.target.rows.per.statement";
+    public final static String PURGE_TARGET_STATEMENT_TIME_MS = "job.purge.target.statement.time.ms";
+    public final static String PURGE_DATA_PARTITION_SIZE = "purge.data.partition.size";
+    public final static String PURGE_DATA_PARTITION_AHEAD_COUNT = "purge.data.partition.ahead.count";
 
     public final static String JMX_LINE_FEED = "jmx.line.feed";
 
@@ -300,6 +343,10 @@ final public class ParameterConstants {
     public final static String BSH_LOAD_FILTER_HANDLES_MISSING_TABLES = "bsh.load.filter.handles.missing.tables";
     
     public final static String BSH_TRANSFORM_GLOBAL_SCRIPT = "bsh.transform.global.script";
+
+    public final static String BSH_SCRIPT_PARSE_ONCE = "bsh.script.parse.once";
+
+    public final static String BSH_ROUTER_COMPILE_TO_JAVA = "bsh.router.compile.to.java";
     
     public final static String MSSQL_ROW_LEVEL_LOCKS_ONLY = "mssql.allow.only.row.level.locks.on.runtime.tables";
     
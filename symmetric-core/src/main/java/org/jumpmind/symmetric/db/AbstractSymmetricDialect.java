@@ -736,6 +736,80 @@ abstract public class AbstractSymmetricDialect implements ISymmetricDialect {
         return true;
     }
 
+    public boolean supportsDataPartitioning() {
+        return false;
+    }
+
+    public Map<String, long[]> getDataPartitions() {
+        return new HashMap<String, long[]>();
+    }
+
+    public void createDataPartition(String partitionName, long startDataId, long endDataId) {
+        throw new UnsupportedOperationException(String.format(
+                "Data partitioning is not supported on %s", getName()));
+    }
+
+    public void dropDataPartition(String partitionName) {
+        throw new UnsupportedOperationException(String.format(
+                "Data partitioning is not supported on %s", getName()));
+    }
+
+    public void insertRows(ISqlTransaction transaction, String tableName, String[] columnNames,
+            int[] types, List<Object[]> rows) {
+        int rowsPerInsert = getMaxRowsPerInsert(columnNames.length);
+        if (rowsPerInsert > 1 && rows.size() > 1) {
+            for (int start = 0; start < rows.size(); start += rowsPerInsert) {
+                int count = Math.min(rowsPerInsert, rows.size() - start);
+                Object[] args = new Object[count * columnNames.length];
+                int[] argTypes = new int[args.length];
+                for (int i = 0; i < count; i++) {
+                    Object[] row = rows.get(start + i);
+                    System.arraycopy(row, 0, args, i * columnNames.length, columnNames.length);
+                    System.arraycopy(types, 0, argTypes, i * columnNames.length, columnNames.length);
+                }
+                transaction.prepareAndExecute(buildInsertSql(tableName, columnNames, count), args,
+                        argTypes);
+            }
+        } else if (rows.size() > 0) {
+            transaction.prepare(buildInsertSql(tableName, columnNames, 1));
+            for (Object[] row : rows) {
+                transaction.addRow(row, row, types);
+            }
+            transaction.flush();
+        }
+    }
+
+    /*
+     * The number of rows that can be inserted by one multi-row insert
+     * statement. A value of 1 means that the database does not support them
+     * and JDBC batching is used instead.
+     */
+    protected int getMaxRowsPerInsert(int columnCount) {
+        return 1;
+    }
+
+    protected String buildInsertSql(String tableName, String[] columnNames, int rowCount) {
+        StringBuilder sql = new StringBuilder("insert into ").append(tableName).append(" (");
+        StringBuilder values = new StringBuilder("(");
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(columnNames[i]);
+            values.append("?");
+        }
+        values.append(")");
+        sql.append(") values ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(values);
+        }
+        return sql.toString();
+    }
+
     public String massageDataExtractionSql(String sql, Channel channel) {
         String textColumnExpression = parameterService.getString(ParameterConstants.DATA_EXTRACTOR_TEXT_COLUMN_EXPRESSION);
         if (isNotBlank(textColumnExpression)) {
@@ -198,6 +198,36 @@ public interface ISymmetricDialect {
      */
     public boolean canGapsOccurInCapturedDataIds();
 
+    /*
+     * Indicates whether the data table can be range partitioned by data_id so
+     * that the purge job can drop partitions instead of deleting rows.
+     */
+    public boolean supportsDataPartitioning();
+
+    /*
+     * Returns the range partitions of the data table by name.  Each range holds
+     * the first data_id (inclusive) and the last data_id (exclusive) of the
+     * partition.  The map is empty when the data table is not partitioned.
+     */
+    public Map<String, long[]> getDataPartitions();
+
+    /*
+     * Creates and drops range partitions of the data table.  These are only
+     * called when supportsDataPartitioning() returns true.
+     */
+    public void createDataPartition(String partitionName, long startDataId, long endDataId);
+
+    public void dropDataPartition(String partitionName);
+
+    /*
+     * Inserts many rows into a table as part of the transaction.  Each row
+     * holds one value for each of the column names.  The rows are written
+     * with the fastest facility the database offers: a bulk copy, multi-row
+     * insert statements, or JDBC batching.
+     */
+    public void insertRows(ISqlTransaction transaction, String tableName, String[] columnNames,
+            int[] types, List<Object[]> rows);
+
     public String massageDataExtractionSql(String sql, Channel channel);
 
     public String massageForLob(String sql, Channel channel);
@@ -0,0 +1,40 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.ext;
+
+import java.util.Collection;
+
+import org.jumpmind.extension.IExtensionPoint;
+
+/**
+ * This is an extension point that, when registered, will be called after
+ * outgoing batches for one or more nodes have been committed and are ready to
+ * be sent.
+ */
+public interface IOutgoingBatchReadyListener extends IExtensionPoint {
+
+    /**
+     * @param nodeIds
+     *            The nodes that have new outgoing batches
+     */
+    public void outgoingBatchesReady(Collection<String> nodeIds);
+
+}
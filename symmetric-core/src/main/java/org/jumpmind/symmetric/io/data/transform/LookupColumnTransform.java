@@ -22,8 +22,13 @@ package org.jumpmind.symmetric.io.data.transform;
 
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.platform.IDatabasePlatform;
@@ -31,10 +36,16 @@ import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.IDataWriter;
+import org.jumpmind.symmetric.io.data.writer.DataWriterStatisticConstants;
 import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.util.FormatUtils;
 import org.jumpmind.util.LinkedCaseInsensitiveMap;
+import org.jumpmind.util.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +57,24 @@ public class LookupColumnTransform implements ISingleValueColumnTransform, IBuil
 
     protected static final StringMapper lookupColumnRowMapper = new StringMapper();
 
+    protected static final String BATCH_CACHE_KEY = LookupColumnTransform.class.getName()
+            + ".cache";
+
+    protected static final Pattern PARAMETER_PATTERN = Pattern.compile(":(\\w+)");
+
+    protected IParameterService parameterService;
+
+    protected Map<String, List<String>> parameterNamesBySql = new ConcurrentHashMap<String, List<String>>();
+
+    protected LookupCache engineCache;
+
+    public LookupColumnTransform() {
+    }
+
+    public LookupColumnTransform(IParameterService parameterService) {
+        this.parameterService = parameterService;
+    }
+
     public String getName() {
         return NAME;
     }
@@ -80,10 +109,35 @@ public class LookupColumnTransform implements ISingleValueColumnTransform, IBuil
                     namedParams.put("TRM_" + transformedCol.getKey().toUpperCase(), transformedCol.getValue());
                 }
             }
-            if (transaction != null) {
-                values = transaction.query(sql, lookupColumnRowMapper, namedParams);
-            } else {
-                values = platform.getSqlTemplate().query(sql, lookupColumnRowMapper, namedParams);
+
+            LookupCache cache = getCache(context);
+            List<Object> key = null;
+            if (cache != null) {
+                key = getCacheKey(column, sql, namedParams);
+                values = cache.get(key);
+                incrementStatistic(context,
+                        values != null ? DataWriterStatisticConstants.LOOKUPHITCOUNT
+                                : DataWriterStatisticConstants.LOOKUPMISSCOUNT, 1);
+            }
+
+            if (values == null) {
+                long ts = System.currentTimeMillis();
+                if (transaction != null) {
+                    values = transaction.query(sql, lookupColumnRowMapper, namedParams);
+                } else {
+                    values = platform.getSqlTemplate().query(sql, lookupColumnRowMapper, namedParams);
+                }
+                incrementStatistic(context, DataWriterStatisticConstants.LOOKUPMILLIS,
+                        System.currentTimeMillis() - ts);
+
+                if (cache != null && values.size() > 0) {
+                    /*
+                     * Keep a second row when there is one so that a cache hit
+                     * still warns about a lookup that returns multiple rows
+                     */
+                    cache.put(key, new ArrayList<String>(values.subList(0,
+                            Math.min(2, values.size()))));
+                }
             }
 
             int rowCount = values.size();
@@ -108,6 +162,78 @@ public class LookupColumnTransform implements ISingleValueColumnTransform, IBuil
         return lookupValue;
     }
     
+    /**
+     * The cache is off unless
+     * {@link ParameterConstants#CACHE_LOOKUP_TRANSFORM_SIZE} is set. It lives
+     * for one batch unless
+     * {@link ParameterConstants#CACHE_TIMEOUT_LOOKUP_TRANSFORM_IN_MS} is set,
+     * in which case one cache is shared by every batch.
+     */
+    protected LookupCache getCache(DataContext context) {
+        if (parameterService == null) {
+            return null;
+        }
+        int size = parameterService.getInt(ParameterConstants.CACHE_LOOKUP_TRANSFORM_SIZE, 0);
+        long timeToLiveMs = parameterService.getLong(
+                ParameterConstants.CACHE_TIMEOUT_LOOKUP_TRANSFORM_IN_MS, 0);
+        if (size <= 0) {
+            return null;
+        } else if (timeToLiveMs > 0) {
+            synchronized (this) {
+                if (engineCache == null || engineCache.maxSize != size
+                        || engineCache.timeToLiveMs != timeToLiveMs) {
+                    engineCache = new LookupCache(size, timeToLiveMs);
+                }
+                return engineCache;
+            }
+        } else {
+            Batch batch = context.getBatch();
+            LookupCache cache = (LookupCache) context.get(BATCH_CACHE_KEY);
+            if (cache == null || cache.batch != batch) {
+                cache = new LookupCache(size, 0);
+                cache.batch = batch;
+                context.put(BATCH_CACHE_KEY, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * The key is made up of the column being looked up, the statement and the
+     * values of the parameters that the statement references
+     */
+    protected List<Object> getCacheKey(TransformColumn column, String sql,
+            Map<String, Object> namedParams) {
+        List<String> parameterNames = parameterNamesBySql.get(sql);
+        if (parameterNames == null) {
+            parameterNames = new ArrayList<String>();
+            Matcher matcher = PARAMETER_PATTERN.matcher(sql);
+            while (matcher.find()) {
+                parameterNames.add(matcher.group(1));
+            }
+            parameterNamesBySql.put(sql, parameterNames);
+        }
+        List<Object> key = new ArrayList<Object>(parameterNames.size() + 3);
+        key.add(column.getTransformId());
+        key.add(column.getTargetColumnName());
+        key.add(sql);
+        for (String parameterName : parameterNames) {
+            key.add(namedParams.get(parameterName));
+        }
+        return key;
+    }
+
+    protected void incrementStatistic(DataContext context, String category, long increment) {
+        IDataWriter writer = context.getWriter();
+        Batch batch = context.getBatch();
+        if (writer != null && batch != null && writer.getStatistics() != null) {
+            Statistics stats = writer.getStatistics().get(batch);
+            if (stats != null) {
+                stats.increment(category, increment);
+            }
+        }
+    }
+
     protected String doTokenReplacementOnSql(DataContext context, String sql) {
         if (isNotBlank(sql)) {
             Data csvData = (Data) context.get(Constants.DATA_CONTEXT_CURRENT_CSV_DATA);
@@ -125,4 +251,49 @@ public class LookupColumnTransform implements ISingleValueColumnTransform, IBuil
         return sql;
     }
 
+    /**
+     * A least recently used map of lookup values whose entries optionally
+     * expire
+     */
+    static class LookupCache {
+
+        final int maxSize;
+
+        final long timeToLiveMs;
+
+        Batch batch;
+
+        Map<List<Object>, Object[]> values;
+
+        @SuppressWarnings("serial")
+        LookupCache(final int maxSize, long timeToLiveMs) {
+            this.maxSize = maxSize;
+            this.timeToLiveMs = timeToLiveMs;
+            this.values = new LinkedHashMap<List<Object>, Object[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Object[]> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<String> get(List<Object> key) {
+            Object[] entry = values.get(key);
+            if (entry != null) {
+                if (timeToLiveMs <= 0
+                        || System.currentTimeMillis() - (Long) entry[1] < timeToLiveMs) {
+                    return (List<String>) entry[0];
+                } else {
+                    values.remove(key);
+                }
+            }
+            return null;
+        }
+
+        synchronized void put(List<Object> key, List<String> value) {
+            values.put(key, new Object[] { value, System.currentTimeMillis() });
+        }
+    }
+
 }
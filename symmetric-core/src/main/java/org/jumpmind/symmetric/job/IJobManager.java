@@ -39,5 +39,12 @@ public interface IJobManager {
     public List<IJob> getJobs();
     
     public IJob getJob(String name);
+
+    /*
+     * Ask the job that runs under the cluster lock name to run soon instead of
+     * waiting for its next scheduled run.  Does nothing unless job wake ups are
+     * enabled.
+     */
+    public void wakeup(String clusterLockName);
     
 }
\ No newline at end of file
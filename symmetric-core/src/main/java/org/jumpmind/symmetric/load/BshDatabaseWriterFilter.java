@@ -20,6 +20,7 @@
  */
 package org.jumpmind.symmetric.load;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +28,7 @@ import java.util.Set;
 import org.jumpmind.db.model.Table;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.SymmetricException;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.io.data.CsvData;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
@@ -53,6 +55,11 @@ public class BshDatabaseWriterFilter extends DynamicDatabaseWriterFilter {
 
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
+    /*
+     * Names of the methods that load filter scripts are defined as by script
+     */
+    protected Map<String, String> methodNames = new HashMap<String, String>();
+
     public BshDatabaseWriterFilter(ISymmetricEngine engine,
             Map<String, List<LoadFilter>> loadFilters) {
         super(engine, loadFilters);
@@ -79,13 +86,13 @@ public class BshDatabaseWriterFilter extends DynamicDatabaseWriterFilter {
                     Object result = null;
                     if (writeMethod.equals(WriteMethod.BEFORE_WRITE)
                             && filter.getBeforeWriteScript() != null) {
-                        result = interpreter.eval(filter.getBeforeWriteScript());
+                        result = evalScript(context, interpreter, filter.getBeforeWriteScript());
                     } else if (writeMethod.equals(WriteMethod.AFTER_WRITE)
                             && filter.getAfterWriteScript() != null) {
-                        result = interpreter.eval(filter.getAfterWriteScript());
+                        result = evalScript(context, interpreter, filter.getAfterWriteScript());
                     } else if (writeMethod.equals(WriteMethod.HANDLE_ERROR)
                             && filter.getHandleErrorScript() != null) {
-                        result = interpreter.eval(filter.getHandleErrorScript());
+                        result = evalScript(context, interpreter, filter.getHandleErrorScript());
                     }
 
                     if (result != null && result.equals(Boolean.FALSE)) {
@@ -142,6 +149,36 @@ public class BshDatabaseWriterFilter extends DynamicDatabaseWriterFilter {
         }
     }
 
+    protected Object evalScript(DataContext context, Interpreter interpreter, String script)
+            throws EvalError {
+        if (engine.getParameterService().is(ParameterConstants.BSH_SCRIPT_PARSE_ONCE)) {
+            String methodName = getMethodName(script);
+            String definedKey = INTERPRETER_KEY + "." + methodName;
+            if (context.get(definedKey) == null) {
+                interpreter.eval(String.format("%s {\n%s\n}", methodName, script));
+                context.put(definedKey, Boolean.TRUE);
+            }
+            return interpreter.eval(methodName);
+        } else {
+            return interpreter.eval(script);
+        }
+    }
+
+    /**
+     * @return the name of the method a script is defined as. Each distinct
+     *         script gets its own name.
+     */
+    protected String getMethodName(String script) {
+        synchronized (methodNames) {
+            String methodName = methodNames.get(script);
+            if (methodName == null) {
+                methodName = String.format("filter_%d()", methodNames.size());
+                methodNames.put(script, methodName);
+            }
+            return methodName;
+        }
+    }
+
     protected Interpreter getInterpreter(Context context) {
         Interpreter interpreter = (Interpreter) context.get(INTERPRETER_KEY);
         if (interpreter == null) {
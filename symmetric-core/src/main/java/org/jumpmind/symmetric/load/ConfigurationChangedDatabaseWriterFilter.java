@@ -78,6 +78,9 @@ public class ConfigurationChangedDatabaseWriterFilter extends DatabaseWriterFilt
     final String CTX_KEY_FLUSH_CONFLICTS_NEEDED = "FlushConflicts."
             + ConfigurationChangedDatabaseWriterFilter.class.getSimpleName() + hashCode();
 
+    final String CTX_KEY_FLUSH_NODES_NEEDED = "FlushNodes."
+            + ConfigurationChangedDatabaseWriterFilter.class.getSimpleName() + hashCode();
+
     final String CTX_KEY_RESTART_JOBMANAGER_NEEDED = "RestartJobManager."
             + ConfigurationChangedDatabaseWriterFilter.class.getSimpleName() + hashCode();
     
@@ -118,6 +121,7 @@ public class ConfigurationChangedDatabaseWriterFilter extends DatabaseWriterFilt
         recordParametersFlushNeeded(context, table);
         recordJobManagerRestartNeeded(context, table, data);
         recordConflictFlushNeeded(context, table);
+        recordNodesFlushNeeded(context, table);
     }
     
     private void recordGroupletFlushNeeded(DataContext context, Table table) {
@@ -174,6 +178,12 @@ public class ConfigurationChangedDatabaseWriterFilter extends DatabaseWriterFilt
         }
     }
 
+    private void recordNodesFlushNeeded(DataContext context, Table table) {
+        if (isNodesFlushNeeded(table)) {
+            context.put(CTX_KEY_FLUSH_NODES_NEEDED, true);
+        }
+    }
+
     private void recordParametersFlushNeeded(DataContext context, Table table) {
         if (isParameterFlushNeeded(table)) {
             context.put(CTX_KEY_FLUSH_PARAMETERS_NEEDED, true);
@@ -236,6 +246,11 @@ public class ConfigurationChangedDatabaseWriterFilter extends DatabaseWriterFilt
                 || matchesTable(table, TableConstants.SYM_TRANSFORM_TABLE);
     }
 
+    private boolean isNodesFlushNeeded(Table table) {
+        return matchesTable(table, TableConstants.SYM_NODE_GROUP_LINK)
+                || matchesTable(table, TableConstants.SYM_NODE);
+    }
+
     private boolean matchesTable(Table table, String tableSuffix) {
         if (table != null && table.getName() != null) {
             return table.getName().equalsIgnoreCase(
@@ -327,6 +342,12 @@ public class ConfigurationChangedDatabaseWriterFilter extends DatabaseWriterFilt
             context.remove(CTX_KEY_FLUSH_CONFLICTS_NEEDED);
         }
 
+        if (context.get(CTX_KEY_FLUSH_NODES_NEEDED) != null) {
+            log.info("About to refresh the cache of nodes to communicate with because new configuration came through the data loader");
+            engine.getNodeCommunicationService().clearCache();
+            context.remove(CTX_KEY_FLUSH_NODES_NEEDED);
+        }
+
         if (context.get(CTX_KEY_FLUSH_PARAMETERS_NEEDED) != null) {
             log.info("About to refresh the cache of parameters because new configuration came through the data loader");
             parameterService.rereadParameters();
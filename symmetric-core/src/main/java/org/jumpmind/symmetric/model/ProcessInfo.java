@@ -72,6 +72,10 @@ public class ProcessInfo implements Serializable, Comparable<ProcessInfo>, Clone
 
     private long batchCount;
 
+    private long transferBatchCount;
+
+    private long loadBatchCount;
+
     private long currentBatchId;
 
     private String currentChannelId;
@@ -155,6 +159,29 @@ public class ProcessInfo implements Serializable, Comparable<ProcessInfo>, Clone
         this.batchCount++;
     }
 
+    /**
+     * @return the number of batches that have been received. When batches are
+     *         loaded in parallel this runs ahead of {@link #getLoadBatchCount()}
+     */
+    public long getTransferBatchCount() {
+        return transferBatchCount;
+    }
+
+    public synchronized void incrementTransferBatchCount() {
+        this.transferBatchCount++;
+    }
+
+    /**
+     * @return the number of received batches that have finished loading
+     */
+    public long getLoadBatchCount() {
+        return loadBatchCount;
+    }
+
+    public synchronized void incrementLoadBatchCount() {
+        this.loadBatchCount++;
+    }
+
     public long getCurrentBatchId() {
         return currentBatchId;
     }
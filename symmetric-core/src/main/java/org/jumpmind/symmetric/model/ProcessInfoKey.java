@@ -81,10 +81,23 @@ public class ProcessInfoKey implements Serializable {
 
     private ProcessType processType;
 
+    private String channelId;
+
     public ProcessInfoKey(String sourceNodeId, String targetNodeId, ProcessType processType) {
+        this(sourceNodeId, targetNodeId, processType, null);
+    }
+
+    /**
+     * @param channelId
+     *            used to distinguish processes of the same type that run
+     *            concurrently for different channels. May be null.
+     */
+    public ProcessInfoKey(String sourceNodeId, String targetNodeId, ProcessType processType,
+            String channelId) {
         this.sourceNodeId = sourceNodeId;
         this.targetNodeId = targetNodeId;
         this.processType = processType;
+        this.channelId = channelId;
     }
 
     public String getSourceNodeId() {
@@ -99,10 +112,15 @@ public class ProcessInfoKey implements Serializable {
         return processType;
     }
 
+    public String getChannelId() {
+        return channelId;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + ((channelId == null) ? 0 : channelId.hashCode());
         result = prime * result + ((processType == null) ? 0 : processType.hashCode());
         result = prime * result + ((sourceNodeId == null) ? 0 : sourceNodeId.hashCode());
         result = prime * result + ((targetNodeId == null) ? 0 : targetNodeId.hashCode());
@@ -120,6 +138,11 @@ public class ProcessInfoKey implements Serializable {
         ProcessInfoKey other = (ProcessInfoKey) obj;
         if (processType != other.processType)
             return false;
+        if (channelId == null) {
+            if (other.channelId != null)
+                return false;
+        } else if (!channelId.equals(other.channelId))
+            return false;
         if (sourceNodeId == null) {
             if (other.sourceNodeId != null)
                 return false;
@@ -135,8 +158,13 @@ public class ProcessInfoKey implements Serializable {
 
     @Override
     public String toString() {
-        return String.format("processType=%s,sourceNodeId=%s,targetNodeId=%s",
-                processType.toString(), sourceNodeId, targetNodeId);
+        if (channelId != null) {
+            return String.format("processType=%s,sourceNodeId=%s,targetNodeId=%s,channelId=%s",
+                    processType.toString(), sourceNodeId, targetNodeId, channelId);
+        } else {
+            return String.format("processType=%s,sourceNodeId=%s,targetNodeId=%s",
+                    processType.toString(), sourceNodeId, targetNodeId);
+        }
     }
 
 }
@@ -23,8 +23,11 @@ package org.jumpmind.symmetric.model;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jumpmind.db.model.Table;
 import org.jumpmind.symmetric.SymmetricException;
@@ -65,6 +68,10 @@ public class TriggerHistory implements Serializable {
 
     private String[] parsedPkColumnNames;
 
+    private volatile Map<String, Integer> columnIndexes;
+
+    private volatile Map<String, Integer> pkColumnIndexes;
+
     private String nameForInsertTrigger;
 
     private String nameForUpdateTrigger;
@@ -186,6 +193,39 @@ public class TriggerHistory implements Serializable {
         return parsedPkColumnNames;
     }
 
+    /**
+     * @return the position of each column in the captured row data keyed by
+     *         both the column name and its upper case name
+     */
+    public Map<String, Integer> getColumnIndexes() {
+        if (columnIndexes == null) {
+            columnIndexes = buildColumnIndexes(getParsedColumnNames());
+        }
+        return columnIndexes;
+    }
+
+    /**
+     * @return the position of each primary key column in the captured pk data
+     *         keyed by both the column name and its upper case name
+     */
+    public Map<String, Integer> getPkColumnIndexes() {
+        if (pkColumnIndexes == null) {
+            pkColumnIndexes = buildColumnIndexes(getParsedPkColumnNames());
+        }
+        return pkColumnIndexes;
+    }
+
+    protected Map<String, Integer> buildColumnIndexes(String[] names) {
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                indexes.put(names[i], i);
+                indexes.put(names[i].toUpperCase(), i);
+            }
+        }
+        return Collections.unmodifiableMap(indexes);
+    }
+
     public int getTableHash() {
         return tableHash;
     }
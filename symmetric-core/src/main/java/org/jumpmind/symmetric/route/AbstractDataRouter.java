@@ -47,9 +47,51 @@ public abstract class AbstractDataRouter implements IDataRouter {
 
     protected Logger log = LoggerFactory.getLogger(getClass());
 
+    private final String DATA_ROW_VIEW_KEY = String.format("%d.DataRowView", hashCode());
+
     public void contextCommitted(SimpleRouterContext context) {
     }
 
+    /**
+     * Return a view of the captured column values with the same keys as
+     * {@link #getDataMap(DataMetaData, ISymmetricDialect)}. The view is cached
+     * in the context and reset for each row, so it should not be held on to
+     * after routing the row.
+     */
+    protected DataRowView<String> getDataRowView(SimpleRouterContext context,
+            DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
+        return getDataRowView(context, DATA_ROW_VIEW_KEY, dataMetaData, symmetricDialect, false,
+                false);
+    }
+
+    /**
+     * Return a view of the captured column values converted to java objects
+     * with the same keys as
+     * {@link #getDataObjectMap(DataMetaData, ISymmetricDialect, boolean)}.
+     * The view is cached in the context and reset for each row, so it should
+     * not be held on to after routing the row.
+     */
+    protected DataRowView<Object> getDataObjectRowView(SimpleRouterContext context,
+            DataMetaData dataMetaData, ISymmetricDialect symmetricDialect, boolean upperCase) {
+        return getDataRowView(context, DATA_ROW_VIEW_KEY + (upperCase ? ".Object.Upper" : ".Object"),
+                dataMetaData, symmetricDialect, true, upperCase);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> DataRowView<V> getDataRowView(SimpleRouterContext context, String key,
+            DataMetaData dataMetaData, ISymmetricDialect symmetricDialect,
+            boolean convertToObjects, boolean upperCase) {
+        DataRowView<V> view = context != null ? (DataRowView<V>) context.getContextCache().get(
+                key) : null;
+        if (view == null) {
+            view = new DataRowView<V>(this, symmetricDialect, convertToObjects, upperCase);
+            if (context != null) {
+                context.getContextCache().put(key, view);
+            }
+        }
+        return view.reset(dataMetaData);
+    }
+
     protected Map<String, String> getDataMap(DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
         Map<String, String> data = null;
         DataEventType dml = dataMetaData.getData().getDataEventType();
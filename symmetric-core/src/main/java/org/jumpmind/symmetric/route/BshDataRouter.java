@@ -20,17 +20,24 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.TriggerHistory;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.slf4j.Logger;
 
 import bsh.EvalError;
 import bsh.Interpreter;
@@ -47,6 +54,13 @@ import bsh.TargetError;
  * using upper case. Also bound to the interpreter is a {@link Collection} of
  * targetNodes. The script is expected to add the the list of target nodes a
  * list of the node_ids that should be routed to.
+ * <P/>
+ * When bsh.script.parse.once is set, the expression is defined once as a method
+ * of the interpreter and the method is called for each row. When
+ * bsh.router.compile.to.java is set, an expression that is also valid Java is
+ * compiled into a {@link ICompiledExpression} for each trigger history it
+ * routes. The upper case names of the trigger history's columns, the same names
+ * prefixed by OLD_ and EXTERNAL_DATA are declared as Object variables.
  */
 public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensionPoint {
 
@@ -54,6 +68,52 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
 
     final String INTERPRETER_KEY = String.format("%d.BshInterpreter", hashCode());
 
+    public final static String CODE_START = "import org.jumpmind.symmetric.route.*;\n"
+            + "import org.jumpmind.symmetric.model.*;\n"
+            + "import org.jumpmind.symmetric.service.*;\n"
+            + "import java.util.*;\npublic class BshDataRouterExt implements BshDataRouter.ICompiledExpression { \n"
+            + "   public Object eval(Map<String, Object> row, org.slf4j.Logger log, boolean initialLoad,\n"
+            + "      DataMetaData dataMetaData, Set<Node> nodes, Set<String> nodeIds, String identityNodeId,\n"
+            + "      Set<String> targetNodes, org.jumpmind.symmetric.ISymmetricEngine engine) {\n";
+
+    public final static String CODE_END = "\n      }\n      return null;\n   }\n}\n";
+
+    protected final static Set<String> BOUND_NAMES = new HashSet<String>(Arrays.asList("row",
+            "log", "initialLoad", "dataMetaData", "nodes", "nodeIds", "identityNodeId",
+            "targetNodes", "engine"));
+
+    protected final static Object NOT_COMPILED = new Object();
+
+    protected final static int MAX_CACHED_EXPRESSIONS = 1000;
+
+    /*
+     * Compiled expressions by router expression and trigger history id
+     */
+    protected Map<CompiledExpressionKey, Object> compiledExpressions = Collections
+            .synchronizedMap(new LinkedHashMap<CompiledExpressionKey, Object>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CompiledExpressionKey, Object> eldest) {
+                    return size() > MAX_CACHED_EXPRESSIONS;
+                }
+            });
+
+    /*
+     * Names of the methods that router expressions are defined as by expression
+     */
+    protected Map<String, String> methodNames = Collections
+            .synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_CACHED_EXPRESSIONS;
+                }
+            });
+
+    protected AtomicInteger methodCount = new AtomicInteger();
+
     public BshDataRouter(ISymmetricEngine engine) {
         this.engine = engine;
     }
@@ -62,15 +122,42 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
             Set<Node> nodes, boolean initialLoad, boolean initialLoadSelectUsed,
             TriggerRouter triggerRouter) {
         try {
+            String expression = dataMetaData.getRouter().getRouterExpression();
+            if (engine.getParameterService().is(ParameterConstants.BSH_ROUTER_COMPILE_TO_JAVA)) {
+                ICompiledExpression compiled = getCompiledExpression(context, dataMetaData);
+                if (compiled != null) {
+                    long ts = System.currentTimeMillis();
+                    HashSet<String> targetNodes = new HashSet<String>();
+                    Object returnValue = compiled.eval(
+                            getDataObjectRowView(context, dataMetaData,
+                                    engine.getSymmetricDialect(), true), log, initialLoad,
+                            dataMetaData, nodes, toNodeIds(nodes, null), engine
+                                    .getNodeService().findIdentityNodeId(), targetNodes, engine);
+                    context.incrementStat(System.currentTimeMillis() - ts, "bsh.compiled.exec.ms");
+                    return eval(returnValue, nodes, targetNodes);
+                }
+            }
+
             long ts = System.currentTimeMillis();
             Interpreter interpreter = getInterpreter(context);
             context.incrementStat(System.currentTimeMillis() - ts, "bsh.init.ms");
             HashSet<String> targetNodes = new HashSet<String>();
             ts = System.currentTimeMillis();
-            bind(interpreter, dataMetaData, nodes, targetNodes, initialLoad);
+            bind(context, interpreter, dataMetaData, nodes, targetNodes, initialLoad);
             context.incrementStat(System.currentTimeMillis() - ts, "bsh.bind.ms");
             ts = System.currentTimeMillis();
-            Object returnValue = interpreter.eval(dataMetaData.getRouter().getRouterExpression());
+            Object returnValue = null;
+            if (engine.getParameterService().is(ParameterConstants.BSH_SCRIPT_PARSE_ONCE)) {
+                String methodName = getMethodName(expression);
+                String definedKey = INTERPRETER_KEY + "." + methodName;
+                if (context.getContextCache().get(definedKey) == null) {
+                    interpreter.eval(String.format("%s {\n%s\n}", methodName, expression));
+                    context.getContextCache().put(definedKey, Boolean.TRUE);
+                }
+                returnValue = interpreter.eval(methodName);
+            } else {
+                returnValue = interpreter.eval(expression);
+            }
             context.incrementStat(System.currentTimeMillis() - ts, "bsh.eval.ms");
             return eval(returnValue, nodes, targetNodes);
         } catch (EvalError e) {            
@@ -87,6 +174,106 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
         }
     }
 
+    /**
+     * @return the expression compiled for the layout of the table being
+     *         routed, or null if it does not compile as Java
+     */
+    protected ICompiledExpression getCompiledExpression(SimpleRouterContext context,
+            DataMetaData dataMetaData) {
+        if (dataMetaData.getTriggerHistory() == null) {
+            return null;
+        }
+        String expression = dataMetaData.getRouter().getRouterExpression();
+        CompiledExpressionKey key = new CompiledExpressionKey(expression, dataMetaData
+                .getTriggerHistory().getTriggerHistoryId());
+        Object compiled = compiledExpressions.get(key);
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = compiledExpressions.get(key);
+                if (compiled == null) {
+                    long ts = System.currentTimeMillis();
+                    compiled = compile(expression, getDeclaredNames(dataMetaData.getTriggerHistory()));
+                    compiledExpressions.put(key, compiled);
+                    context.incrementStat(System.currentTimeMillis() - ts, "bsh.compile.ms");
+                }
+            }
+        }
+        return compiled != NOT_COMPILED ? (ICompiledExpression) compiled : null;
+    }
+
+    /**
+     * @return the names a compiled expression can use for the column values of
+     *         any row captured with the trigger history, whatever its DML type
+     */
+    protected Set<String> getDeclaredNames(TriggerHistory triggerHistory) {
+        Set<String> names = new LinkedHashSet<String>();
+        String[] columnNames = triggerHistory.getParsedColumnNames();
+        if (columnNames != null) {
+            for (String columnName : columnNames) {
+                names.add(columnName.toUpperCase());
+            }
+            for (String columnName : columnNames) {
+                names.add(DataRowView.OLD_ + columnName.toUpperCase());
+            }
+        }
+        String[] pkColumnNames = triggerHistory.getParsedPkColumnNames();
+        if (pkColumnNames != null) {
+            for (String pkColumnName : pkColumnNames) {
+                names.add(pkColumnName.toUpperCase());
+            }
+        }
+        names.add(DataRowView.EXTERNAL_DATA);
+        return names;
+    }
+
+    protected Object compile(String expression, Collection<String> columnNames) {
+        StringBuilder javaCode = new StringBuilder(CODE_START);
+        for (String columnName : columnNames) {
+            if (BOUND_NAMES.contains(columnName)) {
+                log.info("Not compiling the bsh router expression because the column {} has the name of a bound variable", columnName);
+                return NOT_COMPILED;
+            } else if (isJavaIdentifier(columnName)) {
+                javaCode.append("      Object ").append(columnName).append(" = row.get(\"")
+                        .append(columnName).append("\");\n");
+            }
+        }
+        javaCode.append("      if (true) {\n").append(expression).append(CODE_END);
+        try {
+            return engine.getExtensionService().getCompiledClass(javaCode.toString());
+        } catch (Exception ex) {
+            log.info("The bsh router expression could not be compiled as Java.  It will be run by bsh: {}",
+                    ex.getMessage());
+            return NOT_COMPILED;
+        }
+    }
+
+    protected boolean isJavaIdentifier(String name) {
+        if (name == null || name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the name of the method an expression is defined as. Each
+     *         distinct expression gets its own name.
+     */
+    protected String getMethodName(String expression) {
+        synchronized (methodNames) {
+            String methodName = methodNames.get(expression);
+            if (methodName == null) {
+                methodName = String.format("route_%d()", methodCount.getAndIncrement());
+                methodNames.put(expression, methodName);
+            }
+            return methodName;
+        }
+    }
+
     protected Interpreter getInterpreter(SimpleRouterContext context) {
         Interpreter interpreter = (Interpreter) context.getContextCache().get(INTERPRETER_KEY);
         if (interpreter == null) {
@@ -120,8 +307,9 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
         }
     }
 
-    protected void bind(Interpreter interpreter, DataMetaData dataMetaData, Set<Node> nodes,
-            Set<String> targetNodes, boolean initialLoad) throws EvalError {
+    protected void bind(SimpleRouterContext context, Interpreter interpreter,
+            DataMetaData dataMetaData, Set<Node> nodes, Set<String> targetNodes,
+            boolean initialLoad) throws EvalError {
         interpreter.set("log", log);
         interpreter.set("initialLoad", initialLoad);
         interpreter.set("dataMetaData", dataMetaData);
@@ -130,12 +318,46 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
         interpreter.set("identityNodeId", engine.getNodeService().findIdentityNodeId());
         interpreter.set("targetNodes", targetNodes);
         interpreter.set("engine", engine);
-        Map<String, Object> params = getDataObjectMap(dataMetaData, engine.getSymmetricDialect(),
-                true);
-        if (params != null) {
-            for (String param : params.keySet()) {
-                interpreter.set(param, params.get(param));
+        Map<String, Object> params = getDataObjectRowView(context, dataMetaData,
+                engine.getSymmetricDialect(), true);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            interpreter.set(param.getKey(), param.getValue());
+        }
+    }
+
+    static class CompiledExpressionKey {
+
+        final String expression;
+
+        final int triggerHistoryId;
+
+        CompiledExpressionKey(String expression, int triggerHistoryId) {
+            this.expression = expression;
+            this.triggerHistoryId = triggerHistoryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * expression.hashCode() + triggerHistoryId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof CompiledExpressionKey) {
+                CompiledExpressionKey key = (CompiledExpressionKey) obj;
+                return triggerHistoryId == key.triggerHistoryId
+                        && expression.equals(key.expression);
             }
+            return false;
         }
     }
+
+    /**
+     * A router expression that has been compiled into Java
+     */
+    public interface ICompiledExpression {
+        public Object eval(Map<String, Object> row, Logger log, boolean initialLoad,
+                DataMetaData dataMetaData, Set<Node> nodes, Set<String> nodeIds,
+                String identityNodeId, Set<String> targetNodes, ISymmetricEngine engine);
+    }
 }
@@ -63,6 +63,7 @@ public class ChannelRouterContext extends SimpleRouterContext {
     private long createdTimeInMs = System.currentTimeMillis();
     private Data lastDataProcessed;
     private List<DataEvent> dataEventsToSend = new ArrayList<DataEvent>();
+    private List<OutgoingBatch> batchesToInsert = new ArrayList<OutgoingBatch>();
     private boolean produceCommonBatches = false;
     private boolean onlyDefaultRoutersAssigned = false;
     private long lastLoadId = -1;
@@ -73,6 +74,7 @@ public class ChannelRouterContext extends SimpleRouterContext {
     private long maxPeekAheadQueueSize;
     private List<DataGap> dataGaps = new ArrayList<DataGap>();
     private Set<String> transactions = new HashSet<String>();
+    private IDataToRouteReader dataToRouteReader;
 
     public ChannelRouterContext(String nodeId, NodeChannel channel, ISqlTransaction transaction)
             throws SQLException {
@@ -93,6 +95,14 @@ public class ChannelRouterContext extends SimpleRouterContext {
         dataEventsToSend.add(new DataEvent(dataId, batchId, routerId));
     }
 
+    /**
+     * Batches that have been assigned a batch id but still need to be inserted
+     * before the data events are written
+     */
+    public List<OutgoingBatch> getBatchesToInsert() {
+        return batchesToInsert;
+    }
+
     public Map<String, OutgoingBatch> getBatchesByNodes() {
         return batchesByNodes;
     }
@@ -116,6 +126,7 @@ public class ChannelRouterContext extends SimpleRouterContext {
         this.batchesByNodes.clear();
         this.availableNodes.clear();
         this.dataEventsToSend.clear();
+        this.batchesToInsert.clear();
     }
 
     public void rollback() {
@@ -268,4 +279,12 @@ public class ChannelRouterContext extends SimpleRouterContext {
         return onlyDefaultRoutersAssigned;
     }
 
+    public void setDataToRouteReader(IDataToRouteReader dataToRouteReader) {
+        this.dataToRouteReader = dataToRouteReader;
+    }
+
+    public IDataToRouteReader getDataToRouteReader() {
+        return dataToRouteReader;
+    }
+
 }
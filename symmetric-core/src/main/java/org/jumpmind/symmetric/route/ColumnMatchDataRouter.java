@@ -22,11 +22,14 @@ package org.jumpmind.symmetric.route;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.SyntaxParsingException;
@@ -84,9 +87,8 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
     
     private ISymmetricDialect symmetricDialect;
 
-    final static String EXPRESSION_KEY = String.format("%s.Expression.", ColumnMatchDataRouter.class
-            .getName());        
-    
+    private Map<String, CompiledRouterExpression> compiledRouterExpressions = new ConcurrentHashMap<String, CompiledRouterExpression>();
+
     public ColumnMatchDataRouter() {
     }
 
@@ -101,51 +103,56 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         if (initialLoadSelectUsed && initialLoad) {
             nodeIds = toNodeIds(nodes, null);
         } else {
-            List<Expression> expressions = getExpressions(dataMetaData.getRouter(), routingContext);
-            Map<String, String> columnValues = getDataMap(dataMetaData, symmetricDialect);
+            CompiledExpression[] expressions = getCompiledExpressions(dataMetaData.getRouter());
+            DataRowView<String> row = getDataRowView(routingContext, dataMetaData,
+                    symmetricDialect);
 
-            if (columnValues != null) {
-                for (Expression e : expressions) {
-                    String column = e.tokens[0].trim();
-                    String value = e.tokens[1];
-                    String columnValue = columnValues.get(column);
+            for (CompiledExpression compiled : expressions) {
+                Expression e = compiled.expression;
+                String columnValue = row.get(compiled.column);
 
-                    if (value.equalsIgnoreCase(TokenConstants.NODE_ID)) {
+                switch (compiled.valueType) {
+                    case NODE_ID:
                         for (Node node : nodes) {
                             nodeIds = runExpression(e, columnValue, node.getNodeId(), nodes,
                                     nodeIds, node);
                         }
-                    } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
+                        break;
+                    case EXTERNAL_ID:
                         for (Node node : nodes) {
                             nodeIds = runExpression(e, columnValue, node.getExternalId(), nodes,
                                     nodeIds, node);
                         }
-                    } else if (value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
+                        break;
+                    case NODE_GROUP_ID:
                         for (Node node : nodes) {
                             nodeIds = runExpression(e, columnValue, node.getNodeGroupId(), nodes,
                                     nodeIds, node);
                         }
-                    } else if (e.hasEquals && value.equalsIgnoreCase(TokenConstants.REDIRECT_NODE)) {
+                        break;
+                    case REDIRECT_NODE:
                         Map<String, String> redirectMap = getRedirectMap(routingContext);
                         String nodeId = redirectMap.get(columnValue);
                         if (nodeId != null) {
                             nodeIds = addNodeId(nodeId, nodeIds, nodes);
                         }
-                    } else {
-                        String compareValue = value;
-                        if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_DATA)) {
-                            compareValue = dataMetaData.getData().getExternalData();
-                        } else if (value.startsWith(":")) {
-                            compareValue = columnValues.get(value.substring(1));
-                        } else if (value.equals(NULL_VALUE)) {
-                            compareValue = null;
-                        }
-                        nodeIds = runExpression(e, columnValue, compareValue, nodes, nodeIds, null);
-                    }
+                        break;
+                    case EXTERNAL_DATA:
+                        nodeIds = runExpression(e, columnValue, dataMetaData.getData()
+                                .getExternalData(), nodes, nodeIds, null);
+                        break;
+                    case COLUMN:
+                        nodeIds = runExpression(e, columnValue, row.get(compiled.compareColumn),
+                                nodes, nodeIds, null);
+                        break;
+                    case NULL:
+                        nodeIds = runExpression(e, columnValue, null, nodes, nodeIds, null);
+                        break;
+                    default:
+                        nodeIds = runExpression(e, columnValue, compiled.constant, nodes,
+                                nodeIds, null);
+                        break;
                 }
-            } else {
-                log.warn("There were no columns to match for the data_id of {}", dataMetaData
-                        .getData().getDataId());
             }
         }
         
@@ -185,21 +192,20 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
     }
 
     /**
-     * Cache parsed expressions in the context to minimize the amount of parsing
-     * we have to do when we have lots of throughput.
+     * Parsed expressions are cached by router id for as long as the router's
+     * last update time and expression stay the same. Column values are read
+     * through a {@link DataRowView}, which looks them up by position in the
+     * captured data.
      */
-    @SuppressWarnings("unchecked")
-    protected List<Expression> getExpressions(Router router, SimpleRouterContext context) {
-        final String KEY = EXPRESSION_KEY + router.getRouterId();
-        List<Expression> expressions = (List<Expression>) context.getContextCache().get(
-                KEY);
-        if (expressions == null) {
-            expressions = parse(router.getRouterExpression());
-            context.getContextCache().put(KEY, expressions);
+    protected CompiledExpression[] getCompiledExpressions(Router router) {
+        CompiledRouterExpression compiled = compiledRouterExpressions.get(router.getRouterId());
+        if (compiled == null || !compiled.isCurrent(router)) {
+            compiled = new CompiledRouterExpression(router, parse(router.getRouterExpression()));
+            compiledRouterExpressions.put(router.getRouterId(), compiled);
         }
-        return expressions;
+        return compiled.expressions;
     }
-    
+
     public List<Expression> parse(String routerExpression) throws SyntaxParsingException {
         List<Expression> expressions = new ArrayList<Expression>();       
         if (!StringUtils.isBlank(routerExpression)) {           
@@ -275,6 +281,77 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         return redirectMap;
     }
 
+    enum ValueType {
+        NODE_ID, EXTERNAL_ID, NODE_GROUP_ID, REDIRECT_NODE, EXTERNAL_DATA, COLUMN, NULL, CONSTANT
+    }
+
+    /**
+     * The parsed expressions of a router.
+     */
+    static class CompiledRouterExpression {
+
+        final Date lastUpdateTime;
+
+        final String routerExpression;
+
+        final CompiledExpression[] expressions;
+
+        CompiledRouterExpression(Router router, List<Expression> expressions) {
+            this.lastUpdateTime = router.getLastUpdateTime();
+            this.routerExpression = router.getRouterExpression();
+            this.expressions = new CompiledExpression[expressions.size()];
+            for (int i = 0; i < this.expressions.length; i++) {
+                this.expressions[i] = new CompiledExpression(expressions.get(i));
+            }
+        }
+
+        boolean isCurrent(Router router) {
+            return ObjectUtils.equals(lastUpdateTime, router.getLastUpdateTime())
+                    && StringUtils.equals(routerExpression, router.getRouterExpression());
+        }
+    }
+
+    static class CompiledExpression {
+
+        final Expression expression;
+
+        final String column;
+
+        final ValueType valueType;
+
+        final String compareColumn;
+
+        final String constant;
+
+        CompiledExpression(Expression expression) {
+            this.expression = expression;
+            this.column = expression.tokens[0].trim();
+            String value = expression.tokens[1];
+            String compareColumn = null;
+            if (value.equalsIgnoreCase(TokenConstants.NODE_ID)) {
+                valueType = ValueType.NODE_ID;
+            } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
+                valueType = ValueType.EXTERNAL_ID;
+            } else if (value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
+                valueType = ValueType.NODE_GROUP_ID;
+            } else if (expression.hasEquals
+                    && value.equalsIgnoreCase(TokenConstants.REDIRECT_NODE)) {
+                valueType = ValueType.REDIRECT_NODE;
+            } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_DATA)) {
+                valueType = ValueType.EXTERNAL_DATA;
+            } else if (value.startsWith(":")) {
+                valueType = ValueType.COLUMN;
+                compareColumn = value.substring(1);
+            } else if (value.equals(NULL_VALUE)) {
+                valueType = ValueType.NULL;
+            } else {
+                valueType = ValueType.CONSTANT;
+            }
+            this.compareColumn = compareColumn;
+            this.constant = value;
+        }
+    }
+
     public class Expression {
         public static final String EQUALS = "=";
         public static final String NOT_EQUALS = "!=";
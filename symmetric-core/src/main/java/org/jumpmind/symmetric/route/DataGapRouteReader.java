@@ -25,11 +25,11 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -90,7 +90,7 @@ public class DataGapRouteReader implements IDataToRouteReader {
     
     protected String lastTransactionId = null;
     
-    protected static Map<String, Boolean> lastSelectUsedGreaterThanQueryByEngineName = new HashMap<String, Boolean>(); 
+    protected static Map<String, Boolean> lastSelectUsedGreaterThanQueryByEngineName = new ConcurrentHashMap<String, Boolean>(); 
 
     public DataGapRouteReader(ChannelRouterContext context, ISymmetricEngine engine) {
         this.engine = engine;
@@ -125,9 +125,13 @@ public class DataGapRouteReader implements IDataToRouteReader {
         long maxPeekAheadSizeInBytes = (long)(Runtime.getRuntime().maxMemory() * percentOfHeapToUse);
         ISymmetricDialect symmetricDialect = engine.getSymmetricDialect();
         ISqlReadCursor<Data> cursor = null;
+        /* when channels are routed concurrently, each channel has its own reader process */
+        String processChannelId = engine.getParameterService().getInt(
+                ParameterConstants.ROUTING_CHANNEL_THREAD_COUNT, 1) > 1 ? context.getChannel()
+                .getChannelId() : null;
         processInfo = engine.getStatisticManager().newProcessInfo(
                 new ProcessInfoKey(engine.getNodeService().findIdentityNodeId(), null,
-                        ProcessType.ROUTER_READER));
+                        ProcessType.ROUTER_READER, processChannelId));
         processInfo.setCurrentChannelId(context.getChannel().getChannelId());
         try {
             int lastPeekAheadIndex = 0;
@@ -440,6 +444,19 @@ public class DataGapRouteReader implements IDataToRouteReader {
         }
     }
 
+    public List<Data> peek(int maxCount) {
+        List<Data> list = new ArrayList<Data>(Math.min(maxCount, dataQueue.size()));
+        Iterator<Data> it = dataQueue.iterator();
+        while (it.hasNext() && list.size() < maxCount) {
+            Data data = it.next();
+            if (data instanceof EOD) {
+                break;
+            }
+            list.add(data);
+        }
+        return list;
+    }
+
     public BlockingQueue<Data> getDataQueue() {
         return dataQueue;
     }
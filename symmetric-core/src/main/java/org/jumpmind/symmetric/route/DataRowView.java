@@ -0,0 +1,404 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.util.LinkedCaseInsensitiveMap;
+
+/**
+ * A read only, case insensitive {@link Map} view of the captured values of the
+ * {@link Data} being routed. Keys follow the same conventions as the maps
+ * built by {@link AbstractDataRouter#getDataMap(DataMetaData, ISymmetricDialect)}:
+ * a column name resolves to the current value (the old value for a delete), a
+ * column name prefixed by OLD_ resolves to the old value and EXTERNAL_DATA
+ * resolves to the external data. If no row or old data was captured, then the
+ * primary key columns are available instead.
+ * <p/>
+ * Values are looked up by position using the column indexes of the
+ * {@link TriggerHistory} and are read directly from the parsed arrays of the
+ * {@link Data}, so nothing is copied per row. A view is meant to be reused for
+ * each row by calling {@link #reset(DataMetaData)}. Values that are put into
+ * the view are kept separately, take precedence over captured values and are
+ * discarded on reset.
+ */
+public class DataRowView<V> extends AbstractMap<String, V> {
+
+    static final String OLD_ = "OLD_";
+
+    static final String EXTERNAL_DATA = "EXTERNAL_DATA";
+
+    private static final int NOT_FOUND = -1;
+
+    private static final int EXTERNAL_DATA_SLOT = -2;
+
+    protected AbstractDataRouter router;
+
+    protected ISymmetricDialect symmetricDialect;
+
+    protected boolean convertToObjects;
+
+    protected boolean upperCaseKeys;
+
+    protected DataMetaData dataMetaData;
+
+    protected boolean resolved;
+
+    protected String[] columnNames;
+
+    protected String currentDataKey;
+
+    protected String oldDataKey;
+
+    protected boolean hasCurrentColumns;
+
+    protected boolean hasOldColumns;
+
+    protected boolean pkOnly;
+
+    protected boolean hasExternalData;
+
+    protected Object[] currentValues;
+
+    protected Object[] oldValues;
+
+    protected Object[] pkValues;
+
+    protected Map<String, V> addedValues;
+
+    private final EntrySet entrySet = new EntrySet();
+
+    /**
+     * @param convertToObjects
+     *            when true the captured strings are converted to the java
+     *            types of the table columns, otherwise the captured strings
+     *            are returned as is
+     * @param upperCaseKeys
+     *            when true the keys returned by {@link #entrySet()} are upper
+     *            case column names
+     */
+    public DataRowView(AbstractDataRouter router, ISymmetricDialect symmetricDialect,
+            boolean convertToObjects, boolean upperCaseKeys) {
+        this.router = router;
+        this.symmetricDialect = symmetricDialect;
+        this.convertToObjects = convertToObjects;
+        this.upperCaseKeys = upperCaseKeys;
+    }
+
+    public DataRowView<V> reset(DataMetaData dataMetaData) {
+        this.dataMetaData = dataMetaData;
+        this.resolved = false;
+        this.currentValues = null;
+        this.oldValues = null;
+        this.pkValues = null;
+        if (this.addedValues != null) {
+            this.addedValues.clear();
+        }
+        return this;
+    }
+
+    public DataMetaData getDataMetaData() {
+        return dataMetaData;
+    }
+
+    protected void resolve() {
+        if (!resolved) {
+            Data data = dataMetaData.getData();
+            columnNames = dataMetaData.getTriggerHistory().getParsedColumnNames();
+            if (columnNames == null) {
+                columnNames = new String[0];
+            }
+            boolean oldColumnsCaptured = true;
+            DataEventType dml = data.getDataEventType();
+            switch (dml) {
+                case UPDATE:
+                    currentDataKey = CsvData.ROW_DATA;
+                    oldDataKey = CsvData.OLD_DATA;
+                    break;
+                case INSERT:
+                    currentDataKey = CsvData.ROW_DATA;
+                    oldDataKey = null;
+                    break;
+                case DELETE:
+                    currentDataKey = CsvData.OLD_DATA;
+                    oldDataKey = CsvData.OLD_DATA;
+                    break;
+                default:
+                    currentDataKey = null;
+                    oldDataKey = null;
+                    oldColumnsCaptured = false;
+                    break;
+            }
+
+            boolean isDml = currentDataKey != null;
+            hasCurrentColumns = isDml && columnNames.length > 0
+                    && data.getParsedData(currentDataKey) != null;
+            /* an insert has old columns, they are just all null */
+            hasOldColumns = oldColumnsCaptured && columnNames.length > 0
+                    && (oldDataKey == null || data.getParsedData(oldDataKey) != null);
+            pkOnly = !hasCurrentColumns && !hasOldColumns && (isDml || !convertToObjects);
+            hasExternalData = !convertToObjects || isDml
+                    || StringUtils.isNotBlank(data.getExternalData());
+            resolved = true;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key instanceof String) {
+            String name = (String) key;
+            if (addedValues != null && addedValues.containsKey(name)) {
+                return addedValues.get(name);
+            }
+            resolve();
+            int slot = locate(name);
+            if (slot != NOT_FOUND) {
+                return (V) valueAt(slot);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key instanceof String) {
+            String name = (String) key;
+            if (addedValues != null && addedValues.containsKey(name)) {
+                return true;
+            }
+            resolve();
+            return locate(name) != NOT_FOUND;
+        }
+        return false;
+    }
+
+    @Override
+    public V put(String key, V value) {
+        if (addedValues == null) {
+            addedValues = new LinkedCaseInsensitiveMap<V>(4);
+        }
+        V previous = get(key);
+        addedValues.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        resolve();
+        return entrySet;
+    }
+
+    protected int locate(String name) {
+        if (hasExternalData && EXTERNAL_DATA.equalsIgnoreCase(name)) {
+            return EXTERNAL_DATA_SLOT;
+        } else if (pkOnly) {
+            return indexOf(dataMetaData.getTriggerHistory().getPkColumnIndexes(), name);
+        } else {
+            Map<String, Integer> columnIndexes = dataMetaData.getTriggerHistory()
+                    .getColumnIndexes();
+            if (hasOldColumns && name.length() > OLD_.length()
+                    && name.regionMatches(true, 0, OLD_, 0, OLD_.length())) {
+                int index = indexOf(columnIndexes, name.substring(OLD_.length()));
+                if (index != NOT_FOUND) {
+                    return columnNames.length + index;
+                }
+            }
+
+            if (hasCurrentColumns) {
+                return indexOf(columnIndexes, name);
+            }
+            return NOT_FOUND;
+        }
+    }
+
+    protected int indexOf(Map<String, Integer> indexes, String name) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            index = indexes.get(name.toUpperCase());
+        }
+        return index != null ? index : NOT_FOUND;
+    }
+
+    protected Object valueAt(int slot) {
+        if (slot == EXTERNAL_DATA_SLOT) {
+            return dataMetaData.getData().getExternalData();
+        } else if (pkOnly) {
+            return getPkValues()[slot];
+        } else if (slot < columnNames.length) {
+            return getCurrentValues()[slot];
+        } else {
+            Object[] values = getOldValues();
+            return values != null ? values[slot - columnNames.length] : null;
+        }
+    }
+
+    protected Object[] getCurrentValues() {
+        if (currentValues == null) {
+            currentValues = toValues(columnNames,
+                    dataMetaData.getData().getParsedData(currentDataKey));
+        }
+        return currentValues;
+    }
+
+    protected Object[] getOldValues() {
+        if (oldValues == null && oldDataKey != null) {
+            oldValues = toValues(columnNames, dataMetaData.getData().getParsedData(oldDataKey));
+        }
+        return oldValues;
+    }
+
+    protected Object[] getPkValues() {
+        if (pkValues == null) {
+            String[] pkColumnNames = dataMetaData.getTriggerHistory().getParsedPkColumnNames();
+            String[] pkData = dataMetaData.getData().toParsedPkData();
+            if (pkColumnNames != null && pkData != null) {
+                pkValues = toValues(pkColumnNames, pkData);
+            } else {
+                pkValues = new Object[0];
+            }
+        }
+        return pkValues;
+    }
+
+    protected Object[] toValues(String[] names, String[] rowData) {
+        Object[] values = rowData;
+        if (convertToObjects) {
+            values = symmetricDialect.getPlatform().getObjectValues(
+                    symmetricDialect.getBinaryEncoding(), dataMetaData.getTable(), names, rowData);
+        }
+        router.testColumnNamesMatchValues(dataMetaData, symmetricDialect, names, values);
+        return values;
+    }
+
+    protected String keyAt(int slot) {
+        if (slot == EXTERNAL_DATA_SLOT) {
+            return EXTERNAL_DATA;
+        } else if (pkOnly) {
+            return dataMetaData.getTriggerHistory().getParsedPkColumnNames()[slot].toUpperCase();
+        } else if (slot < columnNames.length) {
+            return upperCaseKeys ? columnNames[slot].toUpperCase() : columnNames[slot];
+        } else {
+            String name = columnNames[slot - columnNames.length];
+            return OLD_ + (upperCaseKeys ? name.toUpperCase() : name);
+        }
+    }
+
+    protected int capturedSlotCount() {
+        if (pkOnly) {
+            String[] pkColumnNames = dataMetaData.getTriggerHistory().getParsedPkColumnNames();
+            return pkColumnNames != null && dataMetaData.getData().toParsedPkData() != null
+                    ? pkColumnNames.length : 0;
+        } else {
+            return (hasCurrentColumns ? columnNames.length : 0)
+                    + (hasOldColumns ? columnNames.length : 0);
+        }
+    }
+
+    protected int toSlot(int position) {
+        if (!pkOnly && !hasCurrentColumns) {
+            return position + columnNames.length;
+        }
+        return position;
+    }
+
+    class EntrySet extends AbstractSet<Map.Entry<String, V>> {
+
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            Iterator<Map.Entry<String, V>> i = iterator();
+            while (i.hasNext()) {
+                i.next();
+                size++;
+            }
+            return size;
+        }
+    }
+
+    class EntryIterator implements Iterator<Map.Entry<String, V>> {
+
+        int position = 0;
+
+        int capturedCount = capturedSlotCount();
+
+        Iterator<Map.Entry<String, V>> addedIterator;
+
+        Map.Entry<String, V> next = advance();
+
+        @SuppressWarnings("unchecked")
+        protected Map.Entry<String, V> advance() {
+            while (position < capturedCount + (hasExternalData ? 1 : 0)) {
+                int slot = position < capturedCount ? toSlot(position) : EXTERNAL_DATA_SLOT;
+                position++;
+                String key = keyAt(slot);
+                if (addedValues == null || !addedValues.containsKey(key)) {
+                    return new SimpleImmutableEntry<String, V>(key, (V) valueAt(slot));
+                }
+            }
+
+            if (addedValues != null) {
+                if (addedIterator == null) {
+                    addedIterator = addedValues.entrySet().iterator();
+                }
+                if (addedIterator.hasNext()) {
+                    return addedIterator.next();
+                }
+            }
+            return null;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Map.Entry<String, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, V> current = next;
+            next = advance();
+            return current;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -20,12 +20,20 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.List;
+
 import org.jumpmind.symmetric.model.Data;
 
 public interface IDataToRouteReader extends Runnable {
 
     public abstract Data take() throws InterruptedException;
 
+    /**
+     * @return up to maxCount of the data that have been read and are waiting
+     *         to be taken, without removing them
+     */
+    public abstract List<Data> peek(int maxCount);
+
     public abstract boolean isReading();
 
     public abstract void setReading(boolean reading);
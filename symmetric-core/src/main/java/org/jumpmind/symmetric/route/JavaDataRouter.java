@@ -34,7 +34,8 @@ import org.jumpmind.symmetric.model.TriggerRouter;
  * This java data router is invoked when the router_type is 'java'. The router_expression is Java code for the routeToNodes() method
  * of a class that extends the {@link AbstractDataRouter}.  The class is compiled in memory and cached by both the context of the batch
  * and the classloader.  For a new batch, if the router_expression is the same, the same class is used, otherwise the class is renamed,
- * compiled, and loaded again.
+ * compiled, and loaded again.  The router_expression can read column values without copying them
+ * by calling {@link AbstractDataRouter#getDataRowView(SimpleRouterContext, DataMetaData, org.jumpmind.symmetric.db.ISymmetricDialect)}.
  */
 public class JavaDataRouter extends AbstractDataRouter implements IBuiltInExtensionPoint {
 
@@ -0,0 +1,278 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.symmetric.statistic.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An engine wide cache of the lookup tables used by the
+ * {@link LookupTableDataRouter}. A lookup table is held as a map of lookup key
+ * to the set of external ids it routes to.
+ * <p/>
+ * When a last update column is configured for a lookup table, the cached copy
+ * is brought up to date by selecting only the rows whose last update is at or
+ * after the greatest last update that was already read, less an overlap. A row
+ * that commits late with a last update lower than one already read is only
+ * picked up if its last update is within the overlap. The overlap only applies
+ * to date and time last update columns. For other types, such as numbers, the
+ * refresh starts at the greatest value read and rows that commit late with a
+ * lower value are picked up by the next full reload. Deleted rows and rows
+ * whose lookup key changed are only picked up by a full reload, which happens
+ * when the cached copy is older than the full reload time. Without a last
+ * update column the cached copy is reused until it is older than the cache
+ * time.
+ * <p/>
+ * The total number of rows held is bounded. Least recently used lookup tables
+ * are evicted to stay under the bound.
+ */
+public class LookupTableCache {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    protected ISqlTemplate sqlTemplate;
+
+    protected CacheStats stats;
+
+    protected Map<String, LookupTable> lookupTables = new LinkedHashMap<String, LookupTable>(16,
+            0.75f, true);
+
+    protected long rowCount;
+
+    public LookupTableCache(ISqlTemplate sqlTemplate, CacheStats stats) {
+        this.sqlTemplate = sqlTemplate;
+        this.stats = stats;
+    }
+
+    /**
+     * @param cacheTimeMs
+     *            how long a lookup table without a last update column is
+     *            reused before it is reloaded. When 0 the lookup table is
+     *            loaded every time and not cached.
+     * @param fullReloadTimeMs
+     *            how long a lookup table with a last update column is
+     *            incrementally refreshed before it is fully reloaded
+     * @param overlapMs
+     *            how far before the greatest date and time last update
+     *            already read an incremental refresh starts, so rows that
+     *            commit late are still picked up
+     * @param maxRows
+     *            the maximum number of rows to hold for all lookup tables
+     */
+    public Map<String, Set<String>> getLookupTable(String tableName, String keyColumn,
+            String externalIdColumn, String lastUpdateColumn, long cacheTimeMs,
+            long fullReloadTimeMs, long overlapMs, long maxRows) {
+        boolean incremental = StringUtils.isNotBlank(lastUpdateColumn);
+        if (!incremental && cacheTimeMs <= 0) {
+            stats.incrementMissCount(1);
+            LookupTable lookupTable = new LookupTable(tableName, keyColumn, externalIdColumn,
+                    null);
+            load(lookupTable);
+            return lookupTable.lookupMap;
+        }
+
+        String key = String.format("%s.%s.%s.%s", tableName, keyColumn, externalIdColumn,
+                lastUpdateColumn);
+        LookupTable lookupTable = null;
+        synchronized (this) {
+            lookupTable = lookupTables.get(key);
+            if (lookupTable == null) {
+                lookupTable = new LookupTable(tableName, keyColumn, externalIdColumn,
+                        lastUpdateColumn);
+                lookupTables.put(key, lookupTable);
+            }
+        }
+
+        synchronized (lookupTable) {
+            long age = System.currentTimeMillis() - lookupTable.loadTime;
+            if (lookupTable.lookupMap == null || (!incremental && age >= cacheTimeMs)
+                    || (incremental && fullReloadTimeMs > 0 && age >= fullReloadTimeMs)) {
+                stats.incrementMissCount(1);
+                long previousRowCount = lookupTable.rowCount;
+                load(lookupTable);
+                updateRowCount(key, lookupTable, lookupTable.rowCount - previousRowCount, maxRows);
+            } else {
+                stats.incrementHitCount(1);
+                if (incremental) {
+                    long previousRowCount = lookupTable.rowCount;
+                    refresh(lookupTable, overlapMs);
+                    updateRowCount(key, lookupTable, lookupTable.rowCount - previousRowCount,
+                            maxRows);
+                }
+            }
+            return lookupTable.lookupMap;
+        }
+    }
+
+    public synchronized void clear() {
+        lookupTables.clear();
+        rowCount = 0;
+        stats.setSize(0);
+    }
+
+    protected synchronized void updateRowCount(String key, LookupTable lookupTable, long delta,
+            long maxRows) {
+        if (lookupTables.get(key) != lookupTable) {
+            return;
+        }
+        rowCount += delta;
+        Iterator<Map.Entry<String, LookupTable>> it = lookupTables.entrySet().iterator();
+        while (rowCount > maxRows && it.hasNext()) {
+            Map.Entry<String, LookupTable> entry = it.next();
+            if (entry.getValue() != lookupTable) {
+                it.remove();
+                rowCount -= entry.getValue().rowCount;
+                stats.incrementEvictionCount(1);
+            }
+        }
+
+        if (rowCount > maxRows) {
+            log.warn(
+                    "The {} lookup table has {} rows which is more than the {} rows that can be cached.  It will be reloaded each time it is used",
+                    new Object[] { lookupTable.tableName, lookupTable.rowCount, maxRows });
+            lookupTables.remove(key);
+            rowCount -= lookupTable.rowCount;
+            stats.incrementEvictionCount(1);
+        }
+        stats.setSize(rowCount);
+    }
+
+    protected void load(final LookupTable lookupTable) {
+        long ts = System.currentTimeMillis();
+        final Map<String, Set<String>> lookupMap = new ConcurrentHashMap<String, Set<String>>();
+        lookupTable.rowCount = 0;
+        lookupTable.lastUpdate = null;
+        sqlTemplate.query(lookupTable.getSelectSql(false), new ISqlRowMapper<Object>() {
+            public Object mapRow(Row row) {
+                lookupTable.add(lookupMap, row);
+                return null;
+            }
+        });
+        lookupTable.lookupMap = lookupMap;
+        lookupTable.loadTime = ts;
+        stats.incrementLoad(System.currentTimeMillis() - ts);
+    }
+
+    protected void refresh(final LookupTable lookupTable, long overlapMs) {
+        if (lookupTable.lastUpdate != null) {
+            long ts = System.currentTimeMillis();
+            sqlTemplate.query(lookupTable.getSelectSql(true), new ISqlRowMapper<Object>() {
+                public Object mapRow(Row row) {
+                    lookupTable.add(lookupTable.lookupMap, row);
+                    return null;
+                }
+            }, lookupTable.getRefreshFrom(overlapMs));
+            stats.incrementLoad(System.currentTimeMillis() - ts);
+        }
+    }
+
+    static class LookupTable {
+
+        final String tableName;
+
+        final String keyColumn;
+
+        final String externalIdColumn;
+
+        final String lastUpdateColumn;
+
+        volatile Map<String, Set<String>> lookupMap;
+
+        long loadTime;
+
+        long rowCount;
+
+        Object lastUpdate;
+
+        LookupTable(String tableName, String keyColumn, String externalIdColumn,
+                String lastUpdateColumn) {
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+            this.externalIdColumn = externalIdColumn;
+            this.lastUpdateColumn = lastUpdateColumn;
+        }
+
+        String getSelectSql(boolean incremental) {
+            if (lastUpdateColumn == null) {
+                return String.format("select %s, %s from %s", keyColumn, externalIdColumn,
+                        tableName);
+            } else if (incremental) {
+                return String.format("select %s, %s, %s from %s where %s >= ?", keyColumn,
+                        externalIdColumn, lastUpdateColumn, tableName, lastUpdateColumn);
+            } else {
+                return String.format("select %s, %s, %s from %s", keyColumn, externalIdColumn,
+                        lastUpdateColumn, tableName);
+            }
+        }
+
+        Object getRefreshFrom(long overlapMs) {
+            if (lastUpdate instanceof Date && overlapMs > 0) {
+                return new Timestamp(((Date) lastUpdate).getTime() - overlapMs);
+            } else {
+                return lastUpdate;
+            }
+        }
+
+        /**
+         * The sets of external ids are replaced rather than changed so they
+         * can be read while the lookup table is being refreshed.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        void add(Map<String, Set<String>> lookupMap, Row row) {
+            String key = row.getString(keyColumn);
+            String value = row.getString(externalIdColumn);
+            if (key != null) {
+                Set<String> ids = lookupMap.get(key);
+                if (ids == null || !ids.contains(value)) {
+                    Set<String> newIds = ids == null ? new HashSet<String>(1) : new HashSet<String>(ids);
+                    newIds.add(value);
+                    lookupMap.put(key, Collections.unmodifiableSet(newIds));
+                    rowCount++;
+                }
+            }
+
+            if (lastUpdateColumn != null) {
+                Object rowLastUpdate = row.get(lastUpdateColumn);
+                if (rowLastUpdate instanceof Comparable
+                        && (lastUpdate == null || ((Comparable) rowLastUpdate)
+                                .compareTo(lastUpdate) > 0)) {
+                    lastUpdate = rowLastUpdate;
+                }
+            }
+        }
+    }
+
+}
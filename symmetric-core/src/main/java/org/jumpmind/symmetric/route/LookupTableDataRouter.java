@@ -30,17 +30,25 @@ import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.Row;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.SyntaxParsingException;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.Router;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IParameterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A data router that uses a lookup table to map data to nodes
+ * A data router that uses a lookup table to map data to nodes.
+ * <P>
+ * The lookup table is cached for the engine in a {@link LookupTableCache}. An
+ * optional LAST_UPDATE_COLUMN can be given in the router expression to name a
+ * column on the lookup table that is updated whenever a row changes. When it
+ * is set only the changed rows are read on each routing pass.
  */
 public class LookupTableDataRouter extends AbstractDataRouter implements IDataRouter, IBuiltInExtensionPoint {
 
@@ -50,6 +58,9 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
     public final static String PARAM_KEY_COLUMN = "KEY_COLUMN";
     public final static String PARAM_MAPPED_KEY_COLUMN = "LOOKUP_KEY_COLUMN";
     public final static String PARAM_EXTERNAL_ID_COLUMN = "EXTERNAL_ID_COLUMN";
+    public final static String PARAM_LAST_UPDATE_COLUMN = "LAST_UPDATE_COLUMN";
+
+    public final static String CACHE_NAME = "routing.lookup.table";
 
     final static String EXPRESSION_KEY = String.format("%s.Expression.",
             LookupTableDataRouter.class.getName());
@@ -59,6 +70,17 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
 
     private ISymmetricDialect symmetricDialect;
 
+    private IParameterService parameterService;
+
+    private LookupTableCache lookupTableCache;
+
+    public LookupTableDataRouter(ISymmetricEngine engine) {
+        this.symmetricDialect = engine.getSymmetricDialect();
+        this.parameterService = engine.getParameterService();
+        this.lookupTableCache = new LookupTableCache(symmetricDialect.getPlatform()
+                .getSqlTemplate(), engine.getStatisticManager().getCacheStats(CACHE_NAME));
+    }
+
     public LookupTableDataRouter(ISymmetricDialect symmetricDialect) {
         this.symmetricDialect = symmetricDialect;
     }
@@ -75,12 +97,13 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
         
         params = getParams(router, routingContext);
     
-        Map<String, String> dataMap = getDataMap(dataMetaData, symmetricDialect);
+        Map<String, String> dataMap = getDataRowView(routingContext, dataMetaData,
+                symmetricDialect);
         Map<String, Set<String>> lookupTable = getLookupTable(params, router, routingContext);
         String column = params.get(PARAM_KEY_COLUMN);
         if (dataMap.containsKey(column)) {
             String keyData = dataMap.get(column);
-            Set<String> externalIds = lookupTable.get(keyData);
+            Set<String> externalIds = keyData != null ? lookupTable.get(keyData) : null;
             if (externalIds != null) {
                 for (Node node : nodes) {
                     if (externalIds.contains(node.getExternalId())) {
@@ -135,7 +158,7 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
                     }
                 }
                 if (!valid ||
-                    params.size() != 4 || 
+                    (params.size() != 4 && !(params.size() == 5 && params.containsKey(PARAM_LAST_UPDATE_COLUMN))) || 
                     !params.containsKey(PARAM_TABLE) ||
                     !params.containsKey(PARAM_KEY_COLUMN) ||
                     !params.containsKey(PARAM_MAPPED_KEY_COLUMN) ||
@@ -151,34 +174,53 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
         }
         return params;
     }    
+    /**
+     * The lookup table is fetched from the engine wide cache once for each
+     * routing context and then reused for the rest of the context.
+     */
     @SuppressWarnings("unchecked")
     protected Map<String, Set<String>> getLookupTable(final Map<String, String> params, Router router,
             SimpleRouterContext routingContext) {
-        final String CTX_CACHE_KEY = LOOKUP_TABLE_KEY + "." + params.get(PARAM_TABLE);
+        final String CTX_CACHE_KEY = LOOKUP_TABLE_KEY + "." + params.get(PARAM_TABLE) + "."
+                + params.get(PARAM_MAPPED_KEY_COLUMN) + "." + params.get(PARAM_EXTERNAL_ID_COLUMN);
         Map<String, Set<String>> lookupMap = (Map<String, Set<String>>) routingContext
                 .getContextCache().get(CTX_CACHE_KEY);
         if (lookupMap == null) {
-            ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
-            final Map<String, Set<String>> fillMap = new HashMap<String, Set<String>>();
-            template.query(String.format("select %s, %s from %s",
-                    params.get(PARAM_MAPPED_KEY_COLUMN), params.get(PARAM_EXTERNAL_ID_COLUMN),
-                    params.get(PARAM_TABLE)), new ISqlRowMapper<Object>() {
-                public Object mapRow(Row rs) {
-                    String key = rs.getString(params.get(PARAM_MAPPED_KEY_COLUMN));
-                    String value = rs.getString(params.get(PARAM_EXTERNAL_ID_COLUMN));
-                    Set<String> ids = fillMap.get(key);
-                    if (ids == null) {
-                        ids = new HashSet<String>();
-                        fillMap.put(key, ids);
-                    }
-                    ids.add(value);
-                    return value;
-                }
-            });
-            lookupMap = fillMap;
+            if (lookupTableCache != null) {
+                lookupMap = lookupTableCache.getLookupTable(params.get(PARAM_TABLE),
+                        params.get(PARAM_MAPPED_KEY_COLUMN), params.get(PARAM_EXTERNAL_ID_COLUMN),
+                        params.get(PARAM_LAST_UPDATE_COLUMN),
+                        parameterService.getLong(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_TIME_MS),
+                        parameterService.getLong(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_FULL_RELOAD_MS),
+                        parameterService.getLong(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_OVERLAP_MS),
+                        parameterService.getLong(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_MAX_ROWS));
+            } else {
+                lookupMap = loadLookupTable(params);
+            }
             routingContext.getContextCache().put(CTX_CACHE_KEY, lookupMap);
         }
         return lookupMap;
     }
 
+    protected Map<String, Set<String>> loadLookupTable(final Map<String, String> params) {
+        ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+        final Map<String, Set<String>> fillMap = new HashMap<String, Set<String>>();
+        template.query(String.format("select %s, %s from %s",
+                params.get(PARAM_MAPPED_KEY_COLUMN), params.get(PARAM_EXTERNAL_ID_COLUMN),
+                params.get(PARAM_TABLE)), new ISqlRowMapper<Object>() {
+            public Object mapRow(Row rs) {
+                String key = rs.getString(params.get(PARAM_MAPPED_KEY_COLUMN));
+                String value = rs.getString(params.get(PARAM_EXTERNAL_ID_COLUMN));
+                Set<String> ids = fillMap.get(key);
+                if (ids == null) {
+                    ids = new HashSet<String>();
+                    fillMap.put(key, ids);
+                }
+                ids.add(value);
+                return value;
+            }
+        });
+        return fillMap;
+    }
+
 }
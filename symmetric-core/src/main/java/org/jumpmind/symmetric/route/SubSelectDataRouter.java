@@ -20,20 +20,31 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.InvalidSqlException;
+import org.jumpmind.db.sql.NamedParameterUtils;
+import org.jumpmind.db.sql.ParsedSql;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.Data;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.util.FormatUtils;
 
 /**
@@ -41,7 +52,9 @@ import org.jumpmind.util.FormatUtils;
  * router_expression is always a SQL expression that is used to find the list of
  * nodes a row of data will be routed to. This router should never be used for
  * high throughput tables because it makes a call back to the database for each
- * row that is routed.
+ * row that is routed.  Results are cached by the values bound into the
+ * expression (routing.subselect.cache.size) and rows queued behind the current
+ * row can be looked up in the same call (routing.subselect.batch.size).
  * <P/>
  * The query that is used to select the nodes is as follows:
  * <P/>
@@ -64,27 +77,65 @@ public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInE
 
     private static final String SQL = "select c.node_id from $(prefixName)_node c where c.node_group_id=:NODE_GROUP_ID and c.sync_enabled=1 and ";
 
+    private static final String SELECT = "select ";
+
+    private final String RESULT_CACHE_KEY = String.format("%d.SubSelectResults", hashCode());
+
+    private final String BATCH_DISABLED_KEY = String.format("%d.SubSelectBatchDisabled.", hashCode());
+
     private ISymmetricDialect symmetricDialect;
 
+    private IParameterService parameterService;
+
+    private Map<String, ParsedSql> parsedSqlCache = new ConcurrentHashMap<String, ParsedSql>();
+
     public SubSelectDataRouter(ISymmetricDialect symmetricDialect) {
+        this(symmetricDialect, null);
+    }
+
+    public SubSelectDataRouter(ISymmetricDialect symmetricDialect,
+            IParameterService parameterService) {
         this.symmetricDialect = symmetricDialect;
+        this.parameterService = parameterService;
     }
 
     public Set<String> routeToNodes(SimpleRouterContext routingContext, DataMetaData dataMetaData,
             Set<Node> nodes, boolean initialLoad, boolean initialLoadSelectUsed, TriggerRouter triggerRouter) {
-        String sql = FormatUtils.replaceToken(SQL, "prefixName", symmetricDialect.getTablePrefix(),
-                true);
         String subSelect = dataMetaData.getRouter().getRouterExpression();
         Set<String> nodeIds = null;
         if (!StringUtils.isBlank(subSelect) && !initialLoadSelectUsed) {
             try {
-                Map<String, Object> sqlParams = getDataObjectMap(dataMetaData, symmetricDialect, true);
-                sqlParams.put("NODE_GROUP_ID", dataMetaData.getRouter().getNodeGroupLink()
-                        .getTargetNodeGroupId());
-                sqlParams.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
-                ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
-                List<String> ids = template.query(String.format("%s%s", sql, subSelect),
-                        new StringMapper(), sqlParams);
+                ParsedSql parsedSql = getParsedSql(subSelect);
+                Map<String, Object> sqlParams = getDataObjectRowView(routingContext,
+                        dataMetaData, symmetricDialect, true);
+                bindRouterParams(sqlParams, dataMetaData);
+                String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, sqlParams);
+                Object[] args = NamedParameterUtils.buildValueArray(parsedSql, sqlParams);
+
+                Map<List<Object>, List<String>> cache = getResultCache(routingContext);
+                List<Object> key = null;
+                List<String> ids = null;
+                if (cache != null) {
+                    key = buildCacheKey(dataMetaData, args);
+                    ids = cache.get(key);
+                }
+
+                if (ids == null) {
+                    int batchSize = parameterService != null ? parameterService.getInt(
+                            ParameterConstants.ROUTING_SUBSELECT_BATCH_SIZE, 1) : 1;
+                    if (cache != null && batchSize > 1) {
+                        ids = queryBatch(routingContext, dataMetaData, triggerRouter, parsedSql,
+                                sql, args, key, cache, batchSize);
+                    }
+                    if (ids == null) {
+                        ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+                        ids = template.query(sql, new StringMapper(), args, null);
+                    }
+                    if (cache != null) {
+                        cache.put(key, ids);
+                    }
+                }
+
                 if (ids != null) {
                     nodeIds = new HashSet<String>(ids);
                 }
@@ -103,4 +154,152 @@ public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInE
         return nodeIds;
     }
 
-}
\ No newline at end of file
+    protected void bindRouterParams(Map<String, Object> sqlParams, DataMetaData dataMetaData) {
+        sqlParams.put("NODE_GROUP_ID", dataMetaData.getRouter().getNodeGroupLink()
+                .getTargetNodeGroupId());
+        sqlParams.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
+    }
+
+    protected ParsedSql getParsedSql(String subSelect) {
+        String sql = FormatUtils.replaceToken(SQL, "prefixName", symmetricDialect.getTablePrefix(),
+                true) + subSelect;
+        ParsedSql parsedSql = parsedSqlCache.get(sql);
+        if (parsedSql == null) {
+            parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+            parsedSqlCache.put(sql, parsedSql);
+        }
+        return parsedSql;
+    }
+
+    protected List<Object> buildCacheKey(DataMetaData dataMetaData, Object[] args) {
+        List<Object> key = new ArrayList<Object>(args.length + 1);
+        key.add(dataMetaData.getRouter().getRouterId());
+        for (Object arg : args) {
+            key.add(arg);
+        }
+        return key;
+    }
+
+    /**
+     * Results are cached for the life of the routing context. The cache holds
+     * at least the batch size so that a batched lookup is not evicted before
+     * the rows it was done for are routed.
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<List<Object>, List<String>> getResultCache(SimpleRouterContext routingContext) {
+        Map<List<Object>, List<String>> cache = (Map<List<Object>, List<String>>) routingContext
+                .getContextCache().get(RESULT_CACHE_KEY);
+        if (cache == null && parameterService != null) {
+            final int maxSize = Math.max(
+                    parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_SIZE, 0),
+                    parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_BATCH_SIZE, 1));
+            if (maxSize > 1) {
+                cache = new LinkedHashMap<List<Object>, List<String>>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<List<Object>, List<String>> eldest) {
+                        return size() > maxSize;
+                    }
+                };
+                routingContext.getContextCache().put(RESULT_CACHE_KEY, cache);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Look up the current row along with the rows queued behind it that belong
+     * to the same table and are not already cached. Each row gets its own
+     * select, tagged with its position, and the selects are combined with union
+     * all so that they can be run in one round trip. The results of the queued
+     * rows are put in the cache.
+     * 
+     * @return the node ids for the current row or null if there was nothing to
+     *         batch
+     */
+    protected List<String> queryBatch(SimpleRouterContext routingContext,
+            DataMetaData dataMetaData, TriggerRouter triggerRouter, ParsedSql parsedSql,
+            String sql, Object[] args, List<Object> key, Map<List<Object>, List<String>> cache,
+            int batchSize) {
+        String routerId = dataMetaData.getRouter().getRouterId();
+        IDataToRouteReader reader = routingContext instanceof ChannelRouterContext ? ((ChannelRouterContext) routingContext)
+                .getDataToRouteReader() : null;
+        if (reader == null || routingContext.getContextCache().get(BATCH_DISABLED_KEY + routerId) != null) {
+            return null;
+        }
+
+        List<List<Object>> keys = new ArrayList<List<Object>>(batchSize);
+        List<Object> batchArgs = new ArrayList<Object>(args.length * batchSize);
+        StringBuilder batchSql = new StringBuilder();
+        appendBatchQuery(batchSql, sql, keys.size());
+        keys.add(key);
+        batchArgs.addAll(Arrays.asList(args));
+
+        int triggerHistoryId = dataMetaData.getTriggerHistory().getTriggerHistoryId();
+        DataRowView<Object> view = new DataRowView<Object>(this, symmetricDialect, true, true);
+        for (Data data : reader.peek(batchSize * 2)) {
+            if (keys.size() >= batchSize) {
+                break;
+            }
+            if (data.getTriggerHistory() != null
+                    && data.getTriggerHistory().getTriggerHistoryId() == triggerHistoryId
+                    && StringUtils.isBlank(data.getNodeList())
+                    && (triggerRouter == null || triggerRouter.isRouted(data.getDataEventType()))) {
+                try {
+                    DataMetaData queued = new DataMetaData(data, dataMetaData.getTable(),
+                            dataMetaData.getRouter(), dataMetaData.getNodeChannel());
+                    Map<String, Object> queuedParams = view.reset(queued);
+                    bindRouterParams(queuedParams, queued);
+                    Object[] queuedArgs = NamedParameterUtils.buildValueArray(parsedSql,
+                            queuedParams);
+                    List<Object> queuedKey = buildCacheKey(queued, queuedArgs);
+                    if (!cache.containsKey(queuedKey) && !keys.contains(queuedKey)) {
+                        batchSql.append(" union all ");
+                        appendBatchQuery(batchSql, NamedParameterUtils.substituteNamedParameters(
+                                parsedSql, queuedParams), keys.size());
+                        keys.add(queuedKey);
+                        batchArgs.addAll(Arrays.asList(queuedArgs));
+                    }
+                } catch (RuntimeException ex) {
+                    log.debug("Not batching the subselect lookup for data_id {}: {}",
+                            data.getDataId(), ex.getMessage());
+                }
+            }
+        }
+
+        if (keys.size() == 1) {
+            return null;
+        }
+
+        List<Row> rows = null;
+        try {
+            ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+            rows = template.query(batchSql.toString(), batchArgs.toArray());
+        } catch (SqlException ex) {
+            log.warn("Could not batch the subselect lookups for the {} router.  Rows will be looked up one at a time.  {}",
+                    routerId, ex.getMessage());
+            routingContext.getContextCache().put(BATCH_DISABLED_KEY + routerId, Boolean.TRUE);
+            return null;
+        }
+
+        List<List<String>> results = new ArrayList<List<String>>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            results.add(new ArrayList<String>());
+        }
+        for (Row row : rows) {
+            results.get(row.getInt("row_index")).add(row.getString("node_id"));
+        }
+        for (int i = 1; i < keys.size(); i++) {
+            cache.put(keys.get(i), results.get(i));
+        }
+        return results.get(0);
+    }
+
+    protected void appendBatchQuery(StringBuilder batchSql, String sql, int rowIndex) {
+        batchSql.append(SELECT).append(rowIndex).append(" as row_index, ")
+                .append(sql.substring(SELECT.length()));
+    }
+
+}
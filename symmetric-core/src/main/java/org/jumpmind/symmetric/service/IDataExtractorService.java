@@ -62,5 +62,7 @@ public interface IDataExtractorService {
     
     public void requestExtractRequest(ISqlTransaction transaction, String nodeId, TriggerRouter triggerRouter, long startBatchId, long endBatchId);
 
+    public void stop();
+
 
 }
\ No newline at end of file
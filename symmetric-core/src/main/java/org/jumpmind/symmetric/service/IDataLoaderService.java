@@ -71,4 +71,6 @@ public interface IDataLoaderService {
     
     public void updateIncomingError(IncomingError incomingError);
 
+    public void stop();
+
 }
\ No newline at end of file
@@ -41,6 +41,12 @@ public interface INodeCommunicationService {
 
     public void stop();
 
+    /**
+     * Forget the cached list of nodes to communicate with so that it is read
+     * again on the next call to {@link #list(CommunicationType)}.
+     */
+    public void clearCache();
+
     public interface INodeCommunicationExecutor {
         public void execute(NodeCommunication nodeCommunication, RemoteNodeStatus status);
     }
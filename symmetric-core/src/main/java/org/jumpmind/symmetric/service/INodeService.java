@@ -92,6 +92,12 @@ public interface INodeService {
 
     public void flushNodeAuthorizedCache();
 
+    /**
+     * @return a count that changes each time a node is saved, updated or
+     *         deleted through this service so caches of nodes know to refresh
+     */
+    public long getNodeChangeCount();
+
     public boolean isRegistrationEnabled(String nodeId);
 
     public Node findIdentity();
@@ -21,6 +21,7 @@
 
 package org.jumpmind.symmetric.service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -45,8 +46,19 @@ public interface IOutgoingBatchService {
 
     public OutgoingBatch findOutgoingBatch(long batchId, String nodeId);
 
+    public List<OutgoingBatch> findOutgoingBatches(String nodeId, List<Long> batchIds);
+
     public OutgoingBatches getOutgoingBatches(String nodeId, boolean includeDisabledChannels);
 
+    /**
+     * Record that outgoing batches for these nodes are ready to be sent. When
+     * clustering is enabled, the other nodes in the cluster are told to rebuild
+     * their index of nodes with outgoing batches. Registered
+     * {@link org.jumpmind.symmetric.ext.IOutgoingBatchReadyListener}s are
+     * notified.
+     */
+    public void updatePendingBatchIndex(Collection<String> nodeIds);
+
     public OutgoingBatches getOutgoingBatchRange(long startBatchId, long endBatchId);
     
     public int cancelLoadBatches(long loadId);
@@ -68,11 +80,31 @@ public interface IOutgoingBatchService {
     public void updateOutgoingBatch(ISqlTransaction transaction, OutgoingBatch outgoingBatch);
 
     public void updateOutgoingBatches(List<OutgoingBatch> batches);
+
+    /**
+     * Complete the routing of a common batch for all of its nodes with one
+     * update. The batches share a batch id and have the same status and
+     * counts. Only rows that are still being routed are updated.
+     * 
+     * @return the number of batch rows updated
+     */
+    public int updateCommonOutgoingBatches(List<OutgoingBatch> batches);
 
+    /**
+     * Mark the batches for a node and channel as OK with one update.
+     */
+    public int updateOutgoingBatchesAsOk(String nodeId, String channelId, List<Long> batchIds);
+
     public void insertOutgoingBatch(OutgoingBatch outgoingBatch);
     
     public void insertOutgoingBatch(ISqlTransaction transaction, OutgoingBatch outgoingBatch);
 
+    /**
+     * Insert batches that have already been assigned a batch id as part of the
+     * transaction
+     */
+    public void insertOutgoingBatches(ISqlTransaction transaction, List<OutgoingBatch> outgoingBatches);
+
     public int countOutgoingBatchesInError();
     
     public int countOutgoingBatchesUnsent();
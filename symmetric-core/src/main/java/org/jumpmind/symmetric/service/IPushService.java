@@ -20,6 +20,7 @@
  */
 package org.jumpmind.symmetric.service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 
@@ -41,6 +42,12 @@ public interface IPushService extends IOfflineDetectorService {
      * @return RemoteNodeStatuses the status of the push attempt(s)
      */
     public RemoteNodeStatuses pushData(boolean force);
+
+    /**
+     * Attempt to push data to only the given nodes, if they are nodes that
+     * data is pushed to.
+     */
+    public RemoteNodeStatuses pushData(Collection<String> nodeIds);
     
     public Map<String, Date> getStartTimesOfNodesBeingPushedTo();
 
@@ -21,11 +21,15 @@
 package org.jumpmind.symmetric.service.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jumpmind.db.sql.mapper.NumberMapper;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.symmetric.io.stage.IStagedResource.State;
 import org.jumpmind.symmetric.io.stage.IStagingManager;
@@ -145,6 +149,9 @@ public class AcknowledgeService extends AbstractService implements IAcknowledgeS
     }
 
 	public List<BatchAckResult> ack(List<BatchAck> batches) {
+		if (batches.size() > 1 && parameterService.is(ParameterConstants.ACKNOWLEDGE_COALESCE_ENABLED)) {
+			return ackCoalesced(batches);
+		}
 		
 		List<BatchAckResult> results = new ArrayList<BatchAckResult>();
 		for (BatchAck batch:batches) {
@@ -152,4 +159,88 @@ public class AcknowledgeService extends AbstractService implements IAcknowledgeS
 		}
 		return results;
 	}
+
+	/**
+	 * Successful acknowledgements are applied with one update per node and
+	 * channel. Everything else is acknowledged one batch at a time.
+	 */
+	protected List<BatchAckResult> ackCoalesced(List<BatchAck> batches) {
+		IStagingManager stagingManager = engine.getStagingManager();
+		IOutgoingBatchService outgoingBatchService = engine.getOutgoingBatchService();
+
+		List<BatchAckResult> results = new ArrayList<BatchAckResult>(batches.size());
+		Map<String, Map<Long, BatchAck>> okAcksByNode = new LinkedHashMap<String, Map<Long, BatchAck>>();
+		for (BatchAck batch : batches) {
+			if (batch.isOk() && !batch.isIgnored() && batch.getNodeId() != null
+					&& batch.getBatchId() != Constants.VIRTUAL_BATCH_FOR_REGISTRATION) {
+				Map<Long, BatchAck> acks = okAcksByNode.get(batch.getNodeId());
+				if (acks == null) {
+					acks = new LinkedHashMap<Long, BatchAck>();
+					okAcksByNode.put(batch.getNodeId(), acks);
+				}
+				acks.put(batch.getBatchId(), batch);
+			} else {
+				results.add(ack(batch));
+			}
+		}
+
+		for (String nodeId : okAcksByNode.keySet()) {
+			Map<Long, BatchAck> acks = okAcksByNode.get(nodeId);
+			Map<String, List<Long>> batchIdsByChannel = new HashMap<String, List<Long>>();
+			List<OutgoingBatch> outgoingBatches = outgoingBatchService.findOutgoingBatches(nodeId,
+					new ArrayList<Long>(acks.keySet()));
+			for (OutgoingBatch outgoingBatch : outgoingBatches) {
+				BatchAck batch = acks.remove(outgoingBatch.getBatchId());
+				if (batch == null) {
+					continue;
+				}
+				Channel channel = engine.getConfigurationService().getChannel(
+						outgoingBatch.getChannelId());
+				if (channel != null && channel.isFileSyncFlag()) {
+					results.add(ack(batch));
+					continue;
+				}
+
+				for (IAcknowledgeEventListener listener : engine.getExtensionService()
+						.getExtensionPointList(IAcknowledgeEventListener.class)) {
+					listener.onAcknowledgeEvent(batch);
+				}
+
+				if (!outgoingBatch.isCommonFlag()) {
+					IStagedResource stagingResource = stagingManager.find(
+							Constants.STAGING_CATEGORY_OUTGOING, outgoingBatch.getNodeId(),
+							outgoingBatch.getBatchId());
+					if (stagingResource != null) {
+						stagingResource.setState(State.DONE);
+					}
+				}
+
+				List<Long> batchIds = batchIdsByChannel.get(outgoingBatch.getChannelId());
+				if (batchIds == null) {
+					batchIds = new ArrayList<Long>();
+					batchIdsByChannel.put(outgoingBatch.getChannelId(), batchIds);
+				}
+				batchIds.add(outgoingBatch.getBatchId());
+				results.add(new BatchAckResult(batch));
+			}
+
+			for (String channelId : batchIdsByChannel.keySet()) {
+				List<Long> batchIds = batchIdsByChannel.get(channelId);
+				outgoingBatchService.updateOutgoingBatchesAsOk(nodeId, channelId, batchIds);
+				for (Long batchId : batchIds) {
+					engine.getStatisticManager().removeRouterStatsByBatch(batchId);
+				}
+			}
+
+			for (BatchAck batch : acks.values()) {
+				log.error("Could not find batch {}-{} to acknowledge as {}", new Object[] {
+						batch.getNodeId(), batch.getBatchId(), Status.OK.name() });
+				BatchAckResult result = new BatchAckResult(batch);
+				result.setOk(false);
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
 }
@@ -34,7 +34,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.io.DatabaseXmlUtil;
@@ -161,6 +169,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
 
     private Map<String, Semaphore> locks = new HashMap<String, Semaphore>();
 
+    protected transient ThreadPoolExecutor extractAheadThreads = null;
+
     public DataExtractorService(ISymmetricEngine engine) {
         super(engine.getParameterService(), engine.getSymmetricDialect());
         this.outgoingBatchService = engine.getOutgoingBatchService();
@@ -500,6 +510,9 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             Set<String> channelsProcessed = new HashSet<String>();
             long batchesSelectedAtMs = System.currentTimeMillis();
             OutgoingBatch currentBatch = null;
+            int extractAheadCount = streamToFileEnabled && mode != ExtractMode.EXTRACT_ONLY ? parameterService
+                    .getInt(ParameterConstants.EXTRACT_AHEAD_BATCH_COUNT) : 0;
+            Map<Long, ExtractAheadBatch> extractAhead = new HashMap<Long, ExtractAheadBatch>();
             try {
 
                 long bytesSentCount = 0;
@@ -544,8 +557,20 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                         }
                     } else {
                         processInfo.setStatus(ProcessInfo.Status.EXTRACTING);
-                        currentBatch = extractOutgoingBatch(processInfo, targetNode, dataWriter,
-                                    currentBatch, streamToFileEnabled, true, mode);                        
+                        ExtractAheadBatch extractedAhead = extractAhead.remove(currentBatch
+                                .getBatchId());
+                        if (extractAheadCount > 0 && bytesSentCount < maxBytesToSync) {
+                            extractAhead(targetNode, activeBatches, i + 1, extractAheadCount,
+                                    extractAhead, dataWriter, mode);
+                        }
+
+                        if (extractedAhead != null) {
+                            currentBatch = waitForExtractAhead(processInfo, targetNode,
+                                    dataWriter, currentBatch, extractedAhead.getFuture(), mode);
+                        } else {
+                            currentBatch = extractOutgoingBatch(processInfo, targetNode, dataWriter,
+                                    currentBatch, streamToFileEnabled, true, mode);
+                        }
                     }
                                         
                     if (streamToFileEnabled || mode == ExtractMode.FOR_PAYLOAD_CLIENT) {
@@ -613,6 +638,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     log.error("Could not log the outgoing batch status because the batch was null",
                             e);
                 }
+            } finally {
+                finishExtractAhead(extractAhead.values());
             }
 
             // Next, we update the node channel controls to the
@@ -634,6 +661,134 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
     }
 
+    /**
+     * Submit the extraction of the batches that follow the current batch to
+     * the extract ahead threads so that they are staged by the time they are
+     * sent. Only batches that would otherwise be extracted by
+     * {@link #extractOutgoingBatch(ProcessInfo, Node, IDataWriter, OutgoingBatch, boolean, boolean, ExtractMode)}
+     * are submitted.
+     */
+    protected void extractAhead(Node targetNode, List<OutgoingBatch> activeBatches,
+            int startIndex, int extractAheadCount, Map<Long, ExtractAheadBatch> extractAhead,
+            IDataWriter dataWriter, ExtractMode mode) {
+        ThreadPoolExecutor executor = getExtractAheadThreads();
+        for (int i = startIndex; i < activeBatches.size() && i < startIndex + extractAheadCount; i++) {
+            OutgoingBatch batch = activeBatches.get(i);
+            if (!extractAhead.containsKey(batch.getBatchId()) && !batch.isExtractJobFlag()
+                    && batch.getStatus() != Status.OK && batch.getStatus() != Status.IG) {
+                ExtractAheadBatch extractAheadBatch = new ExtractAheadBatch(targetNode,
+                        batch.getBatchId(), batch.getNodeId(), dataWriter, mode);
+                extractAheadBatch.setFuture(executor.submit(extractAheadBatch));
+                extractAhead.put(batch.getBatchId(), extractAheadBatch);
+            }
+        }
+    }
+
+    /**
+     * Batches that have not started extracting ahead are not needed anymore.
+     * Wait for the ones that are extracting so that their staging is complete
+     * before they are picked up by the next sync.
+     */
+    protected void finishExtractAhead(Collection<ExtractAheadBatch> extractAhead) {
+        for (ExtractAheadBatch extractAheadBatch : extractAhead) {
+            if (!extractAheadBatch.cancelIfNotStarted()) {
+                try {
+                    extractAheadBatch.getFuture().get();
+                } catch (InterruptedException e) {
+                    throw new org.jumpmind.exception.InterruptedException(e);
+                } catch (ExecutionException e) {
+                    log.debug("Failed to extract batch {} ahead", extractAheadBatch.getBatchId(),
+                            e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * The status of a batch can be changed, for example to ignored or ok by a
+     * user, while it is extracted ahead. The batch is re-read once the
+     * extraction is done. A batch that is no longer to be sent is handled the
+     * same way it would have been without extract ahead.
+     */
+    protected OutgoingBatch waitForExtractAhead(ProcessInfo processInfo, Node targetNode,
+            IDataWriter dataWriter, OutgoingBatch currentBatch, Future<OutgoingBatch> future,
+            ExtractMode mode) {
+        OutgoingBatch extractedBatch = waitForExtractAhead(future);
+        OutgoingBatch requeriedBatch = outgoingBatchService.findOutgoingBatch(
+                currentBatch.getBatchId(), currentBatch.getNodeId());
+        if (requeriedBatch != null
+                && (requeriedBatch.getStatus() == Status.IG || requeriedBatch.getStatus() == Status.OK)) {
+            return extractOutgoingBatch(processInfo, targetNode, dataWriter, requeriedBatch,
+                    true, true, mode);
+        } else if (extractedBatch == null) {
+            return extractOutgoingBatch(processInfo, targetNode, dataWriter, currentBatch, true,
+                    true, mode);
+        } else {
+            return extractedBatch;
+        }
+    }
+
+    protected OutgoingBatch waitForExtractAhead(Future<OutgoingBatch> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new org.jumpmind.exception.InterruptedException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new SymmetricException(cause);
+            }
+        }
+    }
+
+    protected synchronized ThreadPoolExecutor getExtractAheadThreads() {
+        int threadCount = parameterService.getInt(ParameterConstants.EXTRACT_AHEAD_THREAD_COUNT, 4);
+        if (extractAheadThreads != null && extractAheadThreads.getCorePoolSize() != threadCount) {
+            log.info("{} has changed from {} to {}.  Restarting thread pool", new Object[] {
+                    ParameterConstants.EXTRACT_AHEAD_THREAD_COUNT,
+                    extractAheadThreads.getCorePoolSize(), threadCount });
+            extractAheadThreads.shutdown();
+            extractAheadThreads = null;
+        }
+
+        if (extractAheadThreads == null) {
+            extractAheadThreads = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCount,
+                    new ThreadFactory() {
+                        final AtomicInteger threadNumber = new AtomicInteger(1);
+                        final String namePrefix = parameterService.getEngineName()
+                                .toLowerCase() + "-extract-ahead-";
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r);
+                            t.setName(namePrefix + threadNumber.getAndIncrement());
+                            if (t.isDaemon()) {
+                                t.setDaemon(false);
+                            }
+                            if (t.getPriority() != Thread.NORM_PRIORITY) {
+                                t.setPriority(Thread.NORM_PRIORITY);
+                            }
+                            return t;
+                        }
+                    });
+        }
+        return extractAheadThreads;
+    }
+
+    public synchronized void stop() {
+        if (extractAheadThreads != null) {
+            try {
+                extractAheadThreads.shutdown();
+                extractAheadThreads = null;
+            } catch (Exception ex) {
+                log.error("", ex);
+            }
+        }
+    }
+
     final protected boolean changeBatchStatus(Status status, OutgoingBatch currentBatch, ExtractMode mode) {
         if (currentBatch.getStatus() != Status.IG) {
             currentBatch.setStatus(status);
@@ -673,8 +828,9 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 transformExtractWriter = createTransformDataWriter(
                         sourceNode,
                         targetNode,
-                        new ProcessInfoDataWriter(new StagingDataWriter(memoryThresholdInBytes, nodeService
-                                .findIdentityNodeId(), Constants.STAGING_CATEGORY_OUTGOING,
+                        new ProcessInfoDataWriter(new StagingDataWriter(memoryThresholdInBytes,
+                                parameterService.is(ParameterConstants.STREAM_TO_FILE_BINARY_ENABLED),
+                                nodeService.findIdentityNodeId(), Constants.STAGING_CATEGORY_OUTGOING,
                                 stagingManager), processInfo));
             } else {
                 transformExtractWriter = createTransformDataWriter(sourceNode, targetNode,
@@ -1175,6 +1331,11 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 } finally {
                     close(transaction);
                 }
+
+                if (!areBatchesOk) {
+                    outgoingBatchService.updatePendingBatchIndex(Collections
+                            .singleton(nodeCommunication.getNodeId()));
+                }
                 processInfo.setStatus(org.jumpmind.symmetric.model.ProcessInfo.Status.OK);
 
             } catch (RuntimeException ex) {
@@ -1188,6 +1349,70 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
     }
 
+    /**
+     * Extracts a batch on an extract ahead thread. The batch is read again on
+     * that thread so the batch in the list of active batches is only used by
+     * the thread that sends it.
+     */
+    class ExtractAheadBatch implements Callable<OutgoingBatch> {
+
+        private Node targetNode;
+
+        private long batchId;
+
+        private String nodeId;
+
+        private IDataWriter dataWriter;
+
+        private ExtractMode mode;
+
+        private AtomicBoolean started = new AtomicBoolean();
+
+        private Future<OutgoingBatch> future;
+
+        public ExtractAheadBatch(Node targetNode, long batchId, String nodeId,
+                IDataWriter dataWriter, ExtractMode mode) {
+            this.targetNode = targetNode;
+            this.batchId = batchId;
+            this.nodeId = nodeId;
+            this.dataWriter = dataWriter;
+            this.mode = mode;
+        }
+
+        public OutgoingBatch call() throws Exception {
+            if (started.compareAndSet(false, true)) {
+                OutgoingBatch batch = outgoingBatchService.findOutgoingBatch(batchId, nodeId);
+                if (batch != null && batch.getStatus() != Status.OK
+                        && batch.getStatus() != Status.IG) {
+                    return extractOutgoingBatch(new ProcessInfo(), targetNode, dataWriter, batch,
+                            true, true, mode);
+                }
+            }
+            return null;
+        }
+
+        public boolean cancelIfNotStarted() {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        public long getBatchId() {
+            return batchId;
+        }
+
+        public void setFuture(Future<OutgoingBatch> future) {
+            this.future = future;
+        }
+
+        public Future<OutgoingBatch> getFuture() {
+            return future;
+        }
+    }
+
     class ExtractRequestMapper implements ISqlRowMapper<ExtractRequest> {
         public ExtractRequest mapRow(Row row) {
             ExtractRequest request = new ExtractRequest();
@@ -1242,8 +1467,9 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             this.nextBatch();
             long memoryThresholdInBytes = parameterService
                     .getLong(ParameterConstants.STREAM_TO_FILE_THRESHOLD);
-            this.currentDataWriter = new StagingDataWriter(memoryThresholdInBytes, sourceNodeId,
-                    Constants.STAGING_CATEGORY_OUTGOING, stagingManager,
+            this.currentDataWriter = new StagingDataWriter(memoryThresholdInBytes,
+                    parameterService.is(ParameterConstants.STREAM_TO_FILE_BINARY_ENABLED),
+                    sourceNodeId, Constants.STAGING_CATEGORY_OUTGOING, stagingManager,
                     (IProtocolDataWriterListener[]) null);
             this.currentDataWriter.open(context);
         }
@@ -1352,8 +1578,9 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             this.nextBatch();
             long memoryThresholdInBytes = parameterService
                     .getLong(ParameterConstants.STREAM_TO_FILE_THRESHOLD);            
-            this.currentDataWriter = new StagingDataWriter(memoryThresholdInBytes, sourceNodeId,
-                    Constants.STAGING_CATEGORY_OUTGOING, stagingManager,
+            this.currentDataWriter = new StagingDataWriter(memoryThresholdInBytes,
+                    parameterService.is(ParameterConstants.STREAM_TO_FILE_BINARY_ENABLED),
+                    sourceNodeId, Constants.STAGING_CATEGORY_OUTGOING, stagingManager,
                     (IProtocolDataWriterListener[]) null);
             this.batch = new Batch(BatchType.EXTRACT, outgoingBatch.getBatchId(),
                     outgoingBatch.getChannelId(), symmetricDialect.getBinaryEncoding(),
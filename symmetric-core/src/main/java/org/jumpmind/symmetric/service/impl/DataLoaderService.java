@@ -35,8 +35,15 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.model.Table;
@@ -154,6 +161,10 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
     private ISymmetricEngine engine = null;
 
     private Date lastUpdateTime;
+
+    private Map<String, List<IncomingBatch>> pendingAcks = new ConcurrentHashMap<String, List<IncomingBatch>>();
+
+    protected transient ThreadPoolExecutor parallelLoaderThreads = null;
     
     public DataLoaderService(ISymmetricEngine engine) {
         super(engine.getParameterService(), engine.getSymmetricDialect());
@@ -226,7 +237,8 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
 
     /**
      * Connect to the remote node and pull data. The acknowledgment of
-     * commit/error status is sent separately after the data is processed.
+     * commit/error status is sent separately after the data is processed, or
+     * with the next pull when acknowledgements are piggy-backed.
      */
     public RemoteNodeStatus loadDataFromPull(Node remote) throws IOException {
         RemoteNodeStatus status = new RemoteNodeStatus(remote != null ? remote.getNodeId() : null,
@@ -240,6 +252,8 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         if (local == null) {
             local = new Node(this.parameterService, symmetricDialect);
         }
+        String piggybackNodeId = null;
+        List<IncomingBatch> piggybackAcks = null;
         try {
             NodeSecurity localSecurity = nodeService.findNodeSecurity(local.getNodeId());
             IIncomingTransport transport = null;
@@ -251,6 +265,19 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                         suspendIgnoreChannels.getSuspendChannelsAsString());
                 requestProperties.put(WebConstants.IGNORED_CHANNELS,
                         suspendIgnoreChannels.getIgnoreChannelsAsString());
+                piggybackAcks = pendingAcks.remove(remote.getNodeId());
+                if (piggybackAcks != null) {
+                    piggybackNodeId = remote.getNodeId();
+                    requestProperties.put(WebConstants.ACKNOWLEDGEMENTS,
+                            ((HttpTransportManager) transportManager).getAcknowledgementData(
+                                    remote, piggybackAcks, local));
+                }
+                if (parameterService.is(ParameterConstants.PULL_LONG_POLL_ENABLED)
+                        && transportManager instanceof HttpTransportManager) {
+                    requestProperties.put(WebConstants.LONG_POLL_TIMEOUT, Long
+                            .toString(parameterService.getLong(
+                                    ParameterConstants.PULL_LONG_POLL_TIMEOUT_MS, 60000)));
+                }
                 transport = transportManager.getPullTransport(remote, local,
                         localSecurity.getNodePassword(), requestProperties,
                         parameterService.getRegistrationUrl());
@@ -266,6 +293,7 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                     .getNodeId(), local.getNodeId(), ProcessType.PULL_JOB));
             try {
                 List<IncomingBatch> list = loadDataFromTransport(processInfo, remote, transport);
+                piggybackAcks = null;
                 if (list.size() > 0) {
                     processInfo.setStatus(ProcessInfo.Status.ACKING);
                     status.updateIncomingStatus(list);
@@ -281,8 +309,10 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                             url = url.replace(HttpTransportManager.buildRegistrationUrl("", local),
                                     "");
                             remote.setSyncUrl(url);
+                            sendAck(remote, local, localSecurity, list, transportManager);
+                        } else if (!piggybackAck(remote, local, list)) {
+                            sendAck(remote, local, localSecurity, list, transportManager);
                         }
-                        sendAck(remote, local, localSecurity, list, transportManager);
                     }
                 }
 
@@ -318,9 +348,43 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                 log.error("", e);
             }
             throw e;
+        } finally {
+            if (piggybackAcks != null) {
+                /*
+                 * The pull failed, so send the acknowledgement with the next
+                 * pull again
+                 */
+                List<IncomingBatch> acks = pendingAcks.get(piggybackNodeId);
+                if (acks != null) {
+                    piggybackAcks.addAll(acks);
+                }
+                pendingAcks.put(piggybackNodeId, piggybackAcks);
+            }
         }
     }
 
+    /**
+     * Hold on to the acknowledgement so it can be sent as a header on the next
+     * pull from the remote node.
+     * 
+     * @return false if the acknowledgement needs to be sent right away
+     */
+    protected boolean piggybackAck(Node remote, Node local, List<IncomingBatch> list)
+            throws IOException {
+        if (parameterService.is(ParameterConstants.DATA_LOADER_ACK_PIGGYBACK_ENABLED)
+                && transportManager instanceof HttpTransportManager
+                && !remote.requires13Compatiblity() && !containsError(list)) {
+            String data = ((HttpTransportManager) transportManager).getAcknowledgementData(remote,
+                    list, local);
+            if (data.length() <= parameterService
+                    .getInt(ParameterConstants.DATA_LOADER_ACK_PIGGYBACK_MAX_SIZE)) {
+                pendingAcks.put(remote.getNodeId(), list);
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean containsError(List<IncomingBatch> list) {
         for (IncomingBatch incomingBatch : list) {
             if (incomingBatch.getStatus() == Status.ER) {
@@ -420,6 +484,7 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
             final Node sourceNode, IIncomingTransport transport) throws IOException {
         final ManageIncomingBatchListener listener = new ManageIncomingBatchListener();
         final DataContext ctx = new DataContext();
+        LoadInParallelOnArrivalListener parallelListener = null;
         Throwable error = null;
         try {
             Node targetNode = nodeService.findIdentity();
@@ -451,10 +516,21 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                 processInfo.setStatus(ProcessInfo.Status.TRANSFERRING);
                 IDataReader dataReader = new ProtocolDataReader(BatchType.LOAD, targetNodeId,
                         transport.openReader());
+                int parallelBatchCount = parameterService
+                        .getInt(ParameterConstants.DATA_LOADER_PARALLEL_BATCH_COUNT, 0);
+                IProtocolDataWriterListener arrivalListener = null;
+                if (parallelBatchCount > 0) {
+                    parallelListener = new LoadInParallelOnArrivalListener(processInfo,
+                            sourceNode.getNodeId(), listener, parallelBatchCount);
+                    arrivalListener = parallelListener;
+                } else {
+                    arrivalListener = new LoadIntoDatabaseOnArrivalListener(processInfo,
+                            sourceNode.getNodeId(), listener);
+                }
                 IDataWriter dataWriter = new StagingDataWriter(memoryThresholdInBytes,
+                        parameterService.is(ParameterConstants.STREAM_TO_FILE_BINARY_ENABLED),
                         sourceNode.getNodeId(), Constants.STAGING_CATEGORY_INCOMING,
-                        stagingManager, new LoadIntoDatabaseOnArrivalListener(processInfo,
-                                sourceNode.getNodeId(), listener));
+                        stagingManager, arrivalListener);
                 new DataProcessor(dataReader, dataWriter, "transfer to stage").process(ctx);
                 totalNetworkMillis = System.currentTimeMillis() - totalNetworkMillis;
             } else {
@@ -475,6 +551,13 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         } finally {
             transport.close();
 
+            if (parallelListener != null) {
+                parallelListener.finish();
+                if (error == null) {
+                    error = parallelListener.getError();
+                }
+            }
+
             for (ILoadSyncLifecycleListener l : extensionService
                     .getExtensionPointList(ILoadSyncLifecycleListener.class)) {
                 l.syncEnded(ctx, listener.getBatchesProcessed(), error);
@@ -519,6 +602,52 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         }
     }
 
+    protected synchronized ThreadPoolExecutor getParallelLoaderThreads() {
+        int threadCount = parameterService.getInt(
+                ParameterConstants.DATA_LOADER_PARALLEL_THREAD_COUNT, 4);
+        if (parallelLoaderThreads != null
+                && parallelLoaderThreads.getCorePoolSize() != threadCount) {
+            log.info("{} has changed from {} to {}.  Restarting thread pool", new Object[] {
+                    ParameterConstants.DATA_LOADER_PARALLEL_THREAD_COUNT,
+                    parallelLoaderThreads.getCorePoolSize(), threadCount });
+            parallelLoaderThreads.shutdown();
+            parallelLoaderThreads = null;
+        }
+
+        if (parallelLoaderThreads == null) {
+            parallelLoaderThreads = (ThreadPoolExecutor) Executors.newFixedThreadPool(
+                    threadCount, new ThreadFactory() {
+                        final AtomicInteger threadNumber = new AtomicInteger(1);
+                        final String namePrefix = parameterService.getEngineName()
+                                .toLowerCase() + "-data-loader-";
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r);
+                            t.setName(namePrefix + threadNumber.getAndIncrement());
+                            if (t.isDaemon()) {
+                                t.setDaemon(false);
+                            }
+                            if (t.getPriority() != Thread.NORM_PRIORITY) {
+                                t.setPriority(Thread.NORM_PRIORITY);
+                            }
+                            return t;
+                        }
+                    });
+        }
+        return parallelLoaderThreads;
+    }
+
+    public synchronized void stop() {
+        if (parallelLoaderThreads != null) {
+            try {
+                parallelLoaderThreads.shutdown();
+                parallelLoaderThreads = null;
+            } catch (Exception ex) {
+                log.error("", ex);
+            }
+        }
+    }
+
     protected IDataWriter buildDataWriter(ProcessInfo processInfo, String sourceNodeId,
             String channelId, long batchId) {
         TransformTable[] transforms = null;
@@ -835,6 +964,7 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         public void end(DataContext ctx, Batch batch, IStagedResource resource) {
 
             long networkMillis = System.currentTimeMillis() - batchStartsToArriveTimeInMs;
+            processInfo.incrementTransferBatchCount();
 
             try {
                 processInfo.setStatus(ProcessInfo.Status.LOADING);
@@ -856,6 +986,260 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                     }
                 }
                 resource.setState(State.DONE);
+                processInfo.incrementLoadBatchCount();
+            }
+        }
+    }
+
+    /**
+     * Hands staged batches to the parallel loader threads as they arrive so
+     * that reading the transport overlaps with loading the database. Batches
+     * are loaded in the order they arrived within a channel and concurrently
+     * across channels. At most parallelBatchCount batches wait to be loaded
+     * before the transfer blocks. A configuration batch is loaded on the
+     * transfer thread after all the batches that arrived before it have
+     * loaded. The status of each batch is recorded as soon as its load
+     * completes.
+     */
+    class LoadInParallelOnArrivalListener implements IProtocolDataWriterListener {
+
+        private ManageIncomingBatchListener listener;
+
+        private long batchStartsToArriveTimeInMs;
+
+        private String sourceNodeId;
+
+        private ProcessInfo processInfo;
+
+        private int parallelBatchCount;
+
+        private Semaphore permits;
+
+        private Map<String, ChannelLoader> channelLoaders = new HashMap<String, ChannelLoader>();
+
+        private boolean finished = false;
+
+        private Throwable error;
+
+        public LoadInParallelOnArrivalListener(ProcessInfo processInfo, String sourceNodeId,
+                ManageIncomingBatchListener listener, int parallelBatchCount) {
+            this.sourceNodeId = sourceNodeId;
+            this.listener = listener;
+            this.processInfo = processInfo;
+            this.parallelBatchCount = parallelBatchCount;
+            this.permits = new Semaphore(parallelBatchCount);
+        }
+
+        public void start(DataContext ctx, Batch batch) {
+            batchStartsToArriveTimeInMs = System.currentTimeMillis();
+            processInfo.setStatus(ProcessInfo.Status.TRANSFERRING);
+        }
+
+        public void end(DataContext ctx, Batch batch, IStagedResource resource) {
+            long networkMillis = System.currentTimeMillis() - batchStartsToArriveTimeInMs;
+            processInfo.incrementTransferBatchCount();
+
+            DataContext loadCtx = new DataContext();
+            loadCtx.getContext().putAll(ctx.getContext());
+            BatchLoader batchLoader = newBatchLoader(loadCtx, batch, resource, networkMillis);
+
+            if (Constants.CHANNEL_CONFIG.equals(batch.getChannelId())) {
+                waitForLoads();
+                processInfo.setStatus(ProcessInfo.Status.LOADING);
+                try {
+                    batchLoader.load();
+                } finally {
+                    loaded(batchLoader);
+                }
+            } else {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    resource.setState(State.DONE);
+                    throw new org.jumpmind.exception.InterruptedException(e);
+                }
+
+                ChannelLoader channelLoader = channelLoaders.get(batch.getChannelId());
+                if (channelLoader == null) {
+                    channelLoader = new ChannelLoader();
+                    channelLoaders.put(batch.getChannelId(), channelLoader);
+                }
+
+                try {
+                    if (channelLoader.add(batchLoader)) {
+                        getParallelLoaderThreads().execute(channelLoader);
+                    }
+                } catch (RuntimeException ex) {
+                    channelLoader.remove(batchLoader);
+                    permits.release();
+                    resource.setState(State.DONE);
+                    throw ex;
+                }
+            }
+        }
+
+        /**
+         * Wait for the batches that have been handed to the loader threads so
+         * that all of their statuses have been recorded
+         */
+        public void finish() {
+            if (!finished) {
+                finished = true;
+                processInfo.setStatus(ProcessInfo.Status.LOADING);
+                waitForLoads();
+            }
+        }
+
+        /**
+         * Record the statuses of a batch as soon as its load completes so they
+         * are ready to be acknowledged. Batches on the same channel are
+         * recorded in the order they arrived.
+         */
+        protected synchronized void loaded(BatchLoader batchLoader) {
+            listener.getBatchesProcessed().addAll(batchLoader.listener.getBatchesProcessed());
+        }
+
+        /**
+         * @return the statuses of the batches that have finished loading so
+         *         far
+         */
+        public synchronized List<IncomingBatch> getBatchesLoaded() {
+            return new ArrayList<IncomingBatch>(listener.getBatchesProcessed());
+        }
+
+        protected void waitForLoads() {
+            permits.acquireUninterruptibly(parallelBatchCount);
+            permits.release(parallelBatchCount);
+        }
+
+        /**
+         * @return the first error that failed a batch on a loader thread
+         */
+        public synchronized Throwable getError() {
+            return error;
+        }
+
+        protected synchronized void recordError(Throwable ex) {
+            if (error == null) {
+                error = ex;
+            }
+        }
+
+        protected BatchLoader newBatchLoader(DataContext ctx, Batch batch,
+                IStagedResource resource, long networkMillis) {
+            return new BatchLoader(ctx, batch, resource, networkMillis);
+        }
+
+        /**
+         * Loads the batches for one channel one at a time. It is scheduled on
+         * a loader thread when a batch is added while it isn't running. Once
+         * a batch fails, the batches behind it are not loaded so that they are
+         * sent again in order.
+         */
+        class ChannelLoader implements Runnable {
+
+            private LinkedList<BatchLoader> queue = new LinkedList<BatchLoader>();
+
+            private boolean running = false;
+
+            private Throwable error;
+
+            synchronized boolean add(BatchLoader batchLoader) {
+                queue.add(batchLoader);
+                if (!running) {
+                    running = true;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+
+            synchronized void remove(BatchLoader batchLoader) {
+                queue.remove(batchLoader);
+                running = false;
+            }
+
+            synchronized BatchLoader next() {
+                BatchLoader batchLoader = queue.poll();
+                if (batchLoader == null) {
+                    running = false;
+                }
+                return batchLoader;
+            }
+
+            public void run() {
+                BatchLoader batchLoader = null;
+                while ((batchLoader = next()) != null) {
+                    try {
+                        if (error != null) {
+                            batchLoader.skip(error);
+                        } else {
+                            batchLoader.load();
+                        }
+                    } catch (Throwable ex) {
+                        error = ex;
+                        recordError(ex);
+                        log.error(String.format(
+                                "Failed to load batch %s on the %s channel.  The batches behind it on the channel will not be loaded",
+                                batchLoader.batch.getNodeBatchId(),
+                                batchLoader.batch.getChannelId()), ex);
+                    } finally {
+                        loaded(batchLoader);
+                        permits.release();
+                    }
+                }
+            }
+        }
+
+        class BatchLoader {
+
+            private DataContext ctx;
+
+            private Batch batch;
+
+            private IStagedResource resource;
+
+            private long networkMillis;
+
+            protected ManageIncomingBatchListener listener = new ManageIncomingBatchListener();
+
+            BatchLoader(DataContext ctx, Batch batch, IStagedResource resource, long networkMillis) {
+                this.ctx = ctx;
+                this.batch = batch;
+                this.resource = resource;
+                this.networkMillis = networkMillis;
+            }
+
+            void load() {
+                try {
+                    DataProcessor processor = new DataProcessor(new ProtocolDataReader(
+                            BatchType.LOAD, batch.getTargetNodeId(), resource), null, listener,
+                            "data load from stage") {
+                        @Override
+                        protected IDataWriter chooseDataWriter(Batch batch) {
+                            return buildDataWriter(processInfo, sourceNodeId,
+                                    batch.getChannelId(), batch.getBatchId());
+                        }
+                    };
+
+                    processor.process(ctx);
+                } finally {
+                    if (listener.currentBatch != null) {
+                        listener.currentBatch.setNetworkMillis(networkMillis);
+                        if (batch.isIgnored()) {
+                            listener.currentBatch.incrementIgnoreCount();
+                        }
+                    }
+                    resource.setState(State.DONE);
+                    processInfo.incrementLoadBatchCount();
+                }
+            }
+
+            void skip(Throwable cause) {
+                log.info("Not loading batch {} because an earlier batch on the {} channel failed: {}",
+                        new Object[] { batch.getNodeBatchId(), batch.getChannelId(),
+                                cause.getMessage() });
+                resource.setState(State.DONE);
             }
         }
     }
@@ -23,8 +23,10 @@ package org.jumpmind.symmetric.service.impl;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
 import java.sql.DataTruncation;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -55,6 +57,7 @@ import org.jumpmind.symmetric.io.data.CsvData;
 import org.jumpmind.symmetric.io.data.CsvUtils;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.reader.TableExtractDataReaderSource;
+import org.jumpmind.symmetric.job.IJobManager;
 import org.jumpmind.symmetric.job.PushHeartbeatListener;
 import org.jumpmind.symmetric.load.IReloadListener;
 import org.jumpmind.symmetric.model.Channel;
@@ -166,6 +169,11 @@ public class DataService extends AbstractService implements IDataService {
 
                                 transaction.commit();
 
+                                outgoingBatchesCommitted(targetNode.getNodeId());
+                                if (deleteAtClient) {
+                                    wakeupJob(ClusterConstants.ROUTE);
+                                }
+
                             } catch (Error ex) {
                                 if (transaction != null) {
                                     transaction.rollback();
@@ -423,6 +431,9 @@ public class DataService extends AbstractService implements IDataService {
                         engine.getStatisticManager().incrementNodesLoaded(1);
 
                         transaction.commit();
+
+                        outgoingBatchesCommitted(targetNode.getNodeId());
+                        wakeupJob(ClusterConstants.INITIAL_LOAD_EXTRACT);
                     } catch (Error ex) {
                         if (transaction != null) {
                             transaction.rollback();
@@ -852,6 +863,11 @@ public class DataService extends AbstractService implements IDataService {
             insertCreateEvent(transaction, targetNode, triggerHistory, routerId, isLoad, loadId,
                     createBy);
             transaction.commit();
+            if (isLoad) {
+                outgoingBatchesCommitted(targetNode.getNodeId());
+            } else {
+                wakeupJob(ClusterConstants.ROUTE);
+            }
         } catch (Error ex) {
             if (transaction != null) {
                 transaction.rollback();
@@ -901,6 +917,7 @@ public class DataService extends AbstractService implements IDataService {
             transaction = sqlTemplate.startSqlTransaction();
             dataId = insertData(transaction, data);
             transaction.commit();
+            wakeupJob(ClusterConstants.ROUTE);
             return dataId;
         } catch (Error ex) {
             if (transaction != null) {
@@ -937,6 +954,21 @@ public class DataService extends AbstractService implements IDataService {
         return id;
     }
 
+    /**
+     * Called after the transaction that inserted outgoing batches for a node
+     * has been committed so held pulls from the node are answered right away.
+     */
+    protected void outgoingBatchesCommitted(String nodeId) {
+        engine.getOutgoingBatchService().updatePendingBatchIndex(Collections.singleton(nodeId));
+    }
+
+    protected void wakeupJob(String clusterLockName) {
+        IJobManager jobManager = engine.getJobManager();
+        if (jobManager != null) {
+            jobManager.wakeup(clusterLockName);
+        }
+    }
+
     protected void insertDataEvent(ISqlTransaction transaction, DataEvent dataEvent) {
         this.insertDataEvent(transaction, dataEvent.getDataId(), dataEvent.getBatchId(),
                 dataEvent.getRouterId());
@@ -962,7 +994,21 @@ public class DataService extends AbstractService implements IDataService {
     }
 
     public void insertDataEvents(ISqlTransaction transaction, final List<DataEvent> events) {
-        if (events.size() > 0) {
+        if (events.size() > 0 && parameterService.is(ParameterConstants.ROUTING_BULK_INSERT_ENABLED)) {
+            Timestamp createTime = new Timestamp(System.currentTimeMillis());
+            List<Object[]> rows = new ArrayList<Object[]>(events.size());
+            for (DataEvent dataEvent : events) {
+                String routerId = dataEvent.getRouterId();
+                rows.add(new Object[] { dataEvent.getDataId(), dataEvent.getBatchId(),
+                        StringUtils.isBlank(routerId) ? Constants.UNKNOWN_ROUTER_ID : routerId,
+                        createTime });
+            }
+            symmetricDialect.insertRows(transaction,
+                    TableConstants.getTableName(tablePrefix, TableConstants.SYM_DATA_EVENT),
+                    new String[] { "data_id", "batch_id", "router_id", "create_time" },
+                    new int[] { Types.NUMERIC, Types.NUMERIC, Types.VARCHAR, Types.TIMESTAMP },
+                    rows);
+        } else if (events.size() > 0) {
             transaction.prepare(getSql("insertIntoDataEventSql"));
             for (DataEvent dataEvent : events) {
                 String routerId = dataEvent.getRouterId();
@@ -990,6 +1036,9 @@ public class DataService extends AbstractService implements IDataService {
                         data.getDataEventType(), routerId, isLoad, loadId, createBy, Status.NE);
             }
             transaction.commit();
+            for (Node node : nodes) {
+                outgoingBatchesCommitted(node.getNodeId());
+            }
         } catch (Error ex) {
             if (transaction != null) {
                 transaction.rollback();
@@ -1017,6 +1066,7 @@ public class DataService extends AbstractService implements IDataService {
             batchId = insertDataAndDataEventAndOutgoingBatch(transaction, data, nodeId, routerId,
                     isLoad, loadId, createBy, Status.NE);
             transaction.commit();
+            outgoingBatchesCommitted(nodeId);
             return batchId;
         } catch (Error ex) {
             if (transaction != null) {
@@ -1174,6 +1224,7 @@ public class DataService extends AbstractService implements IDataService {
                     insertSqlEvent(transaction, triggerHistory, trigger.getChannelId(), targetNode,
                             sql, false, -1, null);
                     transaction.commit();
+                    wakeupJob(ClusterConstants.ROUTE);
                     return "Successfully create SQL event for node " + targetNode.getNodeId();
                 } catch (Error ex) {
                     if (transaction != null) {
@@ -1231,6 +1282,10 @@ public class DataService extends AbstractService implements IDataService {
             }
 
             transaction.commit();
+
+            if (eventCount > 0) {
+                outgoingBatchesCommitted(targetNode.getNodeId());
+            }
         } catch (Error ex) {
             if (transaction != null) {
                 transaction.rollback();
@@ -1293,6 +1348,7 @@ public class DataService extends AbstractService implements IDataService {
                 }
             }
             transaction.commit();
+            wakeupJob(ClusterConstants.ROUTE);
         } catch (Error ex) {
             if (transaction != null) {
                 transaction.rollback();
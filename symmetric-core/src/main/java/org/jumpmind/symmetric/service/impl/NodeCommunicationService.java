@@ -36,6 +36,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.time.DateUtils;
 import org.jumpmind.db.sql.ISqlRowMapper;
@@ -68,6 +69,10 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
     
     private Map<CommunicationType, Set<String>> currentlyExecuting;
 
+    private Map<CommunicationType, NodeListCache> nodeListCache = new ConcurrentHashMap<CommunicationType, NodeListCache>();
+
+    private AtomicLong nodeListCacheVersion = new AtomicLong();
+
     public NodeCommunicationService(IClusterService clusterService, INodeService nodeService, IParameterService parameterService,
             ISymmetricDialect symmetricDialect) {
         super(parameterService, symmetricDialect);
@@ -119,42 +124,27 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
         List<NodeCommunication> communicationRows = new ArrayList<NodeCommunication>(
                 sqlTemplate.query(getSql("selectNodeCommunicationSql"),
                         new NodeCommunicationMapper(), communicationType.name()));
-        List<Node> nodesToCommunicateWith = null;
-        switch (communicationType) {
-            case PULL:
-            case FILE_PULL:
-                nodesToCommunicateWith = removeOfflineNodes(nodeService.findNodesToPull());
-                break;
-            case FILE_PUSH:
-            case PUSH:
-                nodesToCommunicateWith = removeOfflineNodes(nodeService.findNodesToPushTo());
-                break;
-            case OFFLN_PUSH:
-                nodesToCommunicateWith = getNodesToCommunicateWithOffline(CommunicationType.PUSH);
-                break;
-            case OFFLN_PULL:
-                nodesToCommunicateWith = getNodesToCommunicateWithOffline(CommunicationType.PULL);
-                break;
-            default:
-                nodesToCommunicateWith = new ArrayList<Node>(0);
-                break;
-        }
+        List<Node> nodesToCommunicateWith = getNodesToCommunicateWith(communicationType);
 
-        for (Node nodeToCommunicateWith : nodesToCommunicateWith) {
-            NodeCommunication comm = null;
-            for (NodeCommunication nodeCommunication : communicationRows) {
-                if (nodeCommunication.getNodeId().equals(nodeToCommunicateWith.getNodeId())) {
-                    comm = nodeCommunication;
-                    break;
-                }
+        Map<String, NodeCommunication> communicationRowsByNodeId = new HashMap<String, NodeCommunication>(
+                communicationRows.size() * 2);
+        for (NodeCommunication nodeCommunication : communicationRows) {
+            if (!communicationRowsByNodeId.containsKey(nodeCommunication.getNodeId())) {
+                communicationRowsByNodeId.put(nodeCommunication.getNodeId(), nodeCommunication);
             }
+        }
 
+        Set<String> nodeIdsToCommunicateWith = new HashSet<String>(nodesToCommunicateWith.size() * 2);
+        for (Node nodeToCommunicateWith : nodesToCommunicateWith) {
+            nodeIdsToCommunicateWith.add(nodeToCommunicateWith.getNodeId());
+            NodeCommunication comm = communicationRowsByNodeId.get(nodeToCommunicateWith.getNodeId());
             if (comm == null) {
                 comm = new NodeCommunication();
                 comm.setNodeId(nodeToCommunicateWith.getNodeId());
                 comm.setCommunicationType(communicationType);
                 save(comm);
                 communicationRows.add(comm);
+                communicationRowsByNodeId.put(comm.getNodeId(), comm);
             }
 
             comm.setNode(nodeToCommunicateWith);
@@ -163,16 +153,7 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
         Iterator<NodeCommunication> it = communicationRows.iterator();
         while (it.hasNext()) {
             NodeCommunication nodeCommunication = it.next();
-
-            Node node = null;
-            for (Node nodeToCommunicateWith : nodesToCommunicateWith) {
-                if (nodeCommunication.getNodeId().equals(nodeToCommunicateWith.getNodeId())) {
-                    node = nodeToCommunicateWith;
-                    break;
-                }
-            }
-
-            if (node == null) {
+            if (!nodeIdsToCommunicateWith.contains(nodeCommunication.getNodeId())) {
                 delete(nodeCommunication);
                 it.remove();
             }
@@ -181,20 +162,74 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
         return communicationRows;
     }
 
+    public void clearCache() {
+        nodeListCacheVersion.incrementAndGet();
+        nodeListCache.clear();
+    }
+
+    /**
+     * The list of nodes to communicate with is cached between job runs. It is
+     * refreshed when it times out, when parameters are re-read, when a node is
+     * saved or deleted through the {@link INodeService} or when
+     * {@link #clearCache()} is called, for example after node configuration is
+     * loaded.
+     */
+    protected List<Node> getNodesToCommunicateWith(CommunicationType communicationType) {
+        long cacheTimeoutInMs = parameterService
+                .getLong(ParameterConstants.CACHE_TIMEOUT_NODE_COMMUNICATION_IN_MS);
+        Date parametersCachedTime = parameterService.getLastTimeParameterWereCached();
+        long version = nodeListCacheVersion.get();
+        long nodeChangeCount = nodeService.getNodeChangeCount();
+        NodeListCache cache = nodeListCache.get(communicationType);
+        if (cache == null || cache.version != version
+                || cache.nodeChangeCount != nodeChangeCount
+                || System.currentTimeMillis() - cache.cacheTime >= cacheTimeoutInMs
+                || (parametersCachedTime != null && !parametersCachedTime
+                        .equals(cache.parametersCachedTime))) {
+            cache = new NodeListCache();
+            cache.version = version;
+            cache.nodeChangeCount = nodeChangeCount;
+            cache.parametersCachedTime = parametersCachedTime;
+            cache.cacheTime = System.currentTimeMillis();
+            cache.nodes = Collections.unmodifiableList(readNodesToCommunicateWith(communicationType));
+            if (cacheTimeoutInMs > 0) {
+                nodeListCache.put(communicationType, cache);
+            }
+        }
+        return cache.nodes;
+    }
+
+    protected List<Node> readNodesToCommunicateWith(CommunicationType communicationType) {
+        switch (communicationType) {
+            case PULL:
+            case FILE_PULL:
+                return removeOfflineNodes(nodeService.findNodesToPull());
+            case FILE_PUSH:
+            case PUSH:
+                return removeOfflineNodes(nodeService.findNodesToPushTo());
+            case OFFLN_PUSH:
+                return getNodesToCommunicateWithOffline(CommunicationType.PUSH);
+            case OFFLN_PULL:
+                return getNodesToCommunicateWithOffline(CommunicationType.PULL);
+            default:
+                return new ArrayList<Node>(0);
+        }
+    }
+
     protected List<Node> removeOfflineNodes(List<Node> nodes) {
         if (parameterService.is(ParameterConstants.NODE_OFFLINE)) {
             nodes.clear();
         } else {
-            List<DatabaseParameter> parms = parameterService.getDatabaseParametersFor(ParameterConstants.NODE_OFFLINE);
-            for (DatabaseParameter parm : parms) {
-                Iterator<Node> iter = nodes.iterator();
-                while (iter.hasNext()) {
-                    Node node = iter.next();
-                    if ((parm.getNodeGroupId().equals(ParameterConstants.ALL) || parm.getNodeGroupId().equals(node.getNodeGroupId()) &&
-                            (parm.getExternalId().equals(ParameterConstants.ALL) || parm.getExternalId().equals(node.getExternalId())))) {
-                        iter.remove();
+            NodeParameterIndex offlineNodes = new NodeParameterIndex(
+                    parameterService.getDatabaseParametersFor(ParameterConstants.NODE_OFFLINE));
+            if (!offlineNodes.isEmpty()) {
+                List<Node> onlineNodes = new ArrayList<Node>(nodes.size());
+                for (Node node : nodes) {
+                    if (!offlineNodes.matches(node)) {
+                        onlineNodes.add(node);
                     }
                 }
+                nodes = onlineNodes;
             }
         }
         return nodes;
@@ -212,9 +247,10 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
                 nodesToCommunicateWith.addAll(nodeService.findNodesToPull());
             }
         } else {
-            List<DatabaseParameter> parms = parameterService.getDatabaseParametersFor(ParameterConstants.NODE_OFFLINE);
-            nodesToCommunicateWith = new ArrayList<Node>(parms.size());
-            if (parms.size() > 0) {
+            NodeParameterIndex offlineNodes = new NodeParameterIndex(
+                    parameterService.getDatabaseParametersFor(ParameterConstants.NODE_OFFLINE));
+            nodesToCommunicateWith = new ArrayList<Node>();
+            if (!offlineNodes.isEmpty()) {
                 List<Node> sourceNodes = null;
                 if (communicationType.equals(CommunicationType.PUSH)) {
                     sourceNodes = nodeService.findTargetNodesFor(NodeGroupLinkAction.W);
@@ -223,13 +259,10 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
                     sourceNodes = nodeService.findSourceNodesFor(NodeGroupLinkAction.P);
                     sourceNodes.addAll(nodeService.findNodesToPull());
                 }
-                if (sourceNodes != null && sourceNodes.size() > 0) {
-                    for (DatabaseParameter parm : parms) {
-                        for (Node node : sourceNodes) {
-                            if ((parm.getNodeGroupId().equals(ParameterConstants.ALL) || parm.getNodeGroupId().equals(node.getNodeGroupId()) &&
-                                    (parm.getExternalId().equals(ParameterConstants.ALL) || parm.getExternalId().equals(node.getExternalId())))) {
-                                nodesToCommunicateWith.add(node);
-                            }
+                if (sourceNodes != null) {
+                    for (Node node : sourceNodes) {
+                        if (offlineNodes.matches(node)) {
+                            nodesToCommunicateWith.add(node);
                         }
                     }
                 }
@@ -503,4 +536,53 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
         }
     }
 
+    static class NodeListCache {
+        List<Node> nodes;
+        long cacheTime;
+        long version;
+        long nodeChangeCount;
+        Date parametersCachedTime;
+    }
+
+    /**
+     * Indexes node group and external id parameter settings, like
+     * {@link ParameterConstants#NODE_OFFLINE}, so that nodes can be matched
+     * against them without scanning every parameter.
+     */
+    static class NodeParameterIndex {
+
+        private boolean allNodes;
+
+        private Map<String, Set<String>> externalIdsByNodeGroupId = new HashMap<String, Set<String>>();
+
+        NodeParameterIndex(List<DatabaseParameter> parameters) {
+            for (DatabaseParameter parameter : parameters) {
+                if (parameter.getNodeGroupId().equals(ParameterConstants.ALL)) {
+                    allNodes = true;
+                } else {
+                    Set<String> externalIds = externalIdsByNodeGroupId.get(parameter.getNodeGroupId());
+                    if (externalIds == null) {
+                        externalIds = new HashSet<String>();
+                        externalIdsByNodeGroupId.put(parameter.getNodeGroupId(), externalIds);
+                    }
+                    externalIds.add(parameter.getExternalId());
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return !allNodes && externalIdsByNodeGroupId.isEmpty();
+        }
+
+        boolean matches(Node node) {
+            if (allNodes) {
+                return true;
+            }
+            Set<String> externalIds = externalIdsByNodeGroupId.get(node.getNodeGroupId());
+            return externalIds != null
+                    && (externalIds.contains(ParameterConstants.ALL) || externalIds.contains(node
+                            .getExternalId()));
+        }
+    }
+
 }
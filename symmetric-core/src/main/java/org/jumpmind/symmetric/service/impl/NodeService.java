@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.sql.ISqlRowMapper;
@@ -69,6 +70,8 @@ public class NodeService extends AbstractService implements INodeService {
 
     private long securityCacheTime;
 
+    private AtomicLong nodeChangeCount = new AtomicLong();
+
     private INodePasswordFilter nodePasswordFilter;
 
     private NodeHost nodeHostForCurrentNode = null;
@@ -244,6 +247,7 @@ public class NodeService extends AbstractService implements INodeService {
 
     public void deleteNode(String nodeId, boolean syncChange) {
         ISqlTransaction transaction = null;
+        nodeChangeCount.incrementAndGet();
         try {
             transaction = sqlTemplate.startSqlTransaction();
             if (!syncChange) {
@@ -328,6 +332,7 @@ public class NodeService extends AbstractService implements INodeService {
                             Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
                             Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.VARCHAR,
                             Types.VARCHAR, Types.VARCHAR });
+            nodeChangeCount.incrementAndGet();
         }
     }
 
@@ -344,6 +349,7 @@ public class NodeService extends AbstractService implements INodeService {
                         Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
                         Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.VARCHAR,
                         Types.VARCHAR, Types.VARCHAR }) == 1;
+        nodeChangeCount.incrementAndGet();
         return updated;
     }
 
@@ -391,6 +397,10 @@ public class NodeService extends AbstractService implements INodeService {
         return false;
     }
 
+    public long getNodeChangeCount() {
+        return nodeChangeCount.get();
+    }
+
     public void flushNodeAuthorizedCache() {
         securityCacheTime = 0;
     }
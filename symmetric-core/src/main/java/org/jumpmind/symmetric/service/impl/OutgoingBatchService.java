@@ -20,8 +20,10 @@
  */
 package org.jumpmind.symmetric.service.impl;
 
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -29,7 +31,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.sql.ISqlRowMapper;
@@ -38,8 +42,10 @@ import org.jumpmind.db.sql.Row;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.symmetric.common.Constants;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.ext.IOutgoingBatchFilter;
+import org.jumpmind.symmetric.ext.IOutgoingBatchReadyListener;
 import org.jumpmind.symmetric.model.Channel;
 import org.jumpmind.symmetric.model.NodeChannel;
 import org.jumpmind.symmetric.model.NodeGroupChannelWindow;
@@ -65,6 +71,8 @@ import org.jumpmind.util.FormatUtils;
  */
 public class OutgoingBatchService extends AbstractService implements IOutgoingBatchService {
 
+    private static final int MAX_BATCH_IDS_PER_STATEMENT = 500;
+
     private INodeService nodeService;
 
     private IConfigurationService configurationService;
@@ -75,6 +83,16 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
     
     private IExtensionService extensionService;
 
+    private volatile Set<String> nodesWithPendingBatches;
+
+    private long pendingBatchVersion;
+
+    private long pendingBatchVersionCheckTime;
+
+    private long pendingBatchIndexTime;
+
+    private long pendingBatchIndexChanges;
+
     public OutgoingBatchService(IParameterService parameterService,
             ISymmetricDialect symmetricDialect, INodeService nodeService,
             IConfigurationService configurationService, ISequenceService sequenceService,
@@ -146,6 +164,9 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
         log.info("Copying outgoing batches for channel '{}' from node '{}' to node '{}' starting at {}", new Object[] {channelId, fromNodeId, toNodeId, startBatchId});
         sqlTemplate.update(getSql("deleteOutgoingBatchesForNodeSql"), toNodeId, channelId, fromNodeId, channelId);
         int count = sqlTemplate.update(getSql("copyOutgoingBatchesSql"), toNodeId, fromNodeId, channelId, startBatchId);
+        if (count > 0) {
+            updatePendingBatchIndex(Collections.singleton(toNodeId));
+        }
         log.info("Copied {} outgoing batches for channel '{}' from node '{}' to node '{}'", new Object[] {count, channelId, fromNodeId, toNodeId});
     }
 
@@ -170,6 +191,9 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
             transaction = sqlTemplate.startSqlTransaction();
             updateOutgoingBatch(transaction, outgoingBatch);
             transaction.commit();
+            if (outgoingBatch.getStatus() == Status.OK) {
+                removeNodeIfNoPendingBatches(outgoingBatch.getNodeId());
+            }
         } catch (Error ex) {
             if (transaction != null) {
                 transaction.rollback();
@@ -186,6 +210,7 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
     }
 
     public void updateOutgoingBatch(ISqlTransaction transaction, OutgoingBatch outgoingBatch) {
+        addNodeWithPendingBatches(outgoingBatch);
         outgoingBatch.setLastUpdatedTime(new Date());
         outgoingBatch.setLastUpdatedHostName(clusterService.getServerId());
         transaction.prepareAndExecute(
@@ -214,12 +239,66 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
                         Types.VARCHAR });
     }
 
+    public int updateCommonOutgoingBatches(List<OutgoingBatch> batches) {
+        OutgoingBatch outgoingBatch = batches.get(0);
+        Date now = new Date();
+        for (OutgoingBatch batch : batches) {
+            addNodeWithPendingBatches(batch);
+            batch.setLastUpdatedTime(now);
+            batch.setLastUpdatedHostName(clusterService.getServerId());
+        }
+        return sqlTemplate.update(
+                getSql("updateCommonOutgoingBatchSql"),
+                new Object[] { outgoingBatch.getStatus().name(), outgoingBatch.getLoadId(),
+                        outgoingBatch.isExtractJobFlag() ? 1 : 0,
+                        outgoingBatch.isLoadFlag() ? 1 : 0, outgoingBatch.getDataEventCount(),
+                        outgoingBatch.getReloadEventCount(), outgoingBatch.getInsertEventCount(),
+                        outgoingBatch.getUpdateEventCount(), outgoingBatch.getDeleteEventCount(),
+                        outgoingBatch.getOtherEventCount(), outgoingBatch.getRouterMillis(),
+                        outgoingBatch.getLastUpdatedHostName(), outgoingBatch.getLastUpdatedTime(),
+                        outgoingBatch.getBatchId(), Status.RT.name() }, new int[] { Types.CHAR,
+                        Types.BIGINT, Types.NUMERIC, Types.NUMERIC, Types.BIGINT, Types.BIGINT,
+                        Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
+                        Types.VARCHAR, Types.TIMESTAMP, symmetricDialect.getSqlTypeForIds(),
+                        Types.CHAR });
+    }
+
+    public int updateOutgoingBatchesAsOk(String nodeId, String channelId, List<Long> batchIds) {
+        int count = 0;
+        for (int i = 0; i < batchIds.size(); i += MAX_BATCH_IDS_PER_STATEMENT) {
+            List<Long> ids = batchIds.subList(i,
+                    Math.min(i + MAX_BATCH_IDS_PER_STATEMENT, batchIds.size()));
+            Object[] args = new Object[ids.size() + 4];
+            int[] types = new int[args.length];
+            args[0] = clusterService.getServerId();
+            types[0] = Types.VARCHAR;
+            args[1] = new Date();
+            types[1] = Types.TIMESTAMP;
+            args[2] = nodeId;
+            types[2] = Types.VARCHAR;
+            args[3] = channelId;
+            types[3] = Types.VARCHAR;
+            for (int j = 0; j < ids.size(); j++) {
+                args[j + 4] = ids.get(j);
+                types[j + 4] = symmetricDialect.getSqlTypeForIds();
+            }
+            count += sqlTemplate.update(
+                    getSql("updateOutgoingBatchesOkSql").replace(":BATCH_IDS",
+                            buildInList(ids.size())), args, types);
+        }
+        removeNodeIfNoPendingBatches(nodeId);
+        return count;
+    }
+
     public void insertOutgoingBatch(final OutgoingBatch outgoingBatch) {
         ISqlTransaction transaction = null;
         try {
             transaction = sqlTemplate.startSqlTransaction();
             insertOutgoingBatch(transaction, outgoingBatch);
             transaction.commit();
+            if (outgoingBatch.getStatus() != Status.RT && outgoingBatch.getStatus() != Status.OK) {
+                updatePendingBatchIndex(Collections.singleton(outgoingBatch.getNodeId()));
+            }
         } catch (Error ex) {
             if (transaction != null) {
                 transaction.rollback();
@@ -236,6 +315,7 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
     }
 
     public void insertOutgoingBatch(ISqlTransaction transaction, OutgoingBatch outgoingBatch) {
+        addNodeWithPendingBatches(outgoingBatch);
         outgoingBatch.setLastUpdatedHostName(clusterService.getServerId());
 
         long batchId = outgoingBatch.getBatchId();
@@ -251,6 +331,31 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
         outgoingBatch.setBatchId(batchId);
     }
 
+    public void insertOutgoingBatches(ISqlTransaction transaction,
+            List<OutgoingBatch> outgoingBatches) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<Object[]>(outgoingBatches.size());
+        for (OutgoingBatch outgoingBatch : outgoingBatches) {
+            addNodeWithPendingBatches(outgoingBatch);
+            outgoingBatch.setLastUpdatedHostName(clusterService.getServerId());
+            rows.add(new Object[] { outgoingBatch.getBatchId(), outgoingBatch.getNodeId(),
+                    outgoingBatch.getChannelId(), outgoingBatch.getStatus().name(),
+                    outgoingBatch.getLoadId(), outgoingBatch.isExtractJobFlag() ? 1 : 0,
+                    outgoingBatch.isLoadFlag() ? 1 : 0, outgoingBatch.isCommonFlag() ? 1 : 0,
+                    outgoingBatch.getReloadEventCount(), outgoingBatch.getOtherEventCount(),
+                    outgoingBatch.getLastUpdatedHostName(), now, now, outgoingBatch.getCreateBy() });
+        }
+        int idType = symmetricDialect.getSqlTypeForIds();
+        symmetricDialect.insertRows(transaction, TableConstants.getTableName(tablePrefix,
+                TableConstants.SYM_OUTGOING_BATCH), new String[] { "batch_id", "node_id",
+                "channel_id", "status", "load_id", "extract_job_flag", "load_flag", "common_flag",
+                "reload_event_count", "other_event_count", "last_update_hostname",
+                "last_update_time", "create_time", "create_by" }, new int[] { idType,
+                Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, idType, Types.INTEGER, Types.INTEGER,
+                Types.INTEGER, Types.NUMERIC, Types.NUMERIC, Types.VARCHAR, Types.TIMESTAMP,
+                Types.TIMESTAMP, Types.VARCHAR }, rows);
+    }
+
     public OutgoingBatch findOutgoingBatch(long batchId, String nodeId) {
         List<OutgoingBatch> list = null;
         if (StringUtils.isNotBlank(nodeId)) {
@@ -275,6 +380,40 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
         }
     }
 
+    public List<OutgoingBatch> findOutgoingBatches(String nodeId, List<Long> batchIds) {
+        List<OutgoingBatch> list = new ArrayList<OutgoingBatch>(batchIds.size());
+        for (int i = 0; i < batchIds.size(); i += MAX_BATCH_IDS_PER_STATEMENT) {
+            List<Long> ids = batchIds.subList(i,
+                    Math.min(i + MAX_BATCH_IDS_PER_STATEMENT, batchIds.size()));
+            Object[] args = new Object[ids.size() + 1];
+            int[] types = new int[args.length];
+            args[0] = nodeId;
+            types[0] = Types.VARCHAR;
+            for (int j = 0; j < ids.size(); j++) {
+                args[j + 1] = ids.get(j);
+                types[j + 1] = symmetricDialect.getSqlTypeForIds();
+            }
+            List<OutgoingBatch> batches = sqlTemplate.query(
+                    getSql("selectOutgoingBatchPrefixSql", "findOutgoingBatchesSql").replace(
+                            ":BATCH_IDS", buildInList(ids.size())), new OutgoingBatchMapper(true),
+                    args, types);
+            for (OutgoingBatch batch : batches) {
+                if (batch != null) {
+                    list.add(batch);
+                }
+            }
+        }
+        return list;
+    }
+
+    protected String buildInList(int count) {
+        StringBuilder inList = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            inList.append(i > 0 ? ",?" : "?");
+        }
+        return inList.toString();
+    }
+
     public int countOutgoingBatchesInError() {
         return sqlTemplate.queryForInt(getSql("countOutgoingBatchesErrorsSql"));
     }
@@ -350,6 +489,9 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
      * order.
      */
     public OutgoingBatches getOutgoingBatches(String nodeId, boolean includeDisabledChannels) {
+        if (!includeDisabledChannels && !hasPendingBatches(nodeId)) {
+            return new OutgoingBatches();
+        }
         long ts = System.currentTimeMillis();
         final int maxNumberOfBatchesToSelect = parameterService.getInt(
                 ParameterConstants.OUTGOING_BATCH_MAX_BATCHES_TO_SELECT, 1000);
@@ -398,6 +540,123 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
         return batches;
     }
 
+    public void updatePendingBatchIndex(Collection<String> nodeIds) {
+        if (parameterService.is(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_ENABLED)) {
+            synchronized (this) {
+                if (nodesWithPendingBatches != null) {
+                    nodesWithPendingBatches.addAll(nodeIds);
+                }
+                pendingBatchIndexChanges++;
+            }
+            if (parameterService.is(ParameterConstants.CLUSTER_LOCKING_ENABLED)
+                    && nodeIds.size() > 0) {
+                /*
+                 * Move the shared version after the batches are committed so
+                 * the other nodes in the cluster rebuild their index
+                 */
+                sequenceService.nextVal(Constants.SEQUENCE_OUTGOING_BATCH_PENDING);
+            }
+        }
+
+        if (nodeIds.size() > 0) {
+            for (IOutgoingBatchReadyListener listener : extensionService
+                    .getExtensionPointList(IOutgoingBatchReadyListener.class)) {
+                try {
+                    listener.outgoingBatchesReady(nodeIds);
+                } catch (RuntimeException ex) {
+                    log.warn("Outgoing batch ready listener failed", ex);
+                }
+            }
+        }
+    }
+
+    protected void addNodeWithPendingBatches(OutgoingBatch outgoingBatch) {
+        Set<String> nodeIds = nodesWithPendingBatches;
+        if (nodeIds != null && outgoingBatch.getStatus() != Status.OK
+                && outgoingBatch.getStatus() != Status.RT
+                && !nodeIds.contains(outgoingBatch.getNodeId())) {
+            synchronized (this) {
+                if (nodesWithPendingBatches != null) {
+                    nodesWithPendingBatches.add(outgoingBatch.getNodeId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a node from the index of nodes with outgoing batches once its
+     * batches have been acknowledged. The node is kept if its index entry was
+     * added again while its batches were being counted.
+     */
+    protected void removeNodeIfNoPendingBatches(String nodeId) {
+        Set<String> nodeIds = nodesWithPendingBatches;
+        if (nodeIds != null && nodeIds.contains(nodeId)) {
+            long changes;
+            synchronized (this) {
+                changes = pendingBatchIndexChanges;
+            }
+            int count = sqlTemplate.queryForInt(getSql("countPendingBatchesForNodeSql"), nodeId,
+                    OutgoingBatch.Status.RQ.name(), OutgoingBatch.Status.NE.name(),
+                    OutgoingBatch.Status.QY.name(), OutgoingBatch.Status.SE.name(),
+                    OutgoingBatch.Status.LD.name(), OutgoingBatch.Status.ER.name(),
+                    OutgoingBatch.Status.IG.name());
+            if (count == 0) {
+                synchronized (this) {
+                    if (nodesWithPendingBatches == nodeIds && changes == pendingBatchIndexChanges) {
+                        nodeIds.remove(nodeId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the index of nodes with outgoing batches. When cluster locking is
+     * enabled, the index is rebuilt when the shared pending batch version has
+     * moved, so batches created by other nodes in the cluster are picked up.
+     */
+    protected boolean hasPendingBatches(String nodeId) {
+        if (!parameterService.is(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_ENABLED)) {
+            nodesWithPendingBatches = null;
+            return true;
+        }
+        return getNodesWithPendingBatches().contains(nodeId);
+    }
+
+    protected synchronized Set<String> getNodesWithPendingBatches() {
+        long now = System.currentTimeMillis();
+        boolean rebuild = nodesWithPendingBatches == null
+                || now - pendingBatchIndexTime >= parameterService
+                        .getLong(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_MAX_AGE_MS);
+        boolean clustered = parameterService.is(ParameterConstants.CLUSTER_LOCKING_ENABLED);
+        if (!rebuild
+                && clustered
+                && now - pendingBatchVersionCheckTime >= parameterService
+                        .getLong(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_VERSION_CHECK_MS)) {
+            pendingBatchVersionCheckTime = now;
+            rebuild = sequenceService.currVal(Constants.SEQUENCE_OUTGOING_BATCH_PENDING) != pendingBatchVersion;
+        }
+
+        if (rebuild) {
+            long version = clustered ? sequenceService
+                    .currVal(Constants.SEQUENCE_OUTGOING_BATCH_PENDING) : 0;
+            Set<String> nodeIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            nodeIds.addAll(sqlTemplate.query(getSql("selectNodesWithPendingBatchesSql"),
+                    new StringMapper(), OutgoingBatch.Status.RQ.name(),
+                    OutgoingBatch.Status.NE.name(), OutgoingBatch.Status.QY.name(),
+                    OutgoingBatch.Status.SE.name(), OutgoingBatch.Status.LD.name(),
+                    OutgoingBatch.Status.ER.name(), OutgoingBatch.Status.IG.name()));
+            nodesWithPendingBatches = nodeIds;
+            pendingBatchVersion = version;
+            pendingBatchIndexTime = now;
+            pendingBatchVersionCheckTime = now;
+            pendingBatchIndexChanges++;
+            log.debug("Rebuilt the index of {} nodes with outgoing batches at version {}",
+                    nodeIds.size(), version);
+        }
+        return nodesWithPendingBatches;
+    }
+
     public List<OutgoingBatch> getBatchesForChannelWindows(OutgoingBatches batches,
             String targetNodeId, NodeChannel channel, List<NodeGroupChannelWindow> windows) {
         List<OutgoingBatch> keeping = new ArrayList<OutgoingBatch>();
@@ -59,10 +59,30 @@ public class OutgoingBatchServiceSqlMap extends AbstractSqlMap {
                         + "  load_millis=?, extract_millis=?, sql_state=?, sql_code=?, sql_message=?,                                       "
                         + "  failed_data_id=?, last_update_hostname=?, last_update_time=? where batch_id=? and node_id=?                    ");
 
+        putSql("updateCommonOutgoingBatchSql",
+                ""
+                        + "update $(outgoing_batch) set status=?, load_id=?, extract_job_flag=?, load_flag=?, data_event_count=?,   "
+                        + "  reload_event_count=?, insert_event_count=?, update_event_count=?, delete_event_count=?, other_event_count=?,   "
+                        + "  router_millis=?, last_update_hostname=?, last_update_time=?                                                   "
+                        + "  where batch_id=? and common_flag=1 and status=?                                                              ");
+
         putSql("findOutgoingBatchSql", "where batch_id=? and node_id=?  ");
 
         putSql("findOutgoingBatchByIdOnlySql", "where batch_id=? ");
 
+        putSql("selectNodesWithPendingBatchesSql", ""
+                + "select distinct node_id from $(outgoing_batch) where status in (?, ?, ?, ?, ?, ?, ?)   ");
+
+        putSql("countPendingBatchesForNodeSql", ""
+                + "select count(*) from $(outgoing_batch) where node_id=? and status in (?, ?, ?, ?, ?, ?, ?)   ");
+
+        putSql("findOutgoingBatchesSql", "where node_id=? and batch_id in (:BATCH_IDS) ");
+
+        putSql("updateOutgoingBatchesOkSql",
+                ""
+                        + "update $(outgoing_batch) set status='OK', error_flag=0, sql_state=null, sql_code=0, sql_message=null,   "
+                        + "  last_update_hostname=?, last_update_time=? where node_id=? and channel_id=? and batch_id in (:BATCH_IDS)   ");
+
         putSql("selectOutgoingBatchSql", ""
                 + "where node_id = ? and status in (?, ?, ?, ?, ?, ?, ?) order by batch_id asc   ");
 
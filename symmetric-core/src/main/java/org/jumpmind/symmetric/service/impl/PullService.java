@@ -52,6 +52,12 @@ import org.jumpmind.symmetric.transport.OfflineException;
  */
 public class PullService extends AbstractOfflineDetectorService implements IPullService, INodeCommunicationExecutor {
 
+    /*
+     * Bounds how long a long poll session keeps the pull thread so other nodes
+     * sharing the pull thread pool get their turn
+     */
+    private static final int MAX_LONG_POLLS_PER_SESSION = 3;
+
     private INodeService nodeService;
 
     private IRegistrationService registrationService;
@@ -120,13 +126,20 @@ public class PullService extends AbstractOfflineDetectorService implements IPull
                 !parameterService.isRegistrationServer()) {
                 int pullCount = 0;
                 long batchesProcessedCount = 0;
+                boolean longPoll = parameterService.is(ParameterConstants.PULL_LONG_POLL_ENABLED);
+                long longPollTimeoutMs = parameterService.getLong(
+                        ParameterConstants.PULL_LONG_POLL_TIMEOUT_MS, 60000);
+                long maxLongPollSessionMs = longPollTimeoutMs * MAX_LONG_POLLS_PER_SESSION;
+                long sessionStartTime = System.currentTimeMillis();
+                boolean repull = false;
                 do {
                     batchesProcessedCount = status.getBatchesProcessed();
                     pullCount++;
                     log.debug("Pull requested for {}", node.toString());
-                    if (pullCount > 1) {
+                    if (pullCount > 1 && nodeService.isDataLoadStarted()) {
                         log.info("Immediate pull requested while in reload mode");
                     }
+                    long pullStartTime = System.currentTimeMillis();
                  
                     try {
                     dataLoaderService.loadDataFromPull(node, status);
@@ -166,8 +179,21 @@ public class PullService extends AbstractOfflineDetectorService implements IPull
                      * load so that the initial load completes as quickly as
                      * possible.
                      */
-                } while (nodeService.isDataLoadStarted() && !status.failed()
-                        && status.getBatchesProcessed() > batchesProcessedCount);
+                    repull = nodeService.isDataLoadStarted() && !status.failed()
+                            && status.getBatchesProcessed() > batchesProcessedCount;
+                    /*
+                     * With long polling, re-pull immediately if data was
+                     * received or if the remote node held the pull open. A pull
+                     * that came back quickly with nothing means the remote node
+                     * doesn't hold pulls, so wait for the next run of the job.
+                     */
+                    long now = System.currentTimeMillis();
+                    if (longPoll && !repull && !status.failed()
+                            && now - sessionStartTime < maxLongPollSessionMs) {
+                        repull = status.getBatchesProcessed() > batchesProcessedCount
+                                || now - pullStartTime >= longPollTimeoutMs / 2;
+                    }
+                } while (repull);
            
         } else {
             log.warn("Cannot pull node '{}' in the group '{}'.  The sync url is blank",
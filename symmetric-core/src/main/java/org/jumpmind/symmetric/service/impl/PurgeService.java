@@ -28,12 +28,22 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.time.DateUtils;
 import org.jumpmind.db.platform.DatabaseNamesConstants;
 import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.Row;
+import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.ExtractRequest;
 import org.jumpmind.symmetric.model.IncomingBatch;
@@ -166,6 +176,7 @@ public class PurgeService extends AbstractService implements IPurgeService {
     }
 
     private long purgeDataRows(final Calendar time) {
+        purgeDataPartitions(time.getTime());
         log.info("Getting range for data");
         long[] minMax = queryForMinMax(getSql("selectDataRangeSql"), new Object[0]);
         int maxNumOfDataIdsToPurgeInTx = parameterService
@@ -180,6 +191,57 @@ public class PurgeService extends AbstractService implements IPurgeService {
 
     }
 
+    /*
+     * When the data table is range partitioned by data_id, drop the partitions
+     * that hold only data that is older than the retention time and that is no
+     * longer needed by an unsent batch or a data gap. Then make sure partitions
+     * exist ahead of the current data_id.
+     */
+    protected void purgeDataPartitions(Date retentionTime) {
+        long partitionSize = parameterService.getLong(ParameterConstants.PURGE_DATA_PARTITION_SIZE);
+        if (partitionSize <= 0 || !symmetricDialect.supportsDataPartitioning()) {
+            return;
+        }
+
+        Map<String, long[]> partitions = symmetricDialect.getDataPartitions();
+        if (partitions.size() == 0) {
+            log.warn("The {} parameter is set, but the data table is not partitioned",
+                    ParameterConstants.PURGE_DATA_PARTITION_SIZE);
+            return;
+        }
+
+        long minNeededDataId = sqlTemplate.queryForLong(getSql("selectMinNeededDataIdSql"),
+                OutgoingBatch.Status.OK.name());
+        long maxEndId = 0;
+        for (Map.Entry<String, long[]> partition : partitions.entrySet()) {
+            long startId = partition.getValue()[0];
+            long endId = partition.getValue()[1];
+            maxEndId = Math.max(maxEndId, endId);
+            if (endId <= minNeededDataId) {
+                Date lastCreateTime = sqlTemplate.queryForObject(
+                        getSql("selectLastCreateTimeInRangeSql"), Date.class, startId, endId - 1);
+                if (lastCreateTime == null || lastCreateTime.before(retentionTime)) {
+                    log.info("Dropping data partition {} which holds data ids {} through {}",
+                            new Object[] { partition.getKey(), startId, endId - 1 });
+                    symmetricDialect.dropDataPartition(partition.getKey());
+                }
+            }
+        }
+
+        long createUpToId = sqlTemplate.queryForLong(getSql("selectMaxDataIdSql"))
+                + partitionSize
+                * parameterService.getInt(ParameterConstants.PURGE_DATA_PARTITION_AHEAD_COUNT);
+        while (maxEndId <= createUpToId) {
+            String partitionName = String.format("%s_p%d", TableConstants.getTableName(
+                    getTablePrefix(), TableConstants.SYM_DATA), maxEndId);
+            log.info("Creating data partition {} for data ids {} through {}", new Object[] {
+                    partitionName, maxEndId, maxEndId + partitionSize - 1 });
+            symmetricDialect.createDataPartition(partitionName, maxEndId, maxEndId
+                    + partitionSize);
+            maxEndId += partitionSize;
+        }
+    }
+
     private long[] queryForMinMax(String sql, Object... params) {
         long[] minMax = sqlTemplate.queryForObject(sql, new ISqlRowMapper<long[]>() {
             public long[] mapRow(Row rs) {
@@ -218,71 +280,126 @@ public class PurgeService extends AbstractService implements IPurgeService {
         return count;
     }
 
-    private int purgeByMinMax(long[] minMax, MinMaxDeleteSql identifier, Date retentionTime,
-            int maxNumtoPurgeinTx) {
-        long minId = minMax[0];
-        long purgeUpToId = minMax[1];
-        long ts = System.currentTimeMillis();
-        int totalCount = 0;
-        int totalDeleteStmts = 0;
-        int idSqlType = symmetricDialect.getSqlTypeForIds();
-        Timestamp cutoffTime = new Timestamp(retentionTime.getTime());
+    protected int purgeByMinMax(long[] minMax, final MinMaxDeleteSql identifier,
+            Date retentionTime, int maxNumtoPurgeinTx) {
+        final PurgeRange range = new PurgeRange(minMax[0], minMax[1], maxNumtoPurgeinTx,
+                parameterService.getLong(ParameterConstants.PURGE_TARGET_ROWS_PER_STATEMENT),
+                parameterService.getLong(ParameterConstants.PURGE_TARGET_STATEMENT_TIME_MS));
+        final Timestamp cutoffTime = new Timestamp(retentionTime.getTime());
+        int threadCount = parameterService.getInt(ParameterConstants.PURGE_THREAD_COUNT, 1);
         log.info("About to purge {}", identifier.toString().toLowerCase());
-        
-        while (minId <= purgeUpToId) {
-            totalDeleteStmts++;
-            long maxId = minId + maxNumtoPurgeinTx;
-            if (maxId > purgeUpToId) {
-                maxId = purgeUpToId;
-            }
 
-            String deleteSql = null;
-            Object[] args = null;
-            int[] argTypes = null;
-
-            switch (identifier) {
-                case DATA:
-                    deleteSql = getSql("deleteDataSql");
-                    args = new Object[] { minId, maxId, cutoffTime, minId, maxId, minId, maxId,
-                            OutgoingBatch.Status.OK.name() };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP, 
-                            idSqlType, idSqlType, idSqlType, idSqlType, Types.VARCHAR};
-                    break;
-                case DATA_EVENT:
-                    deleteSql = getSql("deleteDataEventSql");
-                    args = new Object[] { minId, maxId, OutgoingBatch.Status.OK.name(), minId,
-                            maxId };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.VARCHAR, idSqlType, idSqlType};
-
-                    break;
-                case OUTGOING_BATCH:
-                    deleteSql = getSql("deleteOutgoingBatchSql");
-                    args = new Object[] { OutgoingBatch.Status.OK.name(), minId, maxId, minId,
-                            maxId };
-                    argTypes = new int[] {Types.VARCHAR, idSqlType, idSqlType, idSqlType, idSqlType};
-
-                    break;
-                case STRANDED_DATA:
-                    deleteSql = getSql("deleteStrandedData");
-                    args = new Object[] { minId, maxId, cutoffTime, minId, maxId };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP, idSqlType, idSqlType};
-                    break;
+        int totalCount = 0;
+        if (threadCount <= 1) {
+            totalCount = purgeRange(range, identifier, cutoffTime);
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                    new ThreadFactory() {
+                        final AtomicInteger threadNumber = new AtomicInteger(1);
+                        final String namePrefix = parameterService.getEngineName()
+                                .toLowerCase() + "-purge-";
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r);
+                            t.setName(namePrefix + threadNumber.getAndIncrement());
+                            if (t.isDaemon()) {
+                                t.setDaemon(false);
+                            }
+                            if (t.getPriority() != Thread.NORM_PRIORITY) {
+                                t.setPriority(Thread.NORM_PRIORITY);
+                            }
+                            return t;
+                        }
+                    });
+            try {
+                List<Future<Integer>> futures = new ArrayList<Future<Integer>>(threadCount);
+                for (int i = 0; i < threadCount; i++) {
+                    futures.add(executor.submit(new Callable<Integer>() {
+                        public Integer call() {
+                            return purgeRange(range, identifier, cutoffTime);
+                        }
+                    }));
+                }
+                for (Future<Integer> future : futures) {
+                    totalCount += future.get();
+                }
+            } catch (InterruptedException ex) {
+                range.cancel();
+                throw new SymmetricException(ex);
+            } catch (ExecutionException ex) {
+                range.cancel();
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                } else {
+                    throw new SymmetricException(ex.getCause());
+                }
+            } finally {
+                executor.shutdown();
             }
+        }
+        log.info("Done purging {} of {} rows using {} statements", new Object[] { totalCount,
+                identifier.toString().toLowerCase(), range.getStatementCount() });
+        return totalCount;
+    }
 
-            log.debug("Running the following statement: {} with the following arguments: {}", deleteSql, Arrays.toString(args));
-            int count = sqlTemplate.update(deleteSql, args, argTypes);
-            log.debug("Deleted {} rows", count);
-            totalCount += count;
+    private int purgeRange(PurgeRange range, MinMaxDeleteSql identifier, Timestamp cutoffTime) {
+        int totalCount = 0;
+        int idSqlType = symmetricDialect.getSqlTypeForIds();
+        long[] ids = null;
+        try {
+            while ((ids = range.next()) != null) {
+                long minId = ids[0];
+                long maxId = ids[1];
+
+                String deleteSql = null;
+                Object[] args = null;
+                int[] argTypes = null;
+
+                switch (identifier) {
+                    case DATA:
+                        deleteSql = getSql("deleteDataSql");
+                        args = new Object[] { minId, maxId, cutoffTime, minId, maxId, minId, maxId,
+                                OutgoingBatch.Status.OK.name() };
+                        argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP, 
+                                idSqlType, idSqlType, idSqlType, idSqlType, Types.VARCHAR};
+                        break;
+                    case DATA_EVENT:
+                        deleteSql = getSql("deleteDataEventSql");
+                        args = new Object[] { minId, maxId, OutgoingBatch.Status.OK.name(), minId,
+                                maxId };
+                        argTypes = new int[] { idSqlType, idSqlType, Types.VARCHAR, idSqlType, idSqlType};
+
+                        break;
+                    case OUTGOING_BATCH:
+                        deleteSql = getSql("deleteOutgoingBatchSql");
+                        args = new Object[] { OutgoingBatch.Status.OK.name(), minId, maxId, minId,
+                                maxId };
+                        argTypes = new int[] {Types.VARCHAR, idSqlType, idSqlType, idSqlType, idSqlType};
+
+                        break;
+                    case STRANDED_DATA:
+                        deleteSql = getSql("deleteStrandedData");
+                        args = new Object[] { minId, maxId, cutoffTime, minId, maxId };
+                        argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP, idSqlType, idSqlType};
+                        break;
+                }
 
-            if (totalCount > 0
-                    && (System.currentTimeMillis() - ts > DateUtils.MILLIS_PER_MINUTE * 5)) {
-                log.info("Purged {} of {} rows so far using {} statements", new Object[] {
-                        totalCount, identifier.toString().toLowerCase(), totalDeleteStmts });
-                ts = System.currentTimeMillis();
+                log.debug("Running the following statement: {} with the following arguments: {}", deleteSql, Arrays.toString(args));
+                long ts = System.currentTimeMillis();
+                int count = sqlTemplate.update(deleteSql, args, argTypes);
+                log.debug("Deleted {} rows", count);
+                totalCount += count;
+
+                if (range.completed(count, System.currentTimeMillis() - ts)) {
+                    log.info("Purged {} of {} rows so far using {} statements", new Object[] {
+                            range.getTotalCount(), identifier.toString().toLowerCase(),
+                            range.getStatementCount() });
+                }
             }
-            minId = maxId + 1;
+        } catch (RuntimeException ex) {
+            range.cancel();
+            throw ex;
         }
-        log.info("Done purging {} of {} rows", totalCount, identifier.toString().toLowerCase());
         return totalCount;
     }
 
@@ -424,6 +541,89 @@ public class PurgeService extends AbstractService implements IPurgeService {
         }
     }
 
+    /**
+     * Hands out consecutive id ranges to one or more purge threads. When a
+     * target number of rows or a target statement time is set, the width of
+     * the next range is adjusted after each statement to approach the target.
+     */
+    static class PurgeRange {
+
+        private long nextId;
+
+        private long lastId;
+
+        private long width;
+
+        private long targetRows;
+
+        private long targetMillis;
+
+        private int totalCount;
+
+        private int statementCount;
+
+        private long lastLogTime = System.currentTimeMillis();
+
+        private boolean cancelled;
+
+        public PurgeRange(long firstId, long lastId, long width, long targetRows,
+                long targetMillis) {
+            this.nextId = firstId;
+            this.lastId = lastId;
+            this.width = Math.max(width, 1);
+            this.targetRows = targetRows;
+            this.targetMillis = targetMillis;
+        }
+
+        public synchronized long[] next() {
+            if (cancelled || nextId > lastId) {
+                return null;
+            }
+            long minId = nextId;
+            long maxId = Math.min(minId + width, lastId);
+            nextId = maxId + 1;
+            return new long[] { minId, maxId };
+        }
+
+        /**
+         * @return true when it is time to log progress
+         */
+        public synchronized boolean completed(int count, long millis) {
+            totalCount += count;
+            statementCount++;
+            if (targetRows > 0 || targetMillis > 0) {
+                double factor = 2;
+                if (targetRows > 0) {
+                    factor = Math.min(factor, (double) targetRows / Math.max(count, 1));
+                }
+                if (targetMillis > 0) {
+                    factor = Math.min(factor, (double) targetMillis / Math.max(millis, 1));
+                }
+                factor = Math.max(factor, 0.5);
+                width = Math.max(1, (long) (width * factor));
+            }
+
+            if (totalCount > 0
+                    && System.currentTimeMillis() - lastLogTime > DateUtils.MILLIS_PER_MINUTE * 5) {
+                lastLogTime = System.currentTimeMillis();
+                return true;
+            }
+            return false;
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+        }
+
+        public synchronized int getTotalCount() {
+            return totalCount;
+        }
+
+        public synchronized int getStatementCount() {
+            return statementCount;
+        }
+    }
+
     public void purgeAllIncomingEventsForNode(String nodeId) {
         int count = sqlTemplate.update(getSql("deleteIncomingBatchByNodeSql"),
                 new Object[] { nodeId });
@@ -53,6 +53,22 @@ public class PurgeServiceSqlMap extends AbstractSqlMap {
         putSql("selectDataRangeSql" ,
 "select min(data_id) as min_id, max(data_id) as max_id from $(data) where data_id < (select max(data_id) from $(data))   " );
 
+        putSql("selectMaxDataIdSql" ,
+"select max(data_id) from $(data)" );
+
+        putSql("selectMinNeededDataIdSql" ,
+"select min(data_id) from (                                                                " + 
+"  select min(start_id) as data_id from $(data_gap)                                        " + 
+"  union all                                                                               " + 
+"  select min(e.data_id) as data_id from $(data_event) e inner join $(outgoing_batch) b    " + 
+"  on b.batch_id = e.batch_id where b.status != ?                                          " + 
+"  union all                                                                               " + 
+"  select max(data_id) as data_id from $(data)) needed                                     " );
+
+        putSql("selectLastCreateTimeInRangeSql" ,
+"select create_time from $(data) where data_id =                                " + 
+"  (select max(data_id) from $(data) where data_id between ? and ?)              " );
+
         putSql("updateStrandedBatches" ,
 "update $(outgoing_batch) set status=? where node_id not                   " + 
 "  in (select node_id from $(node) where sync_enabled=?) and status != ?   " );
@@ -20,6 +20,7 @@
  */
 package org.jumpmind.symmetric.service.impl;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -99,7 +100,15 @@ public class PushService extends AbstractOfflineDetectorService implements IPush
         return new HashMap<String, Date>(startTimesOfNodesBeingPushedTo);
     }
 
-    synchronized public RemoteNodeStatuses pushData(boolean force) {
+    public RemoteNodeStatuses pushData(boolean force) {
+        return pushData(force, null);
+    }
+
+    public RemoteNodeStatuses pushData(Collection<String> nodeIds) {
+        return pushData(false, nodeIds);
+    }
+
+    synchronized protected RemoteNodeStatuses pushData(boolean force, Collection<String> nodeIds) {
         RemoteNodeStatuses statuses = new RemoteNodeStatuses(configurationService.getChannels(false));
         
         Node identity = nodeService.findIdentity(false);
@@ -115,6 +124,10 @@ public class PushService extends AbstractOfflineDetectorService implements IPush
                             int availableThreads = nodeCommunicationService
                                     .getAvailableThreads(CommunicationType.PUSH);
                             for (NodeCommunication nodeCommunication : nodes) {
+                                if (nodeIds != null
+                                        && !nodeIds.contains(nodeCommunication.getNodeId())) {
+                                    continue;
+                                }
                                 boolean meetsMinimumTime = true;
                                 if (minimumPeriodMs > 0 && nodeCommunication.getLastLockTime() != null &&
                                    (System.currentTimeMillis() - nodeCommunication.getLastLockTime().getTime()) < minimumPeriodMs) {
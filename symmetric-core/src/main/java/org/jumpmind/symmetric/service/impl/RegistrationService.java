@@ -229,6 +229,7 @@ public class RegistrationService extends AbstractService implements IRegistratio
             foundNode.setDatabaseVersion(nodePriorToRegistration.getDatabaseVersion());
             foundNode.setSymmetricVersion(nodePriorToRegistration.getSymmetricVersion());
             nodeService.save(foundNode);                        
+            engine.getNodeCommunicationService().clearCache();
             
             /**
              * Only send automatic initial load once or if the client is really
@@ -552,6 +553,7 @@ public class RegistrationService extends AbstractService implements IRegistratio
                 sqlTemplate.update(getSql("openRegistrationNodeSecuritySql"), new Object[] {
                         nodeId, password, masterToMasterOnly ? null : me.getNodeId() });
                 nodeService.insertNodeGroup(node.getNodeGroupId(), null);
+                engine.getNodeCommunicationService().clearCache();
                 log.info(
                         "Just opened registration for external id of {} and a node group of {} and a node id of {}",
                         new Object[] { node.getExternalId(), node.getNodeGroupId(), nodeId });
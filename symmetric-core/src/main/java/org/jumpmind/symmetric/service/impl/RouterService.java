@@ -30,9 +30,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -87,6 +93,7 @@ import org.jumpmind.symmetric.service.ClusterConstants;
 import org.jumpmind.symmetric.service.IConfigurationService;
 import org.jumpmind.symmetric.service.IExtensionService;
 import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
 import org.jumpmind.symmetric.service.IRouterService;
 import org.jumpmind.symmetric.statistic.StatisticConstants;
 
@@ -95,13 +102,15 @@ import org.jumpmind.symmetric.statistic.StatisticConstants;
  */
 public class RouterService extends AbstractService implements IRouterService {
 
-    protected  Map<String, Boolean> commonBatchesLastKnownState = new HashMap<String, Boolean>();
+    protected  Map<String, Boolean> commonBatchesLastKnownState = new ConcurrentHashMap<String, Boolean>();
     
     
-    protected  Map<String, Boolean> defaultRouterOnlyLastKnownState = new HashMap<String, Boolean>();
+    protected  Map<String, Boolean> defaultRouterOnlyLastKnownState = new ConcurrentHashMap<String, Boolean>();
 
     protected transient ExecutorService readThread = null;
 
+    protected transient ThreadPoolExecutor channelRouterThreads = null;
+
     protected ISymmetricEngine engine;
     
     protected IExtensionService extensionService;
@@ -122,8 +131,8 @@ public class RouterService extends AbstractService implements IRouterService {
 
         extensionService.addExtensionPoint(ConfigurationChangedDataRouter.ROUTER_TYPE, new ConfigurationChangedDataRouter(engine));
         extensionService.addExtensionPoint("bsh", new BshDataRouter(engine));
-        extensionService.addExtensionPoint("subselect", new SubSelectDataRouter(symmetricDialect));
-        extensionService.addExtensionPoint("lookuptable", new LookupTableDataRouter(symmetricDialect));
+        extensionService.addExtensionPoint("subselect", new SubSelectDataRouter(symmetricDialect, parameterService));
+        extensionService.addExtensionPoint("lookuptable", new LookupTableDataRouter(engine));
         extensionService.addExtensionPoint("default", new DefaultDataRouter());
         extensionService.addExtensionPoint("audit", new AuditTableDataRouter(engine));
         extensionService.addExtensionPoint("column", new ColumnMatchDataRouter(engine.getConfigurationService(),
@@ -158,6 +167,15 @@ public class RouterService extends AbstractService implements IRouterService {
                 log.error("", ex);
             }
         }
+        
+        if (channelRouterThreads != null) {
+            try {
+                channelRouterThreads.shutdown();
+                channelRouterThreads = null;
+            } catch (Exception ex) {
+                log.error("", ex);
+            }
+        }
     }
 
     /**
@@ -316,10 +334,10 @@ public class RouterService extends AbstractService implements IRouterService {
     }
 
     /**
-     * We route data channel by channel for two reasons. One is that if/when we
-     * decide to multi-thread the routing it is a simple matter of inserting a
-     * thread pool here and waiting for all channels to be processed. The other
-     * reason is to reduce the number of connections we are required to have.
+     * We route data channel by channel for two reasons. One is that we can
+     * route channels concurrently by handing each channel to a thread pool and
+     * waiting for all channels to be processed. The other reason is to reduce
+     * the number of connections we are required to have.
      */
     protected int routeDataForEachChannel(DataGapDetector gapDetector) {
         int dataCount = 0;
@@ -330,18 +348,24 @@ public class RouterService extends AbstractService implements IRouterService {
         try {
             final List<NodeChannel> channels = engine.getConfigurationService().getNodeChannels(
                     false);
-            for (NodeChannel nodeChannel : channels) {
-                if (nodeChannel.isEnabled()) {
-                    processInfo.setCurrentChannelId(nodeChannel.getChannelId());
-                    dataCount += routeDataForChannel(processInfo,
-                            nodeChannel,
-                            sourceNode
-                            , gapDetector);
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug(
-                                "Not routing the {} channel.  It is either disabled or suspended.",
-                                nodeChannel.getChannelId());
+            int threadCount = parameterService.getInt(ParameterConstants.ROUTING_CHANNEL_THREAD_COUNT, 1);
+            if (threadCount > 1) {
+                dataCount = routeDataForEachChannelInParallel(processInfo, channels, sourceNode,
+                        gapDetector, threadCount);
+            } else {
+                for (NodeChannel nodeChannel : channels) {
+                    if (nodeChannel.isEnabled()) {
+                        processInfo.setCurrentChannelId(nodeChannel.getChannelId());
+                        dataCount += routeDataForChannel(processInfo,
+                                nodeChannel,
+                                sourceNode
+                                , gapDetector);
+                    } else {
+                        if (log.isDebugEnabled()) {
+                            log.debug(
+                                    "Not routing the {} channel.  It is either disabled or suspended.",
+                                    nodeChannel.getChannelId());
+                        }
                     }
                 }
             }
@@ -354,6 +378,116 @@ public class RouterService extends AbstractService implements IRouterService {
         return dataCount;
     }
 
+    /**
+     * Route each enabled channel on the channel router thread pool. Each
+     * channel gets its own {@link ChannelRouterContext}, transaction and
+     * {@link ProcessInfo}. Channels only record that gap detection was
+     * requested. The gap detector is run once after all channels have
+     * finished.
+     */
+    protected int routeDataForEachChannelInParallel(ProcessInfo processInfo,
+            List<NodeChannel> channels, final Node sourceNode, DataGapDetector gapDetector,
+            int threadCount) {
+        final AtomicBoolean gapDetectionRequested = new AtomicBoolean(false);
+        final DataGapDetector deferredGapDetector = new DataGapDetector() {
+            @Override
+            public void beforeRouting() {
+                gapDetectionRequested.set(true);
+            }
+        };
+
+        ExecutorService executor = getChannelRouterThreads(threadCount);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(channels.size());
+        for (final NodeChannel nodeChannel : channels) {
+            if (nodeChannel.isEnabled()) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        ProcessInfo channelProcessInfo = engine.getStatisticManager()
+                                .newProcessInfo(
+                                        new ProcessInfoKey(sourceNode.getNodeId(), null,
+                                                ProcessType.ROUTER_JOB, nodeChannel
+                                                        .getChannelId()));
+                        channelProcessInfo.setCurrentChannelId(nodeChannel.getChannelId());
+                        channelProcessInfo.setStatus(ProcessInfo.Status.PROCESSING);
+                        int dataCount = routeDataForChannel(channelProcessInfo, nodeChannel,
+                                sourceNode, deferredGapDetector);
+                        channelProcessInfo.setStatus(ProcessInfo.Status.OK);
+                        return dataCount;
+                    }
+                }));
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                            "Not routing the {} channel.  It is either disabled or suspended.",
+                            nodeChannel.getChannelId());
+                }
+            }
+        }
+
+        /*
+         * Failures are logged and rolled back by routeDataForChannel, the same
+         * as when channels are routed serially
+         */
+        int dataCount = 0;
+        for (Future<Integer> future : futures) {
+            try {
+                dataCount += future.get();
+            } catch (InterruptedException ex) {
+                log.warn("The routing process was interrupted while waiting for channels to finish routing");
+                for (Future<Integer> toCancel : futures) {
+                    toCancel.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                /*
+                 * Channels that are still rolling back could look like gaps,
+                 * so leave gap detection for the next run
+                 */
+                return dataCount;
+            } catch (ExecutionException ex) {
+                log.error("Failed to route and batch data on a channel", ex.getCause());
+            }
+        }
+
+        if (gapDetectionRequested.get()) {
+            gapDetector.beforeRouting();
+        }
+
+        return dataCount;
+    }
+
+    protected synchronized ThreadPoolExecutor getChannelRouterThreads(int threadCount) {
+        if (channelRouterThreads != null && channelRouterThreads.getCorePoolSize() != threadCount) {
+            log.info("{} has changed from {} to {}.  Restarting thread pool", new Object[] {
+                    ParameterConstants.ROUTING_CHANNEL_THREAD_COUNT,
+                    channelRouterThreads.getCorePoolSize(), threadCount });
+            channelRouterThreads.shutdown();
+            channelRouterThreads = null;
+        }
+
+        if (channelRouterThreads == null) {
+            log.info("Routing will use {} channel threads", threadCount);
+            channelRouterThreads = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCount,
+                    new ThreadFactory() {
+                        final AtomicInteger threadNumber = new AtomicInteger(1);
+                        final String namePrefix = parameterService.getEngineName()
+                                .toLowerCase() + "-router-channel-";
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r);
+                            t.setName(namePrefix + threadNumber.getAndIncrement());
+                            if (t.isDaemon()) {
+                                t.setDaemon(false);
+                            }
+                            if (t.getPriority() != Thread.NORM_PRIORITY) {
+                                t.setPriority(Thread.NORM_PRIORITY);
+                            }
+                            return t;
+                        }
+                    });
+        }
+        return channelRouterThreads;
+    }
+
     protected boolean producesCommonBatches(Channel channel, String nodeGroupId, List<TriggerRouter> triggerRouters) {
         String channelId = channel.getChannelId();
         Boolean producesCommonBatches = !Constants.CHANNEL_CONFIG.equals(channelId)
@@ -509,9 +643,7 @@ public class RouterService extends AbstractService implements IRouterService {
             try {
                 if (dataCount > 0) {
                     long insertTs = System.currentTimeMillis();
-                    engine.getDataService().insertDataEvents(context.getSqlTransaction(),
-                            context.getDataEventList());
-                    context.clearDataEventsList();
+                    insertBatchesAndDataEvents(context);
                     completeBatchesAndCommit(context);
                     context.incrementStat(System.currentTimeMillis() - insertTs,
                             ChannelRouterContext.STAT_INSERT_DATA_EVENTS_MS);
@@ -548,6 +680,17 @@ public class RouterService extends AbstractService implements IRouterService {
         }
     }
 
+    protected void insertBatchesAndDataEvents(ChannelRouterContext context) {
+        if (context.getBatchesToInsert().size() > 0) {
+            engine.getOutgoingBatchService().insertOutgoingBatches(context.getSqlTransaction(),
+                    context.getBatchesToInsert());
+            context.getBatchesToInsert().clear();
+        }
+        engine.getDataService().insertDataEvents(context.getSqlTransaction(),
+                context.getDataEventList());
+        context.clearDataEventsList();
+    }
+
     protected void completeBatchesAndCommit(ChannelRouterContext context) {
         Set<IDataRouter> usedRouters = new HashSet<IDataRouter>(context.getUsedDataRouters());
         List<OutgoingBatch> batches = new ArrayList<OutgoingBatch>(context.getBatchesByNodes()
@@ -560,6 +703,8 @@ public class RouterService extends AbstractService implements IRouterService {
                     context.getDataGaps(), context.getTransactions(), batches);
         }
 
+        Set<String> nodeIdsWithBatches = new HashSet<String>();
+        Map<Long, List<OutgoingBatch>> commonBatchesById = new HashMap<Long, List<OutgoingBatch>>();
         for (OutgoingBatch batch : batches) {
             batch.setRouterMillis(System.currentTimeMillis() - batch.getCreateTime().getTime());
             for (IDataRouter dataRouter : usedRouters) {
@@ -569,10 +714,24 @@ public class RouterService extends AbstractService implements IRouterService {
                 batch.setStatus(Status.OK);
             } else {
                 batch.setStatus(Status.NE);
+                nodeIdsWithBatches.add(batch.getNodeId());
+            }
+            if (batch.isCommonFlag()) {
+                List<OutgoingBatch> commonBatches = commonBatchesById.get(batch.getBatchId());
+                if (commonBatches == null) {
+                    commonBatches = new ArrayList<OutgoingBatch>();
+                    commonBatchesById.put(batch.getBatchId(), commonBatches);
+                }
+                commonBatches.add(batch);
+            } else {
+                engine.getOutgoingBatchService().updateOutgoingBatch(batch);
             }
-            engine.getOutgoingBatchService().updateOutgoingBatch(batch);
             context.getBatchesByNodes().remove(batch.getNodeId());
         }
+        for (List<OutgoingBatch> commonBatches : commonBatchesById.values()) {
+            updateCommonBatches(commonBatches);
+        }
+        engine.getOutgoingBatchService().updatePendingBatchIndex(nodeIdsWithBatches);
 
         for (IDataRouter dataRouter : usedRouters) {
             dataRouter.contextCommitted(context);
@@ -580,6 +739,48 @@ public class RouterService extends AbstractService implements IRouterService {
         context.setNeedsCommitted(false);
     }
 
+    /**
+     * Nodes that share a common batch are routed the same data, so their
+     * batches usually complete with the same status and counts. Those are
+     * updated with one statement for the batch id. Batches whose routing
+     * differs, or a shared update that does not find every node's batch, fall
+     * back to updating each node's batch on its own.
+     */
+    protected void updateCommonBatches(List<OutgoingBatch> batches) {
+        IOutgoingBatchService outgoingBatchService = engine.getOutgoingBatchService();
+        OutgoingBatch first = batches.get(0);
+        boolean sameRouting = batches.size() > 1;
+        for (int i = 1; i < batches.size() && sameRouting; i++) {
+            sameRouting = isSameRouting(first, batches.get(i));
+        }
+        if (sameRouting) {
+            for (OutgoingBatch batch : batches) {
+                batch.setRouterMillis(first.getRouterMillis());
+            }
+            int count = outgoingBatchService.updateCommonOutgoingBatches(batches);
+            if (count == batches.size()) {
+                return;
+            }
+            log.debug("Updated {} of {} batches for common batch {}.  Updating each batch instead",
+                    new Object[] { count, batches.size(), first.getBatchId() });
+        }
+        for (OutgoingBatch batch : batches) {
+            outgoingBatchService.updateOutgoingBatch(batch);
+        }
+    }
+
+    protected boolean isSameRouting(OutgoingBatch batch, OutgoingBatch other) {
+        return batch.getStatus() == other.getStatus() && batch.getLoadId() == other.getLoadId()
+                && batch.isExtractJobFlag() == other.isExtractJobFlag()
+                && batch.isLoadFlag() == other.isLoadFlag()
+                && batch.getDataEventCount() == other.getDataEventCount()
+                && batch.getReloadEventCount() == other.getReloadEventCount()
+                && batch.getInsertEventCount() == other.getInsertEventCount()
+                && batch.getUpdateEventCount() == other.getUpdateEventCount()
+                && batch.getDeleteEventCount() == other.getDeleteEventCount()
+                && batch.getOtherEventCount() == other.getOtherEventCount();
+    }
+
     protected Set<Node> findAvailableNodes(TriggerRouter triggerRouter, ChannelRouterContext context) {
         Set<Node> nodes = context.getAvailableNodes().get(triggerRouter);
         if (nodes == null) {
@@ -603,31 +804,35 @@ public class RouterService extends AbstractService implements IRouterService {
         return engine.getGroupletService().getTargetEnabled(triggerRouter, nodes);
     }
 
+	protected synchronized ExecutorService getReadThread() {
+		if (readThread == null) {
+			readThread = Executors.newCachedThreadPool(new ThreadFactory() {
+				final AtomicInteger threadNumber = new AtomicInteger(1);
+				final String namePrefix = parameterService.getEngineName()
+						.toLowerCase() + "-router-reader-";
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r);
+					t.setName(namePrefix + threadNumber.getAndIncrement());
+					if (t.isDaemon()) {
+						t.setDaemon(false);
+					}
+					if (t.getPriority() != Thread.NORM_PRIORITY) {
+						t.setPriority(Thread.NORM_PRIORITY);
+					}
+					return t;
+				}
+			});
+		}
+		return readThread;
+	}
+
 	protected IDataToRouteReader startReading(ChannelRouterContext context) {
 		IDataToRouteReader reader = new DataGapRouteReader(context, engine);
 		if (parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS)) {
 			reader.run();
 		} else {
-			if (readThread == null) {
-				readThread = Executors.newCachedThreadPool(new ThreadFactory() {
-					final AtomicInteger threadNumber = new AtomicInteger(1);
-					final String namePrefix = parameterService.getEngineName()
-							.toLowerCase() + "-router-reader-";
-
-					public Thread newThread(Runnable r) {
-						Thread t = new Thread(r);
-						t.setName(namePrefix + threadNumber.getAndIncrement());
-						if (t.isDaemon()) {
-							t.setDaemon(false);
-						}
-						if (t.getPriority() != Thread.NORM_PRIORITY) {
-							t.setPriority(Thread.NORM_PRIORITY);
-						}
-						return t;
-					}
-				});
-			}
-			readThread.execute(reader);
+			getReadThread().execute(reader);
 		}
 
 		return reader;
@@ -646,6 +851,7 @@ public class RouterService extends AbstractService implements IRouterService {
      */
     protected int selectDataAndRoute(ProcessInfo processInfo, ChannelRouterContext context) throws InterruptedException {
         IDataToRouteReader reader = startReading(context);
+        context.setDataToRouteReader(reader);
         Data data = null;
         Data nextData = null;
         int totalDataCount = 0;
@@ -679,9 +885,7 @@ public class RouterService extends AbstractService implements IRouterService {
                         try {
                             if (maxNumberOfEventsBeforeFlush <= context.getDataEventList().size()
                                     || context.isNeedsCommitted()) {
-                                engine.getDataService().insertDataEvents(
-                                        context.getSqlTransaction(), context.getDataEventList());
-                                context.clearDataEventsList();
+                                insertBatchesAndDataEvents(context);
                             }
                             if (context.isNeedsCommitted()) {
                                 completeBatchesAndCommit(context);
@@ -816,6 +1020,7 @@ public class RouterService extends AbstractService implements IRouterService {
         long ts = System.currentTimeMillis();
         long batchIdToReuse = -1;
         boolean dataEventAdded = false;
+        boolean bulkInsert = parameterService.is(ParameterConstants.ROUTING_BULK_INSERT_ENABLED);
         for (String nodeId : nodeIds) {
             if (nodeId != null) {
                 Map<String, OutgoingBatch> batches = context.getBatchesByNodes();
@@ -831,7 +1036,19 @@ public class RouterService extends AbstractService implements IRouterService {
 							new Object[] { nodeId, batch.getChannelId(),
 									context.getBatchesByNodes().values() });
 
-                    engine.getOutgoingBatchService().insertOutgoingBatch(batch);
+                    if (bulkInsert) {
+                        /*
+                         * The batch row is written with the data events in
+                         * the routing transaction
+                         */
+                        if (batch.getBatchId() <= 0) {
+                            batch.setBatchId(engine.getSequenceService().nextVal(
+                                    Constants.SEQUENCE_OUTGOING_BATCH));
+                        }
+                        context.getBatchesToInsert().add(batch);
+                    } else {
+                        engine.getOutgoingBatchService().insertOutgoingBatch(batch);
+                    }
                     processInfo.incrementBatchCount();
                     context.getBatchesByNodes().put(nodeId, batch);
 
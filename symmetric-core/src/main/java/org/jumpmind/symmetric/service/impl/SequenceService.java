@@ -53,6 +53,10 @@ public class SequenceService extends AbstractService implements ISequenceService
             initSequence(Constants.SEQUENCE_OUTGOING_BATCH_LOAD_ID, 1);
         }
         
+        if (sequences.get(Constants.SEQUENCE_OUTGOING_BATCH_PENDING) == null) {
+            initSequence(Constants.SEQUENCE_OUTGOING_BATCH_PENDING, 1);
+        }
+        
         if (sequences.get(Constants.SEQUENCE_OUTGOING_BATCH) == null) {
             long maxBatchId = sqlTemplate.queryForLong(getSql("maxOutgoingBatchSql"));
             initSequence(Constants.SEQUENCE_OUTGOING_BATCH, maxBatchId);
@@ -1446,7 +1446,7 @@ public class TriggerRouterService extends AbstractService implements ITriggerRou
         boolean ignoreCase = this.parameterService.is(ParameterConstants.DB_METADATA_IGNORE_CASE);
 
         /* Re-lookup just in case the table was just altered */
-        platform.resetCachedTableModel();
+        platform.resetCachedTableModel(table.getCatalog(), table.getSchema(), table.getName());
         table = platform.getTableFromCache(table.getCatalog(), table.getSchema(), table.getName(),
                 true);
         List<Trigger> triggersForCurrentNode = getTriggersForCurrentNode();
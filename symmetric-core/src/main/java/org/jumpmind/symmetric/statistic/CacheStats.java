@@ -0,0 +1,111 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.statistic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and load counts for an in memory cache. The counts are kept for
+ * the life of the engine and are safe to update from multiple threads.
+ */
+public class CacheStats {
+
+    private String cacheName;
+
+    private AtomicLong hitCount = new AtomicLong();
+
+    private AtomicLong missCount = new AtomicLong();
+
+    private AtomicLong loadCount = new AtomicLong();
+
+    private AtomicLong loadTimeMs = new AtomicLong();
+
+    private AtomicLong evictionCount = new AtomicLong();
+
+    private volatile long size;
+
+    public CacheStats(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void incrementHitCount(long count) {
+        hitCount.addAndGet(count);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public void incrementMissCount(long count) {
+        missCount.addAndGet(count);
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void incrementLoad(long timeMs) {
+        loadCount.incrementAndGet();
+        loadTimeMs.addAndGet(timeMs);
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getLoadTimeMs() {
+        return loadTimeMs.get();
+    }
+
+    public void incrementEvictionCount(long count) {
+        evictionCount.addAndGet(count);
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public float getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total > 0 ? (float) hits / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "{ cacheName: " + cacheName + ", hitCount: " + hitCount + ", missCount: "
+                + missCount + ", loadCount: " + loadCount + ", loadTimeMs: " + loadTimeMs
+                + ", evictionCount: " + evictionCount + ", size: " + size + " }";
+    }
+
+}
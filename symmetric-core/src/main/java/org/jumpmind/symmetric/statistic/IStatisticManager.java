@@ -114,5 +114,13 @@ public interface IStatisticManager {
     public Map<String, ChannelStats> getWorkingChannelStats();
     
     public HostStats getWorkingHostStats();
+
+    /**
+     * @return the statistics for the named cache, which are created the first
+     *         time they are asked for
+     */
+    public CacheStats getCacheStats(String cacheName);
+
+    public Map<String, CacheStats> getWorkingCacheStats();
         
 }
\ No newline at end of file
@@ -69,6 +69,8 @@ public class StatisticManager implements IStatisticManager {
 
     private ConcurrentHashMap<Long, RouterStats> routerStatsByBatch = new ConcurrentHashMap<Long, RouterStats>();
 
+    private ConcurrentHashMap<String, CacheStats> cacheStats = new ConcurrentHashMap<String, CacheStats>();
+
     protected INodeService nodeService;
 
     protected IStatisticService statisticService;
@@ -532,6 +534,19 @@ public class StatisticManager implements IStatisticManager {
         }
     }
 
+    public CacheStats getCacheStats(String cacheName) {
+        CacheStats stats = cacheStats.get(cacheName);
+        if (stats == null) {
+            cacheStats.putIfAbsent(cacheName, new CacheStats(cacheName));
+            stats = cacheStats.get(cacheName);
+        }
+        return stats;
+    }
+
+    public Map<String, CacheStats> getWorkingCacheStats() {
+        return new HashMap<String, CacheStats>(cacheStats);
+    }
+
     protected void resetChannelStats(boolean force) {
         if (force) {
             channelStats = null;
@@ -185,7 +185,7 @@ abstract public class AbstractTransportManager {
         return batchInfo;
     }
 
-    protected static Map<String, Object> getParametersFromQueryUrl(String parameterString) throws IOException {
+    public static Map<String, Object> getParametersFromQueryUrl(String parameterString) throws IOException {
         Map<String, Object> parameters = new HashMap<String, Object>();
         String[] tokens = parameterString.split("&");
         for (String param : tokens) {
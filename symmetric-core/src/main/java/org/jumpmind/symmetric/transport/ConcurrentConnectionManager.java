@@ -20,11 +20,19 @@
  */
 package org.jumpmind.symmetric.transport;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.service.IParameterService;
@@ -33,19 +41,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Reservations are kept in a concurrent map per pool with an atomic count of
+ * the reserved slots, so servlet threads do not contend on a shared monitor.
+ * Timed out soft reservations are removed by a background sweeper, or when a
+ * pool is full. A {@link Reservation} uses identity equality so the
+ * conditional replace and remove calls only act on the exact reservation that
+ * was read.
+ * 
  * @see IConcurrentConnectionManager
  */
 public class ConcurrentConnectionManager implements IConcurrentConnectionManager {
 
     private static final Logger log = LoggerFactory.getLogger(ConcurrentConnectionManager.class);
 
+    protected static final long SWEEP_PERIOD_MS = 1000;
+
     protected IParameterService parameterService;
 
-    protected Map<String, Map<String, Reservation>> activeReservationsByNodeByPool = new HashMap<String, Map<String, Reservation>>();
+    protected ConcurrentMap<String, Map<String, Reservation>> activeReservationsByNodeByPool = new ConcurrentHashMap<String, Map<String, Reservation>>();
+
+    protected ConcurrentMap<String, AtomicInteger> reservationCountByPool = new ConcurrentHashMap<String, AtomicInteger>();
+
+    protected ConcurrentMap<String, Map<String, NodeConnectionStatistics>> nodeConnectionStatistics = new ConcurrentHashMap<String, Map<String, NodeConnectionStatistics>>();
 
-    protected Map<String, Map<String, NodeConnectionStatistics>> nodeConnectionStatistics = new HashMap<String, Map<String, NodeConnectionStatistics>>();
+    protected Set<String> whiteList = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-    protected Set<String> whiteList = new HashSet<String>();
+    protected volatile ScheduledExecutorService sweeper;
+
+    protected volatile boolean stopped;
 
     public ConcurrentConnectionManager(IParameterService parameterService,
             IStatisticManager statisticManager) {
@@ -53,35 +76,43 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
     }
 
     protected void logTooBusyRejection(String nodeId, String poolId) {
-        getNodeConnectionStatistics(nodeId, poolId).numOfRejections++;
+        getNodeConnectionStatistics(nodeId, poolId).numOfRejections.incrementAndGet();
     }
 
     protected void logConnectedTimePeriod(String nodeId, long startMs, long endMs, String poolId) {
         NodeConnectionStatistics stats = getNodeConnectionStatistics(nodeId, poolId);
-        stats.totalConnectionCount++;
-        stats.totalConnectionTimeMs += endMs - startMs;
+        stats.totalConnectionCount.incrementAndGet();
+        stats.totalConnectionTimeMs.addAndGet(endMs - startMs);
         stats.lastConnectionTimeMs = startMs;
     }
 
-    private synchronized NodeConnectionStatistics getNodeConnectionStatistics(String nodeId,
-            String poolId) {
+    private NodeConnectionStatistics getNodeConnectionStatistics(String nodeId, String poolId) {
         Map<String, NodeConnectionStatistics> statsMap = nodeConnectionStatistics.get(poolId);
         if (statsMap == null) {
-            statsMap = new HashMap<String, NodeConnectionStatistics>();
-            nodeConnectionStatistics.put(poolId, statsMap);
+            statsMap = new ConcurrentHashMap<String, NodeConnectionStatistics>();
+            Map<String, NodeConnectionStatistics> existing = nodeConnectionStatistics.putIfAbsent(
+                    poolId, statsMap);
+            if (existing != null) {
+                statsMap = existing;
+            }
         }
         NodeConnectionStatistics stats = statsMap.get(nodeId);
         if (stats == null) {
             stats = new NodeConnectionStatistics();
-            statsMap.put(nodeId, stats);
+            NodeConnectionStatistics existing = ((ConcurrentMap<String, NodeConnectionStatistics>) statsMap)
+                    .putIfAbsent(nodeId, stats);
+            if (existing != null) {
+                stats = existing;
+            }
         }
         return stats;
     }
 
-    synchronized public boolean releaseConnection(String nodeId, String poolId) {
+    public boolean releaseConnection(String nodeId, String poolId) {
         Map<String, Reservation> reservations = getReservationMap(poolId);
         Reservation reservation = reservations.remove(nodeId);
         if (reservation != null) {
+            getReservationCounter(poolId).decrementAndGet();
             logConnectedTimePeriod(nodeId, reservation.createTime, System.currentTimeMillis(),
                     poolId);
             return true;
@@ -90,45 +121,85 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
         }
     }
 
-    synchronized public void addToWhitelist(String nodeId) {
+    public void addToWhitelist(String nodeId) {
         whiteList.add(nodeId);
     }
 
-    synchronized public void removeFromWhiteList(String nodeId) {
+    public void removeFromWhiteList(String nodeId) {
         whiteList.remove(nodeId);
     }
 
-    synchronized public String[] getWhiteList() {
+    public String[] getWhiteList() {
         return whiteList.toArray(new String[whiteList.size()]);
     }
 
-    synchronized public int getReservationCount(String poolId) {
-        return getReservationMap(poolId).size();
+    public int getReservationCount(String poolId) {
+        return getReservationCounter(poolId).get();
     }
 
-    synchronized public boolean reserveConnection(String nodeId, String poolId,
+    public boolean reserveConnection(String nodeId, String poolId,
             ReservationType reservationRequest) {
-        Map<String, Reservation> reservations = getReservationMap(poolId);
+        startSweeper();
+        ConcurrentMap<String, Reservation> reservations = getReservationMap(poolId);
+        AtomicInteger reservationCount = getReservationCounter(poolId);
         int maxPoolSize = parameterService.getInt(ParameterConstants.CONCURRENT_WORKERS);
         long timeout = parameterService.getLong(ParameterConstants.CONCURRENT_RESERVATION_TIMEOUT);
-        removeTimedOutReservations(reservations);
-        if (reservations.size() < maxPoolSize || reservations.containsKey(nodeId)
-                || whiteList.contains(nodeId)) {
+        boolean swept = false;
+        while (true) {
+            Reservation newReservation = new Reservation(nodeId,
+                    reservationRequest == ReservationType.SOFT ? System.currentTimeMillis()
+                            + timeout : Long.MAX_VALUE, reservationRequest);
             Reservation existingReservation = reservations.get(nodeId);
-            if (existingReservation == null
-                    || existingReservation.getType() == ReservationType.SOFT) {
-                reservations.put(nodeId, new Reservation(nodeId,
-                        reservationRequest == ReservationType.SOFT ? System.currentTimeMillis()
-                                + timeout : Long.MAX_VALUE, reservationRequest));
+            if (existingReservation != null && existingReservation.isTimedOut(System.currentTimeMillis())) {
+                if (reservations.remove(nodeId, existingReservation)) {
+                    reservationCount.decrementAndGet();
+                }
+                continue;
+            }
+
+            if (existingReservation != null) {
+                if (existingReservation.getType() == ReservationType.SOFT) {
+                    if (reservations.replace(nodeId, existingReservation, newReservation)) {
+                        return true;
+                    }
+                    continue;
+                } else {
+                    log.warn(
+                            "Node '{}' requested a {} connection, but was rejected because it already has one",
+                            nodeId, poolId);
+                    return false;
+                }
+            }
+
+            if (!reserveSlot(reservationCount, maxPoolSize, whiteList.contains(nodeId))) {
+                if (!swept && removeTimedOutReservations(poolId) > 0) {
+                    swept = true;
+                    continue;
+                }
+                return false;
+            }
+
+            if (reservations.putIfAbsent(nodeId, newReservation) == null) {
                 return true;
             } else {
-                log.warn(
-                        "Node '{}' requested a {} connection, but was rejected because it already has one",
-                        nodeId, poolId);
+                reservationCount.decrementAndGet();
+            }
+        }
+    }
+
+    protected boolean reserveSlot(AtomicInteger reservationCount, int maxPoolSize,
+            boolean whiteListed) {
+        if (whiteListed) {
+            reservationCount.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int count = reservationCount.get();
+            if (count >= maxPoolSize) {
                 return false;
+            } else if (reservationCount.compareAndSet(count, count + 1)) {
+                return true;
             }
-        } else {
-            return false;
         }
     }
 
@@ -142,42 +213,106 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
     
     protected Map<String, Date> getReservationsByNodeId(String urlPath) {
         Map<String, Date> byNodeId = new HashMap<String, Date>();
-        Set<String> poolIds = activeReservationsByNodeByPool.keySet();
-        for (String poolId : poolIds) {
-            if (poolId.endsWith(urlPath)) {
-                Map<String, Reservation> reservations = activeReservationsByNodeByPool.get(poolId);
-                Set<String> nodeIds = new HashSet<String>(reservations.keySet());
-                for (String nodeId : nodeIds) {
-                      Reservation reservation = reservations.get(nodeId);
-                      if (reservation != null && reservation.getType() == ReservationType.HARD) {                          
-                          byNodeId.put(nodeId, new Date(reservation.getCreateTime()));
-                      }
+        for (Map.Entry<String, Map<String, Reservation>> pool : activeReservationsByNodeByPool
+                .entrySet()) {
+            if (pool.getKey().endsWith(urlPath)) {
+                for (Reservation reservation : pool.getValue().values()) {
+                    if (reservation.getType() == ReservationType.HARD) {
+                        byNodeId.put(reservation.getNodeId(),
+                                new Date(reservation.getCreateTime()));
+                    }
                 }
             }
         }
         return byNodeId;
     }
 
-    protected void removeTimedOutReservations(Map<String, Reservation> reservations) {
+    protected int removeTimedOutReservations(String poolId) {
+        int removed = removeTimedOutReservations(getReservationMap(poolId));
+        if (removed > 0) {
+            getReservationCounter(poolId).addAndGet(-removed);
+        }
+        return removed;
+    }
+
+    protected int removeTimedOutReservations(ConcurrentMap<String, Reservation> reservations) {
+        int removed = 0;
         long currentTime = System.currentTimeMillis();
-        String[] keys = reservations.keySet().toArray(new String[reservations.size()]);
-        if (keys != null) {
-            for (String nodeId : keys) {
-                Reservation reservation = reservations.get(nodeId);
-                if (reservation.timeToLiveInMs < currentTime) {
-                    reservations.remove(nodeId);
+        for (Map.Entry<String, Reservation> entry : reservations.entrySet()) {
+            Reservation reservation = entry.getValue();
+            if (reservation.isTimedOut(currentTime)
+                    && reservations.remove(entry.getKey(), reservation)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * The sweeper is started with the first reservation and is not started
+     * again once the manager has been stopped.
+     */
+    protected void startSweeper() {
+        if (sweeper == null && !stopped) {
+            synchronized (this) {
+                if (sweeper == null && !stopped) {
+                    sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r);
+                            thread.setName((parameterService != null ? parameterService
+                                    .getEngineName().toLowerCase() + "-" : "")
+                                    + "connection-reservation-sweeper");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    sweeper.scheduleWithFixedDelay(new Runnable() {
+                        public void run() {
+                            try {
+                                for (String poolId : activeReservationsByNodeByPool.keySet()) {
+                                    removeTimedOutReservations(poolId);
+                                }
+                            } catch (Exception ex) {
+                                log.error("Failed to remove timed out connection reservations", ex);
+                            }
+                        }
+                    }, SWEEP_PERIOD_MS, SWEEP_PERIOD_MS, TimeUnit.MILLISECONDS);
                 }
             }
         }
     }
 
-    private Map<String, Reservation> getReservationMap(String poolId) {
+    public synchronized void stop() {
+        stopped = true;
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    private ConcurrentMap<String, Reservation> getReservationMap(String poolId) {
         Map<String, Reservation> reservations = activeReservationsByNodeByPool.get(poolId);
         if (reservations == null) {
-            reservations = new HashMap<String, Reservation>();
-            activeReservationsByNodeByPool.put(poolId, reservations);
+            reservations = new ConcurrentHashMap<String, Reservation>();
+            Map<String, Reservation> existing = activeReservationsByNodeByPool.putIfAbsent(poolId,
+                    reservations);
+            if (existing != null) {
+                reservations = existing;
+            }
+        }
+        return (ConcurrentMap<String, Reservation>) reservations;
+    }
+
+    private AtomicInteger getReservationCounter(String poolId) {
+        AtomicInteger count = reservationCountByPool.get(poolId);
+        if (count == null) {
+            count = new AtomicInteger();
+            AtomicInteger existing = reservationCountByPool.putIfAbsent(poolId, count);
+            if (existing != null) {
+                count = existing;
+            }
         }
-        return reservations;
+        return count;
     }
 
     public static class Reservation {
@@ -192,19 +327,8 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
             this.type = type;
         }
 
-        @Override
-        public int hashCode() {
-            return nodeId.hashCode();
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof Reservation) {
-                return nodeId.equals(((Reservation) obj).nodeId);
-            } else {
-                return false;
-            }
-
+        protected boolean isTimedOut(long currentTime) {
+            return timeToLiveInMs < currentTime;
         }
 
         public String getNodeId() {
@@ -230,21 +354,21 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
 
     public class NodeConnectionStatistics {
 
-        int numOfRejections;
-        long totalConnectionCount;
-        long totalConnectionTimeMs;
-        long lastConnectionTimeMs;
+        AtomicInteger numOfRejections = new AtomicInteger();
+        AtomicLong totalConnectionCount = new AtomicLong();
+        AtomicLong totalConnectionTimeMs = new AtomicLong();
+        volatile long lastConnectionTimeMs;
 
         public int getNumOfRejections() {
-            return numOfRejections;
+            return numOfRejections.get();
         }
 
         public long getTotalConnectionCount() {
-            return totalConnectionCount;
+            return totalConnectionCount.get();
         }
 
         public long getTotalConnectionTimeMs() {
-            return totalConnectionTimeMs;
+            return totalConnectionTimeMs.get();
         }
 
         public long getLastConnectionTimeMs() {
@@ -256,4 +380,4 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
         return activeReservationsByNodeByPool;
     }
 
-}
\ No newline at end of file
+}
@@ -73,4 +73,9 @@ public interface IConcurrentConnectionManager {
     
     public Map<String, Date> getPushReservationsByNodeId();
 
+    /**
+     * Stop the background thread that removes timed out reservations.
+     */
+    public void stop();
+
 }
\ No newline at end of file
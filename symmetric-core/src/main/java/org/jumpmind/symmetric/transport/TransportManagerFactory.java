@@ -41,6 +41,7 @@ import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.common.ServerConstants;
 import org.jumpmind.symmetric.transport.file.FileTransportManager;
 import org.jumpmind.symmetric.transport.http.HttpTransportManager;
+import org.jumpmind.symmetric.transport.http.KeepAliveHttpTransportManager;
 import org.jumpmind.symmetric.transport.http.SelfSignedX509TrustManager;
 import org.jumpmind.symmetric.transport.internal.InternalTransportManager;
 
@@ -101,7 +102,12 @@ public class TransportManagerFactory {
             boolean allowSelfSignedCerts = symmetricEngine.getParameterService().is(
                     ServerConstants.HTTPS_ALLOW_SELF_SIGNED_CERTS, false);
             initHttps(httpSslVerifiedServerNames, allowSelfSignedCerts);
-            return new HttpTransportManager(symmetricEngine);
+            if (symmetricEngine.getParameterService().is(
+                    ParameterConstants.TRANSPORT_HTTP_KEEP_ALIVE_ENABLED, false)) {
+                return new KeepAliveHttpTransportManager(symmetricEngine);
+            } else {
+                return new HttpTransportManager(symmetricEngine);
+            }
         } else if (Constants.PROTOCOL_FILE.equalsIgnoreCase(transport)) {
             return new FileTransportManager(symmetricEngine);
         } else if (Constants.PROTOCOL_INTERNAL.equalsIgnoreCase(transport)) {
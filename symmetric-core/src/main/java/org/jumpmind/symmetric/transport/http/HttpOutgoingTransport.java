@@ -99,11 +99,15 @@ public class HttpOutgoingTransport implements IOutgoingWithResponseTransport {
         closeOutputStream(true);
         closeReader();
         if (connection != null) {
-            connection.disconnect();
+            releaseConnection(connection);
             connection = null;
         }
     }
 
+    protected void releaseConnection(HttpURLConnection connection) {
+        connection.disconnect();
+    }
+
     private void closeReader() {
         if (reader != null) {
             IOUtils.closeQuietly(reader);
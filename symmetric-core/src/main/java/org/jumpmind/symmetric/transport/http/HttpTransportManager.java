@@ -98,6 +98,15 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
         return HttpURLConnection.HTTP_OK;
     }
 
+    /**
+     * Build the acknowledgement that is sent as the
+     * {@link WebConstants#ACKNOWLEDGEMENTS} header of the next pull.
+     */
+    public String getAcknowledgementData(Node remote, List<IncomingBatch> list, Node local)
+            throws IOException {
+        return getAcknowledgementData(remote.requires13Compatiblity(), local.getNodeId(), list);
+    }
+
     public void writeAcknowledgement(OutputStream out, Node remote, List<IncomingBatch> list, Node local,
             String securityToken) throws IOException {
         writeMessage(out, getAcknowledgementData(remote.requires13Compatiblity(), local.getNodeId(), list));
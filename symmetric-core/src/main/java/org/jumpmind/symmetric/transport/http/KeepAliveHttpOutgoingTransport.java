@@ -0,0 +1,61 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport.http;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Push transport that leaves a connection open for reuse once its response
+ * has been read. The reservation request is still made before every push so
+ * that a busy node turns the push away before the payload is streamed, but it
+ * travels over a pooled connection instead of a new one.
+ */
+public class KeepAliveHttpOutgoingTransport extends HttpOutgoingTransport {
+
+    private boolean responseRead = false;
+
+    public KeepAliveHttpOutgoingTransport(URL url, int httpTimeout, boolean useCompression,
+            int compressionStrategy, int compressionLevel, String basicAuthUsername,
+            String basicAuthPassword, boolean streamOutputEnabled, int streamOutputSize,
+            boolean fileUpload) {
+        super(url, httpTimeout, useCompression, compressionStrategy, compressionLevel,
+                basicAuthUsername, basicAuthPassword, streamOutputEnabled, streamOutputSize,
+                fileUpload);
+    }
+
+    @Override
+    public BufferedReader readResponse() throws IOException {
+        BufferedReader reader = super.readResponse();
+        responseRead = true;
+        return reader;
+    }
+
+    @Override
+    protected void releaseConnection(HttpURLConnection connection) {
+        if (!responseRead) {
+            super.releaseConnection(connection);
+        }
+    }
+
+}
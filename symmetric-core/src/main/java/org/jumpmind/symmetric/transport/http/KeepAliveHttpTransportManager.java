@@ -0,0 +1,106 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.transport.IOutgoingWithResponseTransport;
+
+/**
+ * An {@link HttpTransportManager} that lets the JVM reuse connections to a
+ * node. Every response is read to completion and the connection is left open
+ * so it goes back to the keep-alive pool instead of being torn down after each
+ * request.
+ */
+public class KeepAliveHttpTransportManager extends HttpTransportManager {
+
+    public KeepAliveHttpTransportManager(ISymmetricEngine engine) {
+        super(engine);
+    }
+
+    @Override
+    protected int sendMessage(URL url, String data) throws IOException {
+        HttpURLConnection conn = openConnection(url, getBasicAuthUsername(), getBasicAuthPassword());
+        conn.setRequestMethod("POST");
+        conn.setAllowUserInteraction(false);
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(getHttpTimeOutInMs());
+        conn.setReadTimeout(getHttpTimeOutInMs());
+        OutputStream os = conn.getOutputStream();
+        try {
+            writeMessage(os, data);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+        int code = conn.getResponseCode();
+        drain(conn, code);
+        return code;
+    }
+
+    /**
+     * The connection is only returned to the keep-alive pool once its response
+     * body has been consumed and the stream closed.
+     */
+    protected void drain(HttpURLConnection conn, int code) {
+        InputStream is = null;
+        try {
+            is = code < HttpURLConnection.HTTP_BAD_REQUEST ? conn.getInputStream() : conn
+                    .getErrorStream();
+            if (is != null) {
+                byte[] buffer = new byte[1024];
+                while (is.read(buffer) >= 0) {
+                }
+            }
+        } catch (IOException ex) {
+            conn.disconnect();
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    @Override
+    public IOutgoingWithResponseTransport getPushTransport(Node remote, Node local,
+            String securityToken, String registrationUrl) throws IOException {
+        URL url = new URL(buildURL("push", remote, local, securityToken, registrationUrl));
+        return new KeepAliveHttpOutgoingTransport(url, getHttpTimeOutInMs(),
+                isUseCompression(), getCompressionStrategy(), getCompressionLevel(),
+                getBasicAuthUsername(), getBasicAuthPassword(), isOutputStreamEnabled(),
+                getOutputStreamSize(), false);
+    }
+
+    @Override
+    public IOutgoingWithResponseTransport getFilePushTransport(Node remote, Node local,
+            String securityToken, String registrationUrl) throws IOException {
+        URL url = new URL(buildURL("filesync/push", remote, local, securityToken, registrationUrl));
+        return new KeepAliveHttpOutgoingTransport(url, getHttpTimeOutInMs(),
+                isUseCompression(), getCompressionStrategy(), getCompressionLevel(),
+                getBasicAuthUsername(), getBasicAuthPassword(), isOutputStreamEnabled(),
+                getOutputStreamSize(), true);
+    }
+
+}
@@ -107,4 +107,8 @@ public class WebConstants {
 
     public static final String IGNORED_CHANNELS = "Ignored-Channels";
 
+    public static final String ACKNOWLEDGEMENTS = "Acknowledgements";
+
+    public static final String LONG_POLL_TIMEOUT = "Long-Poll-Timeout";
+
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.aryEq;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class AbstractSymmetricDialectTest {
+
+    static final String[] COLUMNS = new String[] { "data_id", "batch_id" };
+
+    static final int[] TYPES = new int[] { Types.NUMERIC, Types.NUMERIC };
+
+    AbstractSymmetricDialect dialect;
+
+    ISqlTransaction transaction;
+
+    List<Object[]> rows;
+
+    @Before
+    public void setup() {
+        dialect = mock(AbstractSymmetricDialect.class, CALLS_REAL_METHODS);
+        transaction = mock(ISqlTransaction.class);
+        rows = new ArrayList<Object[]>();
+        for (int i = 1; i <= 5; i++) {
+            rows.add(new Object[] { i, 100 + i });
+        }
+    }
+
+    @Test
+    public void testBuildInsertSqlForOneRow() {
+        assertEquals("insert into sym_data_event (data_id, batch_id) values (?, ?)",
+                dialect.buildInsertSql("sym_data_event", COLUMNS, 1));
+    }
+
+    @Test
+    public void testBuildInsertSqlForManyRows() {
+        assertEquals("insert into sym_data_event (data_id, batch_id) values (?, ?), (?, ?), (?, ?)",
+                dialect.buildInsertSql("sym_data_event", COLUMNS, 3));
+    }
+
+    @Test
+    public void testInsertRowsWithJdbcBatching() {
+        dialect.insertRows(transaction, "sym_data_event", COLUMNS, TYPES, rows);
+        InOrder inOrder = inOrder(transaction);
+        inOrder.verify(transaction).prepare(
+                "insert into sym_data_event (data_id, batch_id) values (?, ?)");
+        for (Object[] row : rows) {
+            inOrder.verify(transaction).addRow(row, row, TYPES);
+        }
+        inOrder.verify(transaction).flush();
+        verify(transaction, never()).prepareAndExecute(anyString(), any(Object[].class),
+                any(int[].class));
+    }
+
+    @Test
+    public void testInsertRowsWithMultiRowInserts() {
+        doReturn(2).when(dialect).getMaxRowsPerInsert(anyInt());
+        dialect.insertRows(transaction, "sym_data_event", COLUMNS, TYPES, rows);
+        String twoRowSql = "insert into sym_data_event (data_id, batch_id) values (?, ?), (?, ?)";
+        InOrder inOrder = inOrder(transaction);
+        inOrder.verify(transaction).prepareAndExecute(eq(twoRowSql),
+                aryEq(new Object[] { 1, 101, 2, 102 }), aryEq(new int[] { Types.NUMERIC,
+                        Types.NUMERIC, Types.NUMERIC, Types.NUMERIC }));
+        inOrder.verify(transaction).prepareAndExecute(eq(twoRowSql),
+                aryEq(new Object[] { 3, 103, 4, 104 }), any(int[].class));
+        inOrder.verify(transaction).prepareAndExecute(
+                eq("insert into sym_data_event (data_id, batch_id) values (?, ?)"),
+                aryEq(new Object[] { 5, 105 }), aryEq(TYPES));
+        verify(transaction, never()).prepare(anyString());
+    }
+
+    @Test
+    public void testInsertNoRows() {
+        doReturn(2).when(dialect).getMaxRowsPerInsert(anyInt());
+        dialect.insertRows(transaction, "sym_data_event", COLUMNS, TYPES, new ArrayList<Object[]>());
+        verify(transaction, never()).prepare(anyString());
+        verify(transaction, never()).prepareAndExecute(anyString(), any(Object[].class),
+                any(int[].class));
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.mapper.StringMapper;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class LookupColumnTransformTest {
+
+    static final String SQL = "select name from lookup where id=:ID";
+
+    IParameterService parameterService;
+
+    IDatabasePlatform platform;
+
+    Map<String, List<String>> lookupTable;
+
+    List<Object> queriedIds;
+
+    TransformColumn column;
+
+    TransformedData data;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception {
+        lookupTable = new HashMap<String, List<String>>();
+        queriedIds = new ArrayList<Object>();
+
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getInt(eq(ParameterConstants.CACHE_LOOKUP_TRANSFORM_SIZE), anyInt()))
+                .thenAnswer(new Answer<Integer>() {
+                    public Integer answer(InvocationOnMock invocation) throws Throwable {
+                        return (Integer) invocation.getArguments()[1];
+                    }
+                });
+        when(parameterService.getLong(eq(ParameterConstants.CACHE_TIMEOUT_LOOKUP_TRANSFORM_IN_MS),
+                anyLong())).thenReturn(0l);
+
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        when(sqlTemplate.query(eq(SQL), any(StringMapper.class), any(Map.class))).thenAnswer(
+                new Answer<List<String>>() {
+                    public List<String> answer(InvocationOnMock invocation) throws Throwable {
+                        Object id = ((Map<String, ?>) invocation.getArguments()[2]).get("ID");
+                        queriedIds.add(id);
+                        List<String> values = lookupTable.get(id);
+                        return values != null ? values : new ArrayList<String>();
+                    }
+                });
+        platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+
+        column = new TransformColumn("ID", "NAME", false, LookupColumnTransform.NAME, SQL);
+        column.setTransformId("lookup_transform");
+        TransformTable table = new TransformTable("source", "target", TransformPoint.LOAD, column);
+        data = new TransformedData(table, DataEventType.INSERT, new HashMap<String, String>(),
+                new HashMap<String, String>(), new HashMap<String, String>());
+    }
+
+    @Test
+    public void testNotCachedByDefault() throws Exception {
+        lookupTable.put("1", Arrays.asList("one"));
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+        DataContext context = new DataContext(new Batch());
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals(2, queriedIds.size());
+    }
+
+    @Test
+    public void testCachedForOneBatch() throws Exception {
+        when(parameterService.getInt(eq(ParameterConstants.CACHE_LOOKUP_TRANSFORM_SIZE), anyInt()))
+                .thenReturn(10);
+        lookupTable.put("1", Arrays.asList("one"));
+        lookupTable.put("2", Arrays.asList("two"));
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+        DataContext context = new DataContext(new Batch());
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals("two", lookup(transform, context, "2"));
+        assertEquals(Arrays.asList((Object) "1", "2"), queriedIds);
+
+        lookupTable.put("1", Arrays.asList("uno"));
+        context.setBatch(new Batch());
+        assertEquals("uno", lookup(transform, context, "1"));
+        assertEquals(3, queriedIds.size());
+    }
+
+    @Test
+    public void testNoRowsNotCached() throws Exception {
+        when(parameterService.getInt(eq(ParameterConstants.CACHE_LOOKUP_TRANSFORM_SIZE), anyInt()))
+                .thenReturn(10);
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+        DataContext context = new DataContext(new Batch());
+        assertNull(lookup(transform, context, "1"));
+        lookupTable.put("1", Arrays.asList("one"));
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals(2, queriedIds.size());
+    }
+
+    @Test
+    public void testMultipleRowsKeptOnCacheHit() throws Exception {
+        when(parameterService.getInt(eq(ParameterConstants.CACHE_LOOKUP_TRANSFORM_SIZE), anyInt()))
+                .thenReturn(10);
+        lookupTable.put("1", Arrays.asList("one", "uno", "eins"));
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+        DataContext context = new DataContext(new Batch());
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals("one", lookup(transform, context, "1"));
+        assertEquals(1, queriedIds.size());
+
+        Map<String, Object> namedParams = new HashMap<String, Object>();
+        namedParams.put("ID", "1");
+        List<String> cached = transform.getCache(context).get(
+                transform.getCacheKey(column, SQL, namedParams));
+        assertEquals(Arrays.asList("one", "uno"), cached);
+    }
+
+    protected String lookup(LookupColumnTransform transform, DataContext context, String id)
+            throws Exception {
+        Map<String, String> sourceValues = new HashMap<String, String>();
+        sourceValues.put("ID", id);
+        return transform.transform(platform, context, column, data, sourceValues, id, null);
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.load.DynamicDatabaseWriterFilter.WriteMethod;
+import org.jumpmind.symmetric.model.LoadFilter;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BshDatabaseWriterFilterTest {
+
+    /*
+     * The two scripts have the same hash code
+     */
+    static final String SCRIPT_1 = "return !\"Aa\".equals(ID);";
+
+    static final String SCRIPT_2 = "return !\"BB\".equals(ID);";
+
+    ISymmetricEngine engine;
+
+    IParameterService parameterService;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = mock(ISymmetricEngine.class);
+        parameterService = mock(IParameterService.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+    }
+
+    @Test
+    public void testScriptsWithSameHashCodeParsedOnce() throws Exception {
+        assertEquals(SCRIPT_1.hashCode(), SCRIPT_2.hashCode());
+        when(parameterService.is(ParameterConstants.BSH_SCRIPT_PARSE_ONCE)).thenReturn(true);
+        assertEachScriptRuns();
+    }
+
+    @Test
+    public void testScriptsWithSameHashCode() throws Exception {
+        assertEachScriptRuns();
+    }
+
+    @Test
+    public void testEachScriptHasItsOwnMethod() {
+        BshDatabaseWriterFilter filter = new BshDatabaseWriterFilter(engine,
+                new HashMap<String, List<LoadFilter>>());
+        String methodName = filter.getMethodName(SCRIPT_1);
+        assertEquals(methodName, filter.getMethodName(SCRIPT_1));
+        assertFalse(methodName.equals(filter.getMethodName(SCRIPT_2)));
+    }
+
+    protected void assertEachScriptRuns() {
+        BshDatabaseWriterFilter filter = new BshDatabaseWriterFilter(engine,
+                new HashMap<String, List<LoadFilter>>());
+        DataContext context = new DataContext();
+        Table table = new Table("mytable", new Column("ID"));
+        CsvData data = new CsvData(DataEventType.INSERT, new String[] { "Aa" });
+        for (int i = 0; i < 2; i++) {
+            assertTrue(filter.processLoadFilters(context, table, data, null,
+                    WriteMethod.BEFORE_WRITE, Collections.singletonList(buildFilter(SCRIPT_2))));
+            assertFalse(filter.processLoadFilters(context, table, data, null,
+                    WriteMethod.BEFORE_WRITE, Collections.singletonList(buildFilter(SCRIPT_1))));
+        }
+    }
+
+    protected LoadFilter buildFilter(String script) {
+        LoadFilter filter = new LoadFilter();
+        filter.setLoadFilterId("filter");
+        filter.setFilterOnInsert(true);
+        filter.setBeforeWriteScript(script);
+        return filter;
+    }
+
+}
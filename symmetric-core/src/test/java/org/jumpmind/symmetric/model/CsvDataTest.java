@@ -38,4 +38,31 @@ public class CsvDataTest {
         String result = newData.getParsedData(CsvData.ROW_DATA)[0];
         assertEquals(TEST, result);
     }
+
+    @Test
+    public void testWellKnownAndOtherKeys() {
+        CsvData data = new CsvData(DataEventType.UPDATE, new String[] { "1", "new" });
+        data.putCsvData(CsvData.OLD_DATA, "\"1\",\"old\"");
+        data.putCsvData("curData", "\"1\",\"cur\"");
+        data.putAttribute(CsvData.ATTRIBUTE_DATA_ID, 10l);
+        data.putAttribute("custom", "value");
+
+        assertEquals("old", data.getParsedData(CsvData.OLD_DATA)[1]);
+        assertEquals("cur", data.getParsedData("curData")[1]);
+        assertNotNull(data.getCsvData(CsvData.ROW_DATA));
+        assertEquals("new", data.getParsedData(CsvData.ROW_DATA)[1]);
+        assertTrue(data.contains("curData"));
+        assertFalse(data.contains(CsvData.PK_DATA));
+        assertEquals(Long.valueOf(10), data.getAttribute(new String(CsvData.ATTRIBUTE_DATA_ID)));
+        assertEquals("value", data.getAttribute("custom"));
+        assertNull(data.getAttribute(CsvData.ATTRIBUTE_TX_ID));
+
+        data.removeAllData("curData");
+        assertFalse(data.contains("curData"));
+
+        CsvData copy = data.copyWithoutOldData();
+        assertNull(copy.getParsedData(CsvData.OLD_DATA));
+        assertEquals("value", copy.getAttribute("custom"));
+        assertEquals(Long.valueOf(10), copy.getAttribute(CsvData.ATTRIBUTE_DATA_ID));
+    }
 }
@@ -0,0 +1,197 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.util.SimpleClassCompiler;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BshDataRouterTest {
+
+    /*
+     * The two expressions have the same hash code
+     */
+    static final String EXPRESSION_1 = "targetNodes.add(\"Aa\");";
+
+    static final String EXPRESSION_2 = "targetNodes.add(\"BB\");";
+
+    ISymmetricEngine engine;
+
+    IParameterService parameterService;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = mock(ISymmetricEngine.class);
+        parameterService = mock(IParameterService.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        INodeService nodeService = mock(INodeService.class);
+        when(nodeService.findIdentityNodeId()).thenReturn("00000");
+        when(engine.getNodeService()).thenReturn(nodeService);
+        ISymmetricDialect dialect = mock(ISymmetricDialect.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getObjectValues(any(BinaryEncoding.class), any(Table.class),
+                any(String[].class), any(String[].class))).thenAnswer(new Answer<Object[]>() {
+            public Object[] answer(InvocationOnMock invocation) throws Throwable {
+                return (Object[]) invocation.getArguments()[3];
+            }
+        });
+        when(dialect.getPlatform()).thenReturn(platform);
+        when(engine.getSymmetricDialect()).thenReturn(dialect);
+    }
+
+    @Test
+    public void testScriptsWithSameHashCodeParsedOnce() throws Exception {
+        assertEquals(EXPRESSION_1.hashCode(), EXPRESSION_2.hashCode());
+        when(parameterService.is(ParameterConstants.BSH_SCRIPT_PARSE_ONCE)).thenReturn(true);
+        assertRoutesToEachExpression();
+    }
+
+    @Test
+    public void testScriptsWithSameHashCode() throws Exception {
+        assertRoutesToEachExpression();
+    }
+
+    @Test
+    public void testEachScriptHasItsOwnMethod() {
+        BshDataRouter router = new BshDataRouter(engine);
+        String methodName = router.getMethodName(EXPRESSION_1);
+        assertEquals(methodName, router.getMethodName(EXPRESSION_1));
+        assertFalse(methodName.equals(router.getMethodName(EXPRESSION_2)));
+    }
+
+    @Test
+    public void testCompiledExpressionRoutesEachDmlType() throws Exception {
+        when(parameterService.is(ParameterConstants.BSH_ROUTER_COMPILE_TO_JAVA)).thenReturn(true);
+        IExtensionService extensionService = mock(IExtensionService.class);
+        final SimpleClassCompiler compiler = new SimpleClassCompiler();
+        when(extensionService.getCompiledClass(anyString())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return compiler.getCompiledClass((String) invocation.getArguments()[0]);
+            }
+        });
+        when(engine.getExtensionService()).thenReturn(extensionService);
+        BshDataRouter router = new BshDataRouter(engine);
+        SimpleRouterContext context = new SimpleRouterContext();
+        Set<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("100", "client"));
+        nodes.add(new Node("200", "client"));
+        String expression = "if (NODE_ID != null) targetNodes.add(NODE_ID.toString());\n"
+                + "if (OLD_NODE_ID != null) targetNodes.add(OLD_NODE_ID.toString());";
+        TriggerHistory triggerHist = new TriggerHistory("mytable", "ID", "ID,NODE_ID");
+
+        /* the insert is routed first, so it decides how the expression compiles */
+        DataMetaData insert = buildDataMetaData(expression, triggerHist, DataEventType.INSERT,
+                "1,100", null);
+        assertEquals(Collections.singleton("100"),
+                router.routeToNodes(context, insert, nodes, false, false, null));
+        assertNotNull(router.getCompiledExpression(context, insert));
+
+        DataMetaData update = buildDataMetaData(expression, triggerHist, DataEventType.UPDATE,
+                "1,100", "1,200");
+        assertEquals(new HashSet<String>(Arrays.asList("100", "200")),
+                router.routeToNodes(context, update, nodes, false, false, null));
+
+        DataMetaData delete = buildDataMetaData(expression, triggerHist, DataEventType.DELETE,
+                null, "1,200");
+        assertEquals(Collections.singleton("200"),
+                router.routeToNodes(context, delete, nodes, false, false, null));
+
+        verify(extensionService, times(1)).getCompiledClass(anyString());
+    }
+
+    @Test
+    public void testMethodNamesUniqueAfterEviction() {
+        BshDataRouter router = new BshDataRouter(engine);
+        Set<String> methodNames = new HashSet<String>();
+        for (int i = 0; i <= BshDataRouter.MAX_CACHED_EXPRESSIONS; i++) {
+            methodNames.add(router.getMethodName("targetNodes.add(\"" + i + "\");"));
+        }
+        assertEquals(BshDataRouter.MAX_CACHED_EXPRESSIONS, router.methodNames.size());
+        assertFalse(methodNames.contains(router.getMethodName(EXPRESSION_1)));
+    }
+
+    protected void assertRoutesToEachExpression() {
+        BshDataRouter router = new BshDataRouter(engine);
+        SimpleRouterContext context = new SimpleRouterContext();
+        Set<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("Aa", "client"));
+        nodes.add(new Node("BB", "client"));
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Collections.singleton("Aa"), router.routeToNodes(context,
+                    buildDataMetaData(EXPRESSION_1), nodes, false, false, null));
+            assertEquals(Collections.singleton("BB"), router.routeToNodes(context,
+                    buildDataMetaData(EXPRESSION_2), nodes, false, false, null));
+        }
+    }
+
+    protected DataMetaData buildDataMetaData(String expression) {
+        return buildDataMetaData(expression, new TriggerHistory("mytable", "ID", "ID,NODE_ID"),
+                DataEventType.INSERT, "1,100", null);
+    }
+
+    protected DataMetaData buildDataMetaData(String expression, TriggerHistory triggerHist,
+            DataEventType eventType, String rowData, String oldData) {
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(eventType);
+        data.setRowData(rowData);
+        data.setOldData(oldData);
+        data.setTriggerHistory(triggerHist);
+        Router router = new Router();
+        router.setRouterId("route1");
+        router.setRouterExpression(expression);
+        return new DataMetaData(data, new Table(), router, new NodeChannel());
+    }
+
+}
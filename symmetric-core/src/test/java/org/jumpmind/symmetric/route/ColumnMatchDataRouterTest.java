@@ -22,6 +22,7 @@ package org.jumpmind.symmetric.route;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -362,4 +363,93 @@ public class ColumnMatchDataRouterTest {
         assertEquals(true, result.contains("100"));
         assertEquals(true, result.contains("300"));
     }
+
+    @Test
+    public void testExpressionOldColumnOnUpdate() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("100", "client"));
+        nodes.add(new Node("200", "client"));
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","ID","ID,NODE_ID,COLUMN2");
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(DataEventType.UPDATE);
+        data.setRowData("1,100,Super Dooper");
+        data.setOldData("1,200,Super Dooper");
+        data.setTriggerHistory(triggerHist);
+        Router route = new Router();
+        route.setRouterExpression("OLD_NODE_ID = :NODE_ID");
+        route.setRouterId("route1");
+        DataMetaData dataMetaData = new DataMetaData(data, new Table(), route, new NodeChannel());
+
+        Set<String> result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("200"));
+    }
+
+    @Test
+    public void testCompiledExpressionRefreshedOnRouterUpdate() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("100", "client"));
+        nodes.add(new Node("200", "client"));
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","ID","ID,NODE_ID,COLUMN2");
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(DataEventType.INSERT);
+        data.setRowData("1,100,Super Dooper");
+        data.setTriggerHistory(triggerHist);
+        Router route = new Router();
+        route.setRouterExpression("NODE_ID = :NODE_ID");
+        route.setRouterId("route1");
+        route.setLastUpdateTime(new Date(1000));
+        DataMetaData dataMetaData = new DataMetaData(data, new Table(), route, new NodeChannel());
+
+        Set<String> result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(true, result.contains("100"));
+
+        route.setRouterExpression("NODE_ID != :NODE_ID");
+        route.setLastUpdateTime(new Date(2000));
+        result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("200"));
+    }
+
+    @Test
+    public void testExpressionUsesColumnsOfEachTriggerHistory() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("100", "client"));
+        nodes.add(new Node("200", "client"));
+        Router route = new Router();
+        route.setRouterExpression("NODE_ID = :NODE_ID");
+        route.setRouterId("route1");
+
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(DataEventType.INSERT);
+        data.setRowData("1,100,Super Dooper");
+        data.setTriggerHistory(new TriggerHistory("mytable", "ID", "ID,NODE_ID,COLUMN2"));
+        Set<String> result = router.routeToNodes(routingContext, new DataMetaData(data,
+                new Table(), route, new NodeChannel()), nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("100"));
+
+        TriggerHistory rebuilt = new TriggerHistory("mytable", "ID", "ID,COLUMN2,NODE_ID");
+        rebuilt.setTriggerHistoryId(2);
+        data = new Data();
+        data.setDataId(2);
+        data.setDataEventType(DataEventType.INSERT);
+        data.setRowData("1,Super Dooper,200");
+        data.setTriggerHistory(rebuilt);
+        result = router.routeToNodes(routingContext, new DataMetaData(data, new Table(), route,
+                new NodeChannel()), nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("200"));
+    }
 }
@@ -0,0 +1,107 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.junit.Test;
+
+public class DataRowViewTest {
+
+    @Test
+    public void testUpdateMatchesDataMap() {
+        DataMetaData dataMetaData = buildDataMetaData(DataEventType.UPDATE, "1,100,Super Dooper",
+                "1,200,Super Duper");
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        Map<String, String> view = router.getDataRowView(null, dataMetaData, null);
+        assertEquals(router.getDataMap(dataMetaData, null), new HashMap<String, String>(view));
+        assertEquals("100", view.get("NODE_ID"));
+        assertEquals("100", view.get("node_id"));
+        assertEquals("200", view.get("OLD_NODE_ID"));
+        assertTrue(view.containsKey("EXTERNAL_DATA"));
+        assertFalse(view.containsKey("NOT_A_COLUMN"));
+    }
+
+    @Test
+    public void testInsertHasNullOldValues() {
+        DataMetaData dataMetaData = buildDataMetaData(DataEventType.INSERT, "1,100,Super Dooper",
+                null);
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        Map<String, String> view = router.getDataRowView(null, dataMetaData, null);
+        assertEquals(router.getDataMap(dataMetaData, null), new HashMap<String, String>(view));
+        assertTrue(view.containsKey("OLD_COLUMN2"));
+        assertNull(view.get("OLD_COLUMN2"));
+    }
+
+    @Test
+    public void testDeleteUsesOldData() {
+        DataMetaData dataMetaData = buildDataMetaData(DataEventType.DELETE, null,
+                "1,200,Super Duper");
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        Map<String, String> view = router.getDataRowView(null, dataMetaData, null);
+        assertEquals(router.getDataMap(dataMetaData, null), new HashMap<String, String>(view));
+        assertEquals("200", view.get("NODE_ID"));
+    }
+
+    @Test
+    public void testViewIsReusedAndReset() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext context = new SimpleRouterContext();
+        DataRowView<String> first = router.getDataRowView(context,
+                buildDataMetaData(DataEventType.INSERT, "1,100,Super Dooper", null), null);
+        first.put("NODE_GROUP_ID", "client");
+        assertEquals("client", first.get("node_group_id"));
+        DataRowView<String> second = router.getDataRowView(context,
+                buildDataMetaData(DataEventType.INSERT, "2,300,Other", null), null);
+        assertSame(first, second);
+        assertEquals("300", second.get("NODE_ID"));
+        assertFalse(second.containsKey("NODE_GROUP_ID"));
+    }
+
+    protected DataMetaData buildDataMetaData(DataEventType eventType, String rowData,
+            String oldData) {
+        TriggerHistory triggerHist = new TriggerHistory("mytable", "ID", "ID,NODE_ID,COLUMN2");
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(eventType);
+        data.setRowData(rowData);
+        data.setOldData(oldData);
+        data.setTriggerHistory(triggerHist);
+        Router router = new Router();
+        router.setRouterId("route1");
+        return new DataMetaData(data, new Table(), router, new NodeChannel());
+    }
+
+}
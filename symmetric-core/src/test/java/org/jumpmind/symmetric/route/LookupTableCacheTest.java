@@ -0,0 +1,216 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.symmetric.statistic.CacheStats;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class LookupTableCacheTest {
+
+    List<Row> fullRows;
+
+    List<Row> changedRows;
+
+    List<String> queries;
+
+    List<Object> refreshFrom;
+
+    CacheStats stats;
+
+    LookupTableCache cache;
+
+    @Before
+    public void setup() {
+        fullRows = new ArrayList<Row>();
+        changedRows = new ArrayList<Row>();
+        queries = new ArrayList<String>();
+        refreshFrom = new ArrayList<Object>();
+        stats = new CacheStats(LookupTableDataRouter.CACHE_NAME);
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        when(sqlTemplate.query(anyString(), any(ISqlRowMapper.class), (Object[]) anyVararg()))
+                .thenAnswer(new Answer<List<Object>>() {
+                    public List<Object> answer(InvocationOnMock invocation) throws Throwable {
+                        String sql = (String) invocation.getArguments()[0];
+                        queries.add(sql);
+                        ISqlRowMapper<?> mapper = (ISqlRowMapper<?>) invocation.getArguments()[1];
+                        if (sql.contains("where")) {
+                            Object from = invocation.getArguments()[2];
+                            refreshFrom.add(from);
+                            for (Row row : changedRows) {
+                                if (isAtOrAfter(row.get("last_update"), from)) {
+                                    mapper.mapRow(row);
+                                }
+                            }
+                        } else {
+                            for (Row row : fullRows) {
+                                mapper.mapRow(row);
+                            }
+                        }
+                        return null;
+                    }
+                });
+        cache = new LookupTableCache(sqlTemplate, stats);
+    }
+
+    @Test
+    public void testNotCachedWithoutCacheTime() {
+        fullRows.add(row("brand1", "store1", null));
+        Map<String, Set<String>> first = cache.getLookupTable("store", "brand_id", "store_id",
+                null, 0, 0, 0, 100);
+        Map<String, Set<String>> second = cache.getLookupTable("store", "brand_id", "store_id",
+                null, 0, 0, 0, 100);
+        assertNotSame(first, second);
+        assertEquals(2, queries.size());
+        assertEquals(2, stats.getMissCount());
+    }
+
+    @Test
+    public void testCachedWithCacheTime() {
+        fullRows.add(row("brand1", "store1", null));
+        Map<String, Set<String>> first = cache.getLookupTable("store", "brand_id", "store_id",
+                null, 60000, 0, 0, 100);
+        Map<String, Set<String>> second = cache.getLookupTable("store", "brand_id", "store_id",
+                null, 60000, 0, 0, 100);
+        assertSame(first, second);
+        assertEquals(1, queries.size());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testIncrementalRefresh() {
+        fullRows.add(row("brand1", "store1", 1));
+        fullRows.add(row("brand1", "store2", 2));
+        Map<String, Set<String>> lookup = cache.getLookupTable("store", "brand_id", "store_id",
+                "last_update", 0, 0, 0, 100);
+        assertEquals(2, lookup.get("brand1").size());
+
+        changedRows.add(row("brand1", "store3", 3));
+        changedRows.add(row("brand2", "store1", 3));
+        lookup = cache.getLookupTable("store", "brand_id", "store_id", "last_update", 0, 0, 0, 100);
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(1).contains("last_update >= ?"));
+        assertEquals(3, lookup.get("brand1").size());
+        assertTrue(lookup.get("brand2").contains("store1"));
+        assertEquals(4, stats.getSize());
+    }
+
+    @Test
+    public void testTableOverMaxRowsIsNotKept() {
+        fullRows.add(row("brand1", "store1", null));
+        fullRows.add(row("brand2", "store2", null));
+        cache.getLookupTable("store", "brand_id", "store_id", null, 60000, 0, 0, 1);
+        cache.getLookupTable("store", "brand_id", "store_id", null, 60000, 0, 0, 1);
+        assertEquals(2, queries.size());
+        assertEquals(0, stats.getSize());
+        assertEquals(2, stats.getEvictionCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        fullRows.add(row("brand1", "store1", null));
+        cache.getLookupTable("store", "brand_id", "store_id", null, 60000, 0, 0, 1);
+        cache.getLookupTable("region", "brand_id", "store_id", null, 60000, 0, 0, 1);
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(1, stats.getSize());
+        assertNull(cache.lookupTables.get("store.brand_id.store_id.null"));
+    }
+
+    @Test
+    public void testIncrementalRefreshOverlapsLastUpdate() {
+        Timestamp lastUpdate = Timestamp.valueOf("2016-01-01 10:00:00");
+        fullRows.add(row("brand1", "store1", lastUpdate));
+        cache.getLookupTable("store", "brand_id", "store_id", "last_update", 0, 0, 60000, 100);
+
+        changedRows.add(row("brand1", "store1", lastUpdate));
+        changedRows.add(row("brand1", "store2", Timestamp.valueOf("2016-01-01 09:59:30")));
+        Map<String, Set<String>> lookup = cache.getLookupTable("store", "brand_id", "store_id",
+                "last_update", 0, 0, 60000, 100);
+        assertEquals(Timestamp.valueOf("2016-01-01 09:59:00"), refreshFrom.get(0));
+        assertTrue(lookup.get("brand1").contains("store2"));
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testLateRowOutsideOverlapWaitsForFullReload() {
+        Timestamp lastUpdate = Timestamp.valueOf("2016-01-01 10:00:00");
+        fullRows.add(row("brand1", "store1", lastUpdate));
+        cache.getLookupTable("store", "brand_id", "store_id", "last_update", 0, 0, 0, 100);
+
+        changedRows.add(row("brand1", "store2", Timestamp.valueOf("2016-01-01 09:59:30")));
+        Map<String, Set<String>> lookup = cache.getLookupTable("store", "brand_id", "store_id",
+                "last_update", 0, 0, 0, 100);
+        assertEquals(lastUpdate, refreshFrom.get(0));
+        assertEquals(1, lookup.get("brand1").size());
+
+        fullRows.add(row("brand1", "store2", Timestamp.valueOf("2016-01-01 09:59:30")));
+        cache.lookupTables.get("store.brand_id.store_id.last_update").loadTime = 0;
+        lookup = cache.getLookupTable("store", "brand_id", "store_id", "last_update", 0, 1, 0,
+                100);
+        assertEquals(2, lookup.get("brand1").size());
+    }
+
+    @Test
+    public void testNumericLastUpdateIsNotOverlapped() {
+        fullRows.add(row("brand1", "store1", 5));
+        cache.getLookupTable("store", "brand_id", "store_id", "last_update", 0, 0, 60000, 100);
+        cache.getLookupTable("store", "brand_id", "store_id", "last_update", 0, 0, 60000, 100);
+        assertEquals(5, refreshFrom.get(0));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected boolean isAtOrAfter(Object lastUpdate, Object from) {
+        return lastUpdate == null || from == null
+                || ((Comparable) lastUpdate).compareTo(from) >= 0;
+    }
+
+    protected Row row(String key, String value, Object lastUpdate) {
+        Row row = new Row(3);
+        row.put("brand_id", key);
+        row.put("store_id", value);
+        row.put("last_update", lastUpdate);
+        return row;
+    }
+
+}
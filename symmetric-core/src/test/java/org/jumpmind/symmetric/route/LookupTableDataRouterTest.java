@@ -126,4 +126,22 @@ public class LookupTableDataRouterTest {
         
         assertEquals(false, valid);
     }
+
+    @Test
+    public void testLastUpdateColumn() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TABLE=STORE\r\n" +
+                         "KEY_COLUMN=BRAND_ID\r\n" +
+                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
+                         "EXTERNAL_ID_COLUMN=STORE_ID\r\n" +
+                         "LAST_UPDATE_COLUMN=LAST_UPDATE_TIME");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(true, valid);
+    }
 }
@@ -0,0 +1,211 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.SqlException;
+import org.jumpmind.db.sql.mapper.StringMapper;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.NodeGroupLink;
+import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class SubSelectDataRouterTest {
+
+    ISymmetricDialect symmetricDialect;
+
+    IParameterService parameterService;
+
+    ISqlTemplate sqlTemplate;
+
+    TriggerHistory triggerHistory = new TriggerHistory("store_brand", "ID", "ID,BRAND_ID");
+
+    Router router;
+
+    @Before
+    public void setup() {
+        symmetricDialect = mock(ISymmetricDialect.class);
+        parameterService = mock(IParameterService.class);
+        sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getTablePrefix()).thenReturn("sym");
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(
+                platform.getObjectValues(any(BinaryEncoding.class), any(Table.class),
+                        any(String[].class), any(String[].class))).thenAnswer(
+                new Answer<Object[]>() {
+                    public Object[] answer(InvocationOnMock invocation) {
+                        return (Object[]) invocation.getArguments()[3];
+                    }
+                });
+        when(
+                sqlTemplate.query(anyString(), any(StringMapper.class), any(Object[].class),
+                        any(int[].class))).thenAnswer(new Answer<List<String>>() {
+            public List<String> answer(InvocationOnMock invocation) {
+                Object[] args = (Object[]) invocation.getArguments()[2];
+                return Arrays.asList("store" + args[args.length - 1]);
+            }
+        });
+
+        router = new Router();
+        router.setRouterId("brand_stores");
+        router.setNodeGroupLink(new NodeGroupLink("corp", "store"));
+        router.setRouterExpression("c.external_id in (select store_id from store where brand_id=:BRAND_ID)");
+    }
+
+    @Test
+    public void testResultsCachedByBoundValues() {
+        setSizes(100, 1);
+        SubSelectDataRouter subSelectRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        SimpleRouterContext context = new SimpleRouterContext();
+
+        assertEquals(new HashSet<String>(Arrays.asList("store1")), route(subSelectRouter, context, "1"));
+        assertEquals(new HashSet<String>(Arrays.asList("store1")), route(subSelectRouter, context, "1"));
+        verify(sqlTemplate, times(1)).query(anyString(), any(StringMapper.class),
+                any(Object[].class), any(int[].class));
+
+        assertEquals(new HashSet<String>(Arrays.asList("store2")), route(subSelectRouter, context, "2"));
+        verify(sqlTemplate, times(2)).query(anyString(), any(StringMapper.class),
+                any(Object[].class), any(int[].class));
+    }
+
+    @Test
+    public void testNoCacheWhenSizeIsZero() {
+        setSizes(0, 1);
+        SubSelectDataRouter subSelectRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        SimpleRouterContext context = new SimpleRouterContext();
+
+        route(subSelectRouter, context, "1");
+        route(subSelectRouter, context, "1");
+        verify(sqlTemplate, times(2)).query(anyString(), any(StringMapper.class),
+                any(Object[].class), any(int[].class));
+    }
+
+    @Test
+    public void testQueuedRowsLookedUpWithUnionAll() throws Exception {
+        setSizes(100, 10);
+        when(sqlTemplate.query(anyString(), any(Object[].class))).thenReturn(
+                Arrays.asList(row(0, "store1"), row(1, "store2"), row(2, "store3"), row(2, "store4")));
+        SubSelectDataRouter subSelectRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        ChannelRouterContext context = newChannelRouterContext(data("2"), data("1"), data("3"));
+
+        assertEquals(new HashSet<String>(Arrays.asList("store1")), route(subSelectRouter, context, "1"));
+        verify(sqlTemplate, times(1)).query(
+                eq("select 0 as row_index, c.node_id from sym_node c where c.node_group_id=? and c.sync_enabled=1 and c.external_id in (select store_id from store where brand_id=?)"
+                        + " union all select 1 as row_index, c.node_id from sym_node c where c.node_group_id=? and c.sync_enabled=1 and c.external_id in (select store_id from store where brand_id=?)"
+                        + " union all select 2 as row_index, c.node_id from sym_node c where c.node_group_id=? and c.sync_enabled=1 and c.external_id in (select store_id from store where brand_id=?)"),
+                aryEq(new Object[] { "store", "1", "store", "2", "store", "3" }));
+
+        assertEquals(new HashSet<String>(Arrays.asList("store2")), route(subSelectRouter, context, "2"));
+        assertEquals(new HashSet<String>(Arrays.asList("store3", "store4")), route(subSelectRouter, context, "3"));
+        verify(sqlTemplate, times(1)).query(anyString(), any(Object[].class));
+        verify(sqlTemplate, never()).query(anyString(), any(StringMapper.class),
+                any(Object[].class), any(int[].class));
+    }
+
+    @Test
+    public void testFailedUnionAllFallsBackToOneRowAtATime() throws Exception {
+        setSizes(100, 10);
+        when(sqlTemplate.query(anyString(), any(Object[].class))).thenThrow(
+                new SqlException("union all is not supported"));
+        SubSelectDataRouter subSelectRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        ChannelRouterContext context = newChannelRouterContext(data("2"), data("3"));
+
+        assertEquals(new HashSet<String>(Arrays.asList("store1")), route(subSelectRouter, context, "1"));
+        assertEquals(new HashSet<String>(Arrays.asList("store2")), route(subSelectRouter, context, "2"));
+        verify(sqlTemplate, times(1)).query(anyString(), any(Object[].class));
+        verify(sqlTemplate, times(2)).query(anyString(), any(StringMapper.class),
+                any(Object[].class), any(int[].class));
+    }
+
+    protected void setSizes(int cacheSize, int batchSize) {
+        when(parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_SIZE, 0))
+                .thenReturn(cacheSize);
+        when(parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_BATCH_SIZE, 1))
+                .thenReturn(batchSize);
+    }
+
+    protected ChannelRouterContext newChannelRouterContext(Data... queued) throws Exception {
+        ChannelRouterContext context = new ChannelRouterContext("00000", new NodeChannel(),
+                mock(ISqlTransaction.class));
+        IDataToRouteReader reader = mock(IDataToRouteReader.class);
+        when(reader.peek(anyInt())).thenReturn(
+                new ArrayList<Data>(Arrays.asList(queued)));
+        context.setDataToRouteReader(reader);
+        return context;
+    }
+
+    protected Object route(SubSelectDataRouter subSelectRouter, SimpleRouterContext context,
+            String brandId) {
+        DataMetaData dataMetaData = new DataMetaData(data(brandId), new Table(), router,
+                new NodeChannel());
+        return subSelectRouter.routeToNodes(context, dataMetaData, null, false, false, null);
+    }
+
+    protected Data data(String brandId) {
+        Data data = new Data();
+        data.setDataEventType(DataEventType.INSERT);
+        data.setRowData(brandId + "0," + brandId);
+        data.setTriggerHistory(triggerHistory);
+        return data;
+    }
+
+    protected Row row(int rowIndex, String nodeId) {
+        Row row = new Row(2);
+        row.put("row_index", rowIndex);
+        row.put("node_id", nodeId);
+        return row;
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.stage.IStagingManager;
+import org.jumpmind.symmetric.model.BatchAck;
+import org.jumpmind.symmetric.model.BatchAckResult;
+import org.jumpmind.symmetric.model.Channel;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.OutgoingBatch.Status;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IFileSyncService;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class AcknowledgeServiceTest {
+
+    IParameterService parameterService;
+
+    IOutgoingBatchService outgoingBatchService;
+
+    IConfigurationService configurationService;
+
+    IStatisticManager statisticManager;
+
+    IFileSyncService fileSyncService;
+
+    AcknowledgeService acknowledgeService;
+
+    @Before
+    public void setup() {
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(mock(ISqlTemplate.class));
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(platform.scrubSql(anyString())).thenAnswer(new Answer<String>() {
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                return (String) invocation.getArguments()[0];
+            }
+        });
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getSqlReplacementTokens()).thenReturn(new HashMap<String, String>());
+
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        when(parameterService.getEngineName()).thenReturn("test");
+        when(parameterService.is(ParameterConstants.ACKNOWLEDGE_COALESCE_ENABLED)).thenReturn(true);
+
+        outgoingBatchService = mock(IOutgoingBatchService.class);
+        configurationService = mock(IConfigurationService.class);
+        statisticManager = mock(IStatisticManager.class);
+        fileSyncService = mock(IFileSyncService.class);
+
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
+        when(engine.getExtensionService()).thenReturn(mock(IExtensionService.class));
+        when(engine.getStagingManager()).thenReturn(mock(IStagingManager.class));
+        when(engine.getOutgoingBatchService()).thenReturn(outgoingBatchService);
+        when(engine.getConfigurationService()).thenReturn(configurationService);
+        when(engine.getStatisticManager()).thenReturn(statisticManager);
+        when(engine.getFileSyncService()).thenReturn(fileSyncService);
+        acknowledgeService = new AcknowledgeService(engine);
+    }
+
+    @Test
+    public void testOkAcksCoalescedByChannel() {
+        OutgoingBatch failed = batch(4, "c1");
+        when(outgoingBatchService.findOutgoingBatches("00001", Arrays.asList(1l, 2l, 3l)))
+                .thenReturn(Arrays.asList(batch(1, "c1"), batch(2, "c1"), batch(3, "c2")));
+        when(outgoingBatchService.findOutgoingBatch(4, "00001")).thenReturn(failed);
+
+        BatchAck failedAck = ack(4);
+        failedAck.setOk(false);
+        List<BatchAckResult> results = acknowledgeService.ack(Arrays.asList(ack(1), ack(2),
+                ack(3), failedAck));
+
+        assertEquals(4, results.size());
+        for (BatchAckResult result : results) {
+            assertTrue(result.isOk());
+        }
+        verify(outgoingBatchService).updateOutgoingBatchesAsOk("00001", "c1",
+                Arrays.asList(1l, 2l));
+        verify(outgoingBatchService).updateOutgoingBatchesAsOk("00001", "c2", Arrays.asList(3l));
+        verify(outgoingBatchService).updateOutgoingBatch(failed);
+        verify(outgoingBatchService, times(1)).updateOutgoingBatch(any(OutgoingBatch.class));
+        assertEquals(Status.ER, failed.getStatus());
+        verify(statisticManager).removeRouterStatsByBatch(1l);
+        verify(statisticManager).removeRouterStatsByBatch(2l);
+        verify(statisticManager).removeRouterStatsByBatch(3l);
+    }
+
+    @Test
+    public void testCoalescedAckForMissingBatchFails() {
+        when(outgoingBatchService.findOutgoingBatches("00001", Arrays.asList(1l, 2l)))
+                .thenReturn(Arrays.asList(batch(1, "c1")));
+
+        List<BatchAckResult> results = acknowledgeService.ack(Arrays.asList(ack(1), ack(2)));
+
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).getBatchId());
+        assertTrue(results.get(0).isOk());
+        assertEquals(2, results.get(1).getBatchId());
+        assertFalse(results.get(1).isOk());
+        verify(outgoingBatchService).updateOutgoingBatchesAsOk("00001", "c1", Arrays.asList(1l));
+    }
+
+    @Test
+    public void testFileSyncAcksNotCoalesced() {
+        Channel channel = new Channel("filesync", 1);
+        channel.setFileSyncFlag(true);
+        when(configurationService.getChannel("filesync")).thenReturn(channel);
+        OutgoingBatch fileSyncBatch = batch(2, "filesync");
+        when(outgoingBatchService.findOutgoingBatches("00001", Arrays.asList(1l, 2l)))
+                .thenReturn(Arrays.asList(batch(1, "c1"), fileSyncBatch));
+        when(outgoingBatchService.findOutgoingBatch(2, "00001")).thenReturn(fileSyncBatch);
+
+        acknowledgeService.ack(Arrays.asList(ack(1), ack(2)));
+
+        verify(outgoingBatchService).updateOutgoingBatchesAsOk("00001", "c1", Arrays.asList(1l));
+        verify(outgoingBatchService).updateOutgoingBatch(fileSyncBatch);
+        assertEquals(Status.OK, fileSyncBatch.getStatus());
+        verify(fileSyncService).acknowledgeFiles(fileSyncBatch);
+    }
+
+    @Test
+    public void testAcksNotCoalescedWhenDisabled() {
+        when(parameterService.is(ParameterConstants.ACKNOWLEDGE_COALESCE_ENABLED)).thenReturn(false);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch(1, "c1"));
+        when(outgoingBatchService.findOutgoingBatch(2, "00001")).thenReturn(batch(2, "c1"));
+
+        List<BatchAckResult> results = acknowledgeService.ack(Arrays.asList(ack(1), ack(2)));
+
+        assertEquals(2, results.size());
+        verify(outgoingBatchService, times(2)).updateOutgoingBatch(any(OutgoingBatch.class));
+        verify(outgoingBatchService, never()).updateOutgoingBatchesAsOk(anyString(), anyString(),
+                anyListOf(Long.class));
+        verify(outgoingBatchService, never()).findOutgoingBatches(anyString(),
+                anyListOf(Long.class));
+        verify(statisticManager, times(2)).removeRouterStatsByBatch(anyLong());
+    }
+
+    protected BatchAck ack(long batchId) {
+        BatchAck ack = new BatchAck(batchId);
+        ack.setNodeId("00001");
+        return ack;
+    }
+
+    protected OutgoingBatch batch(long batchId, String channelId) {
+        OutgoingBatch batch = new OutgoingBatch("00001", channelId, Status.LD);
+        batch.setBatchId(batchId);
+        return batch;
+    }
+
+}
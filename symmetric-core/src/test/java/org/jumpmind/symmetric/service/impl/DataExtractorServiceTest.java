@@ -0,0 +1,214 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.IDataWriter;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.OutgoingBatch.Status;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataExtractorServiceTest {
+
+    IOutgoingBatchService outgoingBatchService;
+
+    List<OutgoingBatch> extracted;
+
+    CountDownLatch extracting;
+
+    CountDownLatch finishExtracting;
+
+    DataExtractorService dataExtractorService;
+
+    @Before
+    public void setup() {
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        IParameterService parameterService = mock(IParameterService.class);
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        IDatabasePlatform databasePlatform = mock(IDatabasePlatform.class);
+        outgoingBatchService = mock(IOutgoingBatchService.class);
+        when(databasePlatform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(symmetricDialect.getPlatform()).thenReturn(databasePlatform);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
+        when(engine.getOutgoingBatchService()).thenReturn(outgoingBatchService);
+        extracted = new ArrayList<OutgoingBatch>();
+        dataExtractorService = new DataExtractorService(engine) {
+            @Override
+            protected OutgoingBatch extractOutgoingBatch(ProcessInfo processInfo,
+                    Node targetNode, IDataWriter dataWriter, OutgoingBatch currentBatch,
+                    boolean useStagingDataWriter, boolean updateBatchStatistics, ExtractMode mode) {
+                extracted.add(currentBatch);
+                if (extracting != null) {
+                    extracting.countDown();
+                    try {
+                        finishExtracting.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return currentBatch;
+            }
+        };
+    }
+
+    @Test
+    public void testExtractedAheadBatchIsSentWhenStillSendable() {
+        OutgoingBatch queued = batch(Status.NE);
+        OutgoingBatch extractedAhead = batch(Status.QY);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch(Status.QY));
+        OutgoingBatch batch = waitForExtractAhead(queued, extractedAhead);
+        assertSame(extractedAhead, batch);
+        assertEquals(0, extracted.size());
+    }
+
+    @Test
+    public void testExtractedAheadBatchIgnoredMeanwhileIsNotSent() {
+        OutgoingBatch queued = batch(Status.NE);
+        OutgoingBatch ignored = batch(Status.IG);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(ignored);
+        OutgoingBatch batch = waitForExtractAhead(queued, batch(Status.QY));
+        assertSame(ignored, batch);
+        assertEquals(Status.IG, batch.getStatus());
+        assertEquals(1, extracted.size());
+        assertSame(ignored, extracted.get(0));
+    }
+
+    @Test
+    public void testExtractedAheadBatchSetToOkMeanwhileIsNotSent() {
+        OutgoingBatch queued = batch(Status.NE);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch(Status.OK));
+        OutgoingBatch batch = waitForExtractAhead(queued, batch(Status.QY));
+        assertEquals(Status.OK, batch.getStatus());
+    }
+
+    @Test
+    public void testBatchSkippedByExtractAheadIsExtracted() {
+        OutgoingBatch queued = batch(Status.NE);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch(Status.NE));
+        OutgoingBatch batch = waitForExtractAhead(queued, null);
+        assertSame(queued, batch);
+        assertEquals(1, extracted.size());
+    }
+
+    @Test
+    public void testExtractAheadExtractsItsOwnCopyOfBatch() throws Exception {
+        OutgoingBatch queued = batch(Status.NE);
+        OutgoingBatch reread = batch(Status.NE);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(reread);
+
+        OutgoingBatch batch = newExtractAheadBatch().call();
+
+        assertSame(reread, batch);
+        assertNotSame(queued, batch);
+        assertSame(reread, extracted.get(0));
+    }
+
+    @Test
+    public void testExtractAheadNotStartedIsCancelled() throws Exception {
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch(Status.NE));
+        DataExtractorService.ExtractAheadBatch extractAheadBatch = newExtractAheadBatch();
+        FutureTask<OutgoingBatch> future = new FutureTask<OutgoingBatch>(extractAheadBatch);
+        extractAheadBatch.setFuture(future);
+
+        dataExtractorService.finishExtractAhead(Collections.singletonList(extractAheadBatch));
+        assertTrue(future.isCancelled());
+
+        assertNull(extractAheadBatch.call());
+        assertEquals(0, extracted.size());
+    }
+
+    @Test
+    public void testExtractAheadInProgressIsAwaited() throws Exception {
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch(Status.NE));
+        extracting = new CountDownLatch(1);
+        finishExtracting = new CountDownLatch(1);
+        final DataExtractorService.ExtractAheadBatch extractAheadBatch = newExtractAheadBatch();
+        final FutureTask<OutgoingBatch> future = new FutureTask<OutgoingBatch>(extractAheadBatch);
+        extractAheadBatch.setFuture(future);
+        new Thread(future).start();
+        extracting.await();
+
+        Thread finisher = new Thread() {
+            public void run() {
+                dataExtractorService.finishExtractAhead(Collections
+                        .singletonList(extractAheadBatch));
+            }
+        };
+        finisher.start();
+        finisher.join(200);
+        assertTrue(finisher.isAlive());
+
+        finishExtracting.countDown();
+        finisher.join();
+        assertTrue(future.isDone());
+        assertFalse(future.isCancelled());
+    }
+
+    protected DataExtractorService.ExtractAheadBatch newExtractAheadBatch() {
+        return dataExtractorService.new ExtractAheadBatch(new Node("00001", "client"), 1,
+                "00001", null, DataExtractorService.ExtractMode.FOR_SYM_CLIENT);
+    }
+
+    protected OutgoingBatch waitForExtractAhead(OutgoingBatch queued,
+            final OutgoingBatch extractedAhead) {
+        FutureTask<OutgoingBatch> future = new FutureTask<OutgoingBatch>(
+                new Callable<OutgoingBatch>() {
+                    public OutgoingBatch call() throws Exception {
+                        return extractedAhead;
+                    }
+                });
+        future.run();
+        return dataExtractorService.waitForExtractAhead(new ProcessInfo(), new Node("00001",
+                "client"), null, queued, future, DataExtractorService.ExtractMode.FOR_SYM_CLIENT);
+    }
+
+    protected OutgoingBatch batch(Status status) {
+        OutgoingBatch batch = new OutgoingBatch("00001", "default", status);
+        batch.setBatchId(1);
+        return batch;
+    }
+
+}
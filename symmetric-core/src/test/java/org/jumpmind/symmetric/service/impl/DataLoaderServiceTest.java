@@ -0,0 +1,368 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.model.ChannelMap;
+import org.jumpmind.symmetric.model.IncomingBatch;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeSecurity;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.model.ProcessInfoKey;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.impl.DataLoaderService.LoadInParallelOnArrivalListener;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.symmetric.transport.IIncomingTransport;
+import org.jumpmind.symmetric.transport.http.HttpTransportManager;
+import org.jumpmind.symmetric.web.WebConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class DataLoaderServiceTest {
+
+    ISymmetricEngine engine;
+
+    IParameterService parameterService;
+
+    DataLoaderService dataLoaderService;
+
+    List<Long> loaded;
+
+    List<Long> skipped;
+
+    @Before
+    public void setup() {
+        engine = mock(ISymmetricEngine.class);
+        parameterService = mock(IParameterService.class);
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        IDatabasePlatform databasePlatform = mock(IDatabasePlatform.class);
+        when(parameterService.getEngineName()).thenReturn("test");
+        when(parameterService.getInt(ParameterConstants.DATA_LOADER_PARALLEL_THREAD_COUNT, 4))
+                .thenReturn(4);
+        when(databasePlatform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(symmetricDialect.getPlatform()).thenReturn(databasePlatform);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
+        when(engine.getExtensionService()).thenReturn(mock(IExtensionService.class));
+        dataLoaderService = new DataLoaderService(engine);
+        loaded = Collections.synchronizedList(new ArrayList<Long>());
+        skipped = Collections.synchronizedList(new ArrayList<Long>());
+    }
+
+    @After
+    public void teardown() {
+        dataLoaderService.stop();
+    }
+
+    @Test
+    public void testParallelLoadKeepsOrderWithinChannel() {
+        LoadInParallelOnArrivalListener listener = newListener(-1);
+        arrive(listener, 1, "a");
+        arrive(listener, 2, "b");
+        arrive(listener, 3, "a");
+        arrive(listener, 4, "b");
+        arrive(listener, 5, "a");
+        listener.finish();
+
+        assertEquals(5, loaded.size());
+        assertEquals(Arrays.asList(1l, 3l, 5l), loadedOn(1, 3, 5));
+        assertEquals(Arrays.asList(2l, 4l), loadedOn(2, 4));
+        assertNull(listener.getError());
+    }
+
+    @Test
+    public void testParallelLoadStopsChannelAfterError() {
+        LoadInParallelOnArrivalListener listener = newListener(3);
+        arrive(listener, 1, "a");
+        arrive(listener, 2, "b");
+        arrive(listener, 3, "a");
+        arrive(listener, 4, "b");
+        arrive(listener, 5, "a");
+        arrive(listener, 6, "a");
+        listener.finish();
+
+        assertEquals(Arrays.asList(1l, 3l), loadedOn(1, 3, 5, 6));
+        assertEquals(Arrays.asList(2l, 4l), loadedOn(2, 4));
+        assertEquals(Arrays.asList(5l, 6l), skipped);
+        assertSame(IllegalStateException.class, listener.getError().getClass());
+    }
+
+    @Test
+    public void testParallelLoadRecordsStatusWhenLoadCompletes() throws Exception {
+        LoadInParallelOnArrivalListener listener = newListener(-1);
+        arrive(listener, 1, "a");
+        long waitUntil = System.currentTimeMillis() + 5000;
+        while (listener.getBatchesLoaded().isEmpty() && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(Arrays.asList(1l), batchIds(listener.getBatchesLoaded()));
+        arrive(listener, 2, "b");
+        arrive(listener, 3, "a");
+        listener.finish();
+
+        List<Long> batchIds = batchIds(listener.getBatchesLoaded());
+        assertEquals(3, batchIds.size());
+        assertEquals(1l, batchIds.get(0).longValue());
+    }
+
+    @Test
+    public void testPullAcknowledgementSentWithNextPull() throws Exception {
+        HttpTransportManager transportManager = mockPullTransportManager();
+        Node remote = new Node("00001", "client");
+        DataLoaderService service = newPullService(ok(1), ok(2));
+        service.loadDataFromPull(remote);
+        service.loadDataFromPull(remote);
+
+        verify(transportManager, never()).sendAcknowledgement(any(Node.class),
+                anyListOf(IncomingBatch.class), any(Node.class), anyString(), anyString());
+        assertEquals(Arrays.asList(null, "1"), acknowledgementHeaders(transportManager, 2));
+    }
+
+    @Test
+    public void testFailedPullAcknowledgementSentRightAway() throws Exception {
+        HttpTransportManager transportManager = mockPullTransportManager();
+        Node remote = new Node("00001", "client");
+        IncomingBatch failed = ok(1).get(0);
+        failed.setStatus(IncomingBatch.Status.ER);
+        DataLoaderService service = newPullService(Arrays.asList(failed),
+                new ArrayList<IncomingBatch>());
+        service.loadDataFromPull(remote);
+        service.loadDataFromPull(remote);
+
+        verify(transportManager).sendAcknowledgement(eq(remote),
+                eq(Arrays.asList(failed)), any(Node.class), anyString(), anyString());
+        assertEquals(Arrays.asList(null, null), acknowledgementHeaders(transportManager, 2));
+    }
+
+    @Test
+    public void testPullAcknowledgementKeptWhenPullFails() throws Exception {
+        HttpTransportManager transportManager = mockPullTransportManager();
+        Node remote = new Node("00001", "client");
+        DataLoaderService service = newPullService(ok(1), null, new ArrayList<IncomingBatch>());
+        service.loadDataFromPull(remote);
+        try {
+            service.loadDataFromPull(remote);
+            fail("Expected the pull to fail");
+        } catch (IOException ex) {
+        }
+        service.loadDataFromPull(remote);
+
+        verify(transportManager, never()).sendAcknowledgement(any(Node.class),
+                anyListOf(IncomingBatch.class), any(Node.class), anyString(), anyString());
+        assertEquals(Arrays.asList(null, "1", "1"), acknowledgementHeaders(transportManager, 3));
+    }
+
+    @Test
+    public void testPullAcknowledgementSentRightAwayWhenPiggybackDisabled() throws Exception {
+        HttpTransportManager transportManager = mockPullTransportManager();
+        when(parameterService.is(ParameterConstants.DATA_LOADER_ACK_PIGGYBACK_ENABLED))
+                .thenReturn(false);
+        Node remote = new Node("00001", "client");
+        DataLoaderService service = newPullService(ok(1), ok(2));
+        service.loadDataFromPull(remote);
+        service.loadDataFromPull(remote);
+
+        verify(transportManager, times(2)).sendAcknowledgement(eq(remote),
+                anyListOf(IncomingBatch.class), any(Node.class), anyString(), anyString());
+        assertEquals(Arrays.asList(null, null), acknowledgementHeaders(transportManager, 2));
+    }
+
+    protected List<IncomingBatch> ok(long batchId) {
+        IncomingBatch batch = new IncomingBatch();
+        batch.setBatchId(batchId);
+        batch.setNodeId("00001");
+        batch.setStatus(IncomingBatch.Status.OK);
+        List<IncomingBatch> list = new ArrayList<IncomingBatch>();
+        list.add(batch);
+        return list;
+    }
+
+    protected HttpTransportManager mockPullTransportManager() throws Exception {
+        HttpTransportManager transportManager = mock(HttpTransportManager.class);
+        when(transportManager.getPullTransport(any(Node.class), any(Node.class), anyString(),
+                any(Map.class), anyString())).thenReturn(mock(IIncomingTransport.class));
+        when(transportManager.getAcknowledgementData(any(Node.class),
+                anyListOf(IncomingBatch.class), any(Node.class))).thenAnswer(new Answer<String>() {
+            @SuppressWarnings("unchecked")
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                StringBuilder data = new StringBuilder();
+                for (IncomingBatch batch : (List<IncomingBatch>) invocation.getArguments()[1]) {
+                    data.append(data.length() > 0 ? "," : "").append(batch.getBatchId());
+                }
+                return data.toString();
+            }
+        });
+        when(transportManager.sendAcknowledgement(any(Node.class), anyListOf(IncomingBatch.class),
+                any(Node.class), anyString(), anyString())).thenReturn(200);
+        when(engine.getTransportManager()).thenReturn(transportManager);
+        when(parameterService.is(ParameterConstants.DATA_LOADER_ACK_PIGGYBACK_ENABLED))
+                .thenReturn(true);
+        when(parameterService.getInt(ParameterConstants.DATA_LOADER_ACK_PIGGYBACK_MAX_SIZE))
+                .thenReturn(1000);
+        when(parameterService.getInt(ParameterConstants.DATA_LOADER_NUM_OF_ACK_RETRIES))
+                .thenReturn(1);
+        return transportManager;
+    }
+
+    /**
+     * @param loads the batches loaded by each pull, or null for a pull that
+     *            fails
+     */
+    protected DataLoaderService newPullService(List<IncomingBatch>... loads) {
+        Node local = new Node("00000", "server");
+        INodeService nodeService = mock(INodeService.class);
+        when(nodeService.findIdentity()).thenReturn(local);
+        when(nodeService.findNodeSecurity("00000")).thenReturn(new NodeSecurity());
+        IConfigurationService configurationService = mock(IConfigurationService.class);
+        when(configurationService.getSuspendIgnoreChannelLists()).thenReturn(new ChannelMap());
+        IStatisticManager statisticManager = mock(IStatisticManager.class);
+        when(statisticManager.newProcessInfo(any(ProcessInfoKey.class))).thenAnswer(
+                new Answer<ProcessInfo>() {
+                    public ProcessInfo answer(InvocationOnMock invocation) throws Throwable {
+                        return new ProcessInfo();
+                    }
+                });
+        when(engine.getNodeService()).thenReturn(nodeService);
+        when(engine.getConfigurationService()).thenReturn(configurationService);
+        when(engine.getStatisticManager()).thenReturn(statisticManager);
+        final LinkedList<List<IncomingBatch>> pulls = new LinkedList<List<IncomingBatch>>(
+                Arrays.asList(loads));
+        return new DataLoaderService(engine) {
+            @Override
+            protected List<IncomingBatch> loadDataFromTransport(ProcessInfo processInfo,
+                    Node sourceNode, IIncomingTransport transport) throws IOException {
+                List<IncomingBatch> list = pulls.removeFirst();
+                if (list == null) {
+                    throw new IOException("Connection reset");
+                }
+                return list;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<String> acknowledgementHeaders(HttpTransportManager transportManager,
+            int pulls) throws Exception {
+        ArgumentCaptor<Map> requestProperties = ArgumentCaptor.forClass(Map.class);
+        verify(transportManager, times(pulls)).getPullTransport(any(Node.class), any(Node.class),
+                anyString(), requestProperties.capture(), anyString());
+        List<String> headers = new ArrayList<String>();
+        for (Map<String, String> properties : requestProperties.getAllValues()) {
+            headers.add(properties.get(WebConstants.ACKNOWLEDGEMENTS));
+        }
+        return headers;
+    }
+
+    protected List<Long> batchIds(List<IncomingBatch> batches) {
+        List<Long> batchIds = new ArrayList<Long>();
+        for (IncomingBatch batch : batches) {
+            batchIds.add(batch.getBatchId());
+        }
+        return batchIds;
+    }
+
+    protected List<Long> loadedOn(long... batchIds) {
+        List<Long> channelBatchIds = new ArrayList<Long>();
+        for (Long batchId : new ArrayList<Long>(loaded)) {
+            for (long id : batchIds) {
+                if (batchId == id) {
+                    channelBatchIds.add(batchId);
+                }
+            }
+        }
+        return channelBatchIds;
+    }
+
+    protected void arrive(LoadInParallelOnArrivalListener listener, long batchId,
+            String channelId) {
+        listener.end(new DataContext(), new Batch(BatchType.LOAD, batchId, channelId,
+                BinaryEncoding.BASE64, "00001", "00000", false), mock(IStagedResource.class));
+    }
+
+    protected LoadInParallelOnArrivalListener newListener(final long failingBatchId) {
+        return dataLoaderService.new LoadInParallelOnArrivalListener(new ProcessInfo(), "00001",
+                dataLoaderService.new ManageIncomingBatchListener(), 3) {
+            @Override
+            protected BatchLoader newBatchLoader(DataContext ctx, final Batch batch,
+                    IStagedResource resource, long networkMillis) {
+                return new BatchLoader(ctx, batch, resource, networkMillis) {
+                    @Override
+                    void load() {
+                        try {
+                            Thread.sleep(batch.getBatchId() % 2 == 1 ? 20 : 1);
+                        } catch (InterruptedException e) {
+                        }
+                        loaded.add(batch.getBatchId());
+                        if (batch.getBatchId() == failingBatchId) {
+                            throw new IllegalStateException("Failed to load");
+                        }
+                        listener.getBatchesProcessed().addAll(ok(batch.getBatchId()));
+                    }
+
+                    @Override
+                    void skip(Throwable cause) {
+                        skipped.add(batch.getBatchId());
+                    }
+                };
+            }
+        };
+    }
+
+}
@@ -217,6 +217,10 @@ public class MockNodeService implements INodeService {
     public void flushNodeAuthorizedCache() {
     }
 
+    public long getNodeChangeCount() {
+        return 0;
+    }
+
     public INodeIdCreator getNodeIdCreator() {
         return null;
     }
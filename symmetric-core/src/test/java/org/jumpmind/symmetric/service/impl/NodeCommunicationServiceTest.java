@@ -0,0 +1,262 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.DatabaseParameter;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeCommunication;
+import org.jumpmind.symmetric.model.NodeCommunication.CommunicationType;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class NodeCommunicationServiceTest {
+
+    final Logger log = LoggerFactory.getLogger(getClass());
+
+    ISqlTemplate sqlTemplate;
+
+    INodeService nodeService;
+
+    IParameterService parameterService;
+
+    List<DatabaseParameter> offlineParameters;
+
+    NodeCommunicationService service;
+
+    @Before
+    public void setup() {
+        sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class, RETURNS_DEEP_STUBS);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.scrubSql(anyString())).thenAnswer(new Answer<String>() {
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                return (String) invocation.getArguments()[0];
+            }
+        });
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+
+        offlineParameters = new ArrayList<DatabaseParameter>();
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        when(parameterService.getLong(ParameterConstants.CACHE_TIMEOUT_NODE_COMMUNICATION_IN_MS))
+                .thenReturn(60000l);
+        when(parameterService.getLastTimeParameterWereCached()).thenReturn(new Date(1));
+        when(parameterService.getDatabaseParametersFor(ParameterConstants.NODE_OFFLINE))
+                .thenReturn(offlineParameters);
+
+        nodeService = mock(INodeService.class);
+        service = new NodeCommunicationService(mock(IClusterService.class), nodeService,
+                parameterService, symmetricDialect);
+    }
+
+    @Test
+    public void testListMatchesRowsToNodes() {
+        setNodesToPushTo(nodes(1, 3));
+        setCommunicationRows(communicationRows(2, 4));
+
+        List<NodeCommunication> list = service.list(CommunicationType.PUSH);
+
+        assertEquals(3, list.size());
+        Set<String> nodeIds = new HashSet<String>();
+        for (NodeCommunication nodeCommunication : list) {
+            assertNotNull(nodeCommunication.getNode());
+            assertEquals(nodeCommunication.getNodeId(), nodeCommunication.getNode().getNodeId());
+            nodeIds.add(nodeCommunication.getNodeId());
+        }
+        assertTrue(nodeIds.contains("1") && nodeIds.contains("2") && nodeIds.contains("3"));
+        verify(sqlTemplate, times(1)).update(contains("delete"), (Object[]) anyVararg());
+    }
+
+    @Test
+    public void testOfflineNodesAreRemoved() {
+        setNodesToPushTo(nodes(1, 4));
+        setCommunicationRows(new ArrayList<NodeCommunication>());
+        offlineParameters.add(new DatabaseParameter(ParameterConstants.NODE_OFFLINE, "true", "2", "group"));
+        offlineParameters.add(new DatabaseParameter(ParameterConstants.NODE_OFFLINE, "true", ParameterConstants.ALL, "other"));
+
+        List<NodeCommunication> list = service.list(CommunicationType.PUSH);
+
+        assertEquals(3, list.size());
+        for (NodeCommunication nodeCommunication : list) {
+            assertFalse("2".equals(nodeCommunication.getNodeId()));
+        }
+    }
+
+    @Test
+    public void testNodeListIsCachedUntilCleared() {
+        setNodesToPushTo(nodes(1, 2));
+        setCommunicationRows(communicationRows(1, 2));
+
+        service.list(CommunicationType.PUSH);
+        service.list(CommunicationType.PUSH);
+        verify(nodeService, times(1)).findNodesToPushTo();
+
+        service.clearCache();
+        service.list(CommunicationType.PUSH);
+        verify(nodeService, times(2)).findNodesToPushTo();
+
+        when(parameterService.getLastTimeParameterWereCached()).thenReturn(new Date(2));
+        service.list(CommunicationType.PUSH);
+        verify(nodeService, times(3)).findNodesToPushTo();
+    }
+
+    @Test
+    public void testNodeListRefreshedWhenNodesChange() {
+        setNodesToPushTo(nodes(1, 2));
+        setCommunicationRows(communicationRows(1, 2));
+        when(nodeService.getNodeChangeCount()).thenReturn(1l);
+
+        assertEquals(2, service.list(CommunicationType.PUSH).size());
+        setNodesToPushTo(nodes(1, 3));
+        assertEquals(2, service.list(CommunicationType.PUSH).size());
+
+        when(nodeService.getNodeChangeCount()).thenReturn(2l);
+        setCommunicationRows(communicationRows(1, 3));
+        assertEquals(3, service.list(CommunicationType.PUSH).size());
+        verify(nodeService, times(2)).findNodesToPushTo();
+    }
+
+    @Test
+    public void testNodeListNotCachedWithoutCacheTime() {
+        when(parameterService.getLong(ParameterConstants.CACHE_TIMEOUT_NODE_COMMUNICATION_IN_MS))
+                .thenReturn(0l);
+        setNodesToPushTo(nodes(1, 2));
+        setCommunicationRows(communicationRows(1, 2));
+
+        service.list(CommunicationType.PUSH);
+        service.list(CommunicationType.PUSH);
+        verify(nodeService, times(2)).findNodesToPushTo();
+    }
+
+    /**
+     * Schedules 1k, 10k and 50k nodes with offline parameters defined. Every
+     * node is matched to its row, the second call is served from the cached
+     * node list, and the time to schedule grows about linearly with the
+     * number of nodes.
+     */
+    @Test
+    public void testListScheduleTimeForLargeNodeCounts() {
+        int[] nodeCounts = { 1000, 10000, 50000 };
+        long[] firstTimes = new long[nodeCounts.length];
+        for (int i = 0; i < 100; i++) {
+            offlineParameters.add(new DatabaseParameter(ParameterConstants.NODE_OFFLINE, "true",
+                    "offline-" + i, "group"));
+        }
+        for (int i = 0; i < nodeCounts.length; i++) {
+            int nodeCount = nodeCounts[i];
+            service.clearCache();
+            setNodesToPushTo(nodes(1, nodeCount));
+            setCommunicationRows(communicationRows(1, nodeCount));
+
+            long ts = System.currentTimeMillis();
+            List<NodeCommunication> list = service.list(CommunicationType.PUSH);
+            firstTimes[i] = System.currentTimeMillis() - ts;
+            assertEquals(nodeCount, list.size());
+
+            ts = System.currentTimeMillis();
+            list = service.list(CommunicationType.PUSH);
+            long cachedTime = System.currentTimeMillis() - ts;
+            assertEquals(nodeCount, list.size());
+            verify(nodeService, times(i + 1)).findNodesToPushTo();
+
+            log.info("Scheduled {} nodes in {}ms, {}ms with a cached node list", new Object[] {
+                    nodeCount, firstTimes[i], cachedTime });
+        }
+
+        /*
+         * Five times the nodes of the 10k run. Matching with nested loops would
+         * take about twenty five times as long.
+         */
+        long limit = 15 * Math.max(firstTimes[1], 50);
+        assertTrue("Scheduling 50k nodes took " + firstTimes[2] + "ms, more than " + limit
+                + "ms", firstTimes[2] < limit);
+    }
+
+    protected void setNodesToPushTo(final List<Node> nodes) {
+        when(nodeService.findNodesToPushTo()).thenAnswer(new Answer<List<Node>>() {
+            public List<Node> answer(InvocationOnMock invocation) throws Throwable {
+                return new ArrayList<Node>(nodes);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void setCommunicationRows(final List<NodeCommunication> rows) {
+        doReturn(rows).when(sqlTemplate).query(contains("select"), any(ISqlRowMapper.class),
+                (Object[]) anyVararg());
+    }
+
+    protected List<Node> nodes(int from, int to) {
+        List<Node> nodes = new ArrayList<Node>();
+        for (int i = from; i <= to; i++) {
+            Node node = new Node(Integer.toString(i), "group");
+            node.setExternalId(Integer.toString(i));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    protected List<NodeCommunication> communicationRows(int from, int to) {
+        List<NodeCommunication> rows = new ArrayList<NodeCommunication>();
+        for (int i = from; i <= to; i++) {
+            NodeCommunication row = new NodeCommunication();
+            row.setNodeId(Integer.toString(i));
+            row.setCommunicationType(CommunicationType.PUSH);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,228 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.mapper.StringMapper;
+import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.OutgoingBatch.Status;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.ISequenceService;
+import org.jumpmind.util.AppUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class OutgoingBatchServiceTest {
+
+    IParameterService parameterService;
+
+    ISequenceService sequenceService;
+
+    ISqlTemplate sqlTemplate;
+
+    OutgoingBatchService outgoingBatchService;
+
+    List<String> nodesInDatabase;
+
+    int rebuildCount;
+
+    @Before
+    public void setup() {
+        sqlTemplate = mock(ISqlTemplate.class);
+        when(sqlTemplate.startSqlTransaction()).thenReturn(mock(ISqlTransaction.class));
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(platform.scrubSql(anyString())).thenAnswer(new Answer<String>() {
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                return (String) invocation.getArguments()[0];
+            }
+        });
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getSqlReplacementTokens()).thenReturn(new HashMap<String, String>());
+
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        when(parameterService.getEngineName()).thenReturn("test");
+        when(parameterService.is(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_ENABLED))
+                .thenReturn(true);
+        when(parameterService.getLong(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_MAX_AGE_MS))
+                .thenReturn(600000l);
+        when(parameterService.getLong(
+                ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_VERSION_CHECK_MS)).thenReturn(
+                600000l);
+
+        sequenceService = mock(ISequenceService.class);
+        when(sequenceService.currVal(Constants.SEQUENCE_OUTGOING_BATCH_PENDING)).thenReturn(10l);
+
+        nodesInDatabase = new ArrayList<String>(Arrays.asList("00002"));
+        when(sqlTemplate.query(contains("distinct node_id"), any(StringMapper.class),
+                (Object[]) anyVararg())).thenAnswer(new Answer<List<String>>() {
+            public List<String> answer(InvocationOnMock invocation) throws Throwable {
+                rebuildCount++;
+                return new ArrayList<String>(nodesInDatabase);
+            }
+        });
+
+        outgoingBatchService = new OutgoingBatchService(parameterService, symmetricDialect,
+                mock(INodeService.class), mock(IConfigurationService.class), sequenceService,
+                mock(IClusterService.class), mock(IExtensionService.class));
+    }
+
+    @Test
+    public void testMissFollowedByRouterCommit() {
+        assertFalse(outgoingBatchService.hasPendingBatches("00001"));
+        assertFalse(outgoingBatchService.getOutgoingBatches("00001", false).containsBatches());
+
+        nodesInDatabase.add("00001");
+        outgoingBatchService.updatePendingBatchIndex(Arrays.asList("00001"));
+
+        assertTrue(outgoingBatchService.hasPendingBatches("00001"));
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+        assertEquals(1, rebuildCount);
+    }
+
+    @Test
+    public void testRebuildOnVersionChange() {
+        when(parameterService.is(ParameterConstants.CLUSTER_LOCKING_ENABLED)).thenReturn(true);
+        when(parameterService.getLong(
+                ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_VERSION_CHECK_MS)).thenReturn(0l);
+        assertFalse(outgoingBatchService.hasPendingBatches("00001"));
+
+        /* Another node in the cluster routed a batch for 00001 */
+        nodesInDatabase.add("00001");
+        assertFalse(outgoingBatchService.hasPendingBatches("00001"));
+        assertEquals(1, rebuildCount);
+
+        /* Batches created without committing them to the index are ignored */
+        when(sequenceService.currVal(Constants.SEQUENCE_OUTGOING_BATCH)).thenReturn(20l);
+        assertFalse(outgoingBatchService.hasPendingBatches("00001"));
+        assertEquals(1, rebuildCount);
+
+        when(sequenceService.currVal(Constants.SEQUENCE_OUTGOING_BATCH_PENDING)).thenReturn(11l);
+        assertTrue(outgoingBatchService.hasPendingBatches("00001"));
+        assertEquals(2, rebuildCount);
+
+        assertTrue(outgoingBatchService.hasPendingBatches("00001"));
+        assertEquals(2, rebuildCount);
+    }
+
+    @Test
+    public void testRebuildOnMaxAge() {
+        when(parameterService.getLong(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_MAX_AGE_MS))
+                .thenReturn(200l);
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+
+        /* The batches for 00002 were sent and 00001 got a batch outside the service */
+        nodesInDatabase.clear();
+        nodesInDatabase.add("00001");
+        assertFalse(outgoingBatchService.hasPendingBatches("00001"));
+        assertEquals(1, rebuildCount);
+
+        AppUtils.sleep(250);
+        assertTrue(outgoingBatchService.hasPendingBatches("00001"));
+        assertFalse(outgoingBatchService.hasPendingBatches("00002"));
+        assertEquals(2, rebuildCount);
+    }
+
+    @Test
+    public void testVersionNotCheckedWithoutCluster() {
+        when(parameterService.getLong(
+                ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_VERSION_CHECK_MS)).thenReturn(0l);
+        assertFalse(outgoingBatchService.hasPendingBatches("00001"));
+        outgoingBatchService.updatePendingBatchIndex(Arrays.asList("00001"));
+        assertTrue(outgoingBatchService.hasPendingBatches("00001"));
+        assertEquals(1, rebuildCount);
+        verify(sequenceService, never()).currVal(anyString());
+        verify(sequenceService, never()).nextVal(anyString());
+    }
+
+    @Test
+    public void testNodeRemovedWhenAckLeavesNoPendingBatches() {
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+        when(sqlTemplate.queryForInt(contains("count(*)"), (Object[]) anyVararg())).thenReturn(1);
+        outgoingBatchService.updateOutgoingBatchesAsOk("00002", "default", Arrays.asList(1l));
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+
+        when(sqlTemplate.queryForInt(contains("count(*)"), (Object[]) anyVararg())).thenReturn(0);
+        outgoingBatchService.updateOutgoingBatchesAsOk("00002", "default", Arrays.asList(2l));
+        assertFalse(outgoingBatchService.hasPendingBatches("00002"));
+        assertEquals(1, rebuildCount);
+    }
+
+    @Test
+    public void testNodeRemovedWhenLastBatchAcknowledged() {
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+        when(sqlTemplate.queryForInt(contains("count(*)"), (Object[]) anyVararg())).thenReturn(0);
+
+        OutgoingBatch batch = new OutgoingBatch("00002", "default", Status.LD);
+        outgoingBatchService.updateOutgoingBatch(batch);
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+
+        batch.setStatus(Status.OK);
+        outgoingBatchService.updateOutgoingBatch(batch);
+        assertFalse(outgoingBatchService.hasPendingBatches("00002"));
+
+        outgoingBatchService.updatePendingBatchIndex(Arrays.asList("00002"));
+        assertTrue(outgoingBatchService.hasPendingBatches("00002"));
+        assertEquals(1, rebuildCount);
+    }
+
+    @Test
+    public void testIndexNotUsedWhenDisabled() {
+        when(parameterService.is(ParameterConstants.OUTGOING_BATCH_PENDING_INDEX_ENABLED))
+                .thenReturn(false);
+        assertTrue(outgoingBatchService.hasPendingBatches("00001"));
+        outgoingBatchService.updatePendingBatchIndex(Arrays.asList("00001"));
+        assertEquals(0, rebuildCount);
+    }
+
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.impl.PurgeService.MinMaxDeleteSql;
+import org.jumpmind.symmetric.service.impl.PurgeService.PurgeRange;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class PurgeServiceTest {
+
+    ISqlTemplate sqlTemplate;
+
+    ISymmetricDialect symmetricDialect;
+
+    IParameterService parameterService;
+
+    PurgeService service;
+
+    @Before
+    public void setup() {
+        sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(platform.scrubSql(anyString())).thenAnswer(new Answer<String>() {
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                return (String) invocation.getArguments()[0];
+            }
+        });
+        symmetricDialect = mock(ISymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getSqlReplacementTokens()).thenReturn(new HashMap<String, String>());
+
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        when(parameterService.getEngineName()).thenReturn("test");
+
+        service = new PurgeService(parameterService, symmetricDialect,
+                mock(IClusterService.class), mock(IStatisticManager.class));
+    }
+
+    @Test
+    public void testRangesCoverAllIds() {
+        PurgeRange range = new PurgeRange(1, 25, 10, 0, 0);
+        assertArrayEquals(new long[] { 1, 11 }, range.next());
+        assertArrayEquals(new long[] { 12, 22 }, range.next());
+        assertArrayEquals(new long[] { 23, 25 }, range.next());
+        assertNull(range.next());
+    }
+
+    @Test
+    public void testRangeWidthAdaptsToTargetRows() {
+        PurgeRange range = new PurgeRange(1, 100000, 100, 100, 0);
+        assertArrayEquals(new long[] { 1, 101 }, range.next());
+        range.completed(100, 1);
+        assertArrayEquals(new long[] { 102, 202 }, range.next());
+
+        range.completed(10, 1);
+        assertArrayEquals(new long[] { 203, 403 }, range.next());
+
+        range.completed(1000, 1);
+        assertArrayEquals(new long[] { 404, 504 }, range.next());
+
+        range.completed(200, 1);
+        assertArrayEquals(new long[] { 505, 555 }, range.next());
+    }
+
+    @Test
+    public void testRangeWidthAdaptsToTargetTime() {
+        PurgeRange range = new PurgeRange(1, 100000, 100, 0, 1000);
+        range.next();
+        range.completed(100, 4000);
+        assertArrayEquals(new long[] { 102, 152 }, range.next());
+        range.completed(100, 10);
+        assertArrayEquals(new long[] { 153, 253 }, range.next());
+    }
+
+    @Test
+    public void testRangeStopsWhenCancelled() {
+        PurgeRange range = new PurgeRange(1, 100, 10, 0, 0);
+        range.next();
+        range.cancel();
+        assertNull(range.next());
+    }
+
+    @Test
+    public void testPurgeWithOneThread() {
+        List<long[]> deletedRanges = recordDeletes();
+        int count = service.purgeByMinMax(new long[] { 1, 1000 }, MinMaxDeleteSql.DATA,
+                new Date(), 100);
+        assertEquals(1000, count);
+        assertRangesCover(deletedRanges, 1, 1000);
+    }
+
+    @Test
+    public void testPurgeWithManyThreads() {
+        when(parameterService.getInt(eq(ParameterConstants.PURGE_THREAD_COUNT), anyInt()))
+                .thenReturn(4);
+        when(parameterService.getLong(ParameterConstants.PURGE_TARGET_ROWS_PER_STATEMENT))
+                .thenReturn(50l);
+        List<long[]> deletedRanges = recordDeletes();
+        int count = service.purgeByMinMax(new long[] { 1, 5000 }, MinMaxDeleteSql.DATA,
+                new Date(), 100);
+        assertEquals(5000, count);
+        assertRangesCover(deletedRanges, 1, 5000);
+    }
+
+    @Test
+    public void testNoPartitionsWhenNotSupported() {
+        when(parameterService.getLong(ParameterConstants.PURGE_DATA_PARTITION_SIZE)).thenReturn(
+                1000l);
+        when(symmetricDialect.supportsDataPartitioning()).thenReturn(false);
+        service.purgeDataPartitions(new Date());
+        verify(symmetricDialect, never()).getDataPartitions();
+        verify(symmetricDialect, never()).createDataPartition(anyString(), anyLong(), anyLong());
+        verify(symmetricDialect, never()).dropDataPartition(anyString());
+    }
+
+    @Test
+    public void testNoPartitionsWhenNotConfigured() {
+        when(symmetricDialect.supportsDataPartitioning()).thenReturn(true);
+        service.purgeDataPartitions(new Date());
+        verify(symmetricDialect, never()).getDataPartitions();
+    }
+
+    @Test
+    public void testPartitionsDroppedAndCreated() {
+        when(parameterService.getLong(ParameterConstants.PURGE_DATA_PARTITION_SIZE)).thenReturn(
+                1000l);
+        when(parameterService.getInt(ParameterConstants.PURGE_DATA_PARTITION_AHEAD_COUNT))
+                .thenReturn(1);
+        when(symmetricDialect.supportsDataPartitioning()).thenReturn(true);
+        Map<String, long[]> partitions = new LinkedHashMap<String, long[]>();
+        partitions.put("sym_data_p0", new long[] { 0, 1000 });
+        partitions.put("sym_data_p1000", new long[] { 1000, 2000 });
+        when(symmetricDialect.getDataPartitions()).thenReturn(partitions);
+        when(sqlTemplate.queryForLong(eq(service.getSql("selectMinNeededDataIdSql")),
+                (Object[]) anyVararg())).thenReturn(1500l);
+        when(sqlTemplate.queryForObject(eq(service.getSql("selectLastCreateTimeInRangeSql")),
+                eq(Date.class), (Object[]) anyVararg())).thenReturn(new Date(0));
+        when(sqlTemplate.queryForLong(service.getSql("selectMaxDataIdSql"))).thenReturn(1800l);
+
+        service.purgeDataPartitions(new Date());
+
+        verify(symmetricDialect).dropDataPartition("sym_data_p0");
+        verify(symmetricDialect, never()).dropDataPartition("sym_data_p1000");
+        verify(symmetricDialect).createDataPartition("sym_data_p2000", 2000, 3000);
+        verify(symmetricDialect, never()).createDataPartition("sym_data_p3000", 3000, 4000);
+    }
+
+    protected List<long[]> recordDeletes() {
+        final List<long[]> deletedRanges = Collections.synchronizedList(new ArrayList<long[]>());
+        when(sqlTemplate.update(anyString(), any(Object[].class), any(int[].class))).thenAnswer(
+                new Answer<Integer>() {
+                    public Integer answer(InvocationOnMock invocation) throws Throwable {
+                        Object[] args = (Object[]) invocation.getArguments()[1];
+                        long minId = (Long) args[0];
+                        long maxId = (Long) args[1];
+                        deletedRanges.add(new long[] { minId, maxId });
+                        return (int) (maxId - minId + 1);
+                    }
+                });
+        return deletedRanges;
+    }
+
+    protected void assertRangesCover(List<long[]> ranges, long firstId, long lastId) {
+        List<long[]> sorted = new ArrayList<long[]>(ranges);
+        Collections.sort(sorted, new Comparator<long[]>() {
+            public int compare(long[] o1, long[] o2) {
+                return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+            }
+        });
+        long nextId = firstId;
+        for (long[] range : sorted) {
+            assertEquals(nextId, range[0]);
+            assertTrue(range[1] >= range[0]);
+            nextId = range[1] + 1;
+        }
+        assertEquals(lastId + 1, nextId);
+    }
+
+}
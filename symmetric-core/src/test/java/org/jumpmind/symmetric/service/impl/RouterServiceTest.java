@@ -1,24 +1,55 @@
 package org.jumpmind.symmetric.service.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jumpmind.db.platform.DatabaseInfo;
 import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.Channel;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.OutgoingBatch.Status;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.model.ProcessInfoKey;
 import org.jumpmind.symmetric.model.Router;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.route.ChannelRouterContext;
+import org.jumpmind.symmetric.route.DataGapDetector;
+import org.jumpmind.symmetric.route.IDataRouter;
+import org.jumpmind.symmetric.route.SimpleRouterContext;
 import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
 import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class RouterServiceTest {
 
@@ -29,11 +60,17 @@ public class RouterServiceTest {
     final static String TARGET_NODE_GROUP = "target";
 
     RouterService routerService;
+
+    ISymmetricEngine engine;
     
     @Before
     public void setup() {
-        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        engine = mock(ISymmetricEngine.class);
         IParameterService parameterService = mock(IParameterService.class);
+        IStatisticManager statisticManager = mock(IStatisticManager.class);
+        when(parameterService.getEngineName()).thenReturn("test");
+        when(statisticManager.newProcessInfo(any(ProcessInfoKey.class))).thenReturn(new ProcessInfo());
+        when(engine.getStatisticManager()).thenReturn(statisticManager);
         ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
         IDatabasePlatform databasePlatform = mock(IDatabasePlatform.class);        
         IExtensionService extensionService = mock(IExtensionService.class);
@@ -106,6 +143,153 @@ public class RouterServiceTest {
         triggerRouters.add(new TriggerRouter(tableTrigger3, new Router("test", TARGET_NODE_GROUP, SOURCE_NODE_GROUP, "default")));
         assertTrue(routerService.producesCommonBatches(CHANNEL_2_TEST, SOURCE_NODE_GROUP, triggerRouters));
     }
-    
+
+    @Test
+    public void testRouteDataForEachChannelInParallel() {
+        final List<String> routedChannels = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger gapDetectionsRequested = new AtomicInteger();
+        final AtomicInteger channelsRoutedAtGapDetection = new AtomicInteger(-1);
+        RouterService parallelRouterService = new RouterService(engine) {
+            @Override
+            protected int routeDataForChannel(ProcessInfo processInfo, NodeChannel nodeChannel,
+                    Node sourceNode, DataGapDetector gapDetector) {
+                routedChannels.add(nodeChannel.getChannelId());
+                gapDetector.beforeRouting();
+                if (nodeChannel.getChannelId().equals("fail")) {
+                    // routeDataForChannel logs and rolls back failures
+                    return 0;
+                }
+                return 2;
+            }
+        };
+
+        List<NodeChannel> channels = new ArrayList<NodeChannel>();
+        for (String channelId : new String[] { "a", "b", "c", "fail", "disabled" }) {
+            NodeChannel channel = new NodeChannel(channelId);
+            channel.setEnabled(!channelId.equals("disabled"));
+            channels.add(channel);
+        }
+
+        DataGapDetector gapDetector = new DataGapDetector() {
+            @Override
+            public void beforeRouting() {
+                gapDetectionsRequested.incrementAndGet();
+                channelsRoutedAtGapDetection.set(routedChannels.size());
+            }
+        };
+
+        try {
+            int dataCount = parallelRouterService.routeDataForEachChannelInParallel(
+                    new ProcessInfo(), channels, new Node("00000", "source"), gapDetector, 3);
+            assertEquals(6, dataCount);
+            assertEquals(4, routedChannels.size());
+            assertTrue(!routedChannels.contains("disabled"));
+            assertEquals(1, gapDetectionsRequested.get());
+            assertEquals(4, channelsRoutedAtGapDetection.get());
+        } finally {
+            parallelRouterService.stop();
+        }
+    }
+
+    @Test
+    public void testCommonBatchesCompletedForEachNode() throws Exception {
+        IOutgoingBatchService outgoingBatchService = mock(IOutgoingBatchService.class);
+        when(engine.getOutgoingBatchService()).thenReturn(outgoingBatchService);
+        ChannelRouterContext context = new ChannelRouterContext("00000", new NodeChannel("test"),
+                mock(ISqlTransaction.class));
+        for (String nodeId : new String[] { "1", "2" }) {
+            OutgoingBatch batch = new OutgoingBatch(nodeId, "test", Status.RT);
+            batch.setBatchId(10);
+            batch.setCommonFlag(true);
+            batch.setCreateTime(new Date());
+            batch.incrementDataEventCount();
+            if (nodeId.equals("2")) {
+                batch.incrementDataEventCount();
+            }
+            context.getBatchesByNodes().put(nodeId, batch);
+        }
+        IDataRouter dataRouter = mock(IDataRouter.class);
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                OutgoingBatch batch = (OutgoingBatch) invocation.getArguments()[1];
+                batch.setLoadFlag(batch.getNodeId().equals("2"));
+                return null;
+            }
+        }).when(dataRouter).completeBatch(any(SimpleRouterContext.class), any(OutgoingBatch.class));
+        context.addUsedDataRouter(dataRouter);
+
+        routerService.completeBatchesAndCommit(context);
+
+        ArgumentCaptor<OutgoingBatch> updated = ArgumentCaptor.forClass(OutgoingBatch.class);
+        verify(outgoingBatchService, times(2)).updateOutgoingBatch(updated.capture());
+        Map<String, OutgoingBatch> updatedByNode = new HashMap<String, OutgoingBatch>();
+        for (OutgoingBatch batch : updated.getAllValues()) {
+            assertEquals(10, batch.getBatchId());
+            assertEquals(Status.NE, batch.getStatus());
+            updatedByNode.put(batch.getNodeId(), batch);
+        }
+        assertEquals(1, updatedByNode.get("1").getDataEventCount());
+        assertFalse(updatedByNode.get("1").isLoadFlag());
+        assertEquals(2, updatedByNode.get("2").getDataEventCount());
+        assertTrue(updatedByNode.get("2").isLoadFlag());
+        verify(outgoingBatchService, never()).updateCommonOutgoingBatches(
+                anyListOf(OutgoingBatch.class));
+        verify(outgoingBatchService).updatePendingBatchIndex(
+                new HashSet<String>(Arrays.asList("1", "2")));
+        assertTrue(context.getBatchesByNodes().isEmpty());
+    }
+
+    @Test
+    public void testCommonBatchesWithSameRoutingCompletedWithOneUpdate() throws Exception {
+        IOutgoingBatchService outgoingBatchService = mock(IOutgoingBatchService.class);
+        when(engine.getOutgoingBatchService()).thenReturn(outgoingBatchService);
+        when(outgoingBatchService.updateCommonOutgoingBatches(anyListOf(OutgoingBatch.class)))
+                .thenReturn(3);
+        ChannelRouterContext context = newCommonBatchContext("1", "2", "3");
+
+        routerService.completeBatchesAndCommit(context);
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ArgumentCaptor<List<OutgoingBatch>> updated = ArgumentCaptor.forClass((Class) List.class);
+        verify(outgoingBatchService).updateCommonOutgoingBatches(updated.capture());
+        assertEquals(3, updated.getValue().size());
+        long routerMillis = updated.getValue().get(0).getRouterMillis();
+        for (OutgoingBatch batch : updated.getValue()) {
+            assertEquals(Status.NE, batch.getStatus());
+            assertEquals(routerMillis, batch.getRouterMillis());
+        }
+        verify(outgoingBatchService, never()).updateOutgoingBatch(any(OutgoingBatch.class));
+        verify(outgoingBatchService).updatePendingBatchIndex(
+                new HashSet<String>(Arrays.asList("1", "2", "3")));
+        assertTrue(context.getBatchesByNodes().isEmpty());
+    }
+
+    @Test
+    public void testCommonBatchesUpdatedEachWhenSharedUpdateMissesRows() throws Exception {
+        IOutgoingBatchService outgoingBatchService = mock(IOutgoingBatchService.class);
+        when(engine.getOutgoingBatchService()).thenReturn(outgoingBatchService);
+        when(outgoingBatchService.updateCommonOutgoingBatches(anyListOf(OutgoingBatch.class)))
+                .thenReturn(1);
+        ChannelRouterContext context = newCommonBatchContext("1", "2");
+
+        routerService.completeBatchesAndCommit(context);
+
+        verify(outgoingBatchService).updateCommonOutgoingBatches(anyListOf(OutgoingBatch.class));
+        verify(outgoingBatchService, times(2)).updateOutgoingBatch(any(OutgoingBatch.class));
+    }
+
+    protected ChannelRouterContext newCommonBatchContext(String... nodeIds) throws Exception {
+        ChannelRouterContext context = new ChannelRouterContext("00000", new NodeChannel("test"),
+                mock(ISqlTransaction.class));
+        for (String nodeId : nodeIds) {
+            OutgoingBatch batch = new OutgoingBatch(nodeId, "test", Status.RT);
+            batch.setBatchId(10);
+            batch.setCommonFlag(true);
+            batch.setCreateTime(new Date());
+            batch.incrementDataEventCount();
+            context.getBatchesByNodes().put(nodeId, batch);
+        }
+        return context;
+    }
 
 }
@@ -21,6 +21,7 @@
 package org.jumpmind.symmetric.statistic;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -171,4 +172,12 @@ public class MockStatisticManager implements IStatisticManager {
     public void removeRouterStatsByBatch(Long batchId) {
     }
     
-}
\ No newline at end of file
+    public CacheStats getCacheStats(String cacheName) {
+        return new CacheStats(cacheName);
+    }
+
+    public Map<String, CacheStats> getWorkingCacheStats() {
+        return new HashMap<String, CacheStats>();
+    }
+
+}
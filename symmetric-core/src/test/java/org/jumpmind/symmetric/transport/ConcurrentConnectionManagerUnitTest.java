@@ -20,11 +20,18 @@
  */
 package org.jumpmind.symmetric.transport;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.symmetric.statistic.MockStatisticManager;
 import org.jumpmind.symmetric.transport.ConcurrentConnectionManager.Reservation;
 import org.jumpmind.symmetric.transport.IConcurrentConnectionManager.ReservationType;
@@ -35,7 +42,7 @@ public class ConcurrentConnectionManagerUnitTest {
     @Test
     public void testRemoveTimedOutReservations() {
         ConcurrentConnectionManager mgr = new ConcurrentConnectionManager(null, new MockStatisticManager());
-        Map<String, Reservation> reservations = new HashMap<String, Reservation>();
+        ConcurrentMap<String, Reservation> reservations = new ConcurrentHashMap<String, Reservation>();
 
         String nodeId = "1";
         Reservation current = new ConcurrentConnectionManager.Reservation(nodeId, System.currentTimeMillis()+10000, ReservationType.HARD);        
@@ -52,4 +59,190 @@ public class ConcurrentConnectionManagerUnitTest {
         mgr.removeTimedOutReservations(reservations);
         assertEquals(1, reservations.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReserveUpToPoolSize() {
+        ConcurrentConnectionManager mgr = newManager(2, 10000);
+        try {
+            assertTrue(mgr.reserveConnection("1", "push", ReservationType.SOFT));
+            assertTrue(mgr.reserveConnection("1", "push", ReservationType.HARD));
+            assertFalse(mgr.reserveConnection("1", "push", ReservationType.HARD));
+            assertTrue(mgr.reserveConnection("2", "push", ReservationType.SOFT));
+            assertFalse(mgr.reserveConnection("3", "push", ReservationType.SOFT));
+            assertEquals(2, mgr.getReservationCount("push"));
+
+            mgr.addToWhitelist("3");
+            assertTrue(mgr.reserveConnection("3", "push", ReservationType.SOFT));
+            assertEquals(3, mgr.getReservationCount("push"));
+
+            assertTrue(mgr.releaseConnection("1", "push"));
+            assertFalse(mgr.releaseConnection("1", "push"));
+            assertEquals(2, mgr.getReservationCount("push"));
+            assertEquals(1, mgr.getNodeConnectionStatisticsByPoolByNodeId().get("push").get("1")
+                    .getTotalConnectionCount());
+        } finally {
+            mgr.stop();
+        }
+    }
+
+    @Test
+    public void testTimedOutReservationFreesSlot() throws Exception {
+        ConcurrentConnectionManager mgr = newManager(1, 0);
+        try {
+            assertTrue(mgr.reserveConnection("1", "pull", ReservationType.SOFT));
+            Thread.sleep(5);
+            assertTrue(mgr.reserveConnection("2", "pull", ReservationType.HARD));
+            assertEquals(1, mgr.getReservationCount("pull"));
+            assertTrue(mgr.getPullReservationsByNodeId().containsKey("2"));
+        } finally {
+            mgr.stop();
+        }
+    }
+
+    @Test
+    public void testConcurrentReservationsNeverExceedPoolSize() throws Exception {
+        final int poolSize = 5;
+        final ConcurrentConnectionManager mgr = newManager(poolSize, 10000);
+        final AtomicInteger maxReserved = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(20);
+        try {
+            for (int i = 0; i < 20; i++) {
+                final String nodeId = Integer.toString(i);
+                new Thread() {
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 1000; j++) {
+                                if (mgr.reserveConnection(nodeId, "push", ReservationType.HARD)) {
+                                    int count = mgr.getReservationCount("push");
+                                    if (count > maxReserved.get()) {
+                                        maxReserved.set(count);
+                                    }
+                                    if (!mgr.releaseConnection(nodeId, "push")) {
+                                        failures.incrementAndGet();
+                                    }
+                                }
+                            }
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }.start();
+            }
+            done.await();
+            assertEquals(0, failures.get());
+            assertTrue(maxReserved.get() <= poolSize);
+            assertEquals(0, mgr.getReservationCount("push"));
+        } finally {
+            mgr.stop();
+        }
+    }
+
+    @Test
+    public void testStaleSoftReservationNotUpgradedOverHardReservation() throws Exception {
+        final ConcurrentConnectionManager mgr = newManager(2, 10000);
+        RacingReservationMap reservations = newRacingReservationMap(mgr, "push");
+        final AtomicBoolean racerReserved = new AtomicBoolean();
+        try {
+            assertTrue(mgr.reserveConnection("1", "push", ReservationType.SOFT));
+            reservations.race = new Runnable() {
+                public void run() {
+                    racerReserved.set(mgr.reserveConnection("1", "push", ReservationType.HARD));
+                }
+            };
+
+            assertFalse(mgr.reserveConnection("1", "push", ReservationType.HARD));
+            assertTrue(racerReserved.get());
+            assertEquals(ReservationType.HARD, reservations.get("1").getType());
+            assertEquals(1, mgr.getReservationCount("push"));
+        } finally {
+            mgr.stop();
+        }
+    }
+
+    @Test
+    public void testSweeperKeepsReservationThatReplacedTimedOutOne() throws Exception {
+        final ConcurrentConnectionManager mgr = newManager(2, 10000);
+        RacingReservationMap reservations = newRacingReservationMap(mgr, "pull");
+        final AtomicBoolean racerReserved = new AtomicBoolean();
+        try {
+            assertTrue(mgr.reserveConnection("1", "pull", ReservationType.SOFT));
+            reservations.get("1").timeToLiveInMs = System.currentTimeMillis() - 10000;
+            reservations.race = new Runnable() {
+                public void run() {
+                    racerReserved.set(mgr.reserveConnection("1", "pull", ReservationType.HARD));
+                }
+            };
+
+            assertEquals(0, mgr.removeTimedOutReservations("pull"));
+            assertTrue(racerReserved.get());
+            assertTrue(mgr.getPullReservationsByNodeId().containsKey("1"));
+            assertEquals(1, mgr.getReservationCount("pull"));
+        } finally {
+            mgr.stop();
+        }
+    }
+
+    @Test
+    public void testSweeperNotRestartedAfterStop() {
+        ConcurrentConnectionManager mgr = newManager(2, 10000);
+        assertTrue(mgr.reserveConnection("1", "push", ReservationType.SOFT));
+        assertNotNull(mgr.sweeper);
+        mgr.stop();
+        assertNull(mgr.sweeper);
+        assertTrue(mgr.reserveConnection("2", "push", ReservationType.SOFT));
+        assertNull(mgr.sweeper);
+    }
+
+    protected RacingReservationMap newRacingReservationMap(ConcurrentConnectionManager mgr,
+            String poolId) {
+        RacingReservationMap reservations = new RacingReservationMap();
+        mgr.activeReservationsByNodeByPool.put(poolId, reservations);
+        return reservations;
+    }
+
+    protected ConcurrentConnectionManager newManager(int poolSize, long timeout) {
+        IParameterService parameterService = mock(IParameterService.class);
+        when(parameterService.getEngineName()).thenReturn("test");
+        when(parameterService.getInt(ParameterConstants.CONCURRENT_WORKERS)).thenReturn(poolSize);
+        when(parameterService.getLong(ParameterConstants.CONCURRENT_RESERVATION_TIMEOUT)).thenReturn(timeout);
+        return new ConcurrentConnectionManager(parameterService, new MockStatisticManager());
+    }
+
+    /**
+     * Lets another thread change the reservation for a node after the manager
+     * read it, but before its conditional replace or remove.
+     */
+    static class RacingReservationMap extends ConcurrentHashMap<String, Reservation> {
+
+        private static final long serialVersionUID = 1L;
+
+        Runnable race;
+
+        @Override
+        public boolean replace(String key, Reservation oldValue, Reservation newValue) {
+            race();
+            return super.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            race();
+            return super.remove(key, value);
+        }
+
+        protected void race() {
+            Runnable racer = race;
+            race = null;
+            if (racer != null) {
+                Thread thread = new Thread(racer);
+                thread.start();
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+    }
+}
@@ -33,12 +33,14 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import org.apache.commons.codec.DecoderException;
@@ -86,9 +88,9 @@ public abstract class AbstractDatabasePlatform implements IDatabasePlatform {
 
     protected IDdlBuilder ddlBuilder;
 
-    protected Map<String, Table> tableCache = new HashMap<String, Table>();
+    protected ConcurrentMap<String, TableCacheEntry> tableCache = new ConcurrentHashMap<String, TableCacheEntry>();
 
-    private long lastTimeCachedModelClearedInMs = System.currentTimeMillis();
+    protected TableCacheStats tableCacheStats = new TableCacheStats();
 
     protected long clearCacheModelTimeoutInMs = DateUtils.MILLIS_PER_HOUR;
 
@@ -305,38 +307,110 @@ public abstract class AbstractDatabasePlatform implements IDatabasePlatform {
     }
 
     public void resetCachedTableModel() {
-        synchronized (this.getClass()) {
-            this.tableCache = new HashMap<String, Table>();
-            lastTimeCachedModelClearedInMs = System.currentTimeMillis();
+        tableCacheStats.incrementInvalidationCount(tableCache.size());
+        tableCache.clear();
+        tableCacheStats.setSize(0);
+    }
+
+    /*
+     * The same table can be cached under more than one key, with or without the
+     * default catalog and schema or with its names in a different case, so
+     * every entry for the table is removed.
+     */
+    public void resetCachedTableModel(String catalogName, String schemaName, String tableName) {
+        catalogName = getDefaultedName(catalogName, getDefaultCatalog());
+        schemaName = getDefaultedName(schemaName, getDefaultSchema());
+        int count = 0;
+        Iterator<TableCacheEntry> i = tableCache.values().iterator();
+        while (i.hasNext()) {
+            TableCacheEntry entry = i.next();
+            if (StringUtils.equalsIgnoreCase(entry.tableName, tableName)
+                    && StringUtils.equalsIgnoreCase(entry.catalogName, catalogName)
+                    && StringUtils.equalsIgnoreCase(entry.schemaName, schemaName)) {
+                i.remove();
+                count++;
+            }
         }
+        tableCacheStats.incrementInvalidationCount(count);
+        tableCacheStats.setSize(tableCache.size());
+    }
+
+    protected String getDefaultedName(String name, String defaultName) {
+        return StringUtils.defaultString(StringUtils.isBlank(name) ? defaultName : name);
+    }
+
+    public TableCacheStats getTableCacheStats() {
+        return tableCacheStats;
     }
 
     public Table getTableFromCache(String tableName, boolean forceReread) {
         return getTableFromCache(getDefaultCatalog(), getDefaultSchema(), tableName, forceReread);
     }
 
+    /*
+     * Each table is loaded at most once at a time and expires on its own
+     * schedule. Readers of other tables are never blocked while a table is read
+     * from the database.
+     */
     public Table getTableFromCache(String catalogName, String schemaName, String tableName,
             boolean forceReread) {
-        if (System.currentTimeMillis() - lastTimeCachedModelClearedInMs > clearCacheModelTimeoutInMs) {
-            resetCachedTableModel();
-        }
-        Map<String, Table> model = tableCache;
         String key = Table.getFullyQualifiedTableName(catalogName, schemaName, tableName);
-        Table retTable = model != null ? model.get(key) : null;
-        if (retTable == null || forceReread) {
-            synchronized (this.getClass()) {
-                try {
-                    Table table = readTableFromDatabase(catalogName, schemaName, tableName);
-                    tableCache.put(key, table);
-                    retTable = table;
-                } catch (RuntimeException ex) {
-                    throw ex;
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
+        long requestTime = System.currentTimeMillis();
+        TableCacheEntry entry = tableCache.get(key);
+        if (entry != null && !forceReread) {
+            Table table = entry.table;
+            if (table != null && requestTime < entry.expireTime) {
+                tableCacheStats.incrementHitCount();
+                return table;
+            }
+        }
+
+        tableCacheStats.incrementMissCount();
+        if (entry == null) {
+            TableCacheEntry newEntry = new TableCacheEntry(getDefaultedName(catalogName,
+                    getDefaultCatalog()), getDefaultedName(schemaName, getDefaultSchema()), tableName);
+            entry = tableCache.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                tableCacheStats.setSize(tableCache.size());
+            }
+        }
+
+        synchronized (entry) {
+            /*
+             * Another thread may have read the table while this one was
+             * waiting. Only read it again if that happened before this request.
+             */
+            if (entry.table == null || entry.loadTime < requestTime
+                    && (forceReread || System.currentTimeMillis() >= entry.expireTime)) {
+                if (entry.table != null && !forceReread) {
+                    tableCacheStats.incrementExpiredCount();
                 }
+                long loadTime = System.currentTimeMillis();
+                Table table = readTableFromDatabase(catalogName, schemaName, tableName);
+                long now = System.currentTimeMillis();
+                tableCacheStats.incrementLoad(now - loadTime);
+                entry.loadTime = loadTime;
+                entry.expireTime = now + clearCacheModelTimeoutInMs;
+                entry.table = table;
             }
+            return entry.table;
+        }
+    }
+
+    static class TableCacheEntry {
+        final String catalogName;
+        final String schemaName;
+        final String tableName;
+        volatile Table table;
+        volatile long loadTime;
+        volatile long expireTime;
+
+        TableCacheEntry(String catalogName, String schemaName, String tableName) {
+            this.catalogName = catalogName;
+            this.schemaName = schemaName;
+            this.tableName = tableName;
         }
-        return retTable;
     }
 
     public Object[] getObjectValues(BinaryEncoding encoding, Table table, String[] columnNames,
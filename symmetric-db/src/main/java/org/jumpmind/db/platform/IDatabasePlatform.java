@@ -91,6 +91,14 @@ public interface IDatabasePlatform {
     
     public void resetCachedTableModel();
 
+    /**
+     * Remove a single table from the table metadata cache so that it is read
+     * from the database the next time it is requested.
+     */
+    public void resetCachedTableModel(String catalogName, String schemaName, String tableName);
+
+    public TableCacheStats getTableCacheStats();
+
     public Table getTableFromCache(String tableName, boolean forceReread);
 
     public Table getTableFromCache(String catalogName, String schemaName, String tableName,
@@ -0,0 +1,112 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.db.platform;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and load counts for the table metadata cache kept by
+ * {@link AbstractDatabasePlatform}. The counts are safe to update from multiple
+ * threads.
+ */
+public class TableCacheStats {
+
+    private AtomicLong hitCount = new AtomicLong();
+
+    private AtomicLong missCount = new AtomicLong();
+
+    private AtomicLong loadCount = new AtomicLong();
+
+    private AtomicLong loadTimeMs = new AtomicLong();
+
+    private AtomicLong expiredCount = new AtomicLong();
+
+    private AtomicLong invalidationCount = new AtomicLong();
+
+    private volatile long size;
+
+    public void incrementHitCount() {
+        hitCount.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public void incrementMissCount() {
+        missCount.incrementAndGet();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void incrementLoad(long timeMs) {
+        loadCount.incrementAndGet();
+        loadTimeMs.addAndGet(timeMs);
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getLoadTimeMs() {
+        return loadTimeMs.get();
+    }
+
+    public void incrementExpiredCount() {
+        expiredCount.incrementAndGet();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public void incrementInvalidationCount(long count) {
+        invalidationCount.addAndGet(count);
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public float getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total > 0 ? (float) hits / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "{ hitCount: " + hitCount + ", missCount: " + missCount + ", loadCount: "
+                + loadCount + ", loadTimeMs: " + loadTimeMs + ", expiredCount: " + expiredCount
+                + ", invalidationCount: " + invalidationCount + ", size: " + size + " }";
+    }
+
+}
@@ -25,6 +25,7 @@ public class SqlTemplateSettings {
     protected int fetchSize = 1000;
     protected int queryTimeout;
     protected int batchSize = 100;
+    protected int statementCacheSize = 50;
     protected boolean readStringsAsBytes;
     protected int overrideIsolationLevel = -1;
     protected int resultSetType = java.sql.ResultSet.TYPE_FORWARD_ONLY;
@@ -57,6 +58,14 @@ public class SqlTemplateSettings {
         return batchSize;
     }
     
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+    
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+    
     public void setReadStringsAsBytes(boolean readStringsAsBytes) {
         this.readStringsAsBytes = readStringsAsBytes;
     }
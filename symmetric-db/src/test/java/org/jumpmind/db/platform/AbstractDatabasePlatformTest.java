@@ -21,11 +21,13 @@
 package org.jumpmind.db.platform;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Date;
 
+import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.h2.H2DdlBuilder;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.junit.Test;
@@ -78,6 +80,66 @@ public class AbstractDatabasePlatformTest {
         assertEquals(3, testDatabasePlatform.parseQualifiedTableName("\"CATALOG\".\"SCHEMA\".\"TABLE\"").size());
     }
     
+    @Test
+    public void testTableCacheInvalidatesSingleTable() {
+        IDdlReader reader = mock(IDdlReader.class);
+        when(reader.readTable("cat", "schema", "A")).thenReturn(new Table("A"), new Table("A"));
+        when(reader.readTable("cat", "schema", "B")).thenReturn(new Table("B"));
+        testDatabasePlatform.ddlReader = reader;
+
+        Table a = testDatabasePlatform.getTableFromCache("cat", "schema", "A", false);
+        assertSame(a, testDatabasePlatform.getTableFromCache("cat", "schema", "A", false));
+        testDatabasePlatform.getTableFromCache("cat", "schema", "B", false);
+        verify(reader, times(1)).readTable("cat", "schema", "A");
+
+        testDatabasePlatform.resetCachedTableModel("cat", "schema", "A");
+        assertNotSame(a, testDatabasePlatform.getTableFromCache("cat", "schema", "A", false));
+        testDatabasePlatform.getTableFromCache("cat", "schema", "B", false);
+        verify(reader, times(2)).readTable("cat", "schema", "A");
+        verify(reader, times(1)).readTable("cat", "schema", "B");
+
+        TableCacheStats stats = testDatabasePlatform.getTableCacheStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(3, stats.getLoadCount());
+        assertEquals(1, stats.getInvalidationCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testTableCacheInvalidatesEveryKeyForTable() {
+        IDdlReader reader = mock(IDdlReader.class);
+        when(reader.readTable("", "default Schema.", "A")).thenReturn(new Table("A"),
+                new Table("A"));
+        when(reader.readTable("", "default Schema.", "a")).thenReturn(new Table("A"));
+        when(reader.readTable("", "other", "A")).thenReturn(new Table("A"));
+        testDatabasePlatform.ddlReader = reader;
+
+        Table a = testDatabasePlatform.getTableFromCache(null, null, "A", false);
+        testDatabasePlatform.getTableFromCache("", "default Schema.", "a", false);
+        Table other = testDatabasePlatform.getTableFromCache("", "other", "A", false);
+
+        testDatabasePlatform.resetCachedTableModel("", "DEFAULT SCHEMA.", "a");
+        assertNotSame(a, testDatabasePlatform.getTableFromCache(null, null, "A", false));
+        assertSame(other, testDatabasePlatform.getTableFromCache("", "other", "A", false));
+        verify(reader, times(2)).readTable("", "default Schema.", "A");
+        assertEquals(2, testDatabasePlatform.getTableCacheStats().getInvalidationCount());
+    }
+
+    @Test
+    public void testTableCacheExpiresPerTable() throws Exception {
+        IDdlReader reader = mock(IDdlReader.class);
+        when(reader.readTable("cat", "schema", "A")).thenReturn(new Table("A"));
+        testDatabasePlatform.ddlReader = reader;
+        testDatabasePlatform.setClearCacheModelTimeoutInMs(0);
+
+        testDatabasePlatform.getTableFromCache("cat", "schema", "A", false);
+        Thread.sleep(5);
+        testDatabasePlatform.getTableFromCache("cat", "schema", "A", false);
+        verify(reader, times(2)).readTable("cat", "schema", "A");
+        assertEquals(1, testDatabasePlatform.getTableCacheStats().getExpiredCount());
+    }
+
     private AbstractDatabasePlatform testDatabasePlatform = new AbstractDatabasePlatform() {
         @Override
         public String getName() {
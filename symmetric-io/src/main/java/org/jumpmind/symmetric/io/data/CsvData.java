@@ -52,11 +52,29 @@ public class CsvData {
     public static final String ATTRIBUTE_DATA_ID = "dataId";
     public static final String ATTRIBUTE_CREATE_TIME = "createTime";
     
-    private Map<String, String[]> parsedCsvData = null;
+    /*
+     * The well known data keys and attributes are kept in fixed slots so a
+     * row does not need a map per kind of value. Any other key falls back to
+     * a map.
+     */
+    private static final String[] DATA_KEYS = { OLD_DATA, ROW_DATA, PK_DATA, RESOLVE_DATA };
 
-    private Map<String, String> csvData = null;
+    private static final String[] ATTRIBUTE_KEYS = { ATTRIBUTE_TABLE_NAME, ATTRIBUTE_CHANNEL_ID,
+            ATTRIBUTE_TABLE_ID, ATTRIBUTE_TX_ID, ATTRIBUTE_SOURCE_NODE_ID,
+            ATTRIBUTE_EXTERNAL_DATA, ATTRIBUTE_NODE_LIST, ATTRIBUTE_ROUTER_ID, ATTRIBUTE_DATA_ID,
+            ATTRIBUTE_CREATE_TIME };
 
-    private Map<String, Object> attributes;
+    private String[][] parsedCsvData = null;
+
+    private String[] csvData = null;
+
+    private Map<String, String[]> otherParsedCsvData = null;
+
+    private Map<String, String> otherCsvData = null;
+
+    private Object[] attributes;
+
+    private Map<String, Object> otherAttributes;
     
     private boolean noBinaryOldData = false;
 
@@ -90,9 +108,22 @@ public class CsvData {
     public CsvData() {
     }
 
+    protected static int slot(String[] keys, String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public boolean contains(String key) {
-        return (parsedCsvData != null && parsedCsvData.get(key) != null)
-                || (csvData != null && csvData.get(key) != null);
+        return getParsedDataValue(key) != null || getCsvDataValue(key) != null;
     }
 
     public void setDataEventType(DataEventType dataEventType) {
@@ -104,27 +135,50 @@ public class CsvData {
     }
 
     public void putAttribute(String attributeName, Object attributeValue) {
-        if (attributes == null) {
-            attributes = new HashMap<String, Object>();
+        int slot = slot(ATTRIBUTE_KEYS, attributeName);
+        if (slot >= 0) {
+            if (attributes == null) {
+                attributes = new Object[ATTRIBUTE_KEYS.length];
+            }
+            attributes[slot] = attributeValue;
+        } else {
+            if (otherAttributes == null) {
+                otherAttributes = new HashMap<String, Object>(2);
+            }
+            otherAttributes.put(attributeName, attributeValue);
         }
-        attributes.put(attributeName, attributeValue);
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getAttribute(String attributeName) {
-        return attributes == null ? null : (T) attributes.get(attributeName);
+        int slot = slot(ATTRIBUTE_KEYS, attributeName);
+        if (slot >= 0) {
+            return attributes == null ? null : (T) attributes[slot];
+        } else {
+            return otherAttributes == null ? null : (T) otherAttributes.get(attributeName);
+        }
     }
     
     public void removeCsvData(String key) {
-        if (csvData != null) {
-            csvData.remove(key);
+        int slot = slot(DATA_KEYS, key);
+        if (slot >= 0) {
+            if (csvData != null) {
+                csvData[slot] = null;
+            }
+        } else if (otherCsvData != null) {
+            otherCsvData.remove(key);
         }
     }
     
     public void removeParsedData(String key) {
-        if (parsedCsvData != null) {
-            parsedCsvData.remove(key);
-        }        
+        int slot = slot(DATA_KEYS, key);
+        if (slot >= 0) {
+            if (parsedCsvData != null) {
+                parsedCsvData[slot] = null;
+            }
+        } else if (otherParsedCsvData != null) {
+            otherParsedCsvData.remove(key);
+        }
     }
 
     public void removeAllData(String key) {
@@ -134,21 +188,43 @@ public class CsvData {
 
     public void putCsvData(String key, String data) {
         removeAllData(key);
-        if (csvData == null) {
-            csvData = new HashMap<String, String>(2);
+        int slot = slot(DATA_KEYS, key);
+        if (slot >= 0) {
+            if (csvData == null) {
+                csvData = new String[DATA_KEYS.length];
+            }
+            csvData[slot] = data;
+        } else {
+            if (otherCsvData == null) {
+                otherCsvData = new HashMap<String, String>(2);
+            }
+            otherCsvData.put(key, data);
         }
         changedDataIndicators = null;
-        csvData.put(key, data);
     }
 
-    public String getCsvData(String key) {
-        String data = null;
-        if (csvData != null) {
-            data = csvData.get(key);
+    protected String getCsvDataValue(String key) {
+        int slot = slot(DATA_KEYS, key);
+        if (slot >= 0) {
+            return csvData == null ? null : csvData[slot];
+        } else {
+            return otherCsvData == null ? null : otherCsvData.get(key);
+        }
+    }
+
+    protected String[] getParsedDataValue(String key) {
+        int slot = slot(DATA_KEYS, key);
+        if (slot >= 0) {
+            return parsedCsvData == null ? null : parsedCsvData[slot];
+        } else {
+            return otherParsedCsvData == null ? null : otherParsedCsvData.get(key);
         }
+    }
 
-        if (data == null && parsedCsvData != null) {
-            String[] parsedData = parsedCsvData.get(key);
+    public String getCsvData(String key) {
+        String data = getCsvDataValue(key);
+        if (data == null) {
+            String[] parsedData = getParsedDataValue(key);
             if (parsedData != null) {
                 data = CsvUtils.escapeCsvData(parsedData);
                 // swap out data for parsed data so we don't 
@@ -185,19 +261,25 @@ public class CsvData {
 
     public void putParsedData(String key, String[] data) {
         removeAllData(key);
-        if (parsedCsvData == null) {
-            parsedCsvData = new HashMap<String, String[]>(2);
+        int slot = slot(DATA_KEYS, key);
+        if (slot >= 0) {
+            if (parsedCsvData == null) {
+                parsedCsvData = new String[DATA_KEYS.length][];
+            }
+            parsedCsvData[slot] = data;
+        } else {
+            if (otherParsedCsvData == null) {
+                otherParsedCsvData = new HashMap<String, String[]>(2);
+            }
+            otherParsedCsvData.put(key, data);
         }
         changedDataIndicators = null;
-        parsedCsvData.put(key, data);
     }
     
     public String[] getParsedData(String key) {
-        String[] values = null;
-        if (parsedCsvData != null && parsedCsvData.containsKey(key)) {
-            values = parsedCsvData.get(key);
-        } else if (csvData != null && csvData.containsKey(key)) {
-            String data = csvData.get(key);
+        String[] values = getParsedDataValue(key);
+        if (values == null) {
+            String data = getCsvDataValue(key);
             if (data != null) {
                 values = CsvUtils.tokenizeCsvData(data);
                 putParsedData(key, values);
@@ -258,6 +340,7 @@ public class CsvData {
     public CsvData copyWithoutOldData() {
         CsvData data = new CsvData(getDataEventType(), getParsedData(CsvData.ROW_DATA));
         data.attributes = attributes;
+        data.otherAttributes = otherAttributes;
         return data;
     }
     
@@ -303,7 +386,14 @@ public class CsvData {
     public long getSizeInBytes() {
         long size = 0;
         if (csvData != null) {
-            Collection<String> values = csvData.values();
+            for (String string : csvData) {
+                if (string != null) {
+                    size += string.getBytes().length;
+                }
+            }
+        }
+        if (otherCsvData != null) {
+            Collection<String> values = otherCsvData.values();
             for (String string : values) {
                 if (string != null) {
                     size += string.getBytes().length;
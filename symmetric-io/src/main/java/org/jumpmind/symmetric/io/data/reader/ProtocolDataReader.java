@@ -50,6 +50,7 @@ import org.jumpmind.symmetric.io.data.CsvUtils;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.IDataReader;
+import org.jumpmind.symmetric.io.stage.BinaryRecordReader;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.util.CollectionUtils;
 import org.jumpmind.util.Statistics;
@@ -63,6 +64,7 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
     protected Reader reader;
     protected Map<Batch, Statistics> statistics = new HashMap<Batch, Statistics>();
     protected CsvReader csvReader;
+    protected BinaryRecordReader recordReader;
     protected DataContext context;
     protected Object next;
     protected Batch batch;
@@ -118,14 +120,30 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
 
     public void open(DataContext context) {
         if (this.stagedResource != null && this.reader == null) {
-            this.reader = this.stagedResource.getReader();
+            if (this.stagedResource.isBinary()) {
+                this.recordReader = new BinaryRecordReader(this.stagedResource.getByteBuffer());
+            } else {
+                this.reader = this.stagedResource.getReader();
+            }
         }
         this.lineNumber = 0;
         this.context = context;
-        this.csvReader = CsvUtils.getCsvReader(reader);
+        if (this.recordReader == null) {
+            this.csvReader = CsvUtils.getCsvReader(reader);
+        }
         this.next = readNext();
     }
 
+    protected String[] readTokens() throws IOException {
+        if (recordReader != null) {
+            return recordReader.readRecord();
+        } else if (csvReader.readRecord()) {
+            return csvReader.getValues();
+        } else {
+            return null;
+        }
+    }
+
     public Object readNext() {
         try {
             Set<String> keys = null;
@@ -134,12 +152,9 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
             String[] parsedOldData = null;
             long bytesRead = 0;
             Table table = null;
-            while (tokens != null || csvReader.readRecord()) {
+            while (tokens != null || (tokens = readTokens()) != null) {
                 lineNumber++;
                 context.put(CTX_LINE_NUMBER, lineNumber);
-                if (tokens == null) {
-                    tokens = csvReader.getValues();
-                }
                 bytesRead += logDebugAndCountBytes(tokens);
                 if (batch != null) {
                     statistics.get(batch)
@@ -354,6 +369,8 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
         if (csvReader != null) {
             csvReader.close();
         }
+        
+        recordReader = null;
 
         if (stagedResource != null) {
             stagedResource.close();
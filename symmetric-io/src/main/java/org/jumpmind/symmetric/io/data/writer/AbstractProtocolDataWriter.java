@@ -158,40 +158,33 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
             statistics.get(batch).increment(DataWriterStatisticConstants.LINENUMBER);
             switch (data.getDataEventType()) {
                 case INSERT:
-                    println(CsvConstants.INSERT, data.getCsvData(CsvData.ROW_DATA));
+                    println(CsvConstants.INSERT, data, CsvData.ROW_DATA);
                     break;
 
                 case UPDATE:
                     if (!backwardsCompatible) {
-                        String oldData = data.getCsvData(CsvData.OLD_DATA);
-                        if (StringUtils.isNotBlank(oldData)) {
-                            println(CsvConstants.OLD, oldData);
-                        }
+                        printOldData(data);
                     }
-                    println(CsvConstants.UPDATE, data.getCsvData(CsvData.ROW_DATA),
-                            data.getCsvData(CsvData.PK_DATA));
+                    println(CsvConstants.UPDATE, data, CsvData.ROW_DATA, CsvData.PK_DATA);
                     break;
 
                 case DELETE:
                     if (!backwardsCompatible) {
-                        String oldData = data.getCsvData(CsvData.OLD_DATA);
-                        if (StringUtils.isNotBlank(oldData)) {
-                            println(CsvConstants.OLD, oldData);
-                        }
+                        printOldData(data);
                     }
-                    println(CsvConstants.DELETE, data.getCsvData(CsvData.PK_DATA));
+                    println(CsvConstants.DELETE, data, CsvData.PK_DATA);
                     break;
 
                 case CREATE:
-                    println(CsvConstants.CREATE, data.getCsvData(CsvData.ROW_DATA));
+                    println(CsvConstants.CREATE, data, CsvData.ROW_DATA);
                     break;
 
                 case BSH:
-                    println(CsvConstants.BSH, data.getCsvData(CsvData.ROW_DATA));
+                    println(CsvConstants.BSH, data, CsvData.ROW_DATA);
                     break;
 
                 case SQL:
-                    println(CsvConstants.SQL, data.getCsvData(CsvData.ROW_DATA));
+                    println(CsvConstants.SQL, data, CsvData.ROW_DATA);
                     break;
                     
                 case RELOAD:
@@ -241,6 +234,22 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
         return buffer.length();
     }
 
+    protected void printOldData(CsvData data) {
+        String oldData = data.getCsvData(CsvData.OLD_DATA);
+        if (StringUtils.isNotBlank(oldData)) {
+            println(CsvConstants.OLD, oldData);
+        }
+    }
+
+    protected long println(String key, CsvData data, String... dataKeys) {
+        String[] values = new String[dataKeys.length + 1];
+        values[0] = key;
+        for (int i = 0; i < dataKeys.length; i++) {
+            values[i + 1] = data.getCsvData(dataKeys[i]);
+        }
+        return println(values);
+    }
+
     abstract protected void print(Batch batch, String data);
 
     protected long println(String... data) {
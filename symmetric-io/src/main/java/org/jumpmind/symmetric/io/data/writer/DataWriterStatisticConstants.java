@@ -40,5 +40,16 @@ abstract public class DataWriterStatisticConstants {
     public static final String MISSINGDELETECOUNT = "MISSINGDELETECOUNT";
     public static final String IGNORECOUNT = "IGNORECOUNT";
     public static final String LINENUMBER = "LINENUMBER";
+    public static final String LOOKUPHITCOUNT = "LOOKUPHITCOUNT";
+    public static final String LOOKUPMISSCOUNT = "LOOKUPMISSCOUNT";
+    public static final String LOOKUPMILLIS = "LOOKUPMILLIS";
+
+    /**
+     * @return the category that tracks the time spent in one transform. The
+     *         total for all transforms is tracked in {@link #TRANSFORMMILLIS}
+     */
+    public static String transformMillis(String transformId) {
+        return TRANSFORMMILLIS + "." + transformId;
+    }
 
 }
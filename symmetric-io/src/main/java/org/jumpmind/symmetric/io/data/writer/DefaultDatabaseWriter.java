@@ -26,6 +26,7 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -63,6 +64,8 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     
     public static final String CUR_DATA = "DatabaseWriter.CurData";
 
+    protected static final int MAX_CACHED_DML_STATEMENTS = 100;
+
     protected IDatabasePlatform platform;
 
     protected ISqlTransaction transaction;
@@ -71,6 +74,20 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     
     protected Object[] currentDmlValues;
 
+    /**
+     * Statements that were built for this writer keyed by table, dml type,
+     * keys, columns and null key pattern.
+     */
+    protected Map<String, DmlStatement> dmlStatements = new LinkedHashMap<String, DmlStatement>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DmlStatement> eldest) {
+            return size() > MAX_CACHED_DML_STATEMENTS;
+        }
+    };
+
     public DefaultDatabaseWriter(IDatabasePlatform platform) {
         this(platform, null, null);
     }
@@ -161,7 +178,8 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
             statistics.get(batch).startTimer(DataWriterStatisticConstants.DATABASEMILLIS);
             if (requireNewStatement(DmlType.INSERT, data, false, true, null)) {
                 this.lastUseConflictDetection = true;
-                this.currentDmlStatement = platform.createDmlStatement(DmlType.INSERT, targetTable, writerSettings.getTextColumnExpression());
+                this.currentDmlStatement = getDmlStatement(DmlType.INSERT,
+                        targetTable.getPrimaryKeyColumns(), targetTable.getColumns(), null);
                 if (log.isDebugEnabled()) {
                     log.debug("Preparing dml: " + this.currentDmlStatement.getSql());
                 }
@@ -281,9 +299,8 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
                             && lookupDataMap.get(column.getName()) == null;
                 }
 
-                this.currentDmlStatement = platform.createDmlStatement(DmlType.DELETE,
-                        targetTable.getCatalog(), targetTable.getSchema(), targetTable.getName(),
-                        lookupKeys.toArray(new Column[lookupKeys.size()]), null, nullKeyValues, writerSettings.getTextColumnExpression());
+                this.currentDmlStatement = getDmlStatement(DmlType.DELETE,
+                        lookupKeys.toArray(new Column[lookupKeys.size()]), null, nullKeyValues);
                 if (log.isDebugEnabled()) {
                     log.debug("Preparing dml: " + this.currentDmlStatement.getSql());
                 }
@@ -433,12 +450,10 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
                                 && lookupDataMap.get(column.getName()) == null;
                     }
 
-                    this.currentDmlStatement = platform.createDmlStatement(DmlType.UPDATE,
-                            targetTable.getCatalog(), targetTable.getSchema(),
-                            targetTable.getName(),
+                    this.currentDmlStatement = getDmlStatement(DmlType.UPDATE,
                             lookupKeys.toArray(new Column[lookupKeys.size()]),
                             changedColumnsList.toArray(new Column[changedColumnsList.size()]),
-                            nullKeyValues, writerSettings.getTextColumnExpression());
+                            nullKeyValues);
                     if (log.isDebugEnabled()) {
                         log.debug("Preparing dml: " + this.currentDmlStatement.getSql());
                     }
@@ -510,7 +525,10 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
                 platform.createDatabase(db, writerSettings.isCreateTableDropFirst(), !writerSettings.isCreateTableFailOnError());
             }
 
-            platform.resetCachedTableModel();
+            for (Table table : db.getTables()) {
+                platform.resetCachedTableModel(table.getCatalog(), table.getSchema(),
+                        table.getName());
+            }
             statistics.get(batch).increment(DataWriterStatisticConstants.CREATECOUNT);
             return true;
         } catch (RuntimeException ex) {
@@ -549,6 +567,37 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
         }
     }
     
+    protected DmlStatement getDmlStatement(DmlType dmlType, Column[] keys, Column[] columns,
+            boolean[] nullKeyValues) {
+        StringBuilder key = new StringBuilder(dmlType.name());
+        key.append(" ").append(targetTable.getTableKey());
+        appendColumnNames(key.append(" keys:"), keys);
+        appendColumnNames(key.append(" columns:"), columns);
+        if (nullKeyValues != null) {
+            key.append(" nulls:");
+            for (boolean nullKeyValue : nullKeyValues) {
+                key.append(nullKeyValue ? '1' : '0');
+            }
+        }
+        String cacheKey = key.toString();
+        DmlStatement statement = dmlStatements.get(cacheKey);
+        if (statement == null) {
+            statement = platform.createDmlStatement(dmlType, targetTable.getCatalog(),
+                    targetTable.getSchema(), targetTable.getName(), keys, columns, nullKeyValues,
+                    writerSettings.getTextColumnExpression());
+            dmlStatements.put(cacheKey, statement);
+        }
+        return statement;
+    }
+
+    private void appendColumnNames(StringBuilder key, Column[] columns) {
+        if (columns != null) {
+            for (Column column : columns) {
+                key.append(column.getName()).append(",");
+            }
+        }
+    }
+
     protected boolean requireNewStatement(DmlType currentType, CsvData data,
             boolean applyChangesOnly, boolean useConflictDetection,
             Conflict.DetectConflict detectType) {
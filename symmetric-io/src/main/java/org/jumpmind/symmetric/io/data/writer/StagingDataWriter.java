@@ -27,8 +27,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.jumpmind.db.model.Column;
 import org.jumpmind.exception.IoException;
 import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.CsvConstants;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.stage.BinaryRecordWriter;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.symmetric.io.stage.IStagedResource.State;
 import org.jumpmind.symmetric.io.stage.IStagingManager;
@@ -42,12 +46,29 @@ public class StagingDataWriter extends AbstractProtocolDataWriter {
     
     private Map<Batch, IStagedResource> stagedResources = new HashMap<Batch, IStagedResource>();
     
+    private Map<Batch, BinaryRecordWriter> recordWriters = new HashMap<Batch, BinaryRecordWriter>();
+    
     private long memoryThresholdInBytes;
+    
+    private boolean binary;
 
     public StagingDataWriter(long memoryThresholdInBytes, String sourceNodeId, String category, IStagingManager stagingManager,
             IProtocolDataWriterListener... listeners) {
+        this(memoryThresholdInBytes, false, sourceNodeId, category, stagingManager, listeners);
+    }
+
+    /**
+     * @param binary
+     *            stage pre-tokenized records in the binary format read by
+     *            {@link org.jumpmind.symmetric.io.stage.BinaryRecordReader}
+     *            instead of CSV text
+     */
+    public StagingDataWriter(long memoryThresholdInBytes, boolean binary, String sourceNodeId,
+            String category, IStagingManager stagingManager,
+            IProtocolDataWriterListener... listeners) {
         this(sourceNodeId, category, stagingManager, toList(listeners));
         this.memoryThresholdInBytes = memoryThresholdInBytes;
+        this.binary = binary;
     }
 
     public StagingDataWriter(String sourceNodeId, String category, IStagingManager stagingManager,
@@ -93,6 +114,7 @@ public class StagingDataWriter extends AbstractProtocolDataWriter {
     @Override
     protected void endBatch(Batch batch) {
         IStagedResource resource = getStagedResource(batch);
+        recordWriters.remove(batch);
         resource.close();
         resource.setState(State.READY);
         flushNodeId = true;
@@ -100,6 +122,76 @@ public class StagingDataWriter extends AbstractProtocolDataWriter {
         table = null;        
     }
 
+    protected BinaryRecordWriter getRecordWriter(Batch batch) {
+        BinaryRecordWriter recordWriter = recordWriters.get(batch);
+        if (recordWriter == null) {
+            recordWriter = new BinaryRecordWriter(getStagedResource(batch).getBinaryOutputStream());
+            recordWriters.put(batch, recordWriter);
+        }
+        return recordWriter;
+    }
+
+    @Override
+    protected void printOldData(CsvData data) {
+        if (binary) {
+            String[] oldData = data.getParsedData(CsvData.OLD_DATA);
+            if (oldData != null && oldData.length > 0) {
+                println(CsvConstants.OLD, data, CsvData.OLD_DATA);
+            }
+        } else {
+            super.printOldData(data);
+        }
+    }
+
+    @Override
+    protected long println(String key, CsvData data, String... dataKeys) {
+        if (binary) {
+            String[][] values = new String[dataKeys.length][];
+            for (int i = 0; i < dataKeys.length; i++) {
+                values[i] = data.getParsedData(dataKeys[i]);
+                if (values[i] != null && values[i].length == 0) {
+                    /*
+                     * Stage an empty array the way it reads back from csv so
+                     * both formats load the same
+                     */
+                    values[i] = new String[1];
+                }
+            }
+            return countBytes(getRecordWriter(batch).writeRecord(key, values));
+        } else {
+            return super.println(key, data, dataKeys);
+        }
+    }
+
+    @Override
+    protected int println(String key, Column[] columns) {
+        if (binary) {
+            String[] names = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                names[i] = columns[i].getName();
+            }
+            return (int) countBytes(getRecordWriter(batch).writeRecord(key, names));
+        } else {
+            return super.println(key, columns);
+        }
+    }
+
+    @Override
+    protected long println(String... data) {
+        if (binary) {
+            String[] values = new String[data.length - 1];
+            System.arraycopy(data, 1, values, 0, values.length);
+            return countBytes(getRecordWriter(batch).writeRecord(data[0], values));
+        } else {
+            return super.println(data);
+        }
+    }
+
+    protected long countBytes(long byteCount) {
+        statistics.get(batch).increment(DataWriterStatisticConstants.BYTECOUNT, byteCount);
+        return byteCount;
+    }
+
     @Override
     protected void print(Batch batch, String data) {
         if (log.isDebugEnabled() && data != null) {
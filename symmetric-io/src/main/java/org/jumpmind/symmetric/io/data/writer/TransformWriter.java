@@ -62,6 +62,9 @@ public class TransformWriter extends NestedDataWriter {
     protected Batch batch;
     protected Map<String, IColumnTransform<?>> columnTransforms;
     protected Table lastTransformedTable;
+    protected TransformPlan[] activeTransformPlans;
+    protected TransformPlan[] activeTransformPlansReversed;
+    protected Map<String, TransformPlan> transformPlans = new HashMap<String, TransformPlan>();
     
     public TransformWriter(IDatabasePlatform platform, TransformPoint transformPoint,
             IDataWriter targetWriter, Map<String, IColumnTransform<?>> columnTransforms, 
@@ -102,13 +105,42 @@ public class TransformWriter extends NestedDataWriter {
         activeTransforms = transformsBySourceTable.get(table.getFullyQualifiedTableName().toLowerCase());
         if (activeTransforms != null && activeTransforms.size() > 0) {
             this.sourceTable = table;
+            this.activeTransformPlans = getTransformPlans(table, activeTransforms);
+            this.activeTransformPlansReversed = activeTransformPlans.clone();
+            CollectionUtils.reverseArray(activeTransformPlansReversed);
             return true;
         } else {
             this.sourceTable = null;
+            this.activeTransformPlans = null;
+            this.activeTransformPlansReversed = null;
             return super.start(table);
         }
     }
 
+    /**
+     * Look up the plans for the transforms of a source table. A plan is kept
+     * for each transform and source column layout so that the implied columns
+     * are only worked out once.
+     */
+    protected TransformPlan[] getTransformPlans(Table table, List<TransformTable> transforms) {
+        String[] keyNames = table.getPrimaryKeyColumnNames();
+        String[] columnNames = table.getColumnNames();
+        String layout = ArrayUtils.toString(keyNames) + ArrayUtils.toString(columnNames);
+        TransformPlan[] plans = new TransformPlan[transforms.size()];
+        for (int i = 0; i < plans.length; i++) {
+            TransformTable transformation = transforms.get(i);
+            String planKey = transformation.getTransformId() + layout;
+            TransformPlan plan = transformPlans.get(planKey);
+            if (plan == null || plan.source != transformation) {
+                plan = new TransformPlan(transformation, transformation.enhanceWithImpliedColumns(
+                        keyNames, columnNames));
+                transformPlans.put(planKey, plan);
+            }
+            plans[i] = plan;
+        }
+        return plans;
+    }
+
     protected boolean isTransformable(DataEventType eventType) {
         return eventType != null
                 && (eventType == DataEventType.INSERT || eventType == DataEventType.UPDATE || eventType == DataEventType.DELETE);
@@ -154,29 +186,41 @@ public class TransformWriter extends NestedDataWriter {
                                 this.sourceTable.getFullyQualifiedTableName(), sourceValues });
             }
 
+            Statistics stats = this.nestedWriter.getStatistics().get(batch);
             List<TransformedData> dataThatHasBeenTransformed = new ArrayList<TransformedData>();
-            TransformTable[] transformTables = activeTransforms.toArray(new TransformTable[activeTransforms.size()]);
-            if (eventType == DataEventType.DELETE) {
-                CollectionUtils.reverseArray(transformTables);
-            }
+            List<TransformPlan> planThatTransformedData = new ArrayList<TransformPlan>();
+            TransformPlan[] plans = eventType == DataEventType.DELETE ? activeTransformPlansReversed
+                    : activeTransformPlans;
 
-            for (TransformTable transformation : transformTables) {
-                transformation = transformation.enhanceWithImpliedColumns(
-                        this.sourceTable.getPrimaryKeyColumnNames(),
-                        this.sourceTable.getColumnNames());
+            for (TransformPlan plan : plans) {
+                long planTs = System.currentTimeMillis();
+                TransformTable transformation = plan.transformation;
                 if (eventType == DataEventType.INSERT && transformation.isUpdateFirst()) {
                     eventType = DataEventType.UPDATE;
                 }
-                dataThatHasBeenTransformed.addAll(transform(eventType, context, transformation,
-                        sourceKeyValues, oldSourceValues, sourceValues));
+                List<TransformedData> transformedDatas = transform(eventType, context,
+                        transformation, sourceKeyValues, oldSourceValues, sourceValues);
+                for (TransformedData transformedData : transformedDatas) {
+                    dataThatHasBeenTransformed.add(transformedData);
+                    planThatTransformedData.add(plan);
+                }
+                if (stats != null) {
+                    stats.increment(DataWriterStatisticConstants
+                            .transformMillis(transformation.getTransformId()), System
+                            .currentTimeMillis() - planTs);
+                }
             }
 
-            for (TransformedData transformedData : dataThatHasBeenTransformed) {
-                Table transformedTable = transformedData.buildTargetTable();
+            for (int i = 0; i < dataThatHasBeenTransformed.size(); i++) {
+                TransformedData transformedData = dataThatHasBeenTransformed.get(i);
+                Table transformedTable = planThatTransformedData.get(i).getTargetTable(
+                        transformedData);
                 CsvData csvData = transformedData.buildTargetCsvData();
                 long transformTimeInMs = System.currentTimeMillis() - ts;
                 boolean processData = true;
-                if (lastTransformedTable == null || !lastTransformedTable.equals(transformedTable)) {
+                if (lastTransformedTable == null
+                        || (lastTransformedTable != transformedTable && !lastTransformedTable
+                                .equals(transformedTable))) {
                     if (lastTransformedTable != null) {
                         this.nestedWriter.end(lastTransformedTable);
                     }
@@ -190,7 +234,6 @@ public class TransformWriter extends NestedDataWriter {
                 if (processData || !csvData.requiresTable()) {
                     this.nestedWriter.write(csvData);
                 }
-                Statistics stats = this.nestedWriter.getStatistics().get(batch);
                 if (stats != null) {
                     stats.increment(DataWriterStatisticConstants.TRANSFORMMILLIS, transformTimeInMs);
                 }
@@ -464,10 +507,42 @@ public class TransformWriter extends NestedDataWriter {
         }
         if (activeTransforms != null && activeTransforms.size() > 0) {
             activeTransforms = null;
+            activeTransformPlans = null;
+            activeTransformPlansReversed = null;
         } else {
             super.end(table);
         }
 
     }
 
+    /**
+     * A transform with its implied columns filled in for one source column
+     * layout, along with the target tables it has produced
+     */
+    static class TransformPlan {
+
+        TransformTable source;
+
+        TransformTable transformation;
+
+        Map<String, Table> targetTables = new HashMap<String, Table>();
+
+        TransformPlan(TransformTable source, TransformTable transformation) {
+            this.source = source;
+            this.transformation = transformation;
+        }
+
+        Table getTargetTable(TransformedData data) {
+            String[] columnNames = data.getColumnNames();
+            String[] keyNames = data.getKeyNames();
+            String key = ArrayUtils.toString(columnNames) + ArrayUtils.toString(keyNames);
+            Table table = targetTables.get(key);
+            if (table == null && !targetTables.containsKey(key)) {
+                table = data.buildTargetTable();
+                targetTables.put(key, table);
+            }
+            return table;
+        }
+    }
+
 }
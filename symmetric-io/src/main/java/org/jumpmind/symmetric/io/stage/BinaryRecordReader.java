@@ -0,0 +1,131 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.exception.IoException;
+
+/**
+ * Reads protocol records written by {@link BinaryRecordWriter} from a
+ * {@link ByteBuffer}, which is typically a memory mapped staging file. Tokens
+ * are decoded straight from the buffer so no CSV parsing is required.
+ */
+public class BinaryRecordReader {
+
+    public static final byte[] MAGIC = new byte[] { 'S', 'Y', 'M', 'B' };
+
+    public static final byte VERSION = 1;
+
+    private ByteBuffer buffer;
+
+    private byte[] scratch = new byte[1024];
+
+    public BinaryRecordReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (!isBinary(buffer)) {
+            throw new IoException("The buffer does not contain binary staging data");
+        }
+        buffer.position(buffer.position() + MAGIC.length);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IoException("Unsupported binary staging format version: %d", version);
+        }
+    }
+
+    /**
+     * @return the tokens of the next record or null if the end of the buffer
+     *         has been reached
+     */
+    public String[] readRecord() {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        try {
+            String[] tokens = new String[buffer.getInt()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = readToken();
+            }
+            return tokens;
+        } catch (BufferUnderflowException ex) {
+            throw new IoException("The binary staging data was truncated at position %d",
+                    buffer.position());
+        }
+    }
+
+    protected String readToken() {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        } else if (buffer.hasArray()) {
+            int position = buffer.position();
+            String token = new String(buffer.array(), buffer.arrayOffset() + position, length,
+                    BinaryRecordWriter.CHARSET);
+            buffer.position(position + length);
+            return token;
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, BinaryRecordWriter.CHARSET);
+        }
+    }
+
+    public static boolean isBinary(ByteBuffer buffer) {
+        if (buffer.remaining() < MAGIC.length + 1) {
+            return false;
+        }
+        int position = buffer.position();
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(position + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isBinary(File file) {
+        if (file.length() < MAGIC.length + 1) {
+            return false;
+        }
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            byte[] header = new byte[MAGIC.length + 1];
+            if (IOUtils.read(is, header) < header.length) {
+                return false;
+            }
+            return isBinary(ByteBuffer.wrap(header));
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+}
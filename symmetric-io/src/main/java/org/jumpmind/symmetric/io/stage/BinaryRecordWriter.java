@@ -0,0 +1,101 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.jumpmind.exception.IoException;
+import org.jumpmind.symmetric.io.IoConstants;
+
+/**
+ * Writes protocol records in the binary staging format. The stream starts with
+ * {@link BinaryRecordReader#MAGIC} followed by a format version byte. Each
+ * record is the number of tokens followed by the tokens themselves, each
+ * prefixed with its length in bytes (or -1 for a null token). All integers are
+ * written big endian. Records carry the same tokens as a line of the CSV
+ * protocol so that the table header (catalog, schema, table, keys and columns)
+ * is written once per table and row records only carry values.
+ */
+public class BinaryRecordWriter {
+
+    static final Charset CHARSET = Charset.forName(IoConstants.ENCODING);
+
+    private OutputStream os;
+
+    private byte[] intBuffer = new byte[4];
+
+    public BinaryRecordWriter(OutputStream os) {
+        this.os = os;
+        try {
+            os.write(BinaryRecordReader.MAGIC);
+            os.write(BinaryRecordReader.VERSION);
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long writeRecord(String key, String[]... values) {
+        int count = 1;
+        for (String[] array : values) {
+            count += array != null ? array.length : 0;
+        }
+        try {
+            long byteCount = writeInt(count);
+            byteCount += writeToken(key);
+            for (String[] array : values) {
+                if (array != null) {
+                    for (String value : array) {
+                        byteCount += writeToken(value);
+                    }
+                }
+            }
+            return byteCount;
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        }
+    }
+
+    protected int writeToken(String token) throws IOException {
+        if (token == null) {
+            return writeInt(-1);
+        } else {
+            byte[] bytes = token.getBytes(CHARSET);
+            writeInt(bytes.length);
+            os.write(bytes);
+            return bytes.length + 4;
+        }
+    }
+
+    protected int writeInt(int value) throws IOException {
+        intBuffer[0] = (byte) (value >>> 24);
+        intBuffer[1] = (byte) (value >>> 16);
+        intBuffer[2] = (byte) (value >>> 8);
+        intBuffer[3] = (byte) value;
+        os.write(intBuffer);
+        return 4;
+    }
+
+}
@@ -25,6 +25,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public interface IStagedResource {
 
@@ -45,6 +46,25 @@ public interface IStagedResource {
 
     public InputStream getInputStream();    
     
+    /**
+     * @return a stream for writing the binary staging format. Like
+     *         {@link #getWriter()} the content is kept in memory until the
+     *         threshold is reached.
+     */
+    public OutputStream getBinaryOutputStream();
+    
+    /**
+     * @return a read only buffer over the binary content. Files are memory
+     *         mapped.
+     */
+    public ByteBuffer getByteBuffer();
+    
+    /**
+     * @return true if the content was written with
+     *         {@link #getBinaryOutputStream()}
+     */
+    public boolean isBinary();
+    
     public File getFile();
     
     public void close();
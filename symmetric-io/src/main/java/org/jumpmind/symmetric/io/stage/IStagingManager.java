@@ -33,5 +33,7 @@ public interface IStagingManager {
     public long clean(long timeToLiveInMs);
     
     public Collection<String> getResourceReferences();
+    
+    public StagingStats getStats();
 
 }
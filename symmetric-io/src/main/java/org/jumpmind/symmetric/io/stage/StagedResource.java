@@ -32,9 +32,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -47,6 +54,9 @@ public class StagedResource implements IStagedResource {
 
     static final Logger log = LoggerFactory.getLogger(StagedResource.class);
 
+    static final boolean MAP_FILES = !System.getProperty("os.name", "").toLowerCase()
+            .startsWith("windows");
+
     private long threshold;
 
     private File directory;
@@ -57,6 +67,8 @@ public class StagedResource implements IStagedResource {
 
     private StringBuilder memoryBuffer;
 
+    private ByteBuffer memoryBytes;
+
     private long lastUpdateTime;
 
     private State state;
@@ -67,7 +79,11 @@ public class StagedResource implements IStagedResource {
     
     private Map<Thread, BufferedReader> readers = new HashMap<Thread, BufferedReader>();
 
+    private Map<Thread, MappedByteBuffer> mappedBuffers = new ConcurrentHashMap<Thread, MappedByteBuffer>();
+
     private BufferedWriter writer;
+
+    private ThresholdFileOutputStream binaryOutputStream;
     
     private StagingManager stagingManager;
 
@@ -106,7 +122,7 @@ public class StagedResource implements IStagedResource {
     public boolean isInUse() {
         return readers.size() > 0 || writer != null || 
                 (inputStreams != null && inputStreams.size() > 0) ||
-                outputStream != null;
+                outputStream != null || binaryOutputStream != null || mappedBuffers.size() > 0;
     }
     
     public boolean isFileResource() {     
@@ -126,7 +142,7 @@ public class StagedResource implements IStagedResource {
             File newFile = buildFile(state);
             if (!newFile.equals(file)) {
                 if (newFile.exists()) {
-                    if (writer != null || outputStream != null) {
+                    if (writer != null || outputStream != null || binaryOutputStream != null) {
                         throw new IoException("Could not write '{}' it is currently being written to", newFile.getAbsolutePath());                                
                     }
                     
@@ -161,8 +177,13 @@ public class StagedResource implements IStagedResource {
             this.memoryBuffer.setLength(0);
             this.memoryBuffer = null;
         }
+        
+        if (state == State.DONE) {
+            this.memoryBytes = null;
+        }
         refreshLastUpdateTime();
         this.state = state;
+        stagingManager.stateChanged(this);
     }
 
     public BufferedReader getReader() {
@@ -207,6 +228,12 @@ public class StagedResource implements IStagedResource {
             outputStream = null;
         }
         
+        if (binaryOutputStream != null) {
+            IOUtils.closeQuietly(binaryOutputStream);
+            memoryBytes = binaryOutputStream.getMemoryBuffer();
+            binaryOutputStream = null;
+        }
+        
         if (inputStreams != null) {
             InputStream inputStream = inputStreams.get(thread);
             if (inputStream != null) {
@@ -214,6 +241,11 @@ public class StagedResource implements IStagedResource {
                 inputStreams.remove(thread);
             }
         }
+
+        MappedByteBuffer mappedBuffer = mappedBuffers.remove(thread);
+        if (mappedBuffer != null) {
+            unmap(mappedBuffer);
+        }
     }
     
     public OutputStream getOutputStream() {
@@ -255,6 +287,86 @@ public class StagedResource implements IStagedResource {
         return reader;
     }
     
+    public OutputStream getBinaryOutputStream() {
+        if (binaryOutputStream == null) {
+            if (file.exists()) {
+                log.warn("We had to delete {} because it already existed", file.getAbsolutePath());
+                file.delete();
+            } else if (this.memoryBuffer != null || this.memoryBytes != null) {
+                log.warn("We had to delete the memory buffer for {} because it already existed", getPath());
+            }
+            this.memoryBuffer = null;
+            this.memoryBytes = null;
+            binaryOutputStream = new ThresholdFileOutputStream(threshold, this.file);
+        }
+        return binaryOutputStream;
+    }
+
+    /**
+     * A file is memory mapped and the mapping is released when the resource is
+     * closed by the thread that read it. A mapped file cannot be deleted or
+     * renamed on Windows until the mapping is released, which the JVM might not
+     * support, so on Windows the file is read into memory instead.
+     */
+    public ByteBuffer getByteBuffer() {
+        if (file.exists()) {
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel();
+                if (MAP_FILES) {
+                    MappedByteBuffer mappedBuffer = channel.map(MapMode.READ_ONLY, 0,
+                            channel.size());
+                    mappedBuffers.put(Thread.currentThread(), mappedBuffer);
+                    return mappedBuffer;
+                } else {
+                    ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    }
+                    buffer.flip();
+                    return buffer;
+                }
+            } catch (IOException ex) {
+                throw new IoException(ex);
+            } finally {
+                IOUtils.closeQuietly(raf);
+            }
+        } else if (memoryBytes != null) {
+            return memoryBytes.duplicate();
+        } else {
+            throw new IllegalStateException(
+                    "There is no content to read.  Memory buffer was empty and "
+                            + file.getAbsolutePath() + " was not found.");
+        }
+    }
+
+    /**
+     * Release a mapping without waiting for the buffer to be garbage
+     * collected. The buffer must not be used afterwards.
+     */
+    protected static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception ex) {
+            log.debug("Could not unmap a staged file.  It will be unmapped when garbage collected", ex);
+        }
+    }
+
+    public boolean isBinary() {
+        if (binaryOutputStream != null || memoryBytes != null) {
+            return true;
+        } else if (memoryBuffer != null) {
+            return false;
+        } else {
+            return file.exists() && BinaryRecordReader.isBinary(file);
+        }
+    }
+    
     public BufferedWriter getWriter() {
         if (writer == null) {
             if (file.exists()) {
@@ -264,6 +376,7 @@ public class StagedResource implements IStagedResource {
                 log.warn("We had to delete the memory buffer for {} because it already existed", getPath());
                 this.memoryBuffer = null;
             }
+            this.memoryBytes = null;
             this.memoryBuffer = new StringBuilder();
             writer = new BufferedWriter(new ThresholdFileWriter(threshold, this.memoryBuffer,
                     this.file));
@@ -276,13 +389,16 @@ public class StagedResource implements IStagedResource {
             return file.length();
         } else if (memoryBuffer != null) {
             return memoryBuffer.length();
+        } else if (memoryBytes != null) {
+            return memoryBytes.limit();
         } else {
             return 0;
         }
     }
 
     public boolean exists() {
-        return (file.exists() && file.length() > 0) || (memoryBuffer != null && memoryBuffer.length() > 0);
+        return (file.exists() && file.length() > 0) || (memoryBuffer != null && memoryBuffer.length() > 0)
+                || (memoryBytes != null && memoryBytes.limit() > 0);
     }
 
     public long getLastUpdateTime() {
@@ -309,8 +425,10 @@ public class StagedResource implements IStagedResource {
             memoryBuffer = null;
         }
         
+        memoryBytes = null;
+        
         if (deleted) {
-            stagingManager.resourceList.remove(getPath());
+            stagingManager.remove(this);
         }
         
         return deleted;
@@ -328,7 +446,7 @@ public class StagedResource implements IStagedResource {
     @Override
     public String toString() {
         return file.exists() ? file.getAbsolutePath() : String.format("%d bytes in memory",
-                memoryBuffer.length());
+                getSize());
     }
 
 }
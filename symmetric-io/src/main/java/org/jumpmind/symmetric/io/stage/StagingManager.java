@@ -21,10 +21,16 @@
 package org.jumpmind.symmetric.io.stage;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
@@ -33,13 +39,24 @@ import org.jumpmind.symmetric.io.stage.IStagedResource.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Keeps track of staged resources. Resources are registered in stripes keyed
+ * by the parent of their path, which is typically the category and node.
+ * Each stripe keeps its resources ordered by last update time so cleaning
+ * only visits resources that could have expired. Resources that are done, or
+ * that could not be cleaned because they were in use, are also visited on
+ * every clean so they are removed as soon as they no longer exist. Resources
+ * are deleted outside of the stripe locks.
+ */
 public class StagingManager implements IStagingManager {
 
     protected static final Logger log = LoggerFactory.getLogger(StagingManager.class);
 
     protected File directory;
 
-    protected Map<String, IStagedResource> resourceList = new ConcurrentHashMap<String, IStagedResource>();
+    protected Map<String, Stripe> stripes = new ConcurrentHashMap<String, Stripe>();
+
+    protected StagingStats stats = new StagingStats();
 
     public StagingManager(String directory) {
         log.info("The staging directory was initialized at the following location: " + directory);
@@ -49,27 +66,36 @@ public class StagingManager implements IStagingManager {
     }
     
     public Collection<String> getResourceReferences() {
-        synchronized (StagingManager.class) {
-            return resourceList.keySet();
+        List<String> references = new ArrayList<String>();
+        for (Stripe stripe : stripes.values()) {
+            synchronized (stripe) {
+                references.addAll(stripe.entries.keySet());
+            }
         }
+        return references;
+    }
+
+    public StagingStats getStats() {
+        return stats;
     }
 
     protected void refreshResourceList() {
-        synchronized (StagingManager.class) {
-            Collection<File> files = FileUtils.listFiles(this.directory,
-                    new String[] { State.CREATE.getExtensionName(), State.READY.getExtensionName(),
-                            State.DONE.getExtensionName() }, true);
-            for (File file : files) {
-                try {
-                    StagedResource resource = new StagedResource(0, directory,
-                            file, this);
-                    String path = resource.getPath();
-                    if (!resourceList.containsKey(path)) {
-                        resourceList.put(path, resource);
+        Collection<File> files = FileUtils.listFiles(this.directory,
+                new String[] { State.CREATE.getExtensionName(), State.READY.getExtensionName(),
+                        State.DONE.getExtensionName() }, true);
+        for (File file : files) {
+            try {
+                StagedResource resource = new StagedResource(0, directory,
+                        file, this);
+                String path = resource.getPath();
+                Stripe stripe = getStripe(path);
+                synchronized (stripe) {
+                    if (!stripe.entries.containsKey(path)) {
+                        stripe.put(path, resource);
                     }
-                } catch (IllegalStateException ex) {
-                    log.warn(ex.getMessage());
                 }
+            } catch (IllegalStateException ex) {
+                log.warn(ex.getMessage());
             }
         }
     }
@@ -82,67 +108,75 @@ public class StagingManager implements IStagingManager {
      *            will be purged
      */
     public long clean(long ttlInMs) {
-        synchronized (StagingManager.class) {
-            log.trace("Cleaning staging area");
-            Set<String> keys = new HashSet<String>(resourceList.keySet());
-            long purgedFileCount = 0;
-            long purgedFileSize = 0;
-            long purgedMemCount = 0;
-            long purgedMemSize = 0;
-            for (String key : keys) {
-                IStagedResource resource = resourceList.get(key);
-                /* resource could have deleted itself between the time the keys were cloned and now */
-                if (resource != null) {
-                    boolean resourceIsOld = (System.currentTimeMillis() - resource
-                            .getLastUpdateTime()) > ttlInMs;
-                    if ((resource.getState() == State.DONE ||
-                            (resource.getState() == State.READY && resource.getPath().contains("/common/")) ||
-                            (resource.getState() == State.READY && ttlInMs == 0)) 
-                            && (resourceIsOld || !resource.exists())) {
-                        if (!resource.isInUse()) {
-                            boolean file = resource.isFileResource();
-                            long size = resource.getSize();
-                            if (resource.delete()) {
-                                if (file) {
-                                    purgedFileCount++;
-                                    purgedFileSize += size;
-                                } else {
-                                    purgedMemCount++;
-                                    purgedMemSize += size;
-                                }
-                                resourceList.remove(key);
+        log.trace("Cleaning staging area");
+        long ts = System.currentTimeMillis();
+        long expireTime = ts - ttlInMs;
+        long purgedFileCount = 0;
+        long purgedFileSize = 0;
+        long purgedMemCount = 0;
+        long purgedMemSize = 0;
+        for (Stripe stripe : stripes.values()) {
+            Set<IStagedResource> candidates = new LinkedHashSet<IStagedResource>(
+                    stripe.removeExpired(expireTime));
+            candidates.addAll(stripe.getRechecks());
+            for (IStagedResource resource : candidates) {
+                boolean expired = resource.getLastUpdateTime() < expireTime;
+                if ((resource.getState() == State.DONE
+                        || (resource.getState() == State.READY && resource.getPath().contains(
+                                "/common/")) || (resource.getState() == State.READY && ttlInMs == 0))
+                        && (expired || !resource.exists())) {
+                    if (!resource.isInUse()) {
+                        boolean file = resource.isFileResource();
+                        long size = resource.getSize();
+                        if (resource.delete()) {
+                            if (file) {
+                                purgedFileCount++;
+                                purgedFileSize += size;
                             } else {
-                                log.warn("Failed to delete the '{}' staging resource",
-                                        resource.getPath());
+                                purgedMemCount++;
+                                purgedMemSize += size;
                             }
+                            remove(resource);
                         } else {
-                            log.info(
-                                    "The '{}' staging resource qualified for being cleaned, but was in use.  It will not be cleaned right now",
+                            log.warn("Failed to delete the '{}' staging resource",
                                     resource.getPath());
+                            stripe.reindex(resource, ts, true);
                         }
+                    } else {
+                        log.info(
+                                "The '{}' staging resource qualified for being cleaned, but was in use.  It will not be cleaned right now",
+                                resource.getPath());
+                        stripe.reindex(resource, ts, true);
                     }
+                } else if (expired) {
+                    /*
+                     * Revisit the resource after another time to live has
+                     * passed. A state change refreshes the last update time.
+                     */
+                    stripe.reindex(resource, ts, false);
                 }
             }
-            if (purgedFileCount > 0) {
-                if (purgedFileSize < 1000) {
-                    log.debug("Purged {} staged files, freeing {} bytes of disk space",
-                            purgedFileCount, (int) (purgedFileSize));
-                } else {
-                    log.debug("Purged {} staged files, freeing {} kbytes of disk space",
-                            purgedFileCount, (int) (purgedFileSize / 1000));
-                }
+        }
+        if (purgedFileCount > 0) {
+            if (purgedFileSize < 1000) {
+                log.debug("Purged {} staged files, freeing {} bytes of disk space",
+                        purgedFileCount, (int) (purgedFileSize));
+            } else {
+                log.debug("Purged {} staged files, freeing {} kbytes of disk space",
+                        purgedFileCount, (int) (purgedFileSize / 1000));
             }
-            if (purgedMemCount > 0) {
-                if (purgedMemSize < 1000) {
-                    log.debug("Purged {} staged memory buffers, freeing {} bytes of memory",
-                            purgedMemCount, (int) (purgedMemSize));
-                } else {
-                    log.debug("Purged {} staged memory buffers, freeing {} kbytes of memory",
-                            purgedMemCount, (int) (purgedMemSize / 1000));
-                }
+        }
+        if (purgedMemCount > 0) {
+            if (purgedMemSize < 1000) {
+                log.debug("Purged {} staged memory buffers, freeing {} bytes of memory",
+                        purgedMemCount, (int) (purgedMemSize));
+            } else {
+                log.debug("Purged {} staged memory buffers, freeing {} kbytes of memory",
+                        purgedMemCount, (int) (purgedMemSize / 1000));
             }
-            return purgedFileCount + purgedMemCount;
         }
+        stats.incrementClean(System.currentTimeMillis() - ts, purgedFileCount + purgedMemCount);
+        return purgedFileCount + purgedMemCount;
     }
 
     /**
@@ -152,7 +186,10 @@ public class StagingManager implements IStagingManager {
         String filePath = buildFilePath(path);
         StagedResource resource = new StagedResource(memoryThresholdInBytes, directory, filePath,
                 this);
-        this.resourceList.put(filePath, resource);
+        Stripe stripe = getStripe(filePath);
+        synchronized (stripe) {
+            stripe.put(filePath, resource);
+        }
         return resource;
     }
 
@@ -172,7 +209,14 @@ public class StagingManager implements IStagingManager {
     }
     
     public IStagedResource find(String path) {
-        IStagedResource resource = resourceList.get(path);
+        IStagedResource resource = null;
+        Stripe stripe = stripes.get(getStripeKey(path));
+        if (stripe != null) {
+            synchronized (stripe) {
+                Entry entry = stripe.entries.get(path);
+                resource = entry != null ? entry.resource : null;
+            }
+        }
         if (resource != null) {
             if (!resource.exists()
                     && (resource.getState() == State.READY || resource.getState() == State.DONE)) {
@@ -188,4 +232,201 @@ public class StagingManager implements IStagingManager {
         return find(buildFilePath(path));
     }
 
+    /**
+     * Called by a resource after its state changed so its size is accounted for
+     */
+    protected void stateChanged(IStagedResource resource) {
+        Stripe stripe = stripes.get(getStripeKey(resource.getPath()));
+        if (stripe != null) {
+            synchronized (stripe) {
+                Entry entry = stripe.entries.get(resource.getPath());
+                if (entry != null && entry.resource == resource) {
+                    stripe.account(entry);
+                    if (resource.getState() == State.DONE) {
+                        stripe.rechecks.add(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by a resource after it has been deleted
+     */
+    protected void remove(IStagedResource resource) {
+        Stripe stripe = stripes.get(getStripeKey(resource.getPath()));
+        if (stripe != null) {
+            synchronized (stripe) {
+                Entry entry = stripe.entries.get(resource.getPath());
+                if (entry != null && entry.resource == resource) {
+                    stripe.remove(entry);
+                }
+            }
+        }
+    }
+
+    protected String getStripeKey(String path) {
+        int index = path.lastIndexOf("/");
+        return index > 0 ? path.substring(0, index) : "";
+    }
+
+    protected Stripe getStripe(String path) {
+        String key = getStripeKey(path);
+        Stripe stripe = stripes.get(key);
+        if (stripe == null) {
+            synchronized (stripes) {
+                stripe = stripes.get(key);
+                if (stripe == null) {
+                    stripe = new Stripe();
+                    stripes.put(key, stripe);
+                }
+            }
+        }
+        return stripe;
+    }
+
+    /**
+     * The resources for one category and node. All access is synchronized on
+     * the stripe.
+     */
+    class Stripe {
+
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+
+        TreeSet<Entry> index = new TreeSet<Entry>();
+
+        Set<Entry> rechecks = new HashSet<Entry>();
+
+        void put(String path, IStagedResource resource) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                remove(entry);
+            }
+            entry = new Entry(path, resource);
+            entries.put(path, entry);
+            index.add(entry);
+            if (resource.getState() == State.DONE) {
+                rechecks.add(entry);
+            }
+            stats.incrementResourceCount(1);
+            account(entry);
+        }
+
+        void remove(Entry entry) {
+            entries.remove(entry.path);
+            index.remove(entry);
+            rechecks.remove(entry);
+            stats.incrementResourceCount(-1);
+            account(entry, 0, false);
+        }
+
+        void account(Entry entry) {
+            account(entry, entry.resource.getSize(), entry.resource.isFileResource());
+        }
+
+        void account(Entry entry, long size, boolean file) {
+            if (entry.accountedFile) {
+                stats.incrementFileCount(-1);
+                stats.incrementFileBytes(-entry.accountedBytes);
+            } else {
+                stats.incrementMemoryBytes(-entry.accountedBytes);
+            }
+            if (file) {
+                stats.incrementFileCount(1);
+                stats.incrementFileBytes(size);
+            } else {
+                stats.incrementMemoryBytes(size);
+            }
+            entry.accountedBytes = size;
+            entry.accountedFile = file;
+        }
+
+        /**
+         * Take the resources that were last updated before the expire time out
+         * of the index. Resources that were updated since they were indexed are
+         * indexed again under their last update time.
+         */
+        synchronized List<IStagedResource> removeExpired(long expireTime) {
+            List<IStagedResource> expired = new ArrayList<IStagedResource>();
+            List<Entry> refreshed = null;
+            Iterator<Entry> i = index.iterator();
+            while (i.hasNext()) {
+                Entry entry = i.next();
+                if (entry.indexTime >= expireTime) {
+                    break;
+                }
+                i.remove();
+                long lastUpdateTime = entry.resource.getLastUpdateTime();
+                if (lastUpdateTime >= expireTime) {
+                    if (refreshed == null) {
+                        refreshed = new ArrayList<Entry>();
+                    }
+                    entry.indexTime = lastUpdateTime;
+                    refreshed.add(entry);
+                } else {
+                    expired.add(entry.resource);
+                }
+            }
+            if (refreshed != null) {
+                index.addAll(refreshed);
+            }
+            return expired;
+        }
+
+        synchronized List<IStagedResource> getRechecks() {
+            List<IStagedResource> resources = new ArrayList<IStagedResource>(rechecks.size());
+            for (Entry entry : rechecks) {
+                resources.add(entry.resource);
+            }
+            return resources;
+        }
+
+        /**
+         * @param recheck
+         *            whether the resource is visited again on the next clean
+         *            instead of after another time to live has passed
+         */
+        synchronized void reindex(IStagedResource resource, long indexTime, boolean recheck) {
+            Entry entry = entries.get(resource.getPath());
+            if (entry != null && entry.resource == resource) {
+                index.remove(entry);
+                entry.indexTime = Math.max(indexTime, resource.getLastUpdateTime());
+                index.add(entry);
+                if (recheck || resource.getState() == State.DONE) {
+                    rechecks.add(entry);
+                } else {
+                    rechecks.remove(entry);
+                }
+            }
+        }
+
+    }
+
+    static class Entry implements Comparable<Entry> {
+
+        String path;
+
+        IStagedResource resource;
+
+        long indexTime;
+
+        long accountedBytes;
+
+        boolean accountedFile;
+
+        Entry(String path, IStagedResource resource) {
+            this.path = path;
+            this.resource = resource;
+            this.indexTime = resource.getLastUpdateTime();
+        }
+
+        public int compareTo(Entry o) {
+            if (indexTime != o.indexTime) {
+                return indexTime < o.indexTime ? -1 : 1;
+            }
+            return path.compareTo(o.path);
+        }
+
+    }
+
 }
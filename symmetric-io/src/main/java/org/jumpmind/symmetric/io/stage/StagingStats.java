@@ -0,0 +1,120 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size and cleaning statistics for the staging area. The counts are kept for
+ * the life of the staging manager and are safe to update from multiple threads.
+ */
+public class StagingStats {
+
+    private AtomicLong resourceCount = new AtomicLong();
+
+    private AtomicLong fileCount = new AtomicLong();
+
+    private AtomicLong fileBytes = new AtomicLong();
+
+    private AtomicLong memoryBytes = new AtomicLong();
+
+    private AtomicLong cleanCount = new AtomicLong();
+
+    private AtomicLong cleanTimeMs = new AtomicLong();
+
+    private AtomicLong purgedCount = new AtomicLong();
+
+    private volatile long lastCleanTimeMs;
+
+    private volatile long maxCleanTimeMs;
+
+    public void incrementResourceCount(long count) {
+        resourceCount.addAndGet(count);
+    }
+
+    public long getResourceCount() {
+        return resourceCount.get();
+    }
+
+    public void incrementFileCount(long count) {
+        fileCount.addAndGet(count);
+    }
+
+    public long getFileCount() {
+        return fileCount.get();
+    }
+
+    public void incrementFileBytes(long bytes) {
+        fileBytes.addAndGet(bytes);
+    }
+
+    public long getFileBytes() {
+        return fileBytes.get();
+    }
+
+    public void incrementMemoryBytes(long bytes) {
+        memoryBytes.addAndGet(bytes);
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes.get();
+    }
+
+    public void incrementClean(long timeMs, long purged) {
+        cleanCount.incrementAndGet();
+        cleanTimeMs.addAndGet(timeMs);
+        purgedCount.addAndGet(purged);
+        lastCleanTimeMs = timeMs;
+        if (timeMs > maxCleanTimeMs) {
+            maxCleanTimeMs = timeMs;
+        }
+    }
+
+    public long getCleanCount() {
+        return cleanCount.get();
+    }
+
+    public long getCleanTimeMs() {
+        return cleanTimeMs.get();
+    }
+
+    public long getPurgedCount() {
+        return purgedCount.get();
+    }
+
+    public long getLastCleanTimeMs() {
+        return lastCleanTimeMs;
+    }
+
+    public long getMaxCleanTimeMs() {
+        return maxCleanTimeMs;
+    }
+
+    @Override
+    public String toString() {
+        return "{ resourceCount: " + resourceCount + ", fileCount: " + fileCount
+                + ", fileBytes: " + fileBytes + ", memoryBytes: " + memoryBytes
+                + ", cleanCount: " + cleanCount + ", cleanTimeMs: " + cleanTimeMs
+                + ", lastCleanTimeMs: " + lastCleanTimeMs + ", maxCleanTimeMs: "
+                + maxCleanTimeMs + ", purgedCount: " + purgedCount + " }";
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary counterpart of {@link ThresholdFileWriter}. Write to an internal
+ * byte buffer up until the threshold. When the threshold is reached, flush the
+ * buffer to the file and write to the file from that point forward.
+ */
+public class ThresholdFileOutputStream extends OutputStream {
+
+    private File file;
+
+    private OutputStream fileOutputStream;
+
+    private MemoryBuffer buffer = new MemoryBuffer();
+
+    private long threshhold;
+
+    /**
+     * @param threshold The number of bytes at which to start writing to a file
+     * @param file The file to write to after the threshold has been reached
+     */
+    public ThresholdFileOutputStream(long threshold, File file) {
+        this.file = file;
+        this.threshhold = threshold;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return a view of the bytes that were written if the threshold was never
+     *         reached, otherwise null
+     */
+    public ByteBuffer getMemoryBuffer() {
+        return fileOutputStream == null && buffer != null ? buffer.toByteBuffer() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.close();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.flush();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fileOutputStream == null && buffer.size() + 1 > threshhold) {
+            switchToFile();
+        }
+
+        if (fileOutputStream != null) {
+            fileOutputStream.write(b);
+        } else {
+            buffer.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fileOutputStream == null && buffer.size() + len > threshhold) {
+            switchToFile();
+        }
+
+        if (fileOutputStream != null) {
+            fileOutputStream.write(b, off, len);
+        } else {
+            buffer.write(b, off, len);
+        }
+    }
+
+    protected void switchToFile() throws IOException {
+        file.getParentFile().mkdirs();
+        fileOutputStream = new BufferedOutputStream(new FileOutputStream(file));
+        buffer.writeTo(fileOutputStream);
+        buffer = null;
+    }
+
+    static class MemoryBuffer extends ByteArrayOutputStream {
+        public ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+}
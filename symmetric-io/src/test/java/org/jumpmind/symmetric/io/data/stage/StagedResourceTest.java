@@ -0,0 +1,84 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.FileUtils;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagedResourceTest {
+
+    static final File DIR = new File("target/tmp/staged");
+
+    StagingManager stagingManager;
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+        stagingManager = new StagingManager(DIR.getAbsolutePath());
+    }
+
+    @Test
+    public void testFileByteBufferReleasedOnClose() throws Exception {
+        IStagedResource resource = stagingManager.create(0, "outgoing", "00001", 1);
+        OutputStream os = resource.getBinaryOutputStream();
+        os.write(new byte[] { 1, 2, 3 });
+        resource.close();
+        resource.setState(State.READY);
+        assertTrue(resource.getFile().exists());
+
+        ByteBuffer buffer = resource.getByteBuffer();
+        assertEquals(3, buffer.remaining());
+        assertEquals(2, buffer.get(1));
+        assertTrue(resource.isInUse());
+
+        resource.close();
+        assertFalse(resource.isInUse());
+        assertTrue(resource.delete());
+        assertFalse(resource.getFile().exists());
+    }
+
+    @Test
+    public void testMemoryByteBuffer() throws Exception {
+        IStagedResource resource = stagingManager.create(1000, "outgoing", "00001", 2);
+        OutputStream os = resource.getBinaryOutputStream();
+        os.write(new byte[] { 1, 2, 3 });
+        resource.close();
+        assertFalse(resource.getFile().exists());
+
+        ByteBuffer buffer = resource.getByteBuffer();
+        assertEquals(3, buffer.remaining());
+        resource.close();
+        assertFalse(resource.isInUse());
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagingManagerTest {
+
+    static final File DIR = new File("target/tmp/staging");
+
+    StagingManager stagingManager;
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+        stagingManager = new StagingManager(DIR.getAbsolutePath());
+    }
+
+    @Test
+    public void testCleanOnlyDoneResources() throws Exception {
+        IStagedResource done = write("outgoing", "00001", 1, State.DONE);
+        IStagedResource ready = write("outgoing", "00001", 2, State.READY);
+        IStagedResource common = write("outgoing", "common", 3, State.READY);
+        IStagedResource file = write("incoming", "00002", 4, State.DONE);
+
+        assertEquals(4, stagingManager.getStats().getResourceCount());
+        assertEquals(1, stagingManager.getStats().getFileCount());
+
+        Thread.sleep(5);
+        assertEquals(3, stagingManager.clean(1));
+        assertNull(stagingManager.find("outgoing", "00001", 1));
+        assertNotNull(stagingManager.find("outgoing", "00001", 2));
+        assertNull(stagingManager.find("outgoing", "common", 3));
+        assertNull(stagingManager.find("incoming", "00002", 4));
+        assertEquals(1, stagingManager.getStats().getResourceCount());
+        assertEquals(0, stagingManager.getStats().getFileCount());
+        assertEquals(0, stagingManager.getStats().getFileBytes());
+        assertEquals(ready.getSize(), stagingManager.getStats().getMemoryBytes());
+        assertEquals(1, stagingManager.getStats().getCleanCount());
+        assertEquals(3, stagingManager.getStats().getPurgedCount());
+
+        // a done memory resource no longer exists so it is cleaned right away
+        ready.setState(State.DONE);
+        assertEquals(1, stagingManager.clean(60000));
+        assertEquals(0, stagingManager.getStats().getResourceCount());
+        assertEquals(0, stagingManager.getStats().getMemoryBytes());
+
+        assertFalse(done.getFile().exists());
+        assertFalse(common.getFile().exists());
+        assertFalse(file.getFile().exists());
+    }
+
+    @Test
+    public void testCleanDeletedFileOnNextPass() throws Exception {
+        IStagedResource done = write("incoming", "00002", 1, State.DONE);
+        write("incoming", "00002", 2, State.DONE);
+        FileUtils.deleteQuietly(done.getFile());
+        assertEquals(1, stagingManager.clean(60000));
+        assertNull(stagingManager.find("incoming", "00002", 1));
+        assertNotNull(stagingManager.find("incoming", "00002", 2));
+    }
+
+    @Test
+    public void testCleanInUseResourceOnNextPass() throws Exception {
+        IStagedResource done = write("incoming", "00002", 1, State.DONE);
+        Thread.sleep(50);
+        done.getReader();
+        assertEquals(0, stagingManager.clean(20));
+        done.close();
+        assertEquals(1, stagingManager.clean(20));
+        assertFalse(done.getFile().exists());
+    }
+
+    @Test
+    public void testRecreateReplacesResource() throws Exception {
+        write("outgoing", "00001", 1, State.DONE);
+        IStagedResource second = write("outgoing", "00001", 1, State.READY);
+        assertEquals(1, stagingManager.getStats().getResourceCount());
+        Thread.sleep(5);
+        assertEquals(0, stagingManager.clean(1));
+        assertEquals(second, stagingManager.find("outgoing", "00001", 1));
+    }
+
+    @Test
+    public void testRefreshFromDirectory() throws Exception {
+        write("incoming", "00002", 4, State.READY);
+        StagingManager reloaded = new StagingManager(DIR.getAbsolutePath());
+        assertEquals(1, reloaded.getStats().getResourceCount());
+        assertEquals(1, reloaded.getStats().getFileCount());
+        assertNotNull(reloaded.find("incoming", "00002", 4));
+    }
+
+    protected IStagedResource write(String category, String location, long batchId,
+            State state) throws Exception {
+        boolean toFile = "incoming".equals(category);
+        IStagedResource resource = stagingManager.create(toFile ? 0 : 1000, category, location,
+                batchId);
+        resource.getWriter().write("batch," + batchId + "\n");
+        resource.close();
+        resource.setState(state);
+        return resource;
+    }
+
+}
@@ -42,8 +42,13 @@ import org.jumpmind.db.platform.mysql.MySqlDatabasePlatform;
 import org.jumpmind.db.platform.oracle.OracleDatabasePlatform;
 import org.jumpmind.db.platform.postgresql.PostgreSqlDatabasePlatform;
 import org.jumpmind.db.platform.sqlanywhere.SqlAnywhereDatabasePlatform;
+import org.jumpmind.db.sql.DmlStatement;
+import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.io.AbstractWriterTest;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
 import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.writer.Conflict.DetectConflict;
 import org.jumpmind.symmetric.io.data.writer.Conflict.ResolveConflict;
@@ -618,6 +623,47 @@ public class DatabaseWriterTest extends AbstractWriterTest {
                 totalSeconds <= targetTime);
     }
 
+    @Test
+    public void testInterleavedTablesReuseStatements() throws Exception {
+        Table testTable = buildSourceTable(TEST_TABLE, TEST_KEYS, TEST_COLUMNS);
+        Table blobTable = buildSourceTable("test_blob", new String[] { "id" }, new String[] {
+                "id", "string_value" });
+        long testTableRowsBefore = countRows(TEST_TABLE);
+        long blobTableRowsBefore = countRows("test_blob");
+
+        DefaultDatabaseWriter writer = new DefaultDatabaseWriter(platform, writerSettings);
+        writer.open(new DataContext());
+        try {
+            Batch batch = new Batch(BatchType.LOAD, getNextBatchId(), "default",
+                    BinaryEncoding.BASE64, "00000", "00001", false);
+            writer.start(batch);
+            DmlStatement firstTestTableInsert = null;
+            for (int i = 0; i < 3; i++) {
+                writer.start(testTable);
+                writer.write(new CsvData(DataEventType.INSERT, new String[] { getNextId(),
+                        "interleaved", "string not null", "char", "char not null", null, null,
+                        "0", "1", "1.00", "1" }));
+                if (firstTestTableInsert == null) {
+                    firstTestTableInsert = writer.getCurrentDmlStatement();
+                } else {
+                    Assert.assertSame(firstTestTableInsert, writer.getCurrentDmlStatement());
+                }
+                writer.end(testTable);
+
+                writer.start(blobTable);
+                writer.write(new CsvData(DataEventType.INSERT, new String[] { getNextId(),
+                        "interleaved" }));
+                writer.end(blobTable);
+            }
+            writer.end(batch, false);
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(testTableRowsBefore + 3, countRows(TEST_TABLE));
+        Assert.assertEquals(blobTableRowsBefore + 3, countRows("test_blob"));
+    }
+
     private String[] massageExpectectedResultsForDialect(String[] values) {
         RoundingMode mode = RoundingMode.DOWN;
         
@@ -29,6 +29,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -73,7 +74,21 @@ public class StagingDataWriterTest {
         readThenWrite(10000000);
     }
 
+    @Test
+    public void testReadThenWriteBinaryToFile() throws Exception {
+        readThenWrite(0, true);
+    }
+
+    @Test
+    public void testReadThenWriteBinaryToMemory() throws Exception {
+        readThenWrite(10000000, true);
+    }
+
     public void readThenWrite(long threshold) throws Exception {
+        readThenWrite(threshold, false);
+    }
+
+    public void readThenWrite(long threshold, boolean binary) throws Exception {
 
         InputStreamReader is = new InputStreamReader(getClass().getResourceAsStream("FileCsvDataWriterTest.1.csv"));
         String origCsv = IOUtils.toString(is);
@@ -81,7 +96,7 @@ public class StagingDataWriterTest {
 
         StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath());
         ProtocolDataReader reader = new ProtocolDataReader(BatchType.LOAD, "test", origCsv);
-        StagingDataWriter writer = new StagingDataWriter(threshold, "aaa", "test", stagingManager, new BatchListener());
+        StagingDataWriter writer = new StagingDataWriter(threshold, binary, "aaa", "test", stagingManager, new BatchListener());
         DataProcessor processor = new DataProcessor(reader, writer, "test");
         processor.process(new DataContext());
 
@@ -90,6 +105,7 @@ public class StagingDataWriterTest {
 
         StagedResource resource = (StagedResource) stagingManager.find("test", "aaa", 1);
         assertNotNull(resource);
+        assertEquals(binary, resource.isBinary());
         if (threshold > origCsv.length()) {
             assertFalse(resource.getFile().exists());
         } else {
@@ -110,12 +126,19 @@ public class StagingDataWriterTest {
         }
 
         public void end(DataContext ctx, Batch batch, IStagedResource resource) {
-            try {
-                BufferedReader reader = resource.getReader();
-                batchesWritten.add(IOUtils.toString(reader));
-                resource.close();
-            } catch (IOException e) {
-                throw new IoException(e);
+            if (resource.isBinary()) {
+                StringWriter writer = new StringWriter();
+                new DataProcessor(new ProtocolDataReader(BatchType.LOAD, "test", resource),
+                        new ProtocolDataWriter("aaa", writer, false), "test").process(new DataContext());
+                batchesWritten.add(writer.toString());
+            } else {
+                try {
+                    BufferedReader reader = resource.getReader();
+                    batchesWritten.add(IOUtils.toString(reader));
+                    resource.close();
+                } catch (IOException e) {
+                    throw new IoException(e);
+                }
             }
         }
     }
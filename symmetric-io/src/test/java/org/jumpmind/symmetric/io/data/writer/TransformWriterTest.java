@@ -20,6 +20,7 @@
  */
 package org.jumpmind.symmetric.io.data.writer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,9 +28,12 @@ import java.util.Map;
 import org.jumpmind.db.DbTestUtils;
 import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.symmetric.io.AbstractWriterTest;
 import org.jumpmind.symmetric.io.data.*;
 import org.jumpmind.symmetric.io.data.transform.*;
+import org.jumpmind.util.AppUtils;
+import org.jumpmind.util.Statistics;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -107,6 +111,68 @@ public class TransformWriterTest extends AbstractWriterTest {
     }
 
 
+    @Test
+    public void testTransformPlanReusedForSameLayout() throws Exception {
+        mockWriter.reset();
+        TransformWriter transformWriter = getTransformWriter();
+        Table table = new Table("s2", new Column("id"));
+        writeData(transformWriter,
+                new TableCsvData(table, new CsvData(DataEventType.INSERT, new String[] { "1" })),
+                new TableCsvData(table, new CsvData(DataEventType.INSERT, new String[] { "2" })));
+        Assert.assertEquals(1, transformWriter.transformPlans.size());
+        List<CsvData> datas = mockWriter.writtenDatas.get("t2");
+        Assert.assertEquals(2, datas.size());
+        Assert.assertEquals("added", datas.get(0).getParsedData(CsvData.ROW_DATA)[1]);
+        Assert.assertEquals("added", datas.get(1).getParsedData(CsvData.ROW_DATA)[1]);
+
+        writeData(transformWriter, new TableCsvData(new Table("s2", new Column("id"),
+                new Column("other")), new CsvData(DataEventType.INSERT, new String[] { "3", "x" })));
+        Assert.assertEquals(2, transformWriter.transformPlans.size());
+        Assert.assertEquals(3, datas.size());
+    }
+
+    @Test
+    public void testTargetTableNotRestartedForConsecutiveRows() throws Exception {
+        final List<Table> startedTables = new ArrayList<Table>();
+        MockDataWriter countingWriter = new MockDataWriter() {
+            @Override
+            public boolean start(Table table) {
+                startedTables.add(table);
+                return super.start(table);
+            }
+        };
+        Map<String, IColumnTransform<?>> columnTransforms = buildDefaultColumnTransforms();
+        addColumnTransform("slow", columnTransforms, new ConstantColumnTransform() {
+            @Override
+            public String transform(IDatabasePlatform platform, DataContext context,
+                    TransformColumn column, TransformedData data, Map<String, String> sourceValues,
+                    String newValue, String oldValue) {
+                AppUtils.sleep(5);
+                return super.transform(platform, context, column, data, sourceValues, newValue,
+                        oldValue);
+            }
+        });
+        TransformTable transformTable = new TransformTable("s1", "t1", TransformPoint.LOAD,
+                new TransformColumn("id", "id", true), new TransformColumn(null, "col2", false,
+                        "slow", "added"));
+        transformTable.setTransformId("s1_to_t1");
+        TransformWriter transformWriter = new TransformWriter(platform, TransformPoint.LOAD,
+                countingWriter, columnTransforms, new TransformTable[] { transformTable });
+        Table table = new Table("s1", new Column("id"));
+        writeData(transformWriter, new TableCsvData(table, new CsvData(DataEventType.INSERT,
+                new String[] { "1" }), new CsvData(DataEventType.INSERT, new String[] { "2" }),
+                new CsvData(DataEventType.INSERT, new String[] { "3" })));
+        Assert.assertEquals(1, startedTables.size());
+        Assert.assertEquals("t1", startedTables.get(0).getName());
+        Assert.assertEquals(3, countingWriter.writtenDatas.get("t1").size());
+
+        Assert.assertEquals(1, countingWriter.getStatistics().size());
+        Statistics stats = countingWriter.getStatistics().values().iterator().next();
+        long transformMillis = stats.get(DataWriterStatisticConstants.transformMillis("s1_to_t1"));
+        Assert.assertTrue(transformMillis >= 15);
+        Assert.assertTrue(stats.get(DataWriterStatisticConstants.TRANSFORMMILLIS) >= transformMillis);
+    }
+
     @Test
     public void testSimpleTableBeanShellMapping() throws Exception {
     }
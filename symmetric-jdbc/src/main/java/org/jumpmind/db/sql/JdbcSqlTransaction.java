@@ -28,6 +28,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +54,13 @@ public class JdbcSqlTransaction implements ISqlTransaction {
 
     protected PreparedStatement pstmt;
 
+    /**
+     * Statements that have been prepared on the current connection, keyed by
+     * sql, in least recently used order.
+     */
+    protected Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<String, PreparedStatement>(
+            16, 0.75f, true);
+
     protected JdbcSqlTemplate jdbcSqlTemplate;
 
     protected boolean autoCommit = false;
@@ -137,7 +145,7 @@ public class JdbcSqlTransaction implements ISqlTransaction {
 
     public void close() {
         if (connection != null) {
-            JdbcSqlTemplate.close(pstmt);
+            closePreparedStatements();
             try {
                 connection.setAutoCommit(this.oldAutoCommitValue);
             } catch (SQLException ex) {
@@ -405,23 +413,66 @@ public class JdbcSqlTransaction implements ISqlTransaction {
         }
     }
 
+    /**
+     * Make the statement for the sql the current statement for
+     * {@link #addRow(Object, Object[], int[])}. Statements stay open so that
+     * switching back to a statement that was already prepared does not
+     * prepare it again. Rows that are batched for the current statement are
+     * flushed before switching so that rows are applied in the order they
+     * were added.
+     */
     public void prepare(String sql) {
         try {
+            if (pstmt != null && sql.equals(psql)) {
+                return;
+            }
             if (this.markers.size() > 0) {
-                throw new IllegalStateException(
-                        "Cannot prepare a new batch before the last batch has been flushed.");
+                if (inBatchMode && pstmt != null) {
+                    flush();
+                } else {
+                    throw new IllegalStateException(
+                            "Cannot prepare a new batch before the last batch has been flushed.");
+                }
             }
-            JdbcSqlTemplate.close(pstmt);
-            if (log.isDebugEnabled()) {
-                log.debug("Preparing: {}", sql);
+            int cacheSize = jdbcSqlTemplate.getSettings().getStatementCacheSize();
+            if (cacheSize <= 0) {
+                closePreparedStatements();
             }
-            pstmt = connection.prepareStatement(sql);
+            PreparedStatement statement = preparedStatements.get(sql);
+            if (statement == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Preparing: {}", sql);
+                }
+                statement = connection.prepareStatement(sql);
+                preparedStatements.put(sql, statement);
+                if (preparedStatements.size() > cacheSize) {
+                    Iterator<PreparedStatement> it = preparedStatements.values().iterator();
+                    while (preparedStatements.size() > Math.max(cacheSize, 1) && it.hasNext()) {
+                        PreparedStatement eldest = it.next();
+                        if (eldest != statement) {
+                            JdbcSqlTemplate.close(eldest);
+                            it.remove();
+                        }
+                    }
+                }
+            }
+            pstmt = statement;
             psql = sql;
         } catch (SQLException ex) {
             throw jdbcSqlTemplate.translate(ex);
         }
     }
 
+    protected void closePreparedStatements() {
+        for (PreparedStatement statement : preparedStatements.values()) {
+            JdbcSqlTemplate.close(statement);
+        }
+        preparedStatements.clear();
+        JdbcSqlTemplate.close(pstmt);
+        pstmt = null;
+        psql = null;
+    }
+
     public int addRow(Object marker, Object[] args, int[] argTypes) {
         int rowsUpdated = 0;
         try {
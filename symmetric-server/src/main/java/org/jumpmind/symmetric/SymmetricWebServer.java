@@ -278,6 +278,7 @@ public class SymmetricWebServer {
         FilterHolder filterHolder = new FilterHolder(HttpMethodFilter.class);
         filterHolder.setInitParameter("server.allow.http.methods", allowedMethods);
         filterHolder.setInitParameter("server.disallow.http.methods", disallowedMethods);
+        filterHolder.setAsyncSupported(true);
         webapp.addFilter(filterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
         
         webapp.getServletContext().getContextHandler()
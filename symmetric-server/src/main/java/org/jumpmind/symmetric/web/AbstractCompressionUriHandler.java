@@ -38,7 +38,7 @@ abstract public class AbstractCompressionUriHandler extends AbstractUriHandler {
         super(uriPattern, parameterService, interceptors);
     }
 
-    final public void handle(HttpServletRequest req, HttpServletResponse res) throws IOException,
+    public void handle(HttpServletRequest req, HttpServletResponse res) throws IOException,
             ServletException {
         boolean compressionEnabled = !parameterService
                 .is(ParameterConstants.TRANSPORT_HTTP_COMPRESSION_DISABLED_SERVLET);
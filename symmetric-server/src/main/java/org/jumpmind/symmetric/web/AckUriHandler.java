@@ -36,7 +36,7 @@ import org.jumpmind.symmetric.transport.AbstractTransportManager;
 
 public class AckUriHandler extends AbstractUriHandler {
 
-    private static final Comparator<BatchAck> BATCH_ID_COMPARATOR = new Comparator<BatchAck>() {
+    static final Comparator<BatchAck> BATCH_ID_COMPARATOR = new Comparator<BatchAck>() {
         public int compare(BatchAck batchInfo1, BatchAck batchInfo2) {
             Long batchId1 = batchInfo1.getBatchId();
             Long batchId2 = batchInfo2.getBatchId();
@@ -65,9 +65,7 @@ public class AckUriHandler extends AbstractUriHandler {
     }
 
     protected void ack(List<BatchAck> batches) throws IOException {
-        for (BatchAck batchInfo : batches) {
-            acknowledgeService.ack(batchInfo);
-        }
+        acknowledgeService.ack(batches);
     }
 
 }
@@ -0,0 +1,138 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.web;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.jumpmind.symmetric.ext.IOutgoingBatchReadyListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of pull requests that are being held open until outgoing batches
+ * are ready for the pulling node. A held request does not use a container
+ * thread. It is dispatched back to the {@link SymmetricServlet} when batches
+ * are routed for its node, or when it times out, and is then handled as a
+ * normal pull.
+ */
+public class LongPollRegistry implements IOutgoingBatchReadyListener {
+
+    private static Logger log = LoggerFactory.getLogger(LongPollRegistry.class);
+
+    private Map<String, List<AsyncContext>> heldRequests = new HashMap<String, List<AsyncContext>>();
+
+    public void hold(HttpServletRequest req, final String nodeId, long timeoutInMs) {
+        final AsyncContext context = req.startAsync();
+        context.setTimeout(timeoutInMs);
+        context.addListener(new AsyncListener() {
+            public void onTimeout(AsyncEvent event) throws IOException {
+                wakeup(nodeId, context);
+            }
+
+            public void onError(AsyncEvent event) throws IOException {
+                remove(nodeId, context);
+            }
+
+            public void onComplete(AsyncEvent event) throws IOException {
+                remove(nodeId, context);
+            }
+
+            public void onStartAsync(AsyncEvent event) throws IOException {
+            }
+        });
+        synchronized (heldRequests) {
+            List<AsyncContext> contexts = heldRequests.get(nodeId);
+            if (contexts == null) {
+                contexts = new ArrayList<AsyncContext>(1);
+                heldRequests.put(nodeId, contexts);
+            }
+            contexts.add(context);
+        }
+        log.debug("Holding pull request from {} for up to {} ms", nodeId, timeoutInMs);
+    }
+
+    public void outgoingBatchesReady(Collection<String> nodeIds) {
+        for (String nodeId : nodeIds) {
+            wakeup(nodeId);
+        }
+    }
+
+    public void wakeup(String nodeId) {
+        List<AsyncContext> contexts = null;
+        synchronized (heldRequests) {
+            contexts = heldRequests.remove(nodeId);
+        }
+        if (contexts != null) {
+            for (AsyncContext context : contexts) {
+                dispatch(nodeId, context);
+            }
+        }
+    }
+
+    protected void wakeup(String nodeId, AsyncContext context) {
+        if (remove(nodeId, context)) {
+            dispatch(nodeId, context);
+        }
+    }
+
+    protected boolean remove(String nodeId, AsyncContext context) {
+        synchronized (heldRequests) {
+            List<AsyncContext> contexts = heldRequests.get(nodeId);
+            if (contexts != null && contexts.remove(context)) {
+                if (contexts.size() == 0) {
+                    heldRequests.remove(nodeId);
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    protected void dispatch(String nodeId, AsyncContext context) {
+        try {
+            log.debug("Releasing held pull request from {}", nodeId);
+            context.dispatch();
+        } catch (IllegalStateException ex) {
+            log.debug("The held pull request from {} was already completed", nodeId);
+        }
+    }
+
+    public int getHeldRequestCount() {
+        int count = 0;
+        synchronized (heldRequests) {
+            for (List<AsyncContext> contexts : heldRequests.values()) {
+                count += contexts.size();
+            }
+        }
+        return count;
+    }
+
+}
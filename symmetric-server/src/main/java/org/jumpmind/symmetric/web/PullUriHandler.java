@@ -22,13 +22,18 @@ package org.jumpmind.symmetric.web;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
 import java.util.List;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.model.BatchAck;
 import org.jumpmind.symmetric.model.ChannelMap;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.NodeSecurity;
@@ -37,12 +42,15 @@ import org.jumpmind.symmetric.model.ProcessInfo;
 import org.jumpmind.symmetric.model.ProcessInfo.Status;
 import org.jumpmind.symmetric.model.ProcessInfoKey;
 import org.jumpmind.symmetric.model.ProcessInfoKey.ProcessType;
+import org.jumpmind.symmetric.service.IAcknowledgeService;
 import org.jumpmind.symmetric.service.IConfigurationService;
 import org.jumpmind.symmetric.service.IDataExtractorService;
 import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.symmetric.service.IRegistrationService;
 import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.symmetric.transport.AbstractTransportManager;
 import org.jumpmind.symmetric.transport.IOutgoingTransport;
 
 /**
@@ -50,6 +58,9 @@ import org.jumpmind.symmetric.transport.IOutgoingTransport;
  */
 public class PullUriHandler extends AbstractCompressionUriHandler {
 
+    private static final String ACKNOWLEDGEMENTS_APPLIED = PullUriHandler.class.getName()
+            + ".acknowledgementsApplied";
+
     private INodeService nodeService;
 
     private IConfigurationService configurationService;
@@ -59,17 +70,73 @@ public class PullUriHandler extends AbstractCompressionUriHandler {
     private IRegistrationService registrationService;
     
     private IStatisticManager statisticManager;
+
+    private IAcknowledgeService acknowledgeService;
+
+    private IOutgoingBatchService outgoingBatchService;
+
+    private LongPollRegistry longPollRegistry;
     
     public PullUriHandler(IParameterService parameterService,
             INodeService nodeService,
             IConfigurationService configurationService, IDataExtractorService dataExtractorService,
-            IRegistrationService registrationService, IStatisticManager statisticManager,  IInterceptor... interceptors) {
+            IRegistrationService registrationService, IStatisticManager statisticManager,
+            IAcknowledgeService acknowledgeService, IOutgoingBatchService outgoingBatchService,
+            LongPollRegistry longPollRegistry, IInterceptor... interceptors) {
         super("/pull/*", parameterService, interceptors);
         this.nodeService = nodeService;
         this.configurationService = configurationService;
         this.dataExtractorService = dataExtractorService;
         this.registrationService = registrationService;
         this.statisticManager = statisticManager;
+        this.acknowledgeService = acknowledgeService;
+        this.outgoingBatchService = outgoingBatchService;
+        this.longPollRegistry = longPollRegistry;
+    }
+
+    /**
+     * A pull that asks for a long poll is held open without a thread when
+     * there are no outgoing batches for the node. It is dispatched back to this
+     * handler as a normal pull when batches are ready or the hold times out.
+     */
+    @Override
+    public void handle(HttpServletRequest req, HttpServletResponse res) throws IOException,
+            ServletException {
+        long timeoutMs = getLongPollTimeout(req);
+        String nodeId = ServletUtils.getParameter(req, WebConstants.NODE_ID);
+        if (timeoutMs > 0 && StringUtils.isNotBlank(nodeId)) {
+            NodeSecurity nodeSecurity = nodeService.findNodeSecurity(nodeId);
+            if (nodeSecurity != null && !nodeSecurity.isRegistrationEnabled()) {
+                String acknowledgements = req.getHeader(WebConstants.ACKNOWLEDGEMENTS);
+                if (StringUtils.isNotBlank(acknowledgements)) {
+                    ack(nodeId, acknowledgements);
+                }
+                req.setAttribute(ACKNOWLEDGEMENTS_APPLIED, Boolean.TRUE);
+
+                if (!outgoingBatchService.getOutgoingBatches(nodeId, false).containsBatches()) {
+                    longPollRegistry.hold(req, nodeId, timeoutMs);
+                    /*
+                     * Check again in case batches were routed before the
+                     * request was held
+                     */
+                    if (outgoingBatchService.getOutgoingBatches(nodeId, false).containsBatches()) {
+                        longPollRegistry.wakeup(nodeId);
+                    }
+                    return;
+                }
+            }
+        }
+        super.handle(req, res);
+    }
+
+    protected long getLongPollTimeout(HttpServletRequest req) {
+        long timeoutMs = 0;
+        if (req.getDispatcherType() != DispatcherType.ASYNC && req.isAsyncSupported()) {
+            timeoutMs = Math.min(
+                    NumberUtils.toLong(req.getHeader(WebConstants.LONG_POLL_TIMEOUT), 0),
+                    parameterService.getLong(ParameterConstants.PULL_LONG_POLL_TIMEOUT_MS, 60000));
+        }
+        return timeoutMs;
     }
 
     public void handleWithCompression(HttpServletRequest req, HttpServletResponse res) throws IOException,
@@ -82,6 +149,16 @@ public class PullUriHandler extends AbstractCompressionUriHandler {
         if (StringUtils.isBlank(nodeId)) {
             ServletUtils.sendError(res, HttpServletResponse.SC_BAD_REQUEST, "Node must be specified");
             return;
+        }
+
+        /*
+         * Apply acknowledgements that were piggy-backed on this pull before
+         * extracting so the acknowledged batches are not sent again
+         */
+        String acknowledgements = req.getHeader(WebConstants.ACKNOWLEDGEMENTS);
+        if (StringUtils.isNotBlank(acknowledgements)
+                && req.getAttribute(ACKNOWLEDGEMENTS_APPLIED) == null) {
+            ack(nodeId, acknowledgements);
         }
 
         ChannelMap map = new ChannelMap();
@@ -140,6 +217,19 @@ public class PullUriHandler extends AbstractCompressionUriHandler {
         }
     }
     
+    protected void ack(String nodeId, String acknowledgements) throws IOException {
+        List<BatchAck> batches = AbstractTransportManager
+                .readAcknowledgement(AbstractTransportManager
+                        .getParametersFromQueryUrl(acknowledgements));
+        for (BatchAck batch : batches) {
+            batch.setNodeId(nodeId);
+        }
+        Collections.sort(batches, AckUriHandler.BATCH_ID_COMPARATOR);
+        log.debug("Applying {} acknowledgements piggy-backed on the pull from {}",
+                batches.size(), nodeId);
+        acknowledgeService.ack(batches);
+    }
+
     private void logDataReceivedFromPush(Node targetNode, List<OutgoingBatch> batchList) {
         int batchesCount = 0;
         int dataCount = 0;
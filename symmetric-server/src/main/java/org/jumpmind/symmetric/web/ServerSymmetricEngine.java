@@ -65,6 +65,9 @@ public class ServerSymmetricEngine extends ClientSymmetricEngine {
         NodeConcurrencyInterceptor concurrencyInterceptor = new NodeConcurrencyInterceptor(
                 concurrentConnectionManager, configurationService, statisticManager);
 
+        LongPollRegistry longPollRegistry = new LongPollRegistry();
+        extensionService.addExtensionPoint(longPollRegistry);
+
         this.uriHandlers = new ArrayList<IUriHandler>();
         this.uriHandlers.add(new AckUriHandler(parameterService, acknowledgeService,
                 authInterceptor));
@@ -74,7 +77,8 @@ public class ServerSymmetricEngine extends ClientSymmetricEngine {
         this.uriHandlers.add(new BandwidthSamplerUriHandler(parameterService));
         this.uriHandlers.add(new PullUriHandler(parameterService, nodeService,
                 configurationService, dataExtractorService, registrationService, statisticManager,
-                concurrencyInterceptor, authInterceptor));
+                acknowledgeService, outgoingBatchService, longPollRegistry, concurrencyInterceptor,
+                authInterceptor));
         this.uriHandlers.add(new PushUriHandler(parameterService, dataLoaderService,
                 statisticManager, nodeService, concurrencyInterceptor, authInterceptor));
         this.uriHandlers.add(new RegistrationUriHandler(parameterService, registrationService,
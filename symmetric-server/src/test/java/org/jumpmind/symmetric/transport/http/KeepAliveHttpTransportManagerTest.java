@@ -0,0 +1,212 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.model.ChannelMap;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.transport.ConnectionRejectedException;
+import org.jumpmind.symmetric.transport.IOutgoingWithResponseTransport;
+import org.jumpmind.symmetric.web.WebConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeepAliveHttpTransportManagerTest {
+
+    private Server server;
+
+    private StandInServlet servlet;
+
+    private KeepAliveHttpTransportManager transportManager;
+
+    private IConfigurationService configurationService;
+
+    private Node remote;
+
+    private Node local;
+
+    @Before
+    public void setUp() throws Exception {
+        servlet = new StandInServlet();
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("localhost");
+        connector.setPort(0);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/sync");
+        context.addServlet(new ServletHolder(servlet), "/*");
+        server.setHandler(context);
+        server.start();
+
+        IParameterService parameterService = mock(IParameterService.class);
+        when(parameterService.getInt(ParameterConstants.TRANSPORT_HTTP_TIMEOUT)).thenReturn(10000);
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getExtensionService()).thenReturn(mock(IExtensionService.class));
+        transportManager = new KeepAliveHttpTransportManager(engine);
+
+        configurationService = mock(IConfigurationService.class);
+        when(configurationService.getSuspendIgnoreChannelLists("00001")).thenReturn(new ChannelMap());
+
+        remote = new Node("00001", "client");
+        remote.setSyncUrl("http://localhost:" + connector.getLocalPort() + "/sync");
+        local = new Node("00000", "server");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testMessagesReuseConnection() throws Exception {
+        URL url = new URL(remote.getSyncUrl() + "/ack");
+        assertEquals(HttpURLConnection.HTTP_OK, transportManager.sendMessage(url, "batch-1=ok"));
+        assertEquals(HttpURLConnection.HTTP_OK, transportManager.sendMessage(url, "batch-2=ok"));
+
+        assertEquals(2, servlet.requests.size());
+        assertEquals("POST", servlet.requests.get(0).method);
+        assertEquals("batch-1=ok", servlet.requests.get(0).body.trim());
+        assertEquals("batch-2=ok", servlet.requests.get(1).body.trim());
+        assertEquals(servlet.requests.get(0).remotePort, servlet.requests.get(1).remotePort);
+    }
+
+    @Test
+    public void testPushesReuseConnection() throws Exception {
+        push("batch 1");
+        push("batch 2");
+
+        assertEquals(4, servlet.requests.size());
+        assertEquals("HEAD", servlet.requests.get(0).method);
+        assertEquals("PUT", servlet.requests.get(1).method);
+        assertEquals("batch 1", servlet.requests.get(1).body.trim());
+        assertEquals("HEAD", servlet.requests.get(2).method);
+        assertEquals("PUT", servlet.requests.get(3).method);
+        assertEquals("batch 2", servlet.requests.get(3).body.trim());
+        for (Request request : servlet.requests) {
+            assertEquals(servlet.requests.get(0).remotePort, request.remotePort);
+        }
+    }
+
+    @Test
+    public void testBusyNodeRejectsPushBeforePayload() throws Exception {
+        push("batch 1");
+        servlet.busy = true;
+
+        IOutgoingWithResponseTransport transport = transportManager.getPushTransport(remote, local,
+                "secret", null);
+        try {
+            transport.getSuspendIgnoreChannelLists(configurationService, remote);
+            fail("Expected the reservation to be rejected");
+        } catch (ConnectionRejectedException ex) {
+        } finally {
+            transport.close();
+        }
+
+        assertEquals(3, servlet.requests.size());
+        assertEquals("HEAD", servlet.requests.get(2).method);
+    }
+
+    protected void push(String payload) throws IOException {
+        IOutgoingWithResponseTransport transport = transportManager.getPushTransport(remote, local,
+                "secret", null);
+        try {
+            ChannelMap channels = transport.getSuspendIgnoreChannelLists(configurationService,
+                    remote);
+            assertTrue(channels.getSuspendChannels().contains("reload"));
+            BufferedWriter writer = transport.openWriter();
+            writer.write(payload);
+            BufferedReader reader = transport.readResponse();
+            assertEquals("ok", reader.readLine());
+        } finally {
+            transport.close();
+        }
+    }
+
+    static class Request {
+
+        String method;
+
+        String body;
+
+        int remotePort;
+
+    }
+
+    static class StandInServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+
+        volatile boolean busy = false;
+
+        @Override
+        protected void service(HttpServletRequest req, HttpServletResponse resp)
+                throws IOException {
+            Request request = new Request();
+            request.method = req.getMethod();
+            request.remotePort = req.getRemotePort();
+            request.body = IOUtils.toString(req.getInputStream(), "UTF-8");
+            requests.add(request);
+            if (busy) {
+                resp.setStatus(WebConstants.SC_SERVICE_BUSY);
+            } else if ("HEAD".equals(request.method)) {
+                resp.setHeader(WebConstants.SUSPENDED_CHANNELS, "reload");
+                resp.setStatus(HttpServletResponse.SC_OK);
+            } else {
+                resp.setStatus(HttpServletResponse.SC_OK);
+                resp.getWriter().println("ok");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class LongPollRegistryTest {
+
+    LongPollRegistry registry;
+
+    @Before
+    public void setup() {
+        registry = new LongPollRegistry();
+    }
+
+    @Test
+    public void testHeldUntilBatchesReady() throws Exception {
+        AsyncContext context = hold("00001", 30000);
+        verify(context).setTimeout(30000);
+        assertEquals(1, registry.getHeldRequestCount());
+
+        registry.outgoingBatchesReady(Collections.singleton("00002"));
+        verify(context, never()).dispatch();
+        assertEquals(1, registry.getHeldRequestCount());
+
+        registry.outgoingBatchesReady(Collections.singleton("00001"));
+        verify(context).dispatch();
+        assertEquals(0, registry.getHeldRequestCount());
+    }
+
+    @Test
+    public void testAllRequestsForNodeReleased() throws Exception {
+        AsyncContext first = hold("00001", 30000);
+        AsyncContext second = hold("00001", 30000);
+        assertEquals(2, registry.getHeldRequestCount());
+
+        registry.wakeup("00001");
+        verify(first).dispatch();
+        verify(second).dispatch();
+        assertEquals(0, registry.getHeldRequestCount());
+    }
+
+    @Test
+    public void testTimeoutReleasesRequest() throws Exception {
+        AsyncContext context = hold("00001", 30000);
+
+        listenerFor(context).onTimeout(null);
+        verify(context).dispatch();
+        assertEquals(0, registry.getHeldRequestCount());
+
+        registry.wakeup("00001");
+        verify(context, times(1)).dispatch();
+    }
+
+    @Test
+    public void testCompletedRequestRemoved() throws Exception {
+        AsyncContext context = hold("00001", 30000);
+
+        listenerFor(context).onComplete(null);
+        assertEquals(0, registry.getHeldRequestCount());
+
+        registry.wakeup("00001");
+        verify(context, never()).dispatch();
+    }
+
+    @Test
+    public void testRequestCompletedBeforeDispatch() throws Exception {
+        AsyncContext context = hold("00001", 30000);
+        doThrow(new IllegalStateException()).when(context).dispatch();
+
+        registry.wakeup("00001");
+        verify(context).dispatch();
+        assertEquals(0, registry.getHeldRequestCount());
+    }
+
+    protected AsyncContext hold(String nodeId, long timeoutInMs) {
+        AsyncContext context = mock(AsyncContext.class);
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.startAsync()).thenReturn(context);
+        registry.hold(req, nodeId, timeoutInMs);
+        return context;
+    }
+
+    protected AsyncListener listenerFor(AsyncContext context) {
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(context).addListener(listener.capture());
+        return listener.getValue();
+    }
+
+}
@@ -0,0 +1,217 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.model.BatchAck;
+import org.jumpmind.symmetric.model.ChannelMap;
+import org.jumpmind.symmetric.model.NodeSecurity;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.OutgoingBatches;
+import org.jumpmind.symmetric.service.IAcknowledgeService;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IDataExtractorService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.IRegistrationService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class PullUriHandlerTest {
+
+    IParameterService parameterService;
+
+    INodeService nodeService;
+
+    IAcknowledgeService acknowledgeService;
+
+    IOutgoingBatchService outgoingBatchService;
+
+    LongPollRegistry longPollRegistry;
+
+    PullUriHandler handler;
+
+    HttpServletRequest req;
+
+    HttpServletResponse res;
+
+    @Before
+    public void setup() {
+        parameterService = mock(IParameterService.class);
+        nodeService = mock(INodeService.class);
+        acknowledgeService = mock(IAcknowledgeService.class);
+        outgoingBatchService = mock(IOutgoingBatchService.class);
+        longPollRegistry = new LongPollRegistry();
+        IConfigurationService configurationService = mock(IConfigurationService.class);
+        when(configurationService.getSuspendIgnoreChannelLists(anyString())).thenReturn(
+                new ChannelMap());
+        handler = new PullUriHandler(parameterService, nodeService, configurationService,
+                mock(IDataExtractorService.class), mock(IRegistrationService.class),
+                mock(IStatisticManager.class), acknowledgeService, outgoingBatchService,
+                longPollRegistry);
+
+        req = mock(HttpServletRequest.class);
+        res = mock(HttpServletResponse.class);
+        when(req.getParameter(WebConstants.NODE_ID)).thenReturn("00001");
+    }
+
+    @Test
+    public void testPiggybackedAcknowledgementsApplied() throws Exception {
+        when(req.getHeader(WebConstants.ACKNOWLEDGEMENTS)).thenReturn(
+                "batch-12=ok&nodeId-12=00099&batch-7=ok&nodeId-7=00099&batch-9=3");
+
+        handler.handleWithCompression(req, res);
+
+        List<BatchAck> batches = appliedAcknowledgements();
+        assertEquals(3, batches.size());
+        assertEquals(7, batches.get(0).getBatchId());
+        assertEquals(9, batches.get(1).getBatchId());
+        assertEquals(12, batches.get(2).getBatchId());
+        for (BatchAck batch : batches) {
+            assertEquals("00001", batch.getNodeId());
+        }
+        assertTrue(batches.get(0).isOk());
+        assertFalse(batches.get(1).isOk());
+        assertEquals(3, batches.get(1).getErrorLine());
+        assertTrue(batches.get(2).isOk());
+    }
+
+    @Test
+    public void testPullWithoutAcknowledgements() throws Exception {
+        handler.handleWithCompression(req, res);
+
+        verify(acknowledgeService, never()).ack(anyListOf(BatchAck.class));
+    }
+
+    @Test
+    public void testAcknowledgementsAppliedOnceAfterLongPoll() throws Exception {
+        when(req.getHeader(WebConstants.ACKNOWLEDGEMENTS)).thenReturn("batch-7=ok");
+        when(req.getAttribute(anyString())).thenReturn(Boolean.TRUE);
+
+        handler.handleWithCompression(req, res);
+
+        verify(acknowledgeService, never()).ack(anyListOf(BatchAck.class));
+    }
+
+    @Test
+    public void testPullHeldUntilBatchesReady() throws Exception {
+        AsyncContext context = longPoll("120000");
+        when(outgoingBatchService.getOutgoingBatches("00001", false)).thenReturn(
+                new OutgoingBatches());
+
+        handler.handle(req, res);
+
+        verify(context).setTimeout(30000);
+        verify(context, never()).dispatch();
+        assertEquals(1, longPollRegistry.getHeldRequestCount());
+
+        longPollRegistry.outgoingBatchesReady(Collections.singleton("00001"));
+        verify(context).dispatch();
+        assertEquals(0, longPollRegistry.getHeldRequestCount());
+    }
+
+    @Test
+    public void testPullNotHeldWhenBatchesReady() throws Exception {
+        longPoll("10000");
+        when(outgoingBatchService.getOutgoingBatches("00001", false)).thenReturn(
+                batchesReady());
+
+        handler.handle(req, res);
+
+        verify(req, never()).startAsync();
+        assertEquals(0, longPollRegistry.getHeldRequestCount());
+    }
+
+    @Test
+    public void testBatchesRoutedWhileHolding() throws Exception {
+        AsyncContext context = longPoll("10000");
+        when(outgoingBatchService.getOutgoingBatches("00001", false)).thenReturn(
+                new OutgoingBatches(), batchesReady());
+
+        handler.handle(req, res);
+
+        verify(context).setTimeout(10000);
+        verify(context).dispatch();
+        assertEquals(0, longPollRegistry.getHeldRequestCount());
+    }
+
+    @Test
+    public void testReleasedPullNotHeldAgain() throws Exception {
+        longPoll("10000");
+        when(req.getDispatcherType()).thenReturn(DispatcherType.ASYNC);
+        when(outgoingBatchService.getOutgoingBatches("00001", false)).thenReturn(
+                new OutgoingBatches());
+
+        handler.handle(req, res);
+
+        verify(req, never()).startAsync();
+        assertEquals(0, longPollRegistry.getHeldRequestCount());
+    }
+
+    protected AsyncContext longPoll(String requestedTimeoutMs) {
+        AsyncContext context = mock(AsyncContext.class);
+        when(req.startAsync()).thenReturn(context);
+        when(req.isAsyncSupported()).thenReturn(true);
+        when(req.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(req.getHeader(WebConstants.LONG_POLL_TIMEOUT)).thenReturn(requestedTimeoutMs);
+        when(req.getParameter("gzip")).thenReturn("false");
+        when(parameterService.getLong(eq(ParameterConstants.PULL_LONG_POLL_TIMEOUT_MS),
+                anyLong())).thenReturn(30000l);
+        when(nodeService.findNodeSecurity("00001")).thenReturn(new NodeSecurity());
+        return context;
+    }
+
+    protected OutgoingBatches batchesReady() {
+        OutgoingBatch batch = new OutgoingBatch("00001", "default", OutgoingBatch.Status.NE);
+        return new OutgoingBatches(Collections.singletonList(batch));
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<BatchAck> appliedAcknowledgements() {
+        ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+        verify(acknowledgeService).ack(batches.capture());
+        return batches.getValue();
+    }
+
+}